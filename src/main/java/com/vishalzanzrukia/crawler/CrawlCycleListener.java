@@ -0,0 +1,16 @@
+package com.vishalzanzrukia.crawler;
+
+/**
+ * The listener which is notified by {@link ProcessTriggeringBean} whenever new
+ * crawler cycle is triggered, useful to report and reset per cycle stats.
+ *
+ * @author VishalZanzrukia
+ */
+public interface CrawlCycleListener {
+
+	/**
+	 * Called when new crawler cycle is triggered, before the state of previous
+	 * cycle is deleted.
+	 */
+	void onNewCycle();
+}
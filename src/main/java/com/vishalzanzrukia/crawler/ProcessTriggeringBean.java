@@ -103,7 +103,8 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 	/**
 	 * This will check that both <code>productUrlQ</code> and
 	 * <code>visitUrlQ</code> queues whether those are processed or not<BR>
-	 * If yes, this will restart the crawler process.
+	 * If yes (and no failed fetch is waiting for retry), this will restart the
+	 * crawler process.
 	 *
 	 * @return true, if crawler has been restarted
 	 */
@@ -118,6 +119,26 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 			LOG.debug("The visitUrlQ is empty!");
 
 			if (productUrlListenerContainer.isQueueEmpty().get()) {
+
+				final int pendingRetries = singletonBeanFactory.getRetryScheduler().getPendingRetries();
+				if (pendingRetries > 0) {
+					LOG.info("The visitUrlQ as well the productUrlQ are empty, but {} retries are pending, so not restarting the crawler.",
+							pendingRetries);
+					return;
+				}
+
+				if (singletonBeanFactory.getSiteMapSeeder().isSeeding()) {
+					LOG.info("The visitUrlQ as well the productUrlQ are empty, but sitemaps are being read, so not restarting the crawler.");
+					return;
+				}
+
+				final int inFlightMessages = singletonBeanFactory.getPipelineStats().getInFlightMessages();
+				if (inFlightMessages > 0) {
+					LOG.info("The visitUrlQ as well the productUrlQ are empty, but {} messages are in pipeline stages, so not restarting the crawler.",
+							inFlightMessages);
+					return;
+				}
+
 				LOG.info("The visitUrlQ as well the productUrlQ are empty, Going to try to restart the crawler now.");
 
 				triggerCrawlerProcess(visitUrlListenerContainer.getLastTimeReceived(), productUrlListenerContainer.getLastTimeReceived());
@@ -165,7 +186,7 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 	/**
 	 * Helper method to created jms message for triggering the crawler process.
 	 */
-	private Message<String> createMessage() {
+	private Message<String> createMessage(final int depth) {
 		/** persist init URL in visited urls store */
 		try (Jedis client = getRedisClient()) {
 			client.sadd(singletonBeanFactory.getRuntimeConfigs().getVisitedUrlRedisKey(),
@@ -173,11 +194,26 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 		}
 
 		return MessageBuilder.withPayload(StringUtils.EMPTY).setHeader(MESSAGE_HEADERS.URL, singletonBeanFactory.getConfigs().getTriggerUrl())
-				.setHeader(MESSAGE_HEADERS.DEPTH, 0).build();
+				.setHeader(MESSAGE_HEADERS.DEPTH, depth).build();
 	}
 
 	/**
-	 * Helper method to delete all Redis database stores.
+	 * Helper method to notify all {@link CrawlCycleListener} beans about new
+	 * cycle.
+	 */
+	private void notifyCycleListeners() {
+		for (final CrawlCycleListener cycleListener : applicationContext.getBeansOfType(CrawlCycleListener.class).values()) {
+			try {
+				cycleListener.onNewCycle();
+			} catch (Exception e) {
+				LOG.error("Error while notifying new cycle to listener : {}", cycleListener, e);
+			}
+		}
+	}
+
+	/**
+	 * Helper method to delete all Redis database stores.<BR>
+	 * <b>NOTE:</b>The page validators are kept, those are needed by next cycle.
 	 */
 	private void deleteDB() {
 		try (Jedis client = getRedisClient()) {
@@ -186,6 +222,9 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 		try (Jedis client = getRedisClient()) {
 			client.del(singletonBeanFactory.getRuntimeConfigs().getParsedProductsRedisKey());
 		}
+		try (Jedis client = getRedisClient()) {
+			client.del(singletonBeanFactory.getRuntimeConfigs().getPartialProductsRedisKey());
+		}
 	}
 
 	/**
@@ -240,11 +279,21 @@ public class ProcessTriggeringBean extends AbstractLifecycleAdapter implements A
 				LOG.info("Setting the last triggered time to current time.");
 				lastTimeTriggered.set(System.currentTimeMillis());
 
+				notifyCycleListeners();
+
 				deleteDB();
 				LOG.info("DB deleted successfully.");
 
-				triggerChannel.send(createMessage());
-				LOG.info("Crwaler process triggered successfully.!!!");
+				if (singletonBeanFactory.getConfigs().isSiteMapSeeding()) {
+					/** the link crawl starts once the sitemaps are read */
+					singletonBeanFactory.getSiteMapSeeder().seed(seededUrls -> {
+						triggerChannel.send(createMessage(seededUrls > 0 ? singletonBeanFactory.getSiteMapSeeder().getSeededDepth() : 0));
+						LOG.info("Crwaler process triggered successfully after reading sitemaps.!!!");
+					});
+				} else {
+					triggerChannel.send(createMessage(0));
+					LOG.info("Crwaler process triggered successfully.!!!");
+				}
 
 			} else {
 
@@ -30,6 +30,14 @@ public class Configs {
 	@Value("${crawler.page.maxRetry}")
 	private int maxRetry;
 
+	/** Delay in millis before first retry of failed fetch */
+	@Value("${crawler.retry.baseDelay}")
+	private long retryBaseDelay;
+
+	/** Max delay in millis before retry of failed fetch */
+	@Value("${crawler.retry.maxDelay}")
+	private long retryMaxDelay;
+
 	/** Max bytes per page to crawling */
 	@Value("${crawler.page.maxBytes}")
 	private int maxBytes;
@@ -42,6 +50,186 @@ public class Configs {
 	@Value("${crawler.cycle.period}")
 	private int crawlerDuration;
 
+	/** Max number of urls to visit per second from single host */
+	@Value("${crawler.host.maxVisit}")
+	private double maxVisitPerHost;
+
+	/** Max number of concurrent fetches from single host */
+	@Value("${crawler.host.maxConcurrent}")
+	private int maxConcurrentPerHost;
+
+	/** Whether politeness limits are applied per resolved IP instead of host */
+	@Value("${crawler.host.keyByIp}")
+	private boolean politenessKeyByIp;
+
+	/** The time in minutes after which robots.txt of host is fetched again */
+	@Value("${crawler.robots.refresh}")
+	private int robotsRefresh;
+
+	/** The content provider to download pages, either jsoup or pooled */
+	@Value("${crawler.fetch.provider}")
+	private String contentProvider;
+
+	/** Max pooled connections per host, used by pooled content provider */
+	@Value("${crawler.fetch.pool.maxPerHost}")
+	private int maxPooledConnectionsPerHost;
+
+	/** Max pooled connections in total, used by pooled content provider */
+	@Value("${crawler.fetch.pool.maxTotal}")
+	private int maxPooledConnections;
+
+	/** Idle time in seconds after which pooled connection is closed */
+	@Value("${crawler.fetch.pool.idleTimeout}")
+	private int pooledConnectionIdleTimeout;
+
+	/** Whether to record pages into WARC files or replay them, off by default */
+	@Value("${crawler.fetch.warc.mode}")
+	private String warcMode;
+
+	/** The directory of WARC files */
+	@Value("${crawler.fetch.warc.dir}")
+	private String warcDirectory;
+
+	/** Whether to stop reading navigation pages once body end is found */
+	@Value("${crawler.fetch.earlyAbort}")
+	private boolean earlyAbort;
+
+	/** Whether to ask for compressed responses (gzip, deflate and brotli) */
+	@Value("${crawler.fetch.compression}")
+	private boolean compression;
+
+	/** Whether links of navigation pages are extracted while reading, without parsing document */
+	@Value("${crawler.links.streaming}")
+	private boolean streamingLinks;
+
+	/** Whether product pages are read as bytes to find structured data before parsing the document */
+	@Value("${crawler.product.structuredData}")
+	private boolean structuredData;
+
+	/** The number of urls of sitemap sent at once, while the sitemap is read */
+	@Value("${crawler.sitemap.batchSize}")
+	private int siteMapBatchSize;
+
+	/** Max bytes of sitemap read from the response stream, the limit of sitemaps protocol */
+	@Value("${crawler.sitemap.maxBytes}")
+	private int siteMapMaxBytes;
+
+	/** Whether the sitemap urls not modified (by lastmod) since their last fetch are skipped */
+	@Value("${crawler.sitemap.lastmod}")
+	private boolean siteMapLastmodFilter;
+
+	/** Whether each cycle is seeded from the sitemaps of robots.txt before the link crawl */
+	@Value("${crawler.seed.sitemaps}")
+	private boolean siteMapSeeding;
+
+	/** The max link depth from trigger url, when sitemaps seeded the cycle */
+	@Value("${crawler.seed.sitemaps.linkDepth}")
+	private int siteMapSeedingLinkDepth;
+
+	/** The threads reading the child sitemaps of sitemap index while seeding */
+	@Value("${crawler.seed.sitemaps.threads}")
+	private int siteMapSeedingThreads;
+
+	/** Whether response bodies read as bytes are kept in recycled buffers */
+	@Value("${crawler.fetch.buffers.pooled}")
+	private boolean pooledBuffers;
+
+	/** The max bytes held by free buffers of the pool */
+	@Value("${crawler.fetch.buffers.maxRetainedBytes}")
+	private long maxRetainedBufferBytes;
+
+	/** Whether fetch timeout of each host is derived from its download times, off by default */
+	@Value("${crawler.timeout.adaptive}")
+	private boolean adaptiveTimeout;
+
+	/** The multiplier of p99 response time of host to get its timeout */
+	@Value("${crawler.timeout.adaptive.factor}")
+	private double adaptiveTimeoutFactor;
+
+	/** The min adaptive timeout in millis */
+	@Value("${crawler.timeout.adaptive.min}")
+	private int adaptiveTimeoutMin;
+
+	/** The min responses of host before its adaptive timeout is used */
+	@Value("${crawler.timeout.adaptive.minSamples}")
+	private int adaptiveTimeoutMinSamples;
+
+	/** The seconds of responses the adaptive timeout is derived from */
+	@Value("${crawler.timeout.adaptive.window}")
+	private int adaptiveTimeoutWindow;
+
+	/** Whether slow product page requests are hedged */
+	@Value("${crawler.hedge.enabled}")
+	private boolean hedgeEnabled;
+
+	/** The response time percentile of host after which request is hedged */
+	@Value("${crawler.hedge.percentile}")
+	private double hedgePercentile;
+
+	/** The max share of hedged requests */
+	@Value("${crawler.hedge.budget}")
+	private double hedgeBudget;
+
+	/** Whether fetches of failing host are stopped for some time */
+	@Value("${crawler.breaker.enabled}")
+	private boolean circuitBreakerEnabled;
+
+	/** The number of last fetches of host the failure rate is taken from */
+	@Value("${crawler.breaker.window}")
+	private int circuitBreakerWindow;
+
+	/** The min fetches of host before its circuit can be opened */
+	@Value("${crawler.breaker.minRequests}")
+	private int circuitBreakerMinRequests;
+
+	/** The failure rate of host which opens its circuit */
+	@Value("${crawler.breaker.failureRate}")
+	private double circuitBreakerFailureRate;
+
+	/** The millis for which circuit stays open before probe fetch */
+	@Value("${crawler.breaker.openDuration}")
+	private long circuitBreakerOpenDuration;
+
+	/** Whether rate of each host is adjusted from its responses (AIMD) */
+	@Value("${crawler.rate.adaptive}")
+	private boolean adaptiveRate;
+
+	/** The max adaptive rate (fetches per second) of single host */
+	@Value("${crawler.rate.max}")
+	private double adaptiveRateMax;
+
+	/** The min adaptive rate (fetches per second) of single host */
+	@Value("${crawler.rate.min}")
+	private double adaptiveRateMin;
+
+	/** The rate added per second of fast successful fetches */
+	@Value("${crawler.rate.increase}")
+	private double adaptiveRateIncrease;
+
+	/** The multiplier of rate when host is overloaded */
+	@Value("${crawler.rate.decreaseFactor}")
+	private double adaptiveRateDecreaseFactor;
+
+	/** The multiplier of usual response time above which host is overloaded */
+	@Value("${crawler.rate.latencyFactor}")
+	private double adaptiveRateLatencyFactor;
+
+	/** The seconds for which resolved address of host is cached */
+	@Value("${crawler.dns.ttl}")
+	private int dnsTtl;
+
+	/** The seconds for which failed resolution of host is cached */
+	@Value("${crawler.dns.negativeTtl}")
+	private int dnsNegativeTtl;
+
+	/** Whether hosts of discovered links are resolved in background */
+	@Value("${crawler.dns.prefetch}")
+	private boolean dnsPrefetch;
+
+	/** The number of threads resolving hosts in background */
+	@Value("${crawler.dns.prefetchThreads}")
+	private int dnsPrefetchThreads;
+
 	/**
 	 * The minimum minutes interval between two crawler process triggering
 	 * events.
@@ -111,4 +299,380 @@ public class Configs {
 	public void setMinimumIntervalBetweenTwoTriggers(int minimumIntervalBetweenTwoTriggers) {
 		this.minimumIntervalBetweenTwoTriggers = minimumIntervalBetweenTwoTriggers;
 	}
+
+	public double getMaxVisitPerHost() {
+		return maxVisitPerHost;
+	}
+
+	public void setMaxVisitPerHost(double maxVisitPerHost) {
+		this.maxVisitPerHost = maxVisitPerHost;
+	}
+
+	public int getMaxConcurrentPerHost() {
+		return maxConcurrentPerHost;
+	}
+
+	public void setMaxConcurrentPerHost(int maxConcurrentPerHost) {
+		this.maxConcurrentPerHost = maxConcurrentPerHost;
+	}
+
+	public boolean isPolitenessKeyByIp() {
+		return politenessKeyByIp;
+	}
+
+	public void setPolitenessKeyByIp(boolean politenessKeyByIp) {
+		this.politenessKeyByIp = politenessKeyByIp;
+	}
+
+	public int getRobotsRefresh() {
+		return robotsRefresh;
+	}
+
+	public void setRobotsRefresh(int robotsRefresh) {
+		this.robotsRefresh = robotsRefresh;
+	}
+
+	public String getContentProvider() {
+		return contentProvider;
+	}
+
+	public void setContentProvider(String contentProvider) {
+		this.contentProvider = contentProvider;
+	}
+
+	public int getMaxPooledConnectionsPerHost() {
+		return maxPooledConnectionsPerHost;
+	}
+
+	public void setMaxPooledConnectionsPerHost(int maxPooledConnectionsPerHost) {
+		this.maxPooledConnectionsPerHost = maxPooledConnectionsPerHost;
+	}
+
+	public int getMaxPooledConnections() {
+		return maxPooledConnections;
+	}
+
+	public void setMaxPooledConnections(int maxPooledConnections) {
+		this.maxPooledConnections = maxPooledConnections;
+	}
+
+	public int getPooledConnectionIdleTimeout() {
+		return pooledConnectionIdleTimeout;
+	}
+
+	public void setPooledConnectionIdleTimeout(int pooledConnectionIdleTimeout) {
+		this.pooledConnectionIdleTimeout = pooledConnectionIdleTimeout;
+	}
+
+	public boolean isEarlyAbort() {
+		return earlyAbort;
+	}
+
+	public void setEarlyAbort(boolean earlyAbort) {
+		this.earlyAbort = earlyAbort;
+	}
+
+	public long getRetryBaseDelay() {
+		return retryBaseDelay;
+	}
+
+	public void setRetryBaseDelay(long retryBaseDelay) {
+		this.retryBaseDelay = retryBaseDelay;
+	}
+
+	public long getRetryMaxDelay() {
+		return retryMaxDelay;
+	}
+
+	public void setRetryMaxDelay(long retryMaxDelay) {
+		this.retryMaxDelay = retryMaxDelay;
+	}
+
+	public String getWarcMode() {
+		return warcMode;
+	}
+
+	public void setWarcMode(String warcMode) {
+		this.warcMode = warcMode;
+	}
+
+	public String getWarcDirectory() {
+		return warcDirectory;
+	}
+
+	public void setWarcDirectory(String warcDirectory) {
+		this.warcDirectory = warcDirectory;
+	}
+
+	public boolean isAdaptiveTimeout() {
+		return adaptiveTimeout;
+	}
+
+	public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+		this.adaptiveTimeout = adaptiveTimeout;
+	}
+
+	public double getAdaptiveTimeoutFactor() {
+		return adaptiveTimeoutFactor;
+	}
+
+	public void setAdaptiveTimeoutFactor(double adaptiveTimeoutFactor) {
+		this.adaptiveTimeoutFactor = adaptiveTimeoutFactor;
+	}
+
+	public int getAdaptiveTimeoutMin() {
+		return adaptiveTimeoutMin;
+	}
+
+	public void setAdaptiveTimeoutMin(int adaptiveTimeoutMin) {
+		this.adaptiveTimeoutMin = adaptiveTimeoutMin;
+	}
+
+	public int getAdaptiveTimeoutMinSamples() {
+		return adaptiveTimeoutMinSamples;
+	}
+
+	public void setAdaptiveTimeoutMinSamples(int adaptiveTimeoutMinSamples) {
+		this.adaptiveTimeoutMinSamples = adaptiveTimeoutMinSamples;
+	}
+
+	public int getAdaptiveTimeoutWindow() {
+		return adaptiveTimeoutWindow;
+	}
+
+	public void setAdaptiveTimeoutWindow(int adaptiveTimeoutWindow) {
+		this.adaptiveTimeoutWindow = adaptiveTimeoutWindow;
+	}
+
+	public boolean isHedgeEnabled() {
+		return hedgeEnabled;
+	}
+
+	public void setHedgeEnabled(boolean hedgeEnabled) {
+		this.hedgeEnabled = hedgeEnabled;
+	}
+
+	public double getHedgePercentile() {
+		return hedgePercentile;
+	}
+
+	public void setHedgePercentile(double hedgePercentile) {
+		this.hedgePercentile = hedgePercentile;
+	}
+
+	public double getHedgeBudget() {
+		return hedgeBudget;
+	}
+
+	public void setHedgeBudget(double hedgeBudget) {
+		this.hedgeBudget = hedgeBudget;
+	}
+
+	public boolean isCircuitBreakerEnabled() {
+		return circuitBreakerEnabled;
+	}
+
+	public void setCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+		this.circuitBreakerEnabled = circuitBreakerEnabled;
+	}
+
+	public int getCircuitBreakerWindow() {
+		return circuitBreakerWindow;
+	}
+
+	public void setCircuitBreakerWindow(int circuitBreakerWindow) {
+		this.circuitBreakerWindow = circuitBreakerWindow;
+	}
+
+	public int getCircuitBreakerMinRequests() {
+		return circuitBreakerMinRequests;
+	}
+
+	public void setCircuitBreakerMinRequests(int circuitBreakerMinRequests) {
+		this.circuitBreakerMinRequests = circuitBreakerMinRequests;
+	}
+
+	public double getCircuitBreakerFailureRate() {
+		return circuitBreakerFailureRate;
+	}
+
+	public void setCircuitBreakerFailureRate(double circuitBreakerFailureRate) {
+		this.circuitBreakerFailureRate = circuitBreakerFailureRate;
+	}
+
+	public long getCircuitBreakerOpenDuration() {
+		return circuitBreakerOpenDuration;
+	}
+
+	public void setCircuitBreakerOpenDuration(long circuitBreakerOpenDuration) {
+		this.circuitBreakerOpenDuration = circuitBreakerOpenDuration;
+	}
+
+	public boolean isAdaptiveRate() {
+		return adaptiveRate;
+	}
+
+	public void setAdaptiveRate(boolean adaptiveRate) {
+		this.adaptiveRate = adaptiveRate;
+	}
+
+	public double getAdaptiveRateMax() {
+		return adaptiveRateMax;
+	}
+
+	public void setAdaptiveRateMax(double adaptiveRateMax) {
+		this.adaptiveRateMax = adaptiveRateMax;
+	}
+
+	public double getAdaptiveRateMin() {
+		return adaptiveRateMin;
+	}
+
+	public void setAdaptiveRateMin(double adaptiveRateMin) {
+		this.adaptiveRateMin = adaptiveRateMin;
+	}
+
+	public double getAdaptiveRateIncrease() {
+		return adaptiveRateIncrease;
+	}
+
+	public void setAdaptiveRateIncrease(double adaptiveRateIncrease) {
+		this.adaptiveRateIncrease = adaptiveRateIncrease;
+	}
+
+	public double getAdaptiveRateDecreaseFactor() {
+		return adaptiveRateDecreaseFactor;
+	}
+
+	public void setAdaptiveRateDecreaseFactor(double adaptiveRateDecreaseFactor) {
+		this.adaptiveRateDecreaseFactor = adaptiveRateDecreaseFactor;
+	}
+
+	public double getAdaptiveRateLatencyFactor() {
+		return adaptiveRateLatencyFactor;
+	}
+
+	public void setAdaptiveRateLatencyFactor(double adaptiveRateLatencyFactor) {
+		this.adaptiveRateLatencyFactor = adaptiveRateLatencyFactor;
+	}
+
+	public int getDnsTtl() {
+		return dnsTtl;
+	}
+
+	public void setDnsTtl(int dnsTtl) {
+		this.dnsTtl = dnsTtl;
+	}
+
+	public int getDnsNegativeTtl() {
+		return dnsNegativeTtl;
+	}
+
+	public void setDnsNegativeTtl(int dnsNegativeTtl) {
+		this.dnsNegativeTtl = dnsNegativeTtl;
+	}
+
+	public boolean isDnsPrefetch() {
+		return dnsPrefetch;
+	}
+
+	public void setDnsPrefetch(boolean dnsPrefetch) {
+		this.dnsPrefetch = dnsPrefetch;
+	}
+
+	public int getDnsPrefetchThreads() {
+		return dnsPrefetchThreads;
+	}
+
+	public void setDnsPrefetchThreads(int dnsPrefetchThreads) {
+		this.dnsPrefetchThreads = dnsPrefetchThreads;
+	}
+
+	public boolean isCompression() {
+		return compression;
+	}
+
+	public void setCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	public boolean isPooledBuffers() {
+		return pooledBuffers;
+	}
+
+	public void setPooledBuffers(boolean pooledBuffers) {
+		this.pooledBuffers = pooledBuffers;
+	}
+
+	public long getMaxRetainedBufferBytes() {
+		return maxRetainedBufferBytes;
+	}
+
+	public void setMaxRetainedBufferBytes(long maxRetainedBufferBytes) {
+		this.maxRetainedBufferBytes = maxRetainedBufferBytes;
+	}
+
+	public boolean isStreamingLinks() {
+		return streamingLinks;
+	}
+
+	public void setStreamingLinks(boolean streamingLinks) {
+		this.streamingLinks = streamingLinks;
+	}
+
+	public boolean isStructuredData() {
+		return structuredData;
+	}
+
+	public void setStructuredData(boolean structuredData) {
+		this.structuredData = structuredData;
+	}
+
+	public int getSiteMapBatchSize() {
+		return siteMapBatchSize;
+	}
+
+	public void setSiteMapBatchSize(int siteMapBatchSize) {
+		this.siteMapBatchSize = siteMapBatchSize;
+	}
+
+	public int getSiteMapMaxBytes() {
+		return siteMapMaxBytes;
+	}
+
+	public void setSiteMapMaxBytes(int siteMapMaxBytes) {
+		this.siteMapMaxBytes = siteMapMaxBytes;
+	}
+
+	public boolean isSiteMapSeeding() {
+		return siteMapSeeding;
+	}
+
+	public void setSiteMapSeeding(boolean siteMapSeeding) {
+		this.siteMapSeeding = siteMapSeeding;
+	}
+
+	public int getSiteMapSeedingLinkDepth() {
+		return siteMapSeedingLinkDepth;
+	}
+
+	public void setSiteMapSeedingLinkDepth(int siteMapSeedingLinkDepth) {
+		this.siteMapSeedingLinkDepth = siteMapSeedingLinkDepth;
+	}
+
+	public int getSiteMapSeedingThreads() {
+		return siteMapSeedingThreads;
+	}
+
+	public void setSiteMapSeedingThreads(int siteMapSeedingThreads) {
+		this.siteMapSeedingThreads = siteMapSeedingThreads;
+	}
+
+	public boolean isSiteMapLastmodFilter() {
+		return siteMapLastmodFilter;
+	}
+
+	public void setSiteMapLastmodFilter(boolean siteMapLastmodFilter) {
+		this.siteMapLastmodFilter = siteMapLastmodFilter;
+	}
 }
@@ -1,10 +1,13 @@
 package com.vishalzanzrukia.crawler.bean;
 
 import java.net.URL;
+import java.util.List;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.jsoup.nodes.Document;
 
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+
 /**
  * The model class which can contain some meta-data along with {@link Document}
  * 
@@ -13,9 +16,12 @@ import org.jsoup.nodes.Document;
 public class JsoupDocumentWrapper {
 
 	private final Document document;
+	private List<String> links;
 	private String responseType;
 	private URL url;
-	private byte[] responseBytes;
+	private ResponseBuffer responseBody;
+	private PageValidators validators;
+	private boolean notModified;
 
 	public JsoupDocumentWrapper(final Document document) {
 		this.document = document;
@@ -25,6 +31,20 @@ public class JsoupDocumentWrapper {
 		return document;
 	}
 
+	/**
+	 * Gets the links of navigation page, when they are extracted while
+	 * reading the page instead of parsing the document.
+	 *
+	 * @return the absolute links, or null if document is returned
+	 */
+	public List<String> getLinks() {
+		return links;
+	}
+
+	private void setLinks(List<String> links) {
+		this.links = links;
+	}
+
 	// getter setter
 	public String getResponseType() {
 		return responseType;
@@ -42,12 +62,53 @@ public class JsoupDocumentWrapper {
 		this.url = url;
 	}
 
+	/**
+	 * Gets the body bytes, the pooled body is copied, so
+	 * {@link #getResponseBody()} should be preferred.
+	 *
+	 * @return the body bytes, or null if document is returned
+	 */
 	public byte[] getResponseBytes() {
-		return responseBytes;
+		return responseBody == null ? null : responseBody.toByteArray();
+	}
+
+	public ResponseBuffer getResponseBody() {
+		return responseBody;
+	}
+
+	public void setResponseBody(ResponseBuffer responseBody) {
+		this.responseBody = responseBody;
+	}
+
+	/**
+	 * Releases the response body back to the pool, once it's consumed.
+	 */
+	public void release() {
+		if (responseBody != null) {
+			responseBody.release();
+		}
+	}
+
+	public PageValidators getValidators() {
+		return validators;
+	}
+
+	private void setValidators(PageValidators validators) {
+		this.validators = validators;
+	}
+
+	/**
+	 * Checks whether server responded that page is not modified since the
+	 * validators sent with conditional request.
+	 *
+	 * @return true, if not modified (document and bytes are null in this case)
+	 */
+	public boolean isNotModified() {
+		return notModified;
 	}
 
-	public void setResponseBytes(byte[] responseBytes) {
-		this.responseBytes = responseBytes;
+	private void setNotModified(boolean notModified) {
+		this.notModified = notModified;
 	}
 
 	@Override
@@ -61,14 +122,22 @@ public class JsoupDocumentWrapper {
 	public static class ResponseWrapperBuilder {
 
 		private final Document document;
+		private List<String> links;
 		private String responseType;
 		private URL url;
-		private byte[] responseBytes;
+		private ResponseBuffer responseBody;
+		private PageValidators validators;
+		private boolean notModified;
 
 		public ResponseWrapperBuilder(final Document document) {
 			this.document = document;
 		}
 
+		public ResponseWrapperBuilder withLinks(final List<String> links) {
+			this.links = links;
+			return this;
+		}
+
 		public ResponseWrapperBuilder withResponseType(final String responseType) {
 			this.responseType = responseType;
 			return this;
@@ -80,15 +149,33 @@ public class JsoupDocumentWrapper {
 		}
 
 		public ResponseWrapperBuilder withResponseBytes(final byte[] responseBytes) {
-			this.responseBytes = responseBytes;
+			this.responseBody = responseBytes == null ? null : ResponseBuffer.wrap(responseBytes);
+			return this;
+		}
+
+		public ResponseWrapperBuilder withResponseBody(final ResponseBuffer responseBody) {
+			this.responseBody = responseBody;
+			return this;
+		}
+
+		public ResponseWrapperBuilder withValidators(final PageValidators validators) {
+			this.validators = validators;
+			return this;
+		}
+
+		public ResponseWrapperBuilder withNotModified(final boolean notModified) {
+			this.notModified = notModified;
 			return this;
 		}
 
 		public JsoupDocumentWrapper build() {
 			final JsoupDocumentWrapper wrapper = new JsoupDocumentWrapper(this.document);
+			wrapper.setLinks(links);
 			wrapper.setResponseType(this.responseType);
 			wrapper.setUrl(url);
-			wrapper.setResponseBytes(responseBytes);
+			wrapper.setResponseBody(responseBody);
+			wrapper.setValidators(validators);
+			wrapper.setNotModified(notModified);
 			return wrapper;
 		}
 	}
@@ -0,0 +1,85 @@
+package com.vishalzanzrukia.crawler.bean;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The cache validators ({@code ETag} and {@code Last-Modified}) of the page
+ * along with the body size, those are used to send conditional requests in
+ * next crawler cycle.
+ *
+ * @author VishalZanzrukia
+ */
+public class PageValidators {
+
+	/** The separator used in compact form, it can't be part of header value */
+	private static final char SEPARATOR = '\n';
+
+	private final String eTag;
+	private final String lastModified;
+	private final long contentLength;
+
+	public PageValidators(final String eTag, final String lastModified, final long contentLength) {
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.contentLength = contentLength;
+	}
+
+	/**
+	 * Checks whether there is any validator to send conditional request.
+	 *
+	 * @return true, if either ETag or Last-Modified is available
+	 */
+	public boolean hasValidators() {
+		return !StringUtils.isEmpty(eTag) || !StringUtils.isEmpty(lastModified);
+	}
+
+	/**
+	 * Encodes the validators into compact string form.
+	 *
+	 * @return the compact string
+	 */
+	public String encode() {
+		return StringUtils.defaultString(eTag) + SEPARATOR + StringUtils.defaultString(lastModified) + SEPARATOR + contentLength;
+	}
+
+	/**
+	 * Decodes the validators from compact string form created by
+	 * {@link #encode()}.
+	 *
+	 * @param encoded
+	 *            the encoded validators
+	 * @return the validators, or null if not able to decode
+	 */
+	public static PageValidators decode(final String encoded) {
+		if (encoded == null) {
+			return null;
+		}
+		final String[] parts = StringUtils.splitPreserveAllTokens(encoded, SEPARATOR);
+		if (parts.length != 3) {
+			return null;
+		}
+		try {
+			return new PageValidators(StringUtils.trimToNull(parts[0]), StringUtils.trimToNull(parts[1]), Long.parseLong(parts[2]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public String getETag() {
+		return eTag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public String toString() {
+		return ToStringBuilder.reflectionToString(this);
+	}
+}
@@ -24,6 +24,11 @@ public class RuntimeConfigs {
 	private static final Logger LOG = LogManager.getLogger();
 	private static final String VISITED_URLS_REDIS_KEY_PREFIX = "visitedUrls-";
 	private static final String PARSED_PRODUCTS_REDIS_KEY_PREFIX = "parsedProductIds-";
+	private static final String PAGE_VALIDATORS_REDIS_KEY_PREFIX = "pageValidators-";
+	private static final String PARTIAL_PRODUCTS_REDIS_KEY_PREFIX = "partialProducts-";
+	private static final String SEEN_LASTMODS_REDIS_KEY_PREFIX = "seenLastmods-";
+	private static final String FETCHED_LASTMODS_REDIS_KEY_PREFIX = "fetchedLastmods-";
+	private static final String PREVIOUS_FETCHED_LASTMODS_REDIS_KEY_PREFIX = "previousFetchedLastmods-";
 
 	@Autowired
 	private SingletonBeanFactory singletonBeanFactory;
@@ -37,6 +42,34 @@ public class RuntimeConfigs {
 	/** The redis key to store zone specific parsed products */
 	private String parsedProductsRedisKey;
 
+	/**
+	 * The redis key to store zone specific page validators, it's not deleted
+	 * between cycles
+	 */
+	private String pageValidatorsRedisKey;
+
+	/** The redis key to store zone specific partial products, till their page is fetched again */
+	private String partialProductsRedisKey;
+
+	/**
+	 * The redis key to store zone specific sitemap lastmods read but not
+	 * fetched yet in current cycle
+	 */
+	private String seenLastmodsRedisKey;
+
+	/**
+	 * The redis key to store zone specific sitemap lastmods of urls fetched
+	 * (or skipped as not modified) in current cycle
+	 */
+	private String fetchedLastmodsRedisKey;
+
+	/**
+	 * The redis key to store zone specific sitemap lastmods of fetched urls
+	 * of previous cycle, the urls missing from sitemaps for a cycle are
+	 * dropped with it
+	 */
+	private String previousFetchedLastmodsRedisKey;
+
 	/** The robots.txt url */
 	private String robotsTxtUrl;
 
@@ -94,6 +127,61 @@ public class RuntimeConfigs {
 		this.parsedProductsRedisKey = parsedProductsRedisKey;
 	}
 
+	public String getPageValidatorsRedisKey() {
+		if (pageValidatorsRedisKey == null) {
+			setPageValidatorsRedisKey(PAGE_VALIDATORS_REDIS_KEY_PREFIX + getDomainName());
+		}
+		return pageValidatorsRedisKey;
+	}
+
+	public void setPageValidatorsRedisKey(String pageValidatorsRedisKey) {
+		this.pageValidatorsRedisKey = pageValidatorsRedisKey;
+	}
+
+	public String getPartialProductsRedisKey() {
+		if (partialProductsRedisKey == null) {
+			setPartialProductsRedisKey(PARTIAL_PRODUCTS_REDIS_KEY_PREFIX + getDomainName());
+		}
+		return partialProductsRedisKey;
+	}
+
+	public void setPartialProductsRedisKey(String partialProductsRedisKey) {
+		this.partialProductsRedisKey = partialProductsRedisKey;
+	}
+
+	public String getSeenLastmodsRedisKey() {
+		if (seenLastmodsRedisKey == null) {
+			setSeenLastmodsRedisKey(SEEN_LASTMODS_REDIS_KEY_PREFIX + getDomainName());
+		}
+		return seenLastmodsRedisKey;
+	}
+
+	public void setSeenLastmodsRedisKey(String seenLastmodsRedisKey) {
+		this.seenLastmodsRedisKey = seenLastmodsRedisKey;
+	}
+
+	public String getFetchedLastmodsRedisKey() {
+		if (fetchedLastmodsRedisKey == null) {
+			setFetchedLastmodsRedisKey(FETCHED_LASTMODS_REDIS_KEY_PREFIX + getDomainName());
+		}
+		return fetchedLastmodsRedisKey;
+	}
+
+	public void setFetchedLastmodsRedisKey(String fetchedLastmodsRedisKey) {
+		this.fetchedLastmodsRedisKey = fetchedLastmodsRedisKey;
+	}
+
+	public String getPreviousFetchedLastmodsRedisKey() {
+		if (previousFetchedLastmodsRedisKey == null) {
+			setPreviousFetchedLastmodsRedisKey(PREVIOUS_FETCHED_LASTMODS_REDIS_KEY_PREFIX + getDomainName());
+		}
+		return previousFetchedLastmodsRedisKey;
+	}
+
+	public void setPreviousFetchedLastmodsRedisKey(String previousFetchedLastmodsRedisKey) {
+		this.previousFetchedLastmodsRedisKey = previousFetchedLastmodsRedisKey;
+	}
+
 	public String getRobotsTxtUrl() {
 
 		if (robotsTxtUrl == null) {
@@ -1,17 +1,50 @@
 package com.vishalzanzrukia.crawler.context;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vishalzanzrukia.crawler.integration.StageExecutor;
+import com.vishalzanzrukia.crawler.parser.PooledSiteMapParser;
+import com.vishalzanzrukia.crawler.util.VirtualThreads;
+
 import crawlercommons.robots.SimpleRobotRulesParser;
-import crawlercommons.sitemaps.SiteMapParser;
 
 @Configuration
 public class ApplicationContext {
 
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Value("${crawler.consumer.virtualThreads}")
+	private boolean virtualThreads;
+
+	@Value("${crawler.stage.fetch.threads}")
+	private int fetchStageThreads;
+
+	@Value("${crawler.stage.fetch.queueCapacity}")
+	private int fetchStageQueueCapacity;
+
+	@Value("${crawler.stage.parse.threads}")
+	private int parseStageThreads;
+
+	@Value("${crawler.stage.parse.queueCapacity}")
+	private int parseStageQueueCapacity;
+
+	@Value("${crawler.stage.waitForCompletion}")
+	private boolean stageWaitForCompletion;
+
+	@Value("${crawler.stage.drainTimeout}")
+	private long stageDrainTimeout;
+
 	@Bean
-	public SiteMapParser siteMapParser() {
-		return new SiteMapParser(false);
+	public PooledSiteMapParser siteMapParser() {
+		return new PooledSiteMapParser(false);
 	}
 
 	@Bean
@@ -19,4 +52,43 @@ public class ApplicationContext {
 		return new SimpleRobotRulesParser();
 	}
 
+	/**
+	 * The executor which runs the consumers of visitUrlQ and productUrlQ, each
+	 * consumer hands over one url at a time to the fetch stage (and waits till
+	 * it's processed, see {@link StageExecutor}).
+	 */
+	@Bean
+	public ExecutorService consumerExecutor() {
+		return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("consumer-%d").build());
+	}
+
+	/**
+	 * The I/O stage of the pipeline, which fetches the pages. It mostly waits
+	 * on the network, so it's sized for latency. On virtual threads, new
+	 * thread is started for each url, so the fetches in flight are limited by
+	 * the queue consumers (and the per host limits) only.
+	 */
+	@Bean
+	public StageExecutor fetchStageExecutor() {
+		if (virtualThreads && VirtualThreads.isSupported()) {
+			LOG.info("Running the fetch stage on virtual threads");
+			return new StageExecutor("fetch", 0, 0, stageWaitForCompletion, stageDrainTimeout, VirtualThreads.newVirtualThreadFactory("fetch-"));
+		}
+		if (virtualThreads) {
+			LOG.warn("Virtual threads are not supported on Java {}, running the fetch stage on platform threads", System.getProperty("java.version"));
+		}
+		return new StageExecutor("fetch", fetchStageThreads, fetchStageQueueCapacity, stageWaitForCompletion, stageDrainTimeout,
+				new ThreadFactoryBuilder().setNameFormat("fetch-%d").build());
+	}
+
+	/**
+	 * The CPU bound stage of the pipeline, which parses the fetched pages. It's
+	 * sized to the CPU cores, unless configured.
+	 */
+	@Bean
+	public StageExecutor parseStageExecutor() {
+		final int threads = parseStageThreads > 0 ? parseStageThreads : Runtime.getRuntime().availableProcessors();
+		return new StageExecutor("parse", threads, parseStageQueueCapacity, stageWaitForCompletion, stageDrainTimeout,
+				new ThreadFactoryBuilder().setNameFormat("parse-%d").build());
+	}
 }
@@ -23,12 +23,18 @@ public class ConfigContext {
 	@Value("${redis.port}")
 	private int redisPort;
 
+	@Value("${redis.pool.maxTotal}")
+	private int redisPoolMaxTotal;
+
 	@Value("#{'${crawler.supported.domains}'.split(',')}")
 	private Set<String> supportedDomains;
 
 	@Bean
 	public JedisPoolConfig jedisPoolConfig() {
-		return new JedisPoolConfig();
+		final JedisPoolConfig jedisPoolConfig = new JedisPoolConfig();
+		jedisPoolConfig.setMaxTotal(redisPoolMaxTotal);
+		jedisPoolConfig.setMaxIdle(redisPoolMaxTotal);
+		return jedisPoolConfig;
 	}
 
 	@Bean
@@ -0,0 +1,66 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The handle to abort the fetch running on other thread, used by
+ * {@link HedgedRequestExecutor} to cancel the slower of two requests.<BR>
+ * The content provider registers the abort action of its request through
+ * {@link #register(Runnable)}, it's taken only if the fetch is running within
+ * {@link #run(Callable)}, else it's ignored. Interrupting the thread is not
+ * enough, as blocking socket read does not respond to interrupt.
+ *
+ * @author VishalZanzrukia
+ */
+public class AbortableFetch {
+
+	private static final ThreadLocal<AbortableFetch> CURRENT = new ThreadLocal<>();
+
+	private volatile Runnable abortAction;
+	private volatile boolean aborted;
+
+	/**
+	 * Runs the fetch, so its request can be aborted through this handle.
+	 *
+	 * @param fetch
+	 *            the fetch
+	 * @return the result of fetch
+	 */
+	public <T> T run(final Callable<T> fetch) throws Exception {
+		CURRENT.set(this);
+		try {
+			return fetch.call();
+		} finally {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Aborts the fetch, now if its request is registered already, else as
+	 * soon as it's registered.
+	 */
+	public void abort() {
+		aborted = true;
+		final Runnable action = abortAction;
+		if (action != null) {
+			action.run();
+		}
+	}
+
+	/**
+	 * Registers the abort action of the request of current thread, if it's
+	 * running within {@link #run(Callable)}.
+	 *
+	 * @param abortAction
+	 *            the action which aborts the request
+	 */
+	public static void register(final Runnable abortAction) {
+		final AbortableFetch current = CURRENT.get();
+		if (current != null) {
+			current.abortAction = abortAction;
+			if (current.aborted) {
+				abortAction.run();
+			}
+		}
+	}
+}
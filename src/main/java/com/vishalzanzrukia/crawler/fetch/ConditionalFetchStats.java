@@ -0,0 +1,94 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+
+/**
+ * The stats of conditional requests for current and last crawler cycle, also
+ * exposed through JMX.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=conditionalFetchStats", description = "Conditional GET stats per crawler cycle")
+public class ConditionalFetchStats implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final AtomicLong conditionalRequests = new AtomicLong();
+	private final AtomicLong notModifiedResponses = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+
+	private volatile long lastCycleConditionalRequests;
+	private volatile long lastCycleNotModifiedResponses;
+	private volatile long lastCycleBytesSaved;
+
+	/**
+	 * Records the response of conditional request.
+	 *
+	 * @param response
+	 *            the response
+	 */
+	public void record(final JsoupDocumentWrapper response) {
+		conditionalRequests.incrementAndGet();
+		if (response.isNotModified()) {
+			notModifiedResponses.incrementAndGet();
+			bytesSaved.addAndGet(response.getValidators().getContentLength());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		lastCycleConditionalRequests = conditionalRequests.getAndSet(0);
+		lastCycleNotModifiedResponses = notModifiedResponses.getAndSet(0);
+		lastCycleBytesSaved = bytesSaved.getAndSet(0);
+
+		LOG.info("Conditional requests in last cycle : {}, not modified : {}, hit rate : {}, bytes saved : {}", lastCycleConditionalRequests,
+				lastCycleNotModifiedResponses, getLastCycleHitRate(), lastCycleBytesSaved);
+	}
+
+	@ManagedAttribute(description = "Conditional requests sent in current cycle")
+	public long getConditionalRequests() {
+		return conditionalRequests.get();
+	}
+
+	@ManagedAttribute(description = "304 responses received in current cycle")
+	public long getNotModifiedResponses() {
+		return notModifiedResponses.get();
+	}
+
+	@ManagedAttribute(description = "Body bytes not downloaded because of 304 in current cycle")
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	@ManagedAttribute(description = "The 304 hit rate of current cycle")
+	public double getHitRate() {
+		return hitRate(notModifiedResponses.get(), conditionalRequests.get());
+	}
+
+	@ManagedAttribute(description = "Body bytes not downloaded because of 304 in last cycle")
+	public long getLastCycleBytesSaved() {
+		return lastCycleBytesSaved;
+	}
+
+	@ManagedAttribute(description = "The 304 hit rate of last cycle")
+	public double getLastCycleHitRate() {
+		return hitRate(lastCycleNotModifiedResponses, lastCycleConditionalRequests);
+	}
+
+	private double hitRate(final long hits, final long total) {
+		return total == 0 ? 0 : (double) hits / total;
+	}
+}
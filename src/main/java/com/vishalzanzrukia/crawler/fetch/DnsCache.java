@@ -0,0 +1,277 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.http.conn.DnsResolver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * The in-process DNS cache, used by {@link DnsResolver} of pooled content
+ * provider, so the consumer thread does not wait on name resolution of the
+ * host which is already known.<BR>
+ * The hosts of newly discovered links are resolved in background through
+ * {@link #prefetch(Collection)}, before their urls reach the front of the
+ * queue. The resolved addresses are kept for {@code crawler.dns.ttl} seconds
+ * and failures for {@code crawler.dns.negativeTtl} seconds (JVM does not
+ * expose TTL of DNS records, so the TTLs are configured). The Jsoup content
+ * provider resolves through JVM, which gets its own cache warmed by the
+ * prefetch.<BR>
+ * The time spent by fetches on resolution (the DNS stage of fetch) and the
+ * time of actual lookups are exposed separately through JMX.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=dnsCache", description = "DNS cache and resolution times")
+public class DnsCache implements DnsResolver, CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The max hosts waiting for prefetch, rest are resolved when fetched */
+	private static final int MAX_PENDING_PREFETCHES = 10000;
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	private final Map<String, DnsEntry> cache = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<DnsEntry>> inFlight = new ConcurrentHashMap<>();
+	private final Set<String> queuedPrefetches = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong lookups = new AtomicLong();
+	private final AtomicLong prefetches = new AtomicLong();
+
+	/** The time (micros) fetches waited on resolution, including cache hits */
+	private final Recorder fetchResolveTime = new Recorder(2);
+
+	/** The time (micros) of actual lookups, including prefetches */
+	private final Recorder lookupTime = new Recorder(2);
+
+	private volatile Histogram lastCycleFetchResolveTime = new Histogram(2);
+	private volatile Histogram lastCycleLookupTime = new Histogram(2);
+
+	private ThreadPoolExecutor prefetchExecutor;
+
+	@PostConstruct
+	public void init() {
+		final int threads = singletonBeanFactory.getConfigs().getDnsPrefetchThreads();
+		prefetchExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_PREFETCHES),
+				new ThreadFactoryBuilder().setNameFormat("dns-prefetch-%d").setDaemon(true).build());
+	}
+
+	@PreDestroy
+	public void destroy() {
+		prefetchExecutor.shutdownNow();
+	}
+
+	/**
+	 * Resolves the host, from cache if it's resolved already, else waits for
+	 * running prefetch of the host or resolves it now.
+	 *
+	 * @param host
+	 *            the host name
+	 * @return the addresses of host
+	 */
+	@Override
+	public InetAddress[] resolve(final String host) throws UnknownHostException {
+		final long startNanos = System.nanoTime();
+		try {
+			return getEntry(host.toLowerCase()).getAddresses(host);
+		} finally {
+			fetchResolveTime.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+		}
+	}
+
+	/**
+	 * Resolves the hosts of given urls in background, the hosts which are
+	 * cached or being resolved already are skipped.
+	 *
+	 * @param urls
+	 *            the discovered urls
+	 */
+	public void prefetch(final Collection<String> urls) {
+		if (!singletonBeanFactory.getConfigs().isDnsPrefetch()) {
+			return;
+		}
+
+		final Set<String> hosts = new HashSet<>();
+		for (final String url : urls) {
+			try {
+				hosts.add(new URL(url).getHost().toLowerCase());
+			} catch (MalformedURLException e) {
+				LOG.trace("Skipping dns prefetch of invalid url : {}", url);
+			}
+		}
+
+		for (final String host : hosts) {
+			if (isCached(host) || inFlight.containsKey(host) || !queuedPrefetches.add(host)) {
+				continue;
+			}
+			try {
+				prefetchExecutor.execute(() -> {
+					queuedPrefetches.remove(host);
+					if (!isCached(host)) {
+						lookupOnce(host);
+					}
+				});
+				prefetches.incrementAndGet();
+			} catch (RejectedExecutionException e) {
+				/** too many hosts waiting, this one is resolved when fetched */
+				queuedPrefetches.remove(host);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		lastCycleFetchResolveTime = fetchResolveTime.getIntervalHistogram();
+		lastCycleLookupTime = lookupTime.getIntervalHistogram();
+		LOG.info("DNS stage of fetches in last cycle (micros), p50 : {}, p99 : {}, max : {}, lookups p99 : {}, cache hits : {}, lookups : {}",
+				getFetchResolveTimeP50(), getFetchResolveTimeP99(), lastCycleFetchResolveTime.getMaxValue(), getLookupTimeP99(), cacheHits.get(),
+				lookups.get());
+	}
+
+	@ManagedAttribute(description = "Resolutions served from cache since startup")
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	@ManagedAttribute(description = "DNS lookups done since startup, including prefetches")
+	public long getLookups() {
+		return lookups.get();
+	}
+
+	@ManagedAttribute(description = "Hosts queued for prefetch since startup")
+	public long getPrefetches() {
+		return prefetches.get();
+	}
+
+	@ManagedAttribute(description = "Number of cached hosts")
+	public int getCachedHosts() {
+		return cache.size();
+	}
+
+	@ManagedAttribute(description = "Median time (micros) fetches waited on resolution in last cycle")
+	public long getFetchResolveTimeP50() {
+		return lastCycleFetchResolveTime.getValueAtPercentile(50);
+	}
+
+	@ManagedAttribute(description = "99th percentile time (micros) fetches waited on resolution in last cycle")
+	public long getFetchResolveTimeP99() {
+		return lastCycleFetchResolveTime.getValueAtPercentile(99);
+	}
+
+	@ManagedAttribute(description = "99th percentile time (micros) of DNS lookups in last cycle")
+	public long getLookupTimeP99() {
+		return lastCycleLookupTime.getValueAtPercentile(99);
+	}
+
+	private boolean isCached(final String host) {
+		final DnsEntry entry = cache.get(host);
+		return entry != null && !entry.isExpired();
+	}
+
+	private DnsEntry getEntry(final String host) {
+		final DnsEntry entry = cache.get(host);
+		if (entry != null && !entry.isExpired()) {
+			cacheHits.incrementAndGet();
+			return entry;
+		}
+		return lookupOnce(host);
+	}
+
+	/**
+	 * Looks up the host, or waits for the lookup of same host running on
+	 * other thread.
+	 */
+	private DnsEntry lookupOnce(final String host) {
+		final CompletableFuture<DnsEntry> lookup = new CompletableFuture<>();
+		final CompletableFuture<DnsEntry> running = inFlight.putIfAbsent(host, lookup);
+		if (running != null) {
+			return running.join();
+		}
+
+		try {
+			final DnsEntry entry = lookup(host);
+			cache.put(host, entry);
+			lookup.complete(entry);
+			return entry;
+		} catch (RuntimeException | Error e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(host, lookup);
+		}
+	}
+
+	private DnsEntry lookup(final String host) {
+		lookups.incrementAndGet();
+		final long startNanos = System.nanoTime();
+		try {
+			final InetAddress[] addresses = InetAddress.getAllByName(host);
+			return new DnsEntry(addresses, TimeUnit.SECONDS.toMillis(singletonBeanFactory.getConfigs().getDnsTtl()));
+		} catch (UnknownHostException e) {
+			LOG.debug("Not able to resolve host [{}]", host);
+			return new DnsEntry(null, TimeUnit.SECONDS.toMillis(singletonBeanFactory.getConfigs().getDnsNegativeTtl()));
+		} finally {
+			lookupTime.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+		}
+	}
+
+	/**
+	 * The resolved addresses of host, null addresses if host is not
+	 * resolvable.
+	 */
+	private static class DnsEntry {
+
+		private final InetAddress[] addresses;
+		private final long expiresAt;
+
+		private DnsEntry(final InetAddress[] addresses, final long ttlInMillis) {
+			this.addresses = addresses;
+			this.expiresAt = System.currentTimeMillis() + ttlInMillis;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() >= expiresAt;
+		}
+
+		private InetAddress[] getAddresses(final String host) throws UnknownHostException {
+			if (addresses == null) {
+				throw new UnknownHostException(host);
+			}
+			return addresses.clone();
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Sends the second (hedged) request for the page if the first one has not
+ * answered within {@code crawler.hedge.percentile} response time of the host
+ * (see {@link HostLatencyTracker}), the response which arrives first is used
+ * and the other request is aborted. The first request runs on the calling
+ * thread, so only the hedged requests take the threads of executor. The
+ * first request is aborted through {@link AbortableFetch}, which needs content
+ * provider which registers its abort action (the pooled one).<BR>
+ * The hedged requests are limited to {@code crawler.hedge.budget} share of
+ * requests of current cycle, so slow host does not get twice the traffic.
+ * The host without enough response times is not hedged, and the hedge is not
+ * sent if the hedged request finds the host busy (it returns null then).
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=hedgedRequests", description = "Hedged requests of product pages per crawler cycle")
+public class HedgedRequestExecutor implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	private final ExecutorService executor = Executors
+			.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("hedged-fetch-%d").setDaemon(true).build());
+
+	/** Starts the hedged requests once their delay is over */
+	private final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1,
+			new ThreadFactoryBuilder().setNameFormat("hedge-timer-%d").setDaemon(true).build());
+
+	public HedgedRequestExecutor() {
+		timer.setRemoveOnCancelPolicy(true);
+	}
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hedgedRequests = new AtomicLong();
+	private final AtomicLong hedgeWins = new AtomicLong();
+	private final AtomicLong budgetExhausted = new AtomicLong();
+	private final AtomicLong hostBusy = new AtomicLong();
+
+	/**
+	 * Fetches the page, hedging it if first request is slow. The first request
+	 * runs on the calling thread, only the hedged request is run by the
+	 * executor.
+	 *
+	 * @param url
+	 *            the url
+	 * @param request
+	 *            the first request
+	 * @param hedgedRequest
+	 *            the second request, sent only if first one is slow, it
+	 *            returns null without sending the request if the host is busy
+	 * @return the response which arrived first
+	 */
+	public JsoupDocumentWrapper fetch(final String url, final Callable<JsoupDocumentWrapper> request,
+			final Callable<JsoupDocumentWrapper> hedgedRequest) throws Exception {
+		requests.incrementAndGet();
+
+		final long hedgeDelay = singletonBeanFactory.getHostLatencyTracker().getLatencyAtPercentile(url,
+				singletonBeanFactory.getConfigs().getHedgePercentile());
+		if (hedgeDelay < 0) {
+			return request.call();
+		}
+
+		final AbortableFetch first = new AbortableFetch();
+		final Hedge hedge = new Hedge(url, hedgeDelay, hedgedRequest, first);
+		final ScheduledFuture<?> hedgeStart = timer.schedule(hedge::start, hedgeDelay, TimeUnit.MILLISECONDS);
+		try {
+			return first.run(request);
+		} catch (Exception e) {
+			if (!hedge.cancel()) {
+				throw e;
+			}
+			/** the first request failed, or it was aborted as the hedged request answered first */
+			LOG.debug("First request failed, waiting for the hedged one, url : {}", url, e);
+			final JsoupDocumentWrapper response = getResult(hedge.future);
+			if (response == null) {
+				/** the hedge was not sent, the host was busy */
+				throw e;
+			}
+			hedgeWins.incrementAndGet();
+			return response;
+		} finally {
+			hedgeStart.cancel(false);
+			hedge.abortIfRunning();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		timer.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		LOG.info("Hedged requests in last cycle : {} of {} requests, won : {}, not sent due to budget : {}, not sent as host was busy : {}",
+				hedgedRequests.get(), requests.get(), hedgeWins.get(), budgetExhausted.get(), hostBusy.get());
+		requests.set(0);
+		hedgedRequests.set(0);
+		hedgeWins.set(0);
+		budgetExhausted.set(0);
+		hostBusy.set(0);
+	}
+
+	@ManagedAttribute(description = "Requests of current cycle which could be hedged")
+	public long getRequests() {
+		return requests.get();
+	}
+
+	@ManagedAttribute(description = "Hedged requests sent in current cycle")
+	public long getHedgedRequests() {
+		return hedgedRequests.get();
+	}
+
+	@ManagedAttribute(description = "Hedged requests which answered before the first request in current cycle")
+	public long getHedgeWins() {
+		return hedgeWins.get();
+	}
+
+	@ManagedAttribute(description = "Slow requests not hedged because the budget was used in current cycle")
+	public long getBudgetExhausted() {
+		return budgetExhausted.get();
+	}
+
+	@ManagedAttribute(description = "Slow requests not hedged because their host had no free slot in current cycle")
+	public long getHostBusy() {
+		return hostBusy.get();
+	}
+
+	/**
+	 * Takes one hedge from the budget, if it's not used yet.
+	 */
+	private boolean tryAcquireBudget() {
+		final double budget = singletonBeanFactory.getConfigs().getHedgeBudget();
+		long hedged;
+		do {
+			hedged = hedgedRequests.get();
+			if (hedged + 1 > requests.get() * budget) {
+				return false;
+			}
+		} while (!hedgedRequests.compareAndSet(hedged, hedged + 1));
+		return true;
+	}
+
+	private JsoupDocumentWrapper getResult(final Future<JsoupDocumentWrapper> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * The hedged request, started on {@link HedgedRequestExecutor#executor}
+	 * once the delay is over, unless the first request is done by then or the
+	 * budget is used. It aborts the first request once it answers, unless it
+	 * was not sent as the host was busy.
+	 */
+	private class Hedge {
+
+		private final String url;
+		private final long delay;
+		private final Callable<JsoupDocumentWrapper> request;
+		private final AbortableFetch first;
+		private final AbortableFetch abortableFetch = new AbortableFetch();
+
+		private Future<JsoupDocumentWrapper> future;
+		private boolean cancelled;
+
+		private Hedge(final String url, final long delay, final Callable<JsoupDocumentWrapper> request, final AbortableFetch first) {
+			this.url = url;
+			this.delay = delay;
+			this.request = request;
+			this.first = first;
+		}
+
+		private synchronized void start() {
+			if (cancelled) {
+				return;
+			}
+			if (!tryAcquireBudget()) {
+				budgetExhausted.incrementAndGet();
+				return;
+			}
+			LOG.debug("No response within {} millis, sending hedged request for url : {}", delay, url);
+			future = executor.submit(() -> {
+				final JsoupDocumentWrapper response = abortableFetch.run(request);
+				if (response == null) {
+					/** not sent, so the budget is given back */
+					hedgedRequests.decrementAndGet();
+					hostBusy.incrementAndGet();
+					LOG.debug("Host is busy, hedged request is not sent for url : {}", url);
+					return null;
+				}
+				first.abort();
+				return response;
+			});
+		}
+
+		/**
+		 * Cancels the hedge if it's not started yet.
+		 *
+		 * @return true, if the hedged request is started already
+		 */
+		private synchronized boolean cancel() {
+			cancelled = true;
+			return future != null;
+		}
+
+		private void abortIfRunning() {
+			final Future<JsoupDocumentWrapper> hedgeFuture;
+			synchronized (this) {
+				cancelled = true;
+				hedgeFuture = future;
+			}
+			if (hedgeFuture != null && !hedgeFuture.isDone()) {
+				abortableFetch.abort();
+				hedgeFuture.cancel(true);
+			}
+		}
+	}
+}
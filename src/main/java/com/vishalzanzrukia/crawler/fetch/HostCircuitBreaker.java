@@ -0,0 +1,274 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.ThrottledStatusException;
+
+/**
+ * The circuit breaker per host around the fetches, so the failing host is
+ * left alone for some time instead of spending consumer time on each of its
+ * urls.<BR>
+ * The circuit is opened once {@code crawler.breaker.failureRate} of last
+ * {@code crawler.breaker.window} fetches are failed (at least
+ * {@code crawler.breaker.minRequests} fetches). While it's open, fetches of
+ * the host are rejected with {@link HostCircuitOpenException} for
+ * {@code crawler.breaker.openDuration} millis, then single probe fetch is let
+ * through (half open), which closes the circuit on success or opens it again
+ * on failure.<BR>
+ * The server errors (5xx, 429), timeouts and connection failures are counted
+ * as failures, other responses (like 404) show the host is answering. If host
+ * sends {@code Retry-After} with 429 or 503, the circuit is opened for that
+ * time right away.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=hostCircuitBreaker", description = "Circuit breaker state per host")
+public class HostCircuitBreaker {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final int SC_SERVER_ERROR = 500;
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	/** The host name vs circuit of that host */
+	private final Map<String, HostCircuit> hostCircuits = new ConcurrentHashMap<>();
+
+	private final AtomicLong openedCircuits = new AtomicLong();
+	private final AtomicLong closedCircuits = new AtomicLong();
+	private final AtomicLong rejectedRequests = new AtomicLong();
+
+	/**
+	 * Checks whether the url can be fetched now.<BR>
+	 * <b>NOTE:</b>The result of allowed fetch must be reported through
+	 * {@link #onResult(String, Exception)}.
+	 *
+	 * @param url
+	 *            the url to fetch
+	 * @throws HostCircuitOpenException
+	 *             if circuit of the host is open
+	 */
+	public void acquire(final String url) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (!configs.isCircuitBreakerEnabled() || ContentProvider.WARC_MODE_REPLAY.equals(configs.getWarcMode())) {
+			return;
+		}
+
+		final String host = getHost(url);
+		final long retryDelay = getHostCircuit(host).acquire(configs);
+		if (retryDelay > 0) {
+			rejectedRequests.incrementAndGet();
+			throw new HostCircuitOpenException(host, retryDelay);
+		}
+	}
+
+	/**
+	 * Reports the result of the fetch allowed by {@link #acquire(String)}.
+	 *
+	 * @param url
+	 *            the fetched url
+	 * @param failure
+	 *            the failure of fetch, null if fetch was successful
+	 */
+	public void onResult(final String url, final Exception failure) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (!configs.isCircuitBreakerEnabled() || ContentProvider.WARC_MODE_REPLAY.equals(configs.getWarcMode())) {
+			return;
+		}
+
+		final String host = getHost(url);
+		final boolean hostFailure = failure != null && isHostFailure(failure);
+		final long retryAfter = failure instanceof ThrottledStatusException ? ((ThrottledStatusException) failure).getRetryAfterMillis() : -1;
+		final HostCircuit hostCircuit = getHostCircuit(host);
+		final State transition = retryAfter > 0 ? hostCircuit.openFor(retryAfter) : hostCircuit.onResult(hostFailure, configs);
+		if (transition == State.OPEN) {
+			openedCircuits.incrementAndGet();
+			LOG.warn("Opened the circuit of host [{}] for {} millis, last failure : {}", host,
+					retryAfter > 0 ? retryAfter : configs.getCircuitBreakerOpenDuration(), failure == null ? null : failure.toString());
+		} else if (transition == State.CLOSED) {
+			closedCircuits.incrementAndGet();
+			LOG.info("Closed the circuit of host [{}], probe fetch was successful", host);
+		}
+	}
+
+	@ManagedAttribute(description = "Number of hosts with open or half open circuit")
+	public long getOpenCircuits() {
+		return hostCircuits.values().stream().filter(circuit -> circuit.state != State.CLOSED).count();
+	}
+
+	@ManagedAttribute(description = "Circuits opened since startup")
+	public long getOpenedCircuits() {
+		return openedCircuits.get();
+	}
+
+	@ManagedAttribute(description = "Circuits closed again after successful probe since startup")
+	public long getClosedCircuits() {
+		return closedCircuits.get();
+	}
+
+	@ManagedAttribute(description = "Fetches rejected because circuit of host was open since startup")
+	public long getRejectedRequests() {
+		return rejectedRequests.get();
+	}
+
+	@ManagedAttribute(description = "The circuit state of each host which is not closed")
+	public String[] getOpenHosts() {
+		return hostCircuits.entrySet().stream().filter(entry -> entry.getValue().state != State.CLOSED)
+				.map(entry -> entry.getKey() + " " + entry.getValue().state).sorted().toArray(String[]::new);
+	}
+
+	/**
+	 * Checks whether the failure shows that host is not able to answer, such
+	 * failure is transient and the url is worth retrying.
+	 *
+	 * @param failure
+	 *            the failure of fetch
+	 * @return true, if it's server error (5xx), 429 or I/O error
+	 */
+	public static boolean isHostFailure(final Exception failure) {
+		if (failure instanceof HttpStatusException) {
+			final int statusCode = ((HttpStatusException) failure).getStatusCode();
+			return statusCode >= SC_SERVER_ERROR || statusCode == ThrottledStatusException.SC_TOO_MANY_REQUESTS;
+		}
+		return failure instanceof IOException && !(failure instanceof UnsupportedMimeTypeException) && !(failure instanceof MalformedURLException);
+	}
+
+	private HostCircuit getHostCircuit(final String host) {
+		return hostCircuits.computeIfAbsent(host, key -> new HostCircuit(singletonBeanFactory.getConfigs().getCircuitBreakerWindow()));
+	}
+
+	private String getHost(final String url) {
+		try {
+			return new URL(url).getHost().toLowerCase();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Not able to retrieve host from url : " + url, e);
+		}
+	}
+
+	/**
+	 * The circuit of single host, with results of its last fetches.
+	 */
+	private static class HostCircuit {
+
+		/** The results of last fetches, true for failure */
+		private final boolean[] results;
+		private int nextResult;
+		private int recordedResults;
+		private int failures;
+
+		private volatile State state = State.CLOSED;
+		private long openUntil;
+		private boolean probeRunning;
+
+		private HostCircuit(final int window) {
+			this.results = new boolean[Math.max(1, window)];
+		}
+
+		/**
+		 * Gets the delay after which host can be tried again, or 0 if fetch is
+		 * allowed now.
+		 */
+		private synchronized long acquire(final Configs configs) {
+			if (state == State.CLOSED) {
+				return 0;
+			}
+
+			final long now = System.currentTimeMillis();
+			if (state == State.OPEN && now >= openUntil) {
+				state = State.HALF_OPEN;
+			}
+			if (state == State.HALF_OPEN && !probeRunning) {
+				probeRunning = true;
+				return 0;
+			}
+
+			/** spreading the rejected urls, so they don't come back together */
+			final long remaining = Math.max(openUntil - now, 0) + configs.getCircuitBreakerOpenDuration() / 2;
+			return remaining + ThreadLocalRandom.current().nextLong(remaining / 2 + 1);
+		}
+
+		/**
+		 * Records the fetch result.
+		 *
+		 * @return the new state if result changed it, else null
+		 */
+		private synchronized State onResult(final boolean failure, final Configs configs) {
+			if (state == State.HALF_OPEN && probeRunning) {
+				probeRunning = false;
+				if (failure) {
+					return open(configs);
+				}
+				reset();
+				state = State.CLOSED;
+				return State.CLOSED;
+			}
+			if (state != State.CLOSED) {
+				/** fetch was started before the circuit was opened */
+				return null;
+			}
+
+			if (recordedResults == results.length) {
+				failures -= results[nextResult] ? 1 : 0;
+			} else {
+				recordedResults++;
+			}
+			results[nextResult] = failure;
+			failures += failure ? 1 : 0;
+			nextResult = (nextResult + 1) % results.length;
+
+			if (recordedResults >= configs.getCircuitBreakerMinRequests() && failures >= configs.getCircuitBreakerFailureRate() * recordedResults) {
+				return open(configs);
+			}
+			return null;
+		}
+
+		/**
+		 * Opens the circuit for the time host has asked through
+		 * {@code Retry-After}.
+		 *
+		 * @return the new state if it's changed, else null
+		 */
+		private synchronized State openFor(final long durationInMillis) {
+			final State previous = state;
+			probeRunning = false;
+			reset();
+			state = State.OPEN;
+			openUntil = Math.max(openUntil, System.currentTimeMillis() + durationInMillis);
+			return previous == State.OPEN ? null : State.OPEN;
+		}
+
+		private State open(final Configs configs) {
+			return openFor(configs.getCircuitBreakerOpenDuration());
+		}
+
+		private void reset() {
+			nextResult = 0;
+			recordedResults = 0;
+			failures = 0;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+/**
+ * Thrown when the url is not fetched because circuit of its host is open,
+ * see {@link HostCircuitBreaker}. The url should be tried again after
+ * {@link #getRetryDelay()}, without counting it as failed attempt.
+ *
+ * @author VishalZanzrukia
+ */
+public class HostCircuitOpenException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryDelay;
+
+	public HostCircuitOpenException(final String host, final long retryDelay) {
+		super("Circuit of host [" + host + "] is open, retry after " + retryDelay + " millis");
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Gets the delay after which the url can be tried again.
+	 *
+	 * @return the delay in millis
+	 */
+	public long getRetryDelay() {
+		return retryDelay;
+	}
+}
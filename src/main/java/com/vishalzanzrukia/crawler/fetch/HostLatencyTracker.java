@@ -0,0 +1,207 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Keeps the response time histogram of each host and derives the fetch
+ * timeout of that host from it, {@code p99 * crawler.timeout.adaptive.factor}
+ * bounded by {@code crawler.timeout.adaptive.min} and
+ * {@code crawler.page.timeout}. So a stuck connection to fast host is given up
+ * after few seconds, while slow host still gets the time it usually needs.<BR>
+ * The response time is the download time only (till response headers plus the
+ * reads of the body), the time spent by parser is not recorded. The timeout is
+ * the deadline of whole request, not only the read inactivity timeout.<BR>
+ * The timeout is derived again once per {@code crawler.timeout.adaptive.window}
+ * seconds, from the responses of that window. Until host has
+ * {@code crawler.timeout.adaptive.minSamples} responses,
+ * {@code crawler.page.timeout} is used.<BR>
+ * The timed out fetches are recorded with the time they waited, so timeout
+ * of a host which became slower grows back in next window.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=hostLatency", description = "Response time histograms and adaptive timeouts per host")
+public class HostLatencyTracker implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The significant digits of histogram values, 1% precision */
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	/** The host name vs latency of that host */
+	private final Map<String, HostLatency> hostLatencies = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the timeout for fetching the url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the timeout in millis
+	 */
+	public int getTimeoutMillis(final String url) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (!configs.isAdaptiveTimeout()) {
+			return configs.getTimeout() * 1000;
+		}
+		return getHostLatency(getHost(url)).getTimeoutMillis(configs);
+	}
+
+	/**
+	 * Gets the response time of the host of url at given percentile, from the
+	 * window the current timeout is derived from.
+	 *
+	 * @param url
+	 *            the url
+	 * @param percentile
+	 *            the percentile, 0 to 100
+	 * @return the response time in millis, or -1 if host does not have enough
+	 *         responses yet
+	 */
+	public long getLatencyAtPercentile(final String url, final double percentile) {
+		final HostLatency hostLatency = hostLatencies.get(getHost(url));
+		return hostLatency == null ? -1 : hostLatency.getValueAtPercentile(percentile);
+	}
+
+	/**
+	 * Records the download time of the url, including timed out fetch. It's
+	 * recorded only if adaptive timeout or hedged requests are enabled, those
+	 * are the users of it.
+	 *
+	 * @param url
+	 *            the url
+	 * @param latencyInMillis
+	 *            the download time in millis
+	 */
+	public void record(final String url, final long latencyInMillis) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (configs.isAdaptiveTimeout() || configs.isHedgeEnabled()) {
+			getHostLatency(getHost(url)).recorder.recordValue(Math.max(0, latencyInMillis));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		for (final String summary : getHostLatencies()) {
+			LOG.info("Host latency : {}", summary);
+		}
+	}
+
+	@ManagedAttribute(description = "Number of hosts with recorded response times")
+	public int getHostCount() {
+		return hostLatencies.size();
+	}
+
+	@ManagedAttribute(description = "The response time percentiles (millis) of last window and current timeout of each host")
+	public String[] getHostLatencies() {
+		return hostLatencies.entrySet().stream().map(entry -> entry.getKey() + " " + entry.getValue().getSummary()).sorted()
+				.toArray(String[]::new);
+	}
+
+	@ManagedOperation(description = "The current timeout (millis) of the host")
+	public int getHostTimeout(final String host) {
+		final HostLatency hostLatency = hostLatencies.get(host.toLowerCase());
+		return hostLatency == null ? singletonBeanFactory.getConfigs().getTimeout() * 1000 : hostLatency.timeoutMillis;
+	}
+
+	private HostLatency getHostLatency(final String host) {
+		return hostLatencies.computeIfAbsent(host, key -> new HostLatency(singletonBeanFactory.getConfigs().getTimeout() * 1000));
+	}
+
+	private String getHost(final String url) {
+		try {
+			return new URL(url).getHost().toLowerCase();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Not able to retrieve host from url : " + url, e);
+		}
+	}
+
+	/**
+	 * The response times and current timeout of single host.
+	 */
+	private static class HostLatency {
+
+		/** Records from many consumer threads without locking */
+		private final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+
+		/** The responses of windows which did not have enough samples yet */
+		private final Histogram pending = new Histogram(SIGNIFICANT_DIGITS);
+
+		/** The responses the current timeout is derived from */
+		private Histogram window;
+
+		private volatile int timeoutMillis;
+		private volatile long windowStart = System.nanoTime();
+
+		private HostLatency(final int timeoutMillis) {
+			this.timeoutMillis = timeoutMillis;
+		}
+
+		private int getTimeoutMillis(final Configs configs) {
+			if (System.nanoTime() - windowStart >= TimeUnit.SECONDS.toNanos(configs.getAdaptiveTimeoutWindow())) {
+				roll(configs);
+			}
+			return timeoutMillis;
+		}
+
+		/**
+		 * Closes the current window, and derives the timeout from it if it has
+		 * enough samples.
+		 */
+		private synchronized void roll(final Configs configs) {
+			final long now = System.nanoTime();
+			if (now - windowStart < TimeUnit.SECONDS.toNanos(configs.getAdaptiveTimeoutWindow())) {
+				/** other thread has rolled it already */
+				return;
+			}
+			windowStart = now;
+
+			pending.add(recorder.getIntervalHistogram());
+			if (pending.getTotalCount() < configs.getAdaptiveTimeoutMinSamples()) {
+				return;
+			}
+
+			window = pending.copy();
+			pending.reset();
+
+			final long timeout = (long) (window.getValueAtPercentile(99) * configs.getAdaptiveTimeoutFactor());
+			timeoutMillis = (int) Math.max(configs.getAdaptiveTimeoutMin(), Math.min(timeout, configs.getTimeout() * 1000L));
+		}
+
+		private synchronized long getValueAtPercentile(final double percentile) {
+			return window == null ? -1 : window.getValueAtPercentile(percentile);
+		}
+
+		private synchronized String getSummary() {
+			if (window == null) {
+				return "samples=" + pending.getTotalCount() + " timeout=" + timeoutMillis;
+			}
+			return "p50=" + window.getValueAtPercentile(50) + " p90=" + window.getValueAtPercentile(90) + " p99=" + window.getValueAtPercentile(99)
+					+ " max=" + window.getMaxValue() + " samples=" + window.getTotalCount() + " timeout=" + timeoutMillis;
+		}
+	}
+}
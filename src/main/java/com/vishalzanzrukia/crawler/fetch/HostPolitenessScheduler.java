@@ -0,0 +1,435 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.ThrottledStatusException;
+
+import crawlercommons.robots.BaseRobotRules;
+
+/**
+ * The politeness scheduler which gives each host (or resolved IP, if
+ * configured) its own {@link RateLimiter} and concurrency limit, so a slow
+ * host only holds back the fetches of that host. All hosts together are still
+ * limited to {@code crawler.url.maxVisit} fetches per second.<BR>
+ * The rate per host starts at {@code crawler.host.maxVisit}, lowered further if
+ * {@code robots.txt} of that host declares {@code Crawl-delay}, which is
+ * checked again on each fetch, so the changed {@code robots.txt} is applied
+ * once it's fetched again (see {@code crawler.robots.refresh}).<BR>
+ * If {@code crawler.rate.adaptive} is enabled, the rate is controlled like
+ * TCP congestion window (AIMD), it's raised by {@code crawler.rate.increase}
+ * per second of fast successful fetches up to {@code crawler.rate.max}, and
+ * multiplied by {@code crawler.rate.decreaseFactor} on 429, 503, timeout or
+ * response slower than {@code crawler.rate.latencyFactor} times the usual
+ * response time of host. The {@code Crawl-delay} of {@code robots.txt} is
+ * never exceeded.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=hostPoliteness", description = "Fetch rate per host")
+public class HostPolitenessScheduler {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	/** The host name vs politeness key (host or IP), kept for DNS TTL */
+	private final Map<String, HostKey> hostKeys = new ConcurrentHashMap<>();
+
+	/** The politeness key vs state of that host */
+	private final Map<String, HostState> hostStates = new ConcurrentHashMap<>();
+
+	/** The rate of all hosts together, built on first use */
+	private volatile RateLimiter globalRateLimiter;
+
+	private final AtomicLong rateIncreases = new AtomicLong();
+	private final AtomicLong rateDecreases = new AtomicLong();
+
+	/**
+	 * Waits until the host of given url is ready for one more fetch, and
+	 * occupies one of its concurrency slots.<BR>
+	 * <b>NOTE:</b>The returned permit must be closed once fetch is finished.
+	 *
+	 * @param url
+	 *            the url to fetch
+	 * @return the permit of the host
+	 */
+	public HostPermit acquire(final String url) {
+		if (ContentProvider.WARC_MODE_REPLAY.equals(singletonBeanFactory.getConfigs().getWarcMode())) {
+			/** pages are served from WARC files, no host is contacted */
+			return HostPermit.NONE;
+		}
+
+		final HostState hostState = getHostStateOfFetch(url);
+		hostState.concurrency.acquireUninterruptibly();
+		final double waitedSeconds = hostState.rateLimiter.acquire() + getGlobalRateLimiter().acquire();
+		LOG.trace("Acquired permit for host [{}] after waiting {} seconds", hostState.key, waitedSeconds);
+
+		return new HostPermit(this, hostState);
+	}
+
+	/**
+	 * Occupies one of the concurrency slots of the host of given url, only if
+	 * the host is ready for one more fetch right now, without waiting. The
+	 * rate permit taken from the host, when there is none left for all hosts
+	 * together, is not given back, so it only lowers the rate.<BR>
+	 * <b>NOTE:</b>The returned permit must be closed once fetch is finished.
+	 *
+	 * @param url
+	 *            the url to fetch
+	 * @return the permit of the host, or null if the host is not ready
+	 */
+	public HostPermit tryAcquire(final String url) {
+		if (ContentProvider.WARC_MODE_REPLAY.equals(singletonBeanFactory.getConfigs().getWarcMode())) {
+			return HostPermit.NONE;
+		}
+
+		final HostState hostState = getHostStateOfFetch(url);
+		if (!hostState.concurrency.tryAcquire()) {
+			return null;
+		}
+		if (!hostState.rateLimiter.tryAcquire() || !getGlobalRateLimiter().tryAcquire()) {
+			hostState.concurrency.release();
+			return null;
+		}
+		LOG.trace("Acquired permit for host [{}] without waiting", hostState.key);
+
+		return new HostPermit(this, hostState);
+	}
+
+	/**
+	 * Gets the current rate (fetches per second) of the host of given url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the rate
+	 */
+	public double getRate(final String url) {
+		return getHostState(url).rateLimiter.getRate();
+	}
+
+	@ManagedAttribute(description = "Rate increases since startup")
+	public long getRateIncreases() {
+		return rateIncreases.get();
+	}
+
+	@ManagedAttribute(description = "Rate decreases since startup")
+	public long getRateDecreases() {
+		return rateDecreases.get();
+	}
+
+	@ManagedAttribute(description = "The current rate (fetches per second) and usual response time (millis) of each host")
+	public String[] getHostRates() {
+		return hostStates.values().stream().map(HostState::toString).sorted().toArray(String[]::new);
+	}
+
+	/**
+	 * Adjusts the rate of host from the result of its fetch.
+	 *
+	 * @param hostState
+	 *            the host
+	 * @param latencyInMillis
+	 *            the time taken by fetch
+	 * @param failure
+	 *            the failure of fetch, null if fetch was successful
+	 */
+	private void onResult(final HostState hostState, final long latencyInMillis, final Exception failure) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (!configs.isAdaptiveRate()) {
+			return;
+		}
+
+		if (isCongestion(failure)) {
+			if (hostState.decrease(configs)) {
+				rateDecreases.incrementAndGet();
+				LOG.info("Lowered the rate of host [{}] to {} per second, because of : {}", hostState.key, hostState.rateLimiter.getRate(), failure);
+			}
+		} else if (failure == null) {
+			if (hostState.isSlow(latencyInMillis, configs)) {
+				if (hostState.decrease(configs)) {
+					rateDecreases.incrementAndGet();
+					LOG.info("Lowered the rate of host [{}] to {} per second, response time {} millis is above usual {} millis", hostState.key,
+							hostState.rateLimiter.getRate(), latencyInMillis, hostState.usualLatency);
+				}
+			} else if (hostState.increase(configs)) {
+				rateIncreases.incrementAndGet();
+			}
+			hostState.recordLatency(latencyInMillis);
+		}
+	}
+
+	/**
+	 * Checks whether the failure shows that host is overloaded.
+	 */
+	private boolean isCongestion(final Exception failure) {
+		return failure instanceof ThrottledStatusException || failure instanceof SocketTimeoutException;
+	}
+
+	/**
+	 * Gets the state of the host of url to fetch, with the crawl delay of its
+	 * {@code robots.txt} applied.
+	 */
+	private HostState getHostStateOfFetch(final String url) {
+		final HostState hostState = getHostState(url);
+		if (hostState.applyCrawlDelay(singletonBeanFactory.getRobotsTxtParser().getCrawlDelay(url),
+				singletonBeanFactory.getConfigs().isAdaptiveRate())) {
+			LOG.info("Applied crawl delay of url [{}] to host [{}], its rate is {} per second", url, hostState.key, hostState.rateLimiter.getRate());
+		}
+		return hostState;
+	}
+
+	/**
+	 * Gets the rate limiter of all hosts together, creating it on first use.
+	 */
+	private RateLimiter getGlobalRateLimiter() {
+		RateLimiter rateLimiter = globalRateLimiter;
+		if (rateLimiter == null) {
+			synchronized (this) {
+				rateLimiter = globalRateLimiter;
+				if (rateLimiter == null) {
+					rateLimiter = RateLimiter.create(singletonBeanFactory.getConfigs().getMaxVisit());
+					globalRateLimiter = rateLimiter;
+				}
+			}
+		}
+		return rateLimiter;
+	}
+
+	/**
+	 * Gets the state of the host, creating it on first use.
+	 */
+	private HostState getHostState(final String url) {
+		final String key = getPolitenessKey(url);
+		return hostStates.computeIfAbsent(key, this::createHostState);
+	}
+
+	/**
+	 * Gets the politeness key (host name, or resolved IP address) of url.
+	 */
+	private String getPolitenessKey(final String url) {
+		final String host;
+		try {
+			host = new URL(url).getHost().toLowerCase();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Not able to retrieve host from url : " + url, e);
+		}
+
+		if (!singletonBeanFactory.getConfigs().isPolitenessKeyByIp()) {
+			return host;
+		}
+
+		final long now = System.currentTimeMillis();
+		final HostKey hostKey = hostKeys.get(host);
+		if (hostKey != null && hostKey.expiresAtMillis > now) {
+			return hostKey.key;
+		}
+
+		final Configs configs = singletonBeanFactory.getConfigs();
+		String key;
+		long ttlInSeconds = configs.getDnsTtl();
+		try {
+			key = singletonBeanFactory.getDnsCache().resolve(host)[0].getHostAddress();
+		} catch (UnknownHostException e) {
+			LOG.warn("Not able to resolve host [{}], so using host name for politeness", host);
+			key = host;
+			ttlInSeconds = configs.getDnsNegativeTtl();
+		}
+		hostKeys.put(host, new HostKey(key, now + TimeUnit.SECONDS.toMillis(ttlInSeconds)));
+		return key;
+	}
+
+	/**
+	 * Creates the state for new host.
+	 */
+	private HostState createHostState(final String key) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		final double rate = configs.getMaxVisitPerHost();
+		final double maxRate = configs.isAdaptiveRate() ? Math.max(rate, configs.getAdaptiveRateMax()) : rate;
+
+		final int maxConcurrent = configs.getMaxConcurrentPerHost();
+		LOG.debug("Created politeness state for host [{}] with rate {} per second and max {} concurrent fetches", key, rate, maxConcurrent);
+		return new HostState(key, RateLimiter.create(rate), maxRate, new Semaphore(maxConcurrent, true));
+	}
+
+	/**
+	 * The politeness key of host name, till the resolved address expires.
+	 */
+	private static class HostKey {
+
+		private final String key;
+		private final long expiresAtMillis;
+
+		private HostKey(final String key, final long expiresAtMillis) {
+			this.key = key;
+			this.expiresAtMillis = expiresAtMillis;
+		}
+	}
+
+	/**
+	 * The rate limiter and concurrency slots of single host.
+	 */
+	private static class HostState {
+
+		/** The weight of latest response in usual response time */
+		private static final double LATENCY_WEIGHT = 0.1;
+
+		/** The min gap between two decreases, so burst of failures lowers the rate once */
+		private static final long DECREASE_GAP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+		private final String key;
+		private final RateLimiter rateLimiter;
+		private final Semaphore concurrency;
+
+		/** The rate and max rate without crawl delay */
+		private final double baseRate;
+		private final double baseMaxRate;
+
+		/** The max rate, lowered by crawl delay */
+		private double maxRate;
+		private long crawlDelayInMillis = BaseRobotRules.UNSET_CRAWL_DELAY;
+
+		/** The moving average of response time, -1 till first response */
+		private double usualLatency = -1;
+		private long lastDecreaseNanos = System.nanoTime() - DECREASE_GAP_NANOS;
+
+		private HostState(final String key, final RateLimiter rateLimiter, final double maxRate, final Semaphore concurrency) {
+			this.key = key;
+			this.rateLimiter = rateLimiter;
+			this.concurrency = concurrency;
+			this.baseRate = rateLimiter.getRate();
+			this.baseMaxRate = maxRate;
+			this.maxRate = maxRate;
+		}
+
+		/**
+		 * Caps the rate and max rate by the crawl delay, if it's changed. The
+		 * adaptive rate is kept if it's below the new cap, otherwise rate is
+		 * set back to {@code crawler.host.maxVisit} (capped).
+		 *
+		 * @return true, if crawl delay is changed
+		 */
+		private synchronized boolean applyCrawlDelay(final long crawlDelayInMillis, final boolean adaptiveRate) {
+			if (crawlDelayInMillis == this.crawlDelayInMillis) {
+				return false;
+			}
+			this.crawlDelayInMillis = crawlDelayInMillis;
+			final double delayRate = crawlDelayInMillis > 0 ? 1000d / crawlDelayInMillis : Double.MAX_VALUE;
+			maxRate = Math.min(baseMaxRate, delayRate);
+			rateLimiter.setRate(Math.min(adaptiveRate ? rateLimiter.getRate() : baseRate, maxRate));
+			return true;
+		}
+
+		/**
+		 * Raises the rate, so it grows by {@code crawler.rate.increase} once
+		 * per rate-worth of successful fetches (around one second).
+		 */
+		private synchronized boolean increase(final Configs configs) {
+			final double rate = rateLimiter.getRate();
+			if (rate >= maxRate) {
+				return false;
+			}
+			rateLimiter.setRate(Math.min(maxRate, rate + configs.getAdaptiveRateIncrease() / rate));
+			return true;
+		}
+
+		private synchronized boolean decrease(final Configs configs) {
+			final long now = System.nanoTime();
+			final double rate = rateLimiter.getRate();
+			if (now - lastDecreaseNanos < DECREASE_GAP_NANOS || rate <= configs.getAdaptiveRateMin()) {
+				return false;
+			}
+			lastDecreaseNanos = now;
+			rateLimiter.setRate(Math.max(configs.getAdaptiveRateMin(), rate * configs.getAdaptiveRateDecreaseFactor()));
+			return true;
+		}
+
+		private synchronized boolean isSlow(final long latencyInMillis, final Configs configs) {
+			return usualLatency > 0 && latencyInMillis > usualLatency * configs.getAdaptiveRateLatencyFactor();
+		}
+
+		private synchronized void recordLatency(final long latencyInMillis) {
+			usualLatency = usualLatency < 0 ? latencyInMillis : usualLatency + LATENCY_WEIGHT * (latencyInMillis - usualLatency);
+		}
+
+		@Override
+		public synchronized String toString() {
+			return String.format("%s rate=%.2f usualLatency=%.0f", key, rateLimiter.getRate(), usualLatency);
+		}
+	}
+
+	/**
+	 * The permit for one fetch from the host, releases the concurrency slot of
+	 * host on close.
+	 */
+	public static class HostPermit implements AutoCloseable {
+
+		/** The permit which does not hold any host */
+		private static final HostPermit NONE = new HostPermit(null, null);
+
+		private final HostPolitenessScheduler scheduler;
+		private final HostState hostState;
+		private boolean released;
+
+		private HostPermit(final HostPolitenessScheduler scheduler, final HostState hostState) {
+			this.scheduler = scheduler;
+			this.hostState = hostState;
+		}
+
+		/**
+		 * Runs the fetch, and adjusts the rate of host from its result and
+		 * response time.
+		 *
+		 * @param fetch
+		 *            the fetch
+		 * @return the result of fetch
+		 */
+		public <T> T fetch(final Callable<T> fetch) throws Exception {
+			if (hostState == null) {
+				return fetch.call();
+			}
+
+			final long startNanos = System.nanoTime();
+			try {
+				final T result = fetch.call();
+				scheduler.onResult(hostState, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), null);
+				return result;
+			} catch (Exception e) {
+				scheduler.onResult(hostState, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), e);
+				throw e;
+			}
+		}
+
+		public String getHostKey() {
+			return hostState == null ? null : hostState.key;
+		}
+
+		@Override
+		public void close() {
+			if (!released && hostState != null) {
+				released = true;
+				hostState.concurrency.release();
+			}
+		}
+	}
+}
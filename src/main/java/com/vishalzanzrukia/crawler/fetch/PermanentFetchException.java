@@ -0,0 +1,18 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+/**
+ * Thrown when the fetch of url is failed in the way which fetching it again
+ * would not fix, like {@code 404 Not Found} or {@code 410 Gone}, so the url
+ * is not retried by {@link RetryScheduler}. Only server errors (5xx), 429 and
+ * I/O errors are retried, see {@link HostCircuitBreaker#isHostFailure(Exception)}.
+ *
+ * @author VishalZanzrukia
+ */
+public class PermanentFetchException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public PermanentFetchException(final String url, final Exception cause) {
+		super("Fetch of url [" + url + "] is failed permanently : " + cause, cause);
+	}
+}
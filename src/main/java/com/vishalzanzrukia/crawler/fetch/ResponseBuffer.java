@@ -0,0 +1,112 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The response body held in a byte array, which is borrowed from
+ * {@link ResponseBufferPool} (or just wraps the given bytes).<BR>
+ * <b>NOTE:</b>Once the body is consumed, {@link #release()} should be called,
+ * so the array is recycled for next response. The buffer must not be used
+ * after it's released. The buffer which is never released is collected by GC
+ * as usual, it's just not reused.
+ *
+ * @author VishalZanzrukia
+ */
+public class ResponseBuffer {
+
+	private final ResponseBufferPool pool;
+	private final int length;
+	private final boolean truncated;
+	private byte[] bytes;
+
+	ResponseBuffer(final ResponseBufferPool pool, final byte[] bytes, final int length, final boolean truncated) {
+		this.pool = pool;
+		this.bytes = bytes;
+		this.length = length;
+		this.truncated = truncated;
+	}
+
+	/**
+	 * Wraps the bytes which are not borrowed from pool, releasing it does
+	 * nothing.
+	 *
+	 * @param bytes
+	 *            the body bytes
+	 * @return the buffer
+	 */
+	public static ResponseBuffer wrap(final byte[] bytes) {
+		return new ResponseBuffer(null, bytes, bytes.length, false);
+	}
+
+	/**
+	 * Gets the length of body, the backing array can be larger.
+	 *
+	 * @return the body length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Checks whether the body was longer than max bytes, and only its start
+	 * is held.
+	 *
+	 * @return true, if the body is truncated
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Opens the stream to read the body, without copying it.
+	 *
+	 * @return the body stream
+	 */
+	public InputStream openStream() {
+		return new ByteArrayInputStream(getBytes(), 0, length);
+	}
+
+	/**
+	 * Writes the body to the stream, without copying it.
+	 *
+	 * @param out
+	 *            the stream to write to
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		out.write(getBytes(), 0, length);
+	}
+
+	/**
+	 * Gets the body as array of exact length, it's copied if the array is
+	 * borrowed from pool.
+	 *
+	 * @return the body bytes
+	 */
+	public byte[] toByteArray() {
+		final byte[] current = getBytes();
+		return pool == null && current.length == length ? current : Arrays.copyOf(current, length);
+	}
+
+	/**
+	 * Returns the array to pool, it's safe to call more than once.
+	 */
+	public synchronized void release() {
+		if (pool != null && bytes != null) {
+			pool.release(bytes);
+			bytes = null;
+		}
+	}
+
+	private synchronized byte[] getBytes() {
+		if (bytes == null) {
+			throw new IllegalStateException("The response buffer is released already");
+		}
+		return bytes;
+	}
+}
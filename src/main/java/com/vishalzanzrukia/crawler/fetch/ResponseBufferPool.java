@@ -0,0 +1,191 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * The pool of byte arrays for response bodies which are read as bytes
+ * (sitemaps, robots.txt), so under high concurrency each fetch does not
+ * allocate (and grow) new arrays of the body size.<BR>
+ * The arrays are kept in power of two size classes, the free arrays of all
+ * classes are limited to {@code crawler.fetch.buffers.maxRetainedBytes}, rest
+ * are left to GC. With {@code crawler.fetch.buffers.pooled=false} every
+ * array is allocated fresh (same sizes), to compare the allocation.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=responseBufferPool", description = "Recycled response body buffers")
+public class ResponseBufferPool {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The smallest size class (16 KB) */
+	private static final int MIN_SIZE_CLASS = 14;
+
+	/** The largest size class (1 GB) */
+	private static final int MAX_SIZE_CLASS = 30;
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	/** The free arrays, index is the size class (log2 of array length) */
+	private final List<Deque<byte[]>> freeBuffers = new ArrayList<>(MAX_SIZE_CLASS + 1);
+
+	private final AtomicLong retainedBytes = new AtomicLong();
+	private final AtomicLong allocatedBuffers = new AtomicLong();
+	private final AtomicLong reusedBuffers = new AtomicLong();
+	private final AtomicLong droppedBuffers = new AtomicLong();
+	private final AtomicLong truncatedBodies = new AtomicLong();
+
+	public ResponseBufferPool() {
+		for (int sizeClass = 0; sizeClass <= MAX_SIZE_CLASS; sizeClass++) {
+			freeBuffers.add(sizeClass < MIN_SIZE_CLASS ? null : new ConcurrentLinkedDeque<>());
+		}
+	}
+
+	/**
+	 * Reads the body into the pooled buffer, up to {@code maxBytes}, rest of
+	 * the body is ignored (same as max body size of Jsoup), the buffer is
+	 * flagged as truncated then, see {@link ResponseBuffer#isTruncated()}.
+	 *
+	 * @param content
+	 *            the body stream, it's closed by this method
+	 * @param sizeHint
+	 *            the expected body size, or negative if unknown
+	 * @param maxBytes
+	 *            the max bytes to read
+	 * @return the buffer with body, should be released once it's consumed
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public ResponseBuffer read(final InputStream content, final long sizeHint, final int maxBytes) throws IOException {
+		byte[] bytes = acquire(sizeHint > 0 ? (int) Math.min(sizeHint, maxBytes) : 1);
+		int length = 0;
+		boolean truncated = false;
+		try (InputStream input = content) {
+			while (length < maxBytes) {
+				if (length == bytes.length) {
+					/** the body may end right at the array end, so it's grown only if there is more */
+					final int next = input.read();
+					if (next == -1) {
+						break;
+					}
+					bytes = grow(bytes, length);
+					bytes[length++] = (byte) next;
+					continue;
+				}
+				final int read = input.read(bytes, length, Math.min(bytes.length, maxBytes) - length);
+				if (read == -1) {
+					break;
+				}
+				length += read;
+			}
+			/** the body may end right at max bytes, so it's truncated only if there is more */
+			truncated = length == maxBytes && input.read() != -1;
+		} catch (IOException | RuntimeException e) {
+			release(bytes);
+			throw e;
+		}
+
+		if (truncated) {
+			truncatedBodies.incrementAndGet();
+			LOG.debug("The body is truncated to {} bytes", maxBytes);
+		}
+		return new ResponseBuffer(this, bytes, length, truncated);
+	}
+
+	/**
+	 * Gets the free array of the size class which fits {@code minLength}, or
+	 * allocates new one.
+	 */
+	byte[] acquire(final int minLength) {
+		final int sizeClass = getSizeClass(minLength);
+		if (isPooled()) {
+			final byte[] bytes = freeBuffers.get(sizeClass).pollFirst();
+			if (bytes != null) {
+				retainedBytes.addAndGet(-bytes.length);
+				reusedBuffers.incrementAndGet();
+				return bytes;
+			}
+		}
+		allocatedBuffers.incrementAndGet();
+		return new byte[1 << sizeClass];
+	}
+
+	/**
+	 * Keeps the array for reuse, unless the retained bytes are at limit.
+	 */
+	void release(final byte[] bytes) {
+		final Configs configs = singletonBeanFactory.getConfigs();
+		if (!configs.isPooledBuffers()) {
+			return;
+		}
+		if (retainedBytes.addAndGet(bytes.length) > configs.getMaxRetainedBufferBytes()) {
+			retainedBytes.addAndGet(-bytes.length);
+			droppedBuffers.incrementAndGet();
+			return;
+		}
+		/** last released array is reused first, it's more likely in cache */
+		freeBuffers.get(getSizeClass(bytes.length)).offerFirst(bytes);
+	}
+
+	@ManagedAttribute(description = "Bytes held by free buffers")
+	public long getRetainedBytes() {
+		return retainedBytes.get();
+	}
+
+	@ManagedAttribute(description = "Buffers allocated since startup")
+	public long getAllocatedBuffers() {
+		return allocatedBuffers.get();
+	}
+
+	@ManagedAttribute(description = "Buffers reused from pool since startup")
+	public long getReusedBuffers() {
+		return reusedBuffers.get();
+	}
+
+	@ManagedAttribute(description = "Released buffers left to GC because retained bytes were at limit since startup")
+	public long getDroppedBuffers() {
+		return droppedBuffers.get();
+	}
+
+	@ManagedAttribute(description = "Bodies truncated to crawler.page.maxBytes since startup")
+	public long getTruncatedBodies() {
+		return truncatedBodies.get();
+	}
+
+	private byte[] grow(final byte[] bytes, final int length) {
+		final byte[] grown = acquire(bytes.length + 1);
+		System.arraycopy(bytes, 0, grown, 0, length);
+		release(bytes);
+		return grown;
+	}
+
+	private boolean isPooled() {
+		return singletonBeanFactory.getConfigs().isPooledBuffers();
+	}
+
+	private static int getSizeClass(final int length) {
+		final int sizeClass = 32 - Integer.numberOfLeadingZeros(length - 1);
+		if (sizeClass > MAX_SIZE_CLASS) {
+			throw new IllegalArgumentException("The buffer length is too large : " + length);
+		}
+		return Math.max(sizeClass, MIN_SIZE_CLASS);
+	}
+}
@@ -0,0 +1,355 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vishalzanzrukia.crawler.AbstractLifecycleAdapter;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.MESSAGE_HEADERS;
+
+/**
+ * Schedules the retry of failed fetch, instead of retrying immediately on the
+ * consumer thread.<BR>
+ * The url message is published again to its queue after exponential backoff
+ * delay with jitter ({@code crawler.retry.baseDelay * 2^retryCount}, capped
+ * by {@code crawler.retry.maxDelay}), and the retry count is carried in
+ * {@link MESSAGE_HEADERS#RETRY_COUNT} header, with the
+ * {@link MESSAGE_HEADERS#SITEMAP_LASTMOD} header of the failed message. The
+ * url is dropped once
+ * {@code crawler.page.maxRetry} retries are done. Only the transient failures
+ * (5xx, 429 and I/O errors) are retried, the url which failed permanently
+ * (like 404 or 410) is dropped at once, see {@link PermanentFetchException}.<BR>
+ * <b>NOTE:</b>The retries are waiting in memory till they are published, so
+ * crawler is not restarted while any retry is pending, see
+ * {@link #getPendingRetries()}. On shutdown, the pending retries are
+ * published to their queue right away by {@link #stop()}, which runs after the
+ * queue consumers are stopped and before the outbound channel adapters are
+ * stopped, and the retries scheduled after that are published at once. The
+ * retries of urls which fail while the stages are drained on shutdown (after
+ * the outbound adapters are stopped) can not be published, those are logged
+ * as error and the urls are crawled again by next cycle.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=retryScheduler", description = "Delayed retries of failed fetches")
+public class RetryScheduler extends AbstractLifecycleAdapter {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	@Autowired
+	@Qualifier("visitUrlChannelProducer")
+	private MessageChannel visitUrlChannel;
+
+	@Autowired
+	@Qualifier("productUrlChannelProducer")
+	private MessageChannel productUrlChannel;
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("retry-scheduler-%d").setDaemon(true).build());
+
+	/** The retries waiting to be published, the one which removes it publishes it */
+	private final Set<PendingRetry> pendingRetries = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong scheduledRetries = new AtomicLong();
+	private final AtomicLong droppedUrls = new AtomicLong();
+	private final AtomicLong permanentFailures = new AtomicLong();
+	private final AtomicLong deferredUrls = new AtomicLong();
+
+	private volatile boolean running;
+
+	/** Once stopped, the retries are published right away */
+	private volatile boolean stopped;
+
+	/**
+	 * Schedules the retry of the url to visit.
+	 *
+	 * @param url
+	 *            the url
+	 * @param depth
+	 *            the depth of the url
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod, can be
+	 *            null
+	 * @return true, if retry is scheduled, false if retries are exhausted
+	 */
+	public boolean scheduleVisitRetry(final String url, final int depth, final Integer retryCount, final Boolean siteMapLastmod) {
+		return schedule(visitUrlChannel, url, depth, retryCount, siteMapLastmod);
+	}
+
+	/**
+	 * Schedules the retry of the product url to parse.
+	 *
+	 * @param url
+	 *            the product url
+	 * @param depth
+	 *            the depth of the url, can be null
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod, can be
+	 *            null
+	 * @return true, if retry is scheduled, false if retries are exhausted
+	 */
+	public boolean scheduleProductRetry(final String url, final Integer depth, final Integer retryCount, final Boolean siteMapLastmod) {
+		return schedule(productUrlChannel, url, depth, retryCount, siteMapLastmod);
+	}
+
+	/**
+	 * Schedules the url to visit again after given delay, without counting
+	 * it as retry, used when url is not fetched at all (like when
+	 * {@link HostCircuitBreaker} rejects it).
+	 *
+	 * @param url
+	 *            the url
+	 * @param depth
+	 *            the depth of the url
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod, can be
+	 *            null
+	 * @param delayInMillis
+	 *            the delay in millis
+	 */
+	public void deferVisit(final String url, final int depth, final Integer retryCount, final Boolean siteMapLastmod, final long delayInMillis) {
+		defer(visitUrlChannel, url, depth, retryCount, siteMapLastmod, delayInMillis);
+	}
+
+	/**
+	 * Schedules the product url to parse again after given delay, without
+	 * counting it as retry, see
+	 * {@link #deferVisit(String, int, Integer, Boolean, long)}.
+	 *
+	 * @param url
+	 *            the product url
+	 * @param depth
+	 *            the depth of the url, can be null
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod, can be
+	 *            null
+	 * @param delayInMillis
+	 *            the delay in millis
+	 */
+	public void deferProduct(final String url, final Integer depth, final Integer retryCount, final Boolean siteMapLastmod,
+			final long delayInMillis) {
+		defer(productUrlChannel, url, depth, retryCount, siteMapLastmod, delayInMillis);
+	}
+
+	/**
+	 * Drops the url whose fetch is failed permanently, without retrying it.
+	 *
+	 * @param url
+	 *            the url
+	 * @param failure
+	 *            the failure of fetch
+	 */
+	public void dropPermanentFailure(final String url, final PermanentFetchException failure) {
+		LOG.warn("Not retrying the url : {}, because of : {}", url, failure.getCause().toString());
+		singletonBeanFactory.getCrawlerUtils().writeError(url + "\n");
+		permanentFailures.incrementAndGet();
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	/**
+	 * Publishes the pending retries to their queue right away, while the
+	 * outbound channel adapters are still running, so those are not lost. The
+	 * retries scheduled after this are published at once.
+	 */
+	@Override
+	public void stop() {
+		running = false;
+		stopped = true;
+		LOG.info("Inside RetryScheduler.stop, publishing {} pending retries now", pendingRetries.size());
+		publishPendingRetries();
+	}
+
+	@Override
+	public void stop(final Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public int getPhase() {
+		/** stopped after the queue consumers (Integer.MAX_VALUE) and before the outbound channel adapters (0) */
+		return Integer.MAX_VALUE - 1;
+	}
+
+	/**
+	 * Shuts down the scheduler, the retries which are still pending (if
+	 * {@link #stop()} is not called) are published to their queue right away.
+	 */
+	@PreDestroy
+	public void destroy() {
+		stopped = true;
+		scheduler.shutdownNow();
+		if (!pendingRetries.isEmpty()) {
+			LOG.info("Inside RetryScheduler.destroy, publishing {} pending retries now", pendingRetries.size());
+			publishPendingRetries();
+		}
+	}
+
+	private void publishPendingRetries() {
+		for (final PendingRetry pendingRetry : pendingRetries) {
+			publish(pendingRetry);
+		}
+	}
+
+	/**
+	 * Schedules the message of url to be published on the channel after
+	 * backoff delay.
+	 */
+	private boolean schedule(final MessageChannel channel, final String url, final Integer depth, final Integer retryCount,
+			final Boolean siteMapLastmod) {
+		final int nextRetry = retryCount == null ? 1 : retryCount + 1;
+		if (nextRetry > singletonBeanFactory.getConfigs().getMaxRetry()) {
+			LOG.error("Tried {} times to fetch the url : {}, dropping it", nextRetry, url);
+			singletonBeanFactory.getCrawlerUtils().writeError(url + "\n");
+			droppedUrls.incrementAndGet();
+			return false;
+		}
+
+		final long delayInMillis = getBackoffDelay(nextRetry);
+		LOG.info("Retrying the url : {} after {} millis, {}th time", url, delayInMillis, nextRetry);
+
+		scheduledRetries.incrementAndGet();
+		publishLater(channel, url, depth, nextRetry, siteMapLastmod, delayInMillis);
+		return true;
+	}
+
+	/**
+	 * Schedules the message of url to be published on the channel after
+	 * given delay, keeping its retry count.
+	 */
+	private void defer(final MessageChannel channel, final String url, final Integer depth, final Integer retryCount, final Boolean siteMapLastmod,
+			final long delayInMillis) {
+		LOG.debug("Deferring the url : {} by {} millis", url, delayInMillis);
+		deferredUrls.incrementAndGet();
+		publishLater(channel, url, depth, retryCount, siteMapLastmod, delayInMillis);
+	}
+
+	private void publishLater(final MessageChannel channel, final String url, final Integer depth, final Integer retryCount,
+			final Boolean siteMapLastmod, final long delayInMillis) {
+		final MessageBuilder<String> messageBuilder = MessageBuilder.withPayload(StringUtils.EMPTY).setHeader(MESSAGE_HEADERS.URL, url);
+		if (retryCount != null) {
+			messageBuilder.setHeader(MESSAGE_HEADERS.RETRY_COUNT, retryCount);
+		}
+		if (depth != null) {
+			messageBuilder.setHeader(MESSAGE_HEADERS.DEPTH, depth);
+		}
+		if (siteMapLastmod != null) {
+			messageBuilder.setHeader(MESSAGE_HEADERS.SITEMAP_LASTMOD, siteMapLastmod);
+		}
+		final PendingRetry pendingRetry = new PendingRetry(channel, messageBuilder.build());
+
+		pendingRetries.add(pendingRetry);
+		if (stopped) {
+			publish(pendingRetry);
+			return;
+		}
+		scheduler.schedule(() -> publish(pendingRetry), delayInMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Publishes the retry message, if it's not published yet.
+	 */
+	private void publish(final PendingRetry pendingRetry) {
+		if (!pendingRetries.remove(pendingRetry)) {
+			return;
+		}
+		try {
+			pendingRetry.channel.send(pendingRetry.message);
+		} catch (Exception e) {
+			LOG.error("Error while publishing the retry of url : {}", pendingRetry.message.getHeaders().get(MESSAGE_HEADERS.URL), e);
+		}
+	}
+
+	/**
+	 * Gets the exponential backoff delay with equal jitter, so the retries of
+	 * many urls of failing host are spread instead of arriving together.
+	 */
+	private long getBackoffDelay(final int retry) {
+		final long baseDelay = singletonBeanFactory.getConfigs().getRetryBaseDelay();
+		final long maxDelay = singletonBeanFactory.getConfigs().getRetryMaxDelay();
+
+		final long backoff = Math.min(maxDelay, baseDelay << Math.min(retry - 1, 30));
+		final long half = backoff / 2;
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+
+	@ManagedAttribute(description = "Retries waiting to be published")
+	public int getPendingRetries() {
+		return pendingRetries.size();
+	}
+
+	@ManagedAttribute(description = "Retries scheduled since startup")
+	public long getScheduledRetries() {
+		return scheduledRetries.get();
+	}
+
+	@ManagedAttribute(description = "Urls deferred without fetching since startup")
+	public long getDeferredUrls() {
+		return deferredUrls.get();
+	}
+
+	@ManagedAttribute(description = "Urls dropped after max retries since startup")
+	public long getDroppedUrls() {
+		return droppedUrls.get();
+	}
+
+	@ManagedAttribute(description = "Urls not retried because their fetch failed permanently (like 404) since startup")
+	public long getPermanentFailures() {
+		return permanentFailures.get();
+	}
+
+	/**
+	 * The retry message waiting to be published on its channel.
+	 */
+	private static class PendingRetry {
+
+		private final MessageChannel channel;
+		private final Message<String> message;
+
+		private PendingRetry(final MessageChannel channel, final Message<String> message) {
+			this.channel = channel;
+			this.message = message;
+		}
+	}
+}
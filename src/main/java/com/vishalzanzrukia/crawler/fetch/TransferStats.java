@@ -0,0 +1,108 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+
+/**
+ * The transferred bytes per host, as received on the wire (compressed) and
+ * after decoding the content encoding, also exposed through JMX.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=transferStats", description = "Compressed and uncompressed bytes per host")
+public class TransferStats implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The host name vs bytes of that host */
+	private final Map<String, HostTransfer> hostTransfers = new ConcurrentHashMap<>();
+
+	private final AtomicLong wireBytes = new AtomicLong();
+	private final AtomicLong bodyBytes = new AtomicLong();
+
+	/**
+	 * Records the bytes of the response.
+	 *
+	 * @param url
+	 *            the url
+	 * @param responseWireBytes
+	 *            the bytes received on the wire
+	 * @param responseBodyBytes
+	 *            the bytes after decoding
+	 */
+	public void record(final String url, final long responseWireBytes, final long responseBodyBytes) {
+		wireBytes.addAndGet(responseWireBytes);
+		bodyBytes.addAndGet(responseBodyBytes);
+
+		final HostTransfer hostTransfer = hostTransfers.computeIfAbsent(getHost(url), host -> new HostTransfer());
+		hostTransfer.wireBytes.addAndGet(responseWireBytes);
+		hostTransfer.bodyBytes.addAndGet(responseBodyBytes);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		LOG.info("Transferred bytes so far, on wire : {}, decoded : {}, compression ratio : {}", wireBytes.get(), bodyBytes.get(),
+				getCompressionRatio());
+	}
+
+	@ManagedAttribute(description = "Bytes received on the wire since startup")
+	public long getWireBytes() {
+		return wireBytes.get();
+	}
+
+	@ManagedAttribute(description = "Bytes after decoding content encoding since startup")
+	public long getBodyBytes() {
+		return bodyBytes.get();
+	}
+
+	@ManagedAttribute(description = "Decoded bytes per byte on the wire")
+	public double getCompressionRatio() {
+		return ratio(bodyBytes.get(), wireBytes.get());
+	}
+
+	@ManagedAttribute(description = "The bytes on the wire and decoded bytes of each host")
+	public String[] getHostTransfers() {
+		return hostTransfers.entrySet().stream().map(entry -> entry.getKey() + " " + entry.getValue()).sorted().toArray(String[]::new);
+	}
+
+	private static double ratio(final long decoded, final long wire) {
+		return wire == 0 ? 0 : (double) decoded / wire;
+	}
+
+	private String getHost(final String url) {
+		try {
+			return new URL(url).getHost().toLowerCase();
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Not able to retrieve host from url : " + url, e);
+		}
+	}
+
+	/**
+	 * The bytes of single host.
+	 */
+	private static class HostTransfer {
+
+		private final AtomicLong wireBytes = new AtomicLong();
+		private final AtomicLong bodyBytes = new AtomicLong();
+
+		@Override
+		public String toString() {
+			return String.format("wire=%d decoded=%d ratio=%.2f", wireBytes.get(), bodyBytes.get(), ratio(bodyBytes.get(), wireBytes.get()));
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * The store of {@link PageValidators} per normalized url. It's kept in single
+ * redis hash which is not deleted between crawler cycles, so next cycle can
+ * send conditional requests.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+public class ValidatorCache {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	/**
+	 * Gets the validators stored for url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the validators, or null if not stored yet
+	 */
+	public PageValidators get(final String url) {
+		try (Jedis client = getRedisClient()) {
+			return PageValidators.decode(client.hget(singletonBeanFactory.getRuntimeConfigs().getPageValidatorsRedisKey(), getKey(url)));
+		}
+	}
+
+	/**
+	 * Stores the validators for url, if there are any.
+	 *
+	 * @param url
+	 *            the url
+	 * @param validators
+	 *            the validators
+	 */
+	public void put(final String url, final PageValidators validators) {
+		if (validators == null || !validators.hasValidators()) {
+			LOG.trace("No validators received for url, so skipping to store : {}", url);
+			return;
+		}
+		try (Jedis client = getRedisClient()) {
+			client.hset(singletonBeanFactory.getRuntimeConfigs().getPageValidatorsRedisKey(), getKey(url), validators.encode());
+		}
+	}
+
+	/**
+	 * Gets the key of the url in store.
+	 */
+	private String getKey(final String url) {
+		return singletonBeanFactory.getCrawlerUtils().trimHttps(singletonBeanFactory.getComponentRegistry().getUrlProcessor().normalize(url));
+	}
+
+	private Jedis getRedisClient() {
+		return singletonBeanFactory.getJedisPool().getResource();
+	}
+}
@@ -0,0 +1,114 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.http.entity.ContentType;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.nodes.Document;
+
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.util.AbstractContentProvider;
+import com.vishalzanzrukia.crawler.util.BodyEndInputStream;
+
+/**
+ * The base class for WARC content providers, it builds the
+ * {@link JsoupDocumentWrapper} from {@link WarcRecord} same way as network
+ * providers build it from http response.
+ *
+ * @author VishalZanzrukia
+ */
+public abstract class AbstractWarcContentProvider extends AbstractContentProvider {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/**
+	 * Builds the response from the record.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param record
+	 *            the record of the url
+	 * @param bytesNeeded
+	 *            whether bytes are needed instead of document
+	 * @param validators
+	 *            the validators of conditional request, null for normal
+	 *            request
+	 * @param navigationPage
+	 *            whether the page is visited only to find the links
+	 * @param siteMapReader
+	 *            the reader of sitemap body, or null
+	 * @return the response wrapper, which holds the body of the record if
+	 *         bytes are returned, else the body is released
+	 */
+	protected JsoupDocumentWrapper toResponse(final String url, final WarcRecord record, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException {
+
+		if (validators != null && isNotModified(record.getValidators(), validators)) {
+			record.getBody().release();
+			return buildNotModifiedResponse(url, record.getResponseUrl(), validators);
+		}
+
+		if (isSiteMapStream(siteMapReader, url, record.getContentType())) {
+			try {
+				final long bodyBytes = readSiteMap(url, record.getResponseUrl(), record.getBody().openStream(), siteMapReader);
+				final PageValidators responseValidators = new PageValidators(record.getValidators().getETag(),
+						record.getValidators().getLastModified(), bodyBytes);
+				return buildSiteMapResponse(url, record.getContentType(), record.getResponseUrl(), responseValidators);
+			} finally {
+				record.getBody().release();
+			}
+		}
+
+		if (isBytesResponse(bytesNeeded, navigationPage, url, record.getContentType())) {
+			return buildResponse(url, null, record.getContentType(), record.getResponseUrl(), record.getBody(), record.getValidators());
+		}
+
+		try {
+			final InputStream body = record.getBody().openStream();
+			final InputStream pageBody = isStopAtBodyEnd(navigationPage) ? new BodyEndInputStream(body) : body;
+			final String charsetName = getCharsetName(record.getContentType());
+			if (isStreamingLinks(navigationPage, charsetName)) {
+				final List<String> links = extractLinks(pageBody, charsetName, record.getResponseUrl().toExternalForm());
+				return buildLinksResponse(url, links, record.getContentType(), record.getResponseUrl(), record.getValidators());
+			}
+
+			final Document document = parseBody(pageBody, charsetName, record.getResponseUrl().toExternalForm());
+			return buildResponse(url, document, record.getContentType(), record.getResponseUrl(), null, record.getValidators());
+		} finally {
+			record.getBody().release();
+		}
+	}
+
+	/**
+	 * Checks whether recorded response matches the validators of conditional
+	 * request, same as server would do.
+	 */
+	private boolean isNotModified(final PageValidators recorded, final PageValidators validators) {
+		if (validators.getETag() != null) {
+			return validators.getETag().equals(recorded.getETag());
+		}
+		return validators.getLastModified() != null && validators.getLastModified().equals(recorded.getLastModified());
+	}
+
+	/**
+	 * Gets the charset name from content type, or null to let Jsoup detect it
+	 * from the content.
+	 */
+	private String getCharsetName(final String contentType) {
+		if (contentType == null) {
+			return null;
+		}
+		try {
+			final Charset charset = ContentType.parse(contentType).getCharset();
+			return charset == null ? null : charset.name();
+		} catch (Exception e) {
+			LOG.trace("Not able to detect charset from content type : {}", contentType, e);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The read only view of the WARC files written by {@link WarcWriter}. The
+ * files are memory-mapped and the records are found through the index files,
+ * so single record is read (and decompressed) without touching the rest of
+ * the file.<BR>
+ * If same url is recorded more than once, the latest record is used.
+ *
+ * @author VishalZanzrukia
+ */
+public class WarcArchive {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final List<MappedByteBuffer> files = new ArrayList<>();
+	private final Map<String, RecordLocation> index = new HashMap<>();
+
+	/**
+	 * Opens all WARC files of the directory.
+	 *
+	 * @param directory
+	 *            the directory
+	 */
+	public WarcArchive(final File directory) throws IOException {
+		final File[] warcFiles = directory.listFiles((dir, name) -> name.endsWith(WarcWriter.FILE_SUFFIX));
+		if (warcFiles == null || warcFiles.length == 0) {
+			throw new IOException("No WARC files found in directory : " + directory.getAbsolutePath());
+		}
+		/** file names start with recording time, so later recordings override the earlier ones */
+		Arrays.sort(warcFiles);
+
+		for (final File warcFile : warcFiles) {
+			open(warcFile);
+		}
+		LOG.info("Opened {} WARC files with {} urls from directory : {}", files.size(), index.size(), directory.getAbsolutePath());
+	}
+
+	/**
+	 * Gets the record of the url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the record, or null if url is not recorded
+	 */
+	public WarcRecord get(final String url) throws IOException {
+		final RecordLocation location = index.get(url);
+		if (location == null) {
+			return null;
+		}
+
+		/** duplicate has its own position, so the mapped file can be read by many threads */
+		final ByteBuffer record = files.get(location.file).duplicate();
+		record.position((int) location.offset);
+		record.limit((int) (location.offset + location.length));
+
+		try (InputStream in = new GZIPInputStream(new ByteBufferInputStream(record.slice()), 8192)) {
+			final Map<String, String> warcHeaders = WarcRecord.readHeaders(skipVersionLine(in));
+			return WarcRecord.fromHttpBlock(warcHeaders.getOrDefault("warc-target-uri", url), in);
+		}
+	}
+
+	/**
+	 * Gets the number of recorded urls.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	private void open(final File warcFile) throws IOException {
+		final File indexFile = new File(warcFile.getParentFile(), warcFile.getName() + WarcWriter.INDEX_SUFFIX);
+		if (!indexFile.isFile()) {
+			LOG.warn("Skipping WARC file without index : {}", warcFile.getAbsolutePath());
+			return;
+		}
+
+		final int fileNumber = files.size();
+		try (RandomAccessFile file = new RandomAccessFile(warcFile, "r"); FileChannel channel = file.getChannel()) {
+			files.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+
+		for (final String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+			final int lengthStart = line.lastIndexOf(' ');
+			final int offsetStart = line.lastIndexOf(' ', lengthStart - 1);
+			if (offsetStart <= 0) {
+				continue;
+			}
+			index.put(line.substring(0, offsetStart), new RecordLocation(fileNumber, Long.parseLong(line.substring(offsetStart + 1, lengthStart)),
+					Long.parseLong(line.substring(lengthStart + 1))));
+		}
+	}
+
+	private InputStream skipVersionLine(final InputStream in) throws IOException {
+		final String version = WarcRecord.readLine(in);
+		if (version == null || !version.startsWith("WARC/")) {
+			throw new IOException("Invalid WARC record, version line : " + version);
+		}
+		return in;
+	}
+
+	/**
+	 * The location of the record in WARC file.
+	 */
+	private static class RecordLocation {
+
+		private final int file;
+		private final long offset;
+		private final long length;
+
+		private RecordLocation(final int file, final long offset, final long length) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * The {@link InputStream} over {@link ByteBuffer}.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			final int read = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, read);
+			return read;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+
+/**
+ * The WARC {@code response} record of single fetched page, the HTTP block
+ * contains the status line, the headers needed to rebuild the response
+ * (content type, validators and final url) and the body.
+ *
+ * @author VishalZanzrukia
+ */
+public class WarcRecord {
+
+	private static final String CRLF = "\r\n";
+	private static final String HTTP_STATUS_LINE = "HTTP/1.1 200 OK";
+	private static final String HEADER_CONTENT_TYPE = "Content-Type";
+	private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+	private static final String HEADER_CONTENT_LOCATION = "Content-Location";
+	private static final String HEADER_ETAG = "ETag";
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+	private final String targetUri;
+	private final URL responseUrl;
+	private final String contentType;
+	private final String eTag;
+	private final String lastModified;
+	private final ResponseBuffer body;
+
+	public WarcRecord(final String targetUri, final URL responseUrl, final String contentType, final String eTag, final String lastModified,
+			final ResponseBuffer body) {
+		this.targetUri = targetUri;
+		this.responseUrl = responseUrl;
+		this.contentType = contentType;
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.body = body;
+	}
+
+	/**
+	 * Creates the HTTP block of the record.
+	 *
+	 * @return the HTTP block bytes
+	 */
+	byte[] toHttpBlock() throws IOException {
+		final StringBuilder head = new StringBuilder(256).append(HTTP_STATUS_LINE).append(CRLF);
+		appendHeader(head, HEADER_CONTENT_TYPE, contentType);
+		appendHeader(head, HEADER_CONTENT_LOCATION, responseUrl.toExternalForm());
+		appendHeader(head, HEADER_ETAG, eTag);
+		appendHeader(head, HEADER_LAST_MODIFIED, lastModified);
+		appendHeader(head, HEADER_CONTENT_LENGTH, String.valueOf(body.getLength()));
+		head.append(CRLF);
+
+		final ByteArrayOutputStream httpBlock = new ByteArrayOutputStream(head.length() + body.getLength());
+		httpBlock.write(head.toString().getBytes(StandardCharsets.UTF_8));
+		body.writeTo(httpBlock);
+		return httpBlock.toByteArray();
+	}
+
+	/**
+	 * Reads the record from the HTTP block.
+	 *
+	 * @param targetUri
+	 *            the target uri of the record
+	 * @param httpBlock
+	 *            the stream positioned at HTTP block
+	 * @return the record
+	 */
+	static WarcRecord fromHttpBlock(final String targetUri, final InputStream httpBlock) throws IOException {
+		final String statusLine = readLine(httpBlock);
+		if (statusLine == null || !statusLine.startsWith("HTTP/")) {
+			throw new IOException("Invalid HTTP block in WARC record of url : " + targetUri);
+		}
+		final Map<String, String> headers = readHeaders(httpBlock);
+
+		final int contentLength = Integer.parseInt(headers.get(HEADER_CONTENT_LENGTH.toLowerCase()));
+		final byte[] body = new byte[contentLength];
+		readFully(httpBlock, body);
+
+		final String responseUrl = StringUtils.defaultString(headers.get(HEADER_CONTENT_LOCATION.toLowerCase()), targetUri);
+		return new WarcRecord(targetUri, new URL(responseUrl), headers.get(HEADER_CONTENT_TYPE.toLowerCase()), headers.get(HEADER_ETAG.toLowerCase()),
+				headers.get(HEADER_LAST_MODIFIED.toLowerCase()), ResponseBuffer.wrap(body));
+	}
+
+	/**
+	 * Reads the header lines till the empty line, names are lower cased.
+	 */
+	static Map<String, String> readHeaders(final InputStream in) throws IOException {
+		final Map<String, String> headers = new LinkedHashMap<>();
+		String line;
+		while ((line = readLine(in)) != null && !line.isEmpty()) {
+			final int separator = line.indexOf(':');
+			if (separator > 0) {
+				headers.put(line.substring(0, separator).trim().toLowerCase(), line.substring(separator + 1).trim());
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Reads the line ending with CRLF (or LF), or null at the end of stream.
+	 */
+	static String readLine(final InputStream in) throws IOException {
+		final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int read;
+		while ((read = in.read()) != -1) {
+			if (read == '\n') {
+				final String value = new String(line.toByteArray(), StandardCharsets.UTF_8);
+				return value.endsWith("\r") ? value.substring(0, value.length() - 1) : value;
+			}
+			line.write(read);
+		}
+		return line.size() == 0 ? null : new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	static void readFully(final InputStream in, final byte[] buffer) throws IOException {
+		int offset = 0;
+		while (offset < buffer.length) {
+			final int read = in.read(buffer, offset, buffer.length - offset);
+			if (read == -1) {
+				throw new IOException("Unexpected end of WARC record, read " + offset + " of " + buffer.length + " bytes");
+			}
+			offset += read;
+		}
+	}
+
+	private static void appendHeader(final StringBuilder head, final String name, final String value) {
+		if (value != null) {
+			head.append(name).append(": ").append(value).append(CRLF);
+		}
+	}
+
+	/**
+	 * Gets the validators of the recorded response.
+	 *
+	 * @return the validators
+	 */
+	public PageValidators getValidators() {
+		return new PageValidators(eTag, lastModified, body.getLength());
+	}
+
+	public String getTargetUri() {
+		return targetUri;
+	}
+
+	public URL getResponseUrl() {
+		return responseUrl;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Gets the body, the recorded one can be borrowed from pool, see
+	 * {@link ResponseBuffer#release()}.
+	 *
+	 * @return the body
+	 */
+	public ResponseBuffer getBody() {
+		return body;
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("targetUri", targetUri).append("responseUrl", responseUrl).append("contentType", contentType)
+				.append("bodyLength", body.getLength()).toString();
+	}
+}
@@ -0,0 +1,87 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+
+/**
+ * The {@link ContentProvider} decorator which downloads the page with the
+ * network content provider ({@code crawler.fetch.provider}) and records the
+ * response into WARC files of {@code crawler.fetch.warc.dir}, to replay it
+ * later with {@link WarcReplayContentProvider}.<BR>
+ * <b>NOTE:</b>While recording, pages are always downloaded in full (no
+ * conditional request and no early abort), so the recorded corpus can serve
+ * all types of requests. The conditional request is answered from the
+ * downloaded response instead.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+public class WarcRecordingContentProvider extends AbstractWarcContentProvider {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private WarcWriter warcWriter;
+
+	/**
+	 * Opens the WARC writer, if recording is enabled.
+	 */
+	@PostConstruct
+	public void init() throws IOException {
+		if (ContentProvider.WARC_MODE_RECORD.equals(singletonBeanFactory.getConfigs().getWarcMode())) {
+			warcWriter = new WarcWriter(new File(singletonBeanFactory.getConfigs().getWarcDirectory()));
+		}
+	}
+
+	/**
+	 * Closes the current WARC file.
+	 */
+	@PreDestroy
+	public void destroy() {
+		if (warcWriter != null) {
+			LOG.info("Inside WarcRecordingContentProvider.destroy, closing WARC writer");
+			try {
+				warcWriter.close();
+			} catch (IOException e) {
+				LOG.warn("Error while closing WARC writer", e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsoupDocumentWrapper download(final String url, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException {
+		if (warcWriter == null) {
+			throw new IllegalStateException("WARC recording is not enabled, set crawler.fetch.warc.mode=" + ContentProvider.WARC_MODE_RECORD);
+		}
+
+		final JsoupDocumentWrapper response = singletonBeanFactory.getNetworkContentProvider().downloadPage(url, true);
+		final PageValidators responseValidators = response.getValidators();
+
+		/** the record holds the pooled body, it's handed over with the response or released once parsed */
+		final WarcRecord record = new WarcRecord(url, response.getUrl(), response.getResponseType(), responseValidators.getETag(),
+				responseValidators.getLastModified(), response.getResponseBody());
+		try {
+			warcWriter.write(record);
+		} catch (IOException | RuntimeException e) {
+			response.release();
+			throw e;
+		}
+		LOG.trace("Recorded the response : {}", record);
+
+		return toResponse(url, record, bytesNeeded, validators, navigationPage, siteMapReader);
+	}
+}
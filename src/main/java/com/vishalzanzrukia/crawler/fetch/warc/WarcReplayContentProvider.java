@@ -0,0 +1,60 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+
+/**
+ * The {@link ContentProvider} which serves the pages only from the WARC files
+ * of {@code crawler.fetch.warc.dir} recorded by
+ * {@link WarcRecordingContentProvider}, without any network access. The url
+ * which is not recorded fails same as unreachable page.<BR>
+ * It's meant for reproducible performance runs of parsing, dedup and
+ * queueing on fixed corpus.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+public class WarcReplayContentProvider extends AbstractWarcContentProvider {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private WarcArchive warcArchive;
+
+	/**
+	 * Opens the WARC files, if replay is enabled.
+	 */
+	@PostConstruct
+	public void init() throws IOException {
+		if (ContentProvider.WARC_MODE_REPLAY.equals(singletonBeanFactory.getConfigs().getWarcMode())) {
+			warcArchive = new WarcArchive(new File(singletonBeanFactory.getConfigs().getWarcDirectory()));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsoupDocumentWrapper download(final String url, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException {
+		if (warcArchive == null) {
+			throw new IllegalStateException("WARC replay is not enabled, set crawler.fetch.warc.mode=" + ContentProvider.WARC_MODE_REPLAY);
+		}
+
+		final WarcRecord record = warcArchive.get(url);
+		if (record == null) {
+			LOG.debug("The url is not recorded in WARC files : {}", url);
+			throw new IOException("The url is not recorded in WARC files : " + url);
+		}
+		return toResponse(url, record, bytesNeeded, validators, navigationPage, siteMapReader);
+	}
+}
@@ -0,0 +1,133 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Appends {@link WarcRecord}s to {@code .warc.gz} files of the directory,
+ * each record is compressed as separate gzip member (same as other WARC
+ * tools do), so single record can be read without decompressing whole
+ * file.<BR>
+ * Along with each WARC file, the index file ({@link #INDEX_SUFFIX}) is
+ * written with one {@code <url> <offset> <length>} line per record, it's used
+ * by {@link WarcArchive} to find the records.<BR>
+ * New file is started once current file reaches {@link #MAX_FILE_SIZE}, so
+ * each file can be memory-mapped as a whole.
+ *
+ * @author VishalZanzrukia
+ */
+public class WarcWriter implements Closeable {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	static final String FILE_SUFFIX = ".warc.gz";
+	static final String INDEX_SUFFIX = ".idx";
+	static final long MAX_FILE_SIZE = 1024L * 1024 * 1024;
+
+	private static final String CRLF = "\r\n";
+	private static final DateTimeFormatter FILE_NAME_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+	private final File directory;
+	private final String fileNamePrefix;
+	private int fileSequence;
+
+	private OutputStream warcOutput;
+	private Writer indexOutput;
+	private long position;
+
+	public WarcWriter(final File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Not able to create WARC directory : " + directory.getAbsolutePath());
+		}
+		this.directory = directory;
+		this.fileNamePrefix = "crawl-" + LocalDateTime.now().format(FILE_NAME_TIME) + "-";
+	}
+
+	/**
+	 * Appends the record to current WARC file.
+	 *
+	 * @param record
+	 *            the record
+	 */
+	public synchronized void write(final WarcRecord record) throws IOException {
+		final byte[] compressedRecord = compress(record);
+
+		if (warcOutput == null || position + compressedRecord.length > MAX_FILE_SIZE) {
+			openNextFile();
+		}
+
+		/** record is flushed before its index line, so index never points to partial record */
+		warcOutput.write(compressedRecord);
+		warcOutput.flush();
+		indexOutput.write(record.getTargetUri() + ' ' + position + ' ' + compressedRecord.length + '\n');
+		indexOutput.flush();
+
+		position += compressedRecord.length;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		closeCurrentFile();
+	}
+
+	/**
+	 * Creates the gzip member of the record.
+	 */
+	private byte[] compress(final WarcRecord record) throws IOException {
+		final byte[] httpBlock = record.toHttpBlock();
+
+		final StringBuilder header = new StringBuilder(512).append("WARC/1.0").append(CRLF);
+		header.append("WARC-Type: response").append(CRLF);
+		header.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append('>').append(CRLF);
+		header.append("WARC-Date: ").append(Instant.now().truncatedTo(ChronoUnit.SECONDS)).append(CRLF);
+		header.append("WARC-Target-URI: ").append(record.getTargetUri()).append(CRLF);
+		header.append("Content-Type: application/http; msgtype=response").append(CRLF);
+		header.append("Content-Length: ").append(httpBlock.length).append(CRLF);
+		header.append(CRLF);
+
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(httpBlock.length / 4 + 512);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(header.toString().getBytes(StandardCharsets.UTF_8));
+			gzip.write(httpBlock);
+			gzip.write((CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1));
+		}
+		return compressed.toByteArray();
+	}
+
+	private void openNextFile() throws IOException {
+		closeCurrentFile();
+
+		final File warcFile = new File(directory, fileNamePrefix + (fileSequence++) + FILE_SUFFIX);
+		LOG.info("Recording fetched pages into WARC file : {}", warcFile.getAbsolutePath());
+
+		warcOutput = new BufferedOutputStream(new FileOutputStream(warcFile), 64 * 1024);
+		indexOutput = new OutputStreamWriter(new FileOutputStream(new File(directory, warcFile.getName() + INDEX_SUFFIX)), StandardCharsets.UTF_8);
+		position = 0;
+	}
+
+	private void closeCurrentFile() throws IOException {
+		if (warcOutput != null) {
+			warcOutput.close();
+			indexOutput.close();
+			warcOutput = null;
+			indexOutput = null;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.vishalzanzrukia.crawler.integration;
+
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+
+/**
+ * The queue depth and service time of each {@link StageExecutor} of the
+ * pipeline, also exposed through JMX.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=pipelineStages", description = "Queue depth and service time of each pipeline stage")
+public class PipelineStats implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private List<StageExecutor> stages;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		stages.forEach(stage -> LOG.info("Pipeline stage {} so far, {}", stage.getName(), stage));
+	}
+
+	@ManagedAttribute(description = "The queue depth, busy threads, mean service and wait time of each stage")
+	public String[] getStages() {
+		return stages.stream().map(stage -> stage.getName() + " " + stage).toArray(String[]::new);
+	}
+
+	@ManagedAttribute(description = "The messages waiting in queues of all stages")
+	public int getQueuedMessages() {
+		return stages.stream().mapToInt(StageExecutor::getQueueDepth).sum();
+	}
+
+	/**
+	 * Gets the messages which are queued or being processed by any stage, the
+	 * urls found from them are not published yet.
+	 *
+	 * @return the in flight messages
+	 */
+	@ManagedAttribute(description = "The messages queued or being processed by all stages")
+	public int getInFlightMessages() {
+		return stages.stream().mapToInt(stage -> stage.getQueueDepth() + stage.getActiveThreads()).sum();
+	}
+}
@@ -0,0 +1,249 @@
+package com.vishalzanzrukia.crawler.integration;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.stereotype.Component;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitOpenException;
+import com.vishalzanzrukia.crawler.parser.StreamingSiteMapReader;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.MESSAGE_HEADERS;
+
+/**
+ * Seeds the crawler cycle from the sitemaps declared by {@code Sitemap:}
+ * directives of robots.txt, before the link crawl from trigger url starts.<BR>
+ * The child sitemaps of sitemap index (and of nested indexes) are fetched in
+ * parallel by own threads ({@code crawler.seed.sitemaps.threads}), so the
+ * seeding does not take the threads of fetch stage, and the urls of sitemaps
+ * are sent to <code>processUrlsChannel</code>
+ * as links of {@link #getSeededDepth()}, so the product urls go straight to
+ * <code>productUrlQ</code> and the other pages are crawled only
+ * {@code crawler.seed.sitemaps.linkDepth} links deep. Once the sitemaps are
+ * read, the link crawl is needed only for the pages the sitemaps miss.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=siteMapSeeder", description = "Urls seeded from sitemaps of robots.txt")
+public class SiteMapSeeder {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	@Autowired
+	@Qualifier("processUrlsChannel")
+	private MessageChannel processUrlsChannel;
+
+	/** The single thread which waits for the sitemaps of a cycle */
+	private final ExecutorService seeder = Executors
+			.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("sitemap-seeder-%d").setDaemon(true).build());
+
+	/** The threads which read the child sitemaps of indexes */
+	private ExecutorService childReaders;
+
+	private final AtomicBoolean seeding = new AtomicBoolean();
+	private final AtomicLong seededUrls = new AtomicLong();
+	private final AtomicLong readSiteMaps = new AtomicLong();
+	private final AtomicLong failedSiteMaps = new AtomicLong();
+	private volatile int lastCycleUrls;
+
+	@PostConstruct
+	public void init() {
+		childReaders = Executors.newFixedThreadPool(singletonBeanFactory.getConfigs().getSiteMapSeedingThreads(),
+				new ThreadFactoryBuilder().setNameFormat("sitemap-child-%d").setDaemon(true).build());
+	}
+
+	/**
+	 * Reads the sitemaps of robots.txt in background.
+	 *
+	 * @param onSeeded
+	 *            called with the number of seeded urls once all sitemaps are
+	 *            read
+	 */
+	public void seed(final IntConsumer onSeeded) {
+		seeding.set(true);
+		seeder.execute(() -> {
+			try {
+				int urls = 0;
+				try {
+					urls = seedSiteMaps();
+				} catch (RuntimeException e) {
+					LOG.error("Error while seeding the cycle from sitemaps", e);
+				}
+				lastCycleUrls = urls;
+				onSeeded.accept(urls);
+			} finally {
+				seeding.set(false);
+			}
+		});
+	}
+
+	private int seedSiteMaps() {
+		final List<String> siteMapUrls = singletonBeanFactory.getRobotsTxtParser().getSitemaps();
+		if (siteMapUrls.isEmpty()) {
+			LOG.info("The robots.txt declares no sitemaps, the cycle is seeded from trigger url only");
+			return 0;
+		}
+
+		LOG.info("Seeding the cycle from {} sitemaps of robots.txt", siteMapUrls.size());
+		final AtomicLong urls = new AtomicLong();
+		final Set<String> seenSiteMaps = ConcurrentHashMap.newKeySet();
+		final Queue<CompletableFuture<Void>> children = new ConcurrentLinkedQueue<>();
+		seenSiteMaps.addAll(siteMapUrls);
+		for (final String siteMapUrl : siteMapUrls) {
+			readSiteMap(siteMapUrl, false, urls, child -> seedChild(child, urls, seenSiteMaps, children));
+		}
+
+		/** the child adds its own children before it completes, so the queue is empty only once all are read */
+		int childSiteMaps = 0;
+		CompletableFuture<Void> child;
+		while ((child = children.poll()) != null) {
+			child.join();
+			childSiteMaps++;
+		}
+
+		LOG.info("Seeded {} urls from {} sitemaps", urls.get(), siteMapUrls.size() + childSiteMaps);
+		return (int) urls.get();
+	}
+
+	/**
+	 * Reads the child sitemap of index in parallel, if it's nested index, its
+	 * children are read same way. The sitemap already read in the cycle is
+	 * skipped, so the indexes listing each other are not read again.
+	 */
+	private void seedChild(final String childUrl, final AtomicLong urls, final Set<String> seenSiteMaps,
+			final Queue<CompletableFuture<Void>> children) {
+		if (seenSiteMaps.add(childUrl)) {
+			children.add(CompletableFuture.runAsync(
+					() -> readSiteMap(childUrl, true, urls, nestedChild -> seedChild(nestedChild, urls, seenSiteMaps, children)), childReaders));
+		}
+	}
+
+	/**
+	 * Reads the sitemap, the page urls are sent to the pipeline and the child
+	 * sitemaps (of index) are handed to {@code childConsumer}. The lastmod of
+	 * child sitemap is marked fetched once it's read.
+	 */
+	private void readSiteMap(final String siteMapUrl, final boolean child, final AtomicLong urls, final Consumer<String> childConsumer) {
+		final JsoupDocumentWrapper response;
+		try {
+			/** the sitemap is read while it's downloaded */
+			response = singletonBeanFactory.getCrawlerUtils().getNavigationResponse(siteMapUrl,
+					(responseUrl, body) -> singletonBeanFactory.getCrawlerUtils().parseXmlUrls(responseUrl, body, (type, batch) -> {
+						if (type == StreamingSiteMapReader.Type.INDEX) {
+							batch.forEach(childConsumer);
+						} else {
+							urls.addAndGet(batch.size());
+							seededUrls.addAndGet(batch.size());
+							send(siteMapUrl, batch);
+						}
+					}));
+		} catch (HostCircuitOpenException e) {
+			LOG.warn("Skipping the sitemap : {}, its host is failing", siteMapUrl);
+			failedSiteMaps.incrementAndGet();
+			return;
+		} catch (RuntimeException e) {
+			LOG.error("Error while fetching the sitemap : {}", siteMapUrl, e);
+			failedSiteMaps.incrementAndGet();
+			return;
+		}
+		if (response == null || !ContentProvider.isSiteMapResponse(siteMapUrl, response.getResponseType())) {
+			LOG.warn("Not able to read the sitemap : {}", siteMapUrl);
+			failedSiteMaps.incrementAndGet();
+			return;
+		}
+
+		readSiteMaps.incrementAndGet();
+		if (child && singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()) {
+			singletonBeanFactory.getSiteMapLastmodCache().markFetched(siteMapUrl);
+		}
+	}
+
+	/**
+	 * Sends the urls as the links of the seeded depth, so they are routed same
+	 * as links of trigger url.
+	 */
+	private void send(final String siteMapUrl, final Set<String> urls) {
+		singletonBeanFactory.getDnsCache().prefetch(urls);
+		processUrlsChannel.send(MessageBuilder.withPayload(urls).setHeader(MESSAGE_HEADERS.URL, siteMapUrl)
+				.setHeader(MESSAGE_HEADERS.DEPTH, getSeededDepth())
+				.setHeader(MESSAGE_HEADERS.SITEMAP_LASTMOD, singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()).build());
+	}
+
+	/**
+	 * Gets the depth the link crawl starts from when sitemaps seeded the
+	 * cycle, so it goes only {@code crawler.seed.sitemaps.linkDepth} links
+	 * deep.
+	 *
+	 * @return the depth of trigger url and sitemaps
+	 */
+	public int getSeededDepth() {
+		return Math.max(0, singletonBeanFactory.getConfigs().getMaxDepth() - singletonBeanFactory.getConfigs().getSiteMapSeedingLinkDepth());
+	}
+
+	/**
+	 * Checks whether the sitemaps of cycle are still being read.
+	 *
+	 * @return true, if seeding is running
+	 */
+	@ManagedAttribute(description = "Whether the sitemaps of cycle are being read")
+	public boolean isSeeding() {
+		return seeding.get();
+	}
+
+	/**
+	 * Stops the seeding, the sitemaps not read yet are lost.
+	 */
+	@PreDestroy
+	public void destroy() {
+		seeder.shutdownNow();
+		childReaders.shutdownNow();
+	}
+
+	@ManagedAttribute(description = "The urls seeded from sitemaps since startup")
+	public long getSeededUrls() {
+		return seededUrls.get();
+	}
+
+	@ManagedAttribute(description = "The urls seeded from sitemaps in last cycle")
+	public int getLastCycleUrls() {
+		return lastCycleUrls;
+	}
+
+	@ManagedAttribute(description = "The sitemaps read since startup")
+	public long getReadSiteMaps() {
+		return readSiteMaps.get();
+	}
+
+	@ManagedAttribute(description = "The sitemaps which could not be read since startup")
+	public long getFailedSiteMaps() {
+		return failedSiteMaps.get();
+	}
+}
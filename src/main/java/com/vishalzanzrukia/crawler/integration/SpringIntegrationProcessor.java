@@ -5,18 +5,21 @@ package com.vishalzanzrukia.crawler.integration;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.integration.annotation.Filter;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.annotation.Transformer;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Component;
@@ -24,10 +27,15 @@ import org.springframework.stereotype.Component;
 import com.google.common.annotations.VisibleForTesting;
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
 import com.vishalzanzrukia.crawler.bean.Product;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitBreaker;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitOpenException;
+import com.vishalzanzrukia.crawler.fetch.PermanentFetchException;
+import com.vishalzanzrukia.crawler.fetch.RetryScheduler;
+import com.vishalzanzrukia.crawler.parser.IncompleteProductException;
 import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier.UrlClass;
 import com.vishalzanzrukia.crawler.util.ContentProvider;
 import com.vishalzanzrukia.crawler.util.CrawlerUtils.MESSAGE_HEADERS;
-import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
 
 import redis.clients.jedis.Jedis;
 
@@ -45,76 +53,102 @@ public class SpringIntegrationProcessor {
 	@Autowired
 	private SingletonBeanFactory singletonBeanFactory;
 
+	@Autowired
+	@Qualifier("processUrlsChannel")
+	private MessageChannel processUrlsChannel;
+
 	/** Constants. */
 	private static final Logger LOG = LogManager.getLogger();
-	public static final String KEY_PAGE_CONTENT = "pageContent";
-	public static final String KEY_IS_XML_RESPONSE = "isXmlResponse";
-	public static final String KEY_RESPONSE_URL = "responseURL";
+	public static final String KEY_DOCUMENT = "document";
+	public static final String KEY_LINKS = "links";
 
 	/**
-	 * Visit the url and download the page content from the internet.
+	 * Visit the url and download the page content from the internet.<BR>
+	 * If download is failed, the url is retried later by
+	 * {@link RetryScheduler} and null is returned. If host of the url is
+	 * failing (see {@link HostCircuitBreaker}), the url is deferred without
+	 * counting it as retry. If fetch is failed permanently (like 404), the url
+	 * is dropped.<BR>
+	 * If the page is sitemap, its urls are sent to
+	 * <code>processUrlsChannel</code> in batches while it's downloaded, so the
+	 * urls of large sitemap are never held at once, and null is returned.
 	 *
 	 * @param url
 	 *            the url
+	 * @param depth
+	 *            the depth
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod
 	 * @return the map
 	 */
 	@ServiceActivator
-	public Map<String, Object> visitUrl(@Header(MESSAGE_HEADERS.URL) final String url) {
-
-		singletonBeanFactory.getRateLimiter().acquire();
+	public Map<String, Object> visitUrl(@Header(MESSAGE_HEADERS.URL) final String url, @Header(MESSAGE_HEADERS.DEPTH) final int depth,
+			@Header(value = MESSAGE_HEADERS.RETRY_COUNT, required = false) final Integer retryCount,
+			@Header(value = MESSAGE_HEADERS.SITEMAP_LASTMOD, required = false) final Boolean siteMapLastmod) {
 
 		LOG.trace("Inside visitUrl : {}", url);
-		final JsoupDocumentWrapper response = singletonBeanFactory.getCrawlerUtils().getResponse(url);
+		final JsoupDocumentWrapper response;
+		try {
+			response = singletonBeanFactory.getCrawlerUtils().getNavigationResponse(url, (responseUrl, body) -> {
+				final int parsedUrls = singletonBeanFactory.getCrawlerUtils().parseXmlUrls(responseUrl, body, (type, urls) -> {
+					singletonBeanFactory.getDnsCache().prefetch(urls);
+					processUrlsChannel.send(MessageBuilder.withPayload(urls).setHeader(MESSAGE_HEADERS.URL, url).setHeader(MESSAGE_HEADERS.DEPTH, depth)
+							.setHeader(MESSAGE_HEADERS.SITEMAP_LASTMOD, singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()).build());
+				});
+				LOG.trace("Inside visitUrl, sent {} urls of sitemap : {}", parsedUrls, url);
+			});
+		} catch (HostCircuitOpenException e) {
+			singletonBeanFactory.getRetryScheduler().deferVisit(url, depth, retryCount, siteMapLastmod, e.getRetryDelay());
+			return null;
+		} catch (PermanentFetchException e) {
+			singletonBeanFactory.getRetryScheduler().dropPermanentFailure(url, e);
+			return null;
+		}
 
 		if (response != null) {
 			LOG.trace("Visited the url successfully and downloaded the page content : {}", url);
+			markFetched(url, siteMapLastmod);
 
-			final Map<String, Object> responseMap = new HashMap<>();
 			final String responseType = response.getResponseType();
 			LOG.trace("The response type : {} for url : {}", responseType, url);
 
-			if (responseType.contains(ContentProvider.XML_CONTENT_TYPE_DETECTOR)) {
-				LOG.debug("Detected xml content type for url : {}", url);
-				responseMap.put(KEY_RESPONSE_URL, response.getUrl());
-				responseMap.put(KEY_IS_XML_RESPONSE, true);
-			} else {
-				responseMap.put(KEY_IS_XML_RESPONSE, false);
+			if (ContentProvider.isSiteMapResponse(url, responseType)) {
+				LOG.debug("Read the sitemap while downloading url : {}", url);
+				return null;
 			}
 
-			responseMap.put(KEY_PAGE_CONTENT, response.getDocument().html());
+			final Map<String, Object> responseMap = new HashMap<>();
+			/** the parsed document (or extracted links) is handed over as it is, so it's not serialized and parsed again */
+			responseMap.put(KEY_DOCUMENT, response.getDocument());
+			responseMap.put(KEY_LINKS, response.getLinks());
 			return responseMap;
 		}
 
+		singletonBeanFactory.getRetryScheduler().scheduleVisitRetry(url, depth, retryCount, siteMapLastmod);
 		return null;
 	}
 
 	/**
-	 * Parses the xml urls.
+	 * Parses the urls from the document (or the links extracted while reading
+	 * the page) received from payload.
 	 *
 	 * @param responseMap
-	 *            the response map
-	 * @param url
-	 *            the url
-	 * @return the sets the
-	 */
-	@Transformer
-	public Set<String> parseXmlUrls(@Payload final Map<String, Object> responseMap, @Header(MESSAGE_HEADERS.URL) final String url) {
-		return singletonBeanFactory.getCrawlerUtils().parseXmlUrls(responseMap);
-	}
-
-	/**
-	 * Parses the urls from page content received from payload.
-	 *
-	 * @param payload
-	 *            the page content
+	 *            the response map with parsed document or links
 	 * @return the sets the
 	 */
 	@Transformer
 	public Set<String> parseUrls(@Payload Map<String, Object> responseMap, @Header(MESSAGE_HEADERS.URL) final String url) {
 
-		final Document document = Jsoup.parse((String) responseMap.get(KEY_PAGE_CONTENT));
+		final Document document = (Document) responseMap.get(KEY_DOCUMENT);
+		@SuppressWarnings("unchecked")
+		final List<String> links = (List<String>) responseMap.get(KEY_LINKS);
 		final Set<String> returnSet;
-		if (document == null) {
+		if (links != null) {
+			returnSet = singletonBeanFactory.getComponentRegistry().getProductParser().parseUrls(links);
+			singletonBeanFactory.getDnsCache().prefetch(returnSet);
+		} else if (document == null) {
 			returnSet = Collections.emptySet();
 		} else {
 			if (document.baseUri() == null || document.baseUri().trim().equals(StringUtils.EMPTY)) {
@@ -122,49 +156,131 @@ public class SpringIntegrationProcessor {
 				document.setBaseUri(url);
 			}
 			returnSet = singletonBeanFactory.getComponentRegistry().getProductParser().parseUrls(document);
+			singletonBeanFactory.getDnsCache().prefetch(returnSet);
 		}
 		LOG.trace("Inside IntegrationUtils.parseUrls, url size : {}", returnSet.size());
 		return returnSet;
 	}
 
 	/**
-	 * Checks if is product url or not, it will also consider the canonical
-	 * product urls.<BR>
-	 * So it will return true if the given url is normal product url (which
+	 * Classifies the url (filtered, product, category or plain), it will also
+	 * consider the canonical product urls.<BR>
+	 * So it will return product if the given url is normal product url (which
 	 * contains <code>product/index.jsp?productId={digit}</code>) or the
 	 * canonical product url (which contains <code>/buy</code> and ends with
-	 * <code>-{digit}</code>)
+	 * <code>-{digit}</code>). The class is kept in header, so
+	 * {@link #shouldVisit(int, String, String)} does not run the regexes
+	 * again.
 	 *
 	 * @param url
 	 *            the url
-	 * @return true, if is product url
+	 * @return the name of url class
+	 */
+	public String classifyUrl(@Header(MESSAGE_HEADERS.URL) final String url) {
+		LOG.trace("Inside classifyUrl url : {}", url);
+		final UrlClass urlClass = singletonBeanFactory.getComponentRegistry().getUrlProcessor().classify(url);
+		LOG.trace("urlClass : {}", urlClass);
+		return urlClass.name();
+	}
+
+	/**
+	 * Downloads the product page, it's parsed by
+	 * {@link #parseProduct(JsoupDocumentWrapper, String, Integer, Integer, Boolean)} on
+	 * the parse stage.<BR>
+	 * If download is failed, the url is retried later by
+	 * {@link RetryScheduler} and null is returned. If host of the url is
+	 * failing, the url is deferred without counting it as retry. If fetch is
+	 * failed permanently (like 404), the url is dropped.
+	 *
+	 * @param url
+	 *            the url
+	 * @param depth
+	 *            the depth
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod
+	 * @return the response of product page
 	 */
 	@ServiceActivator
-	public boolean isProductUrl(@Header(MESSAGE_HEADERS.URL) final String url) {
-		LOG.trace("Inside SiteHelper.isProductUrl url : {}", url);
-		final boolean isProductUrl = singletonBeanFactory.getComponentRegistry().getUrlProcessor().isProductUrl(url);
-		LOG.trace("isProductUrl : {}", isProductUrl);
-		return isProductUrl;
+	public JsoupDocumentWrapper fetchProduct(@Header(MESSAGE_HEADERS.URL) final String url,
+			@Header(value = MESSAGE_HEADERS.DEPTH, required = false) final Integer depth,
+			@Header(value = MESSAGE_HEADERS.RETRY_COUNT, required = false) final Integer retryCount,
+			@Header(value = MESSAGE_HEADERS.SITEMAP_LASTMOD, required = false) final Boolean siteMapLastmod) {
+		LOG.trace("Inside SiteHelper.fetchProduct url : {}", url);
+		final JsoupDocumentWrapper response;
+		try {
+			response = singletonBeanFactory.getCrawlerUtils().getConditionalResponse(url);
+		} catch (HostCircuitOpenException e) {
+			singletonBeanFactory.getRetryScheduler().deferProduct(url, depth, retryCount, siteMapLastmod, e.getRetryDelay());
+			return null;
+		} catch (PermanentFetchException e) {
+			singletonBeanFactory.getRetryScheduler().dropPermanentFailure(url, e);
+			return null;
+		}
+		if (response == null) {
+			singletonBeanFactory.getRetryScheduler().scheduleProductRetry(url, depth, retryCount, siteMapLastmod);
+			return null;
+		}
+		return response;
 	}
 
 	/**
-	 * Parses the product.
+	 * Parses the product from the downloaded page.<BR>
+	 * If some fields of the product are missing, the page is fetched again
+	 * later by {@link RetryScheduler}.
 	 *
+	 * @param response
+	 *            the response of product page
 	 * @param url
 	 *            the url
+	 * @param depth
+	 *            the depth
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @param siteMapLastmod
+	 *            whether the url is read from sitemap with lastmod
 	 * @return the string
 	 */
 	@ServiceActivator
-	public String parseProduct(@Header(MESSAGE_HEADERS.URL) final String url) {
+	public String parseProduct(@Payload final JsoupDocumentWrapper response, @Header(MESSAGE_HEADERS.URL) final String url,
+			@Header(value = MESSAGE_HEADERS.DEPTH, required = false) final Integer depth,
+			@Header(value = MESSAGE_HEADERS.RETRY_COUNT, required = false) final Integer retryCount,
+			@Header(value = MESSAGE_HEADERS.SITEMAP_LASTMOD, required = false) final Boolean siteMapLastmod) {
 		LOG.trace("Inside SiteHelper.parseProduct url : {}", url);
-		final Product product = singletonBeanFactory.getComponentRegistry().getProductParser().parseProduct(url);
+		final Product product;
+		try {
+			product = singletonBeanFactory.getComponentRegistry().getProductParser().parseProduct(response, url, retryCount);
+		} catch (IncompleteProductException e) {
+			/** the partial product waits in cache for the page fetched again */
+			if (!singletonBeanFactory.getRetryScheduler().scheduleProductRetry(url, depth, retryCount, siteMapLastmod)) {
+				singletonBeanFactory.getPartialProductCache().drop(e.getProductId());
+			}
+			return null;
+		}
+		if (response.isNotModified()) {
+			markFetched(url, siteMapLastmod);
+			return null;
+		}
 		if (product == null) {
 			LOG.warn("Returning null product for url : {}", url);
 			return null;
 		}
+		markFetched(url, siteMapLastmod);
 		return singletonBeanFactory.getCrawlerUtils().serializeProduct(product);
 	}
 
+	/**
+	 * Marks the sitemap lastmod of url as fetched, so it's skipped by next
+	 * cycle till the sitemap declares it modified. The urls not read from
+	 * sitemap have no lastmod, so redis is not asked for them.
+	 */
+	private void markFetched(final String url, final Boolean siteMapLastmod) {
+		if (Boolean.TRUE.equals(siteMapLastmod) && singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()) {
+			singletonBeanFactory.getSiteMapLastmodCache().markFetched(url);
+		}
+	}
+
 	/**
 	 * It will check whether product should be parsed or not based on already
 	 * parsed products history.<BR>
@@ -216,20 +332,23 @@ public class SpringIntegrationProcessor {
 	 *            the depth
 	 * @param url
 	 *            the url
+	 * @param urlClassName
+	 *            the class of url, see {@link #classifyUrl(String)}, it's
+	 *            classified again if not set
 	 * @return true, if successful
 	 */
 	@Filter
-	public boolean shouldVisit(@Header(MESSAGE_HEADERS.DEPTH) final int depth, @Header(MESSAGE_HEADERS.URL) final String url) {
+	public boolean shouldVisit(@Header(MESSAGE_HEADERS.DEPTH) final int depth, @Header(MESSAGE_HEADERS.URL) final String url,
+			@Header(value = MESSAGE_HEADERS.URL_CLASS, required = false) final String urlClassName) {
 
 		LOG.trace("Inside shouldVisit url : {}", url);
 
 		if (depth >= singletonBeanFactory.getConfigs().getMaxDepth()) {
 			return false;
 		}
-		if (!url.matches(singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(REGEXES.VALID_URL))) {
-			return false;
-		}
-		if (!singletonBeanFactory.getComponentRegistry().getUrlProcessor().isValidUrl(url)) {
+		final UrlClass urlClass = urlClassName == null ? singletonBeanFactory.getComponentRegistry().getUrlProcessor().classify(url)
+				: UrlClass.valueOf(urlClassName);
+		if (urlClass == UrlClass.FILTERED) {
 			return false;
 		}
 		if (!singletonBeanFactory.getRobotsTxtParser().isAllow(url)) {
@@ -242,14 +361,17 @@ public class SpringIntegrationProcessor {
 				return false;
 			}
 		}
-		try (Jedis client = getRedisClient()) {
-			if (client.sismember(singletonBeanFactory.getRuntimeConfigs().getVisitedUrlRedisKey(),
-					singletonBeanFactory.getCrawlerUtils().trimHttps(singletonBeanFactory.getCrawlerUtils().trimCategoryUrl(url)))) {
-				return false;
+		/** only the category url is changed by trim, so other urls are checked once */
+		if (urlClass == UrlClass.CATEGORY) {
+			try (Jedis client = getRedisClient()) {
+				if (client.sismember(singletonBeanFactory.getRuntimeConfigs().getVisitedUrlRedisKey(),
+						singletonBeanFactory.getCrawlerUtils().trimHttps(singletonBeanFactory.getCrawlerUtils().trimCategoryUrl(url)))) {
+					return false;
+				}
 			}
 		}
 
-		if (singletonBeanFactory.getCrawlerUtils().isCategoryUrl(url)) {
+		if (urlClass == UrlClass.CATEGORY) {
 			persistInRedis(singletonBeanFactory.getRuntimeConfigs().getVisitedUrlRedisKey(),
 					singletonBeanFactory.getCrawlerUtils().trimCategoryUrl(url));
 		} else {
@@ -0,0 +1,240 @@
+package com.vishalzanzrukia.crawler.integration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * The bounded worker pool of single stage of the pipeline, used as the
+ * dispatcher of executor channels in <code>integration-context.xml</code>.<BR>
+ * The stage has fixed number of threads and bounded queue (or starts new
+ * thread for each message, when it runs on virtual threads). Once the queue
+ * is full, the thread handing over the message (the previous stage, or the
+ * queue consumer for the first stage) waits for free slot, so a slow stage
+ * slows down the stages before it instead of piling up messages in memory.<BR>
+ * If {@code waitForCompletion} is set, the thread handing over the message
+ * waits till the stage has processed it, so the queue consumer acknowledges
+ * the message only once it went through all stages, and the messages in
+ * memory are not lost on restart. On shutdown, the messages handed over
+ * already are processed within the drain timeout.<BR>
+ * The time messages wait in queue and the time they are processed by the stage
+ * are recorded, see {@link PipelineStats}.
+ *
+ * @author VishalZanzrukia
+ */
+public class StageExecutor implements Executor {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private final String name;
+	private final int queueCapacity;
+	private final boolean waitForCompletion;
+	private final long drainTimeoutInSeconds;
+	private final ThreadPoolExecutor executor;
+
+	private final AtomicLong completedTasks = new AtomicLong();
+	private final AtomicLong serviceNanos = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+	private final AtomicLong blockedSubmits = new AtomicLong();
+	private final AtomicLong blockedNanos = new AtomicLong();
+
+	/**
+	 * Instantiates a new stage executor.
+	 *
+	 * @param name
+	 *            the stage name
+	 * @param threads
+	 *            the number of worker threads, 0 to start new thread for each
+	 *            message (for virtual threads), without queue
+	 * @param queueCapacity
+	 *            the max messages waiting for worker
+	 * @param waitForCompletion
+	 *            whether the thread handing over the message waits till it's
+	 *            processed
+	 * @param drainTimeoutInSeconds
+	 *            the max seconds to wait on shutdown for the messages handed
+	 *            over already
+	 * @param threadFactory
+	 *            the factory of worker threads
+	 */
+	public StageExecutor(final String name, final int threads, final int queueCapacity, final boolean waitForCompletion,
+			final long drainTimeoutInSeconds, final ThreadFactory threadFactory) {
+		this.name = name;
+		this.queueCapacity = threads > 0 ? queueCapacity : 0;
+		this.waitForCompletion = waitForCompletion;
+		this.drainTimeoutInSeconds = drainTimeoutInSeconds;
+		if (threads > 0) {
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+					threadFactory, (task, pool) -> waitForSlot(task));
+		} else {
+			this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+		}
+		LOG.info("Created pipeline stage {} with {} and queue of {} messages, waiting for completion : {}", name,
+				threads > 0 ? threads + " threads" : "new thread per message", this.queueCapacity, waitForCompletion);
+	}
+
+	/**
+	 * Runs the task on the stage, waits while the queue of the stage is full,
+	 * and till the task is completed if {@code waitForCompletion} is set.
+	 *
+	 * @throws RejectedExecutionException
+	 *             if the stage is shut down (before the task is completed, if
+	 *             waiting), or the thread is interrupted while waiting for free
+	 *             slot
+	 */
+	@Override
+	public void execute(final Runnable task) {
+		final long submittedAt = System.nanoTime();
+		final CountDownLatch completed = new CountDownLatch(1);
+		executor.execute(() -> {
+			final long startedAt = System.nanoTime();
+			waitNanos.addAndGet(startedAt - submittedAt);
+			try {
+				task.run();
+			} finally {
+				serviceNanos.addAndGet(System.nanoTime() - startedAt);
+				completedTasks.incrementAndGet();
+				completed.countDown();
+			}
+		});
+		if (waitForCompletion) {
+			awaitCompletion(completed);
+		}
+	}
+
+	/**
+	 * Waits till the task is completed, the task is queued already, so
+	 * returning early would acknowledge the message before it's processed.
+	 * The task dropped by shutdown never completes, so the stage is checked
+	 * periodically.
+	 */
+	private void awaitCompletion(final CountDownLatch completed) {
+		while (!Uninterruptibles.awaitUninterruptibly(completed, 1, TimeUnit.SECONDS)) {
+			if (executor.isTerminated()) {
+				throw new RejectedExecutionException("The pipeline stage " + name + " is shut down before the message is processed");
+			}
+		}
+	}
+
+	/**
+	 * Blocks the caller till the queue has free slot, called by the pool when
+	 * the queue is full.
+	 */
+	private void waitForSlot(final Runnable task) {
+		if (executor.isShutdown()) {
+			throw new RejectedExecutionException("The pipeline stage " + name + " is shut down");
+		}
+		blockedSubmits.incrementAndGet();
+		final long blockedAt = System.nanoTime();
+		try {
+			executor.getQueue().put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for the pipeline stage " + name, e);
+		} finally {
+			blockedNanos.addAndGet(System.nanoTime() - blockedAt);
+		}
+	}
+
+	/**
+	 * Shuts down the stage, the messages handed over already are processed
+	 * within the drain timeout, the ones still queued after it are dropped.
+	 */
+	public void shutdown() {
+		LOG.info("Shutting down pipeline stage {}, draining {} queued messages", name, executor.getQueue().size());
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(drainTimeoutInSeconds, TimeUnit.SECONDS)) {
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		LOG.warn("Pipeline stage {} is not drained within {} seconds, dropping {} queued messages", name, drainTimeoutInSeconds,
+				executor.shutdownNow().size());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getActiveThreads() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Gets the number of worker threads, the current one if new thread is
+	 * started for each message.
+	 *
+	 * @return the number of threads
+	 */
+	public int getThreads() {
+		return executor.getCorePoolSize() > 0 ? executor.getMaximumPoolSize() : executor.getPoolSize();
+	}
+
+	public long getCompletedTasks() {
+		return completedTasks.get();
+	}
+
+	public long getBlockedSubmits() {
+		return blockedSubmits.get();
+	}
+
+	/**
+	 * Gets the mean time a message is processed by the stage.
+	 *
+	 * @return the millis, 0 if nothing is processed yet
+	 */
+	public double getMeanServiceMillis() {
+		return mean(serviceNanos.get(), completedTasks.get());
+	}
+
+	/**
+	 * Gets the mean time a message waits in the queue of the stage.
+	 *
+	 * @return the millis, 0 if nothing is processed yet
+	 */
+	public double getMeanWaitMillis() {
+		return mean(waitNanos.get(), completedTasks.get());
+	}
+
+	/**
+	 * Gets the mean time the previous stage waited for free slot in the
+	 * queue, per blocked hand over.
+	 *
+	 * @return the millis, 0 if never blocked
+	 */
+	public double getMeanBlockedMillis() {
+		return mean(blockedNanos.get(), blockedSubmits.get());
+	}
+
+	private static double mean(final long nanos, final long count) {
+		return count == 0 ? 0 : nanos / 1e6 / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("queue=%d/%d active=%d/%d completed=%d serviceMillis=%.2f waitMillis=%.2f blocked=%d blockedMillis=%.2f", getQueueDepth(),
+				queueCapacity, getActiveThreads(), getThreads(), getCompletedTasks(), getMeanServiceMillis(), getMeanWaitMillis(), getBlockedSubmits(),
+				getMeanBlockedMillis());
+	}
+}
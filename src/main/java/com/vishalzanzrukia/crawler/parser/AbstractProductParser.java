@@ -1,21 +1,34 @@
 package com.vishalzanzrukia.crawler.parser;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.entity.ContentType;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.parser.Parser;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
 import com.vishalzanzrukia.crawler.bean.Product;
+import com.vishalzanzrukia.crawler.fetch.PermanentFetchException;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+import com.vishalzanzrukia.crawler.parser.field.ExtractedFields;
+import com.vishalzanzrukia.crawler.parser.field.FieldExtractor;
+import com.vishalzanzrukia.crawler.parser.field.FieldRule;
+import com.vishalzanzrukia.crawler.parser.field.ProductFields;
+import com.vishalzanzrukia.crawler.parser.field.StructuredDataExtractor;
 import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
 
 /**
@@ -31,6 +44,9 @@ public abstract class AbstractProductParser implements ProductParser {
 	@Autowired
 	protected SingletonBeanFactory singletonBeanFactory;
 
+	/** The extractor of field rules, built on first use */
+	private volatile FieldExtractor fieldExtractor;
+
 	/**
 	 * Register the product parsers for all domains
 	 */
@@ -49,9 +65,28 @@ public abstract class AbstractProductParser implements ProductParser {
 	 */
 	public Set<String> parseUrls(final Document document) {
 		LOG.trace("Base URI from document : {}", document.baseUri());
-		final Set<String> urls = document.select("a[href]").stream()
-				.map(link -> link.attr(
-						"abs:href")) /** it will handle absolute url as well */
+		/** abs:href will handle absolute url as well */
+		return normalizeUrls(document.select("a[href]").stream().map(link -> link.attr("abs:href")));
+	}
+
+	/**
+	 * Process links extracted while reading the page.
+	 *
+	 * @param links
+	 *            the absolute links
+	 * @return the sets the
+	 */
+	@Override
+	public Set<String> parseUrls(final List<String> links) {
+		return normalizeUrls(links.stream());
+	}
+
+	/**
+	 * Normalizes the absolute links, the links which are not valid are
+	 * skipped.
+	 */
+	private Set<String> normalizeUrls(final Stream<String> links) {
+		final Set<String> urls = links
 				.map(link -> singletonBeanFactory.getComponentRegistry().getUrlProcessor().normalize(link))
 				.filter(link -> !StringUtils.isBlank(
 						link)) /**
@@ -63,23 +98,64 @@ public abstract class AbstractProductParser implements ProductParser {
 	}
 
 	/**
-	 * Parses the product.
+	 * Parses the product in single attempt, the missing fields are not
+	 * fetched again.
 	 *
 	 * @param productPageUrl
 	 *            the product page url
 	 * @return the model
 	 */
 	public Product parseProduct(final String productPageUrl) {
-		final JsoupDocumentWrapper response = singletonBeanFactory.getCrawlerUtils().getResponse(productPageUrl);
+		final JsoupDocumentWrapper response;
+		try {
+			response = singletonBeanFactory.getCrawlerUtils().getConditionalResponse(productPageUrl);
+		} catch (PermanentFetchException e) {
+			LOG.warn("Not able to fetch the product page : {}, because of : {}", productPageUrl, e.getCause().toString());
+			return null;
+		}
 		if (response == null) {
 			LOG.warn("Retrieved null document for url : {}", productPageUrl);
 			return null;
 		}
-		return parseProduct(response.getDocument(), productPageUrl);
+		return parseProduct(response, productPageUrl, singletonBeanFactory.getConfigs().getMaxRetry());
+	}
+
+	/**
+	 * Parses the product from already downloaded response.
+	 *
+	 * @param response
+	 *            the response of product page
+	 * @param productPageUrl
+	 *            the product page url
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @return the model
+	 * @throws IncompleteProductException
+	 *             if some fields are missing and retries are left
+	 */
+	@Override
+	public Product parseProduct(final JsoupDocumentWrapper response, final String productPageUrl, final Integer retryCount) {
+		if (response.isNotModified()) {
+			LOG.debug("The product page is not modified since last cycle, skipping to parse : {}", productPageUrl);
+			return null;
+		}
+
+		final Product product;
+		try {
+			product = parseProduct(productPageUrl, extractFields(response, productPageUrl), retryCount);
+		} finally {
+			/** the body read for structured data goes back to the pool */
+			response.release();
+		}
+		if (product != null) {
+			/** validators are stored only for parsed products, so failed pages are downloaded in full again */
+			singletonBeanFactory.getValidatorCache().put(productPageUrl, response.getValidators());
+		}
+		return product;
 	}
 
 	/**
-	 * Parses the product.
+	 * Parses the product in single attempt.
 	 *
 	 * @param document
 	 *            the document
@@ -89,35 +165,93 @@ public abstract class AbstractProductParser implements ProductParser {
 	 */
 	@VisibleForTesting
 	Product parseProduct(final Document document, final String productPageUrl) {
-		return parseProduct(productPageUrl, document, new int[]{1});
+		return parseProduct(productPageUrl, document == null ? null : getFieldExtractor().extract(document),
+				singletonBeanFactory.getConfigs().getMaxRetry());
+	}
+
+	/**
+	 * Extracts the fields of product page. If the body is read as bytes (see
+	 * {@code crawler.product.structuredData}), the structured data is read
+	 * from the bytes first, and the document is parsed only if the field
+	 * rules have any field which is still missing.
+	 *
+	 * @param response
+	 *            the response of product page
+	 * @param productPageUrl
+	 *            the product page url
+	 * @return the fields, or null if the page could not be read
+	 */
+	private ExtractedFields extractFields(final JsoupDocumentWrapper response, final String productPageUrl) {
+		final ResponseBuffer body = response.getResponseBody();
+		if (body == null) {
+			return response.getDocument() == null ? null : getFieldExtractor().extract(response.getDocument());
+		}
+
+		try {
+			final String charsetName = getCharsetName(response.getResponseType());
+			final ExtractedFields fields = StructuredDataExtractor.extract(body.openStream(), charsetName);
+			final boolean documentNeeded = getFieldExtractor().isDocumentNeeded(fields);
+			if (documentNeeded) {
+				/** parsed same as content providers do */
+				final String baseUri = response.getUrl() == null ? productPageUrl : response.getUrl().toString();
+				getFieldExtractor().extract(Jsoup.parse(body.openStream(), charsetName, baseUri, Parser.xmlParser()), fields);
+			}
+			singletonBeanFactory.getStructuredDataStats().record(getDomainName(), fields, documentNeeded);
+			return fields;
+		} catch (IOException e) {
+			LOG.error("Error while reading product page : " + productPageUrl, e);
+			singletonBeanFactory.getCrawlerUtils().writeError(productPageUrl + "\n");
+			return null;
+		}
 	}
 
-	private Product parseProduct(final String productPageUrl, final int[] noOfRetries, final Document document) {
-		noOfRetries[0] = ++noOfRetries[0];
-		return parseProduct(productPageUrl, document, noOfRetries);
+	/**
+	 * Gets the charset of the {@code Content-Type} header.
+	 *
+	 * @return the charset name, or null to detect it from the content
+	 */
+	private String getCharsetName(final String responseType) {
+		if (StringUtils.isBlank(responseType)) {
+			return null;
+		}
+		try {
+			final Charset charset = ContentType.parse(responseType).getCharset();
+			return charset == null ? null : charset.name();
+		} catch (RuntimeException e) {
+			LOG.debug("Not able to find charset from content type : {}", responseType);
+			return null;
+		}
 	}
 
 	/**
-	 * Process the product.
+	 * Process the product.<BR>
+	 * Parsing the same content again can not find the missing fields, so if
+	 * some fields are missing, the fields found so far are kept in
+	 * {@link PartialProductCache} and {@link IncompleteProductException} is
+	 * thrown, so the page is fetched again later, only once. The fields found
+	 * by earlier attempt fill the ones missing from the page fetched again.
+	 * Only the fields which have rules of the domain are checked for missing
+	 * ones.
 	 *
 	 * @param productPageUrl
 	 *            the product page url
-	 * @param document
-	 *            the document
-	 * @param noOfRetries
-	 *            the no of retries
+	 * @param fields
+	 *            the extracted fields, null if page could not be read
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
 	 * @return the model
+	 * @throws IncompleteProductException
+	 *             if some fields are missing and retries are left
 	 */
 	@VisibleForTesting
-	Product parseProduct(final String productPageUrl, final Document document, final int[] noOfRetries) {
+	Product parseProduct(final String productPageUrl, final ExtractedFields fields, final Integer retryCount) {
 		String productId = null;
 
 		try {
 
-			if (document != null) {
+			if (fields != null) {
 
 				LOG.trace("Parsing : {}", productPageUrl);
-				Product product = null;
 
 				productId = singletonBeanFactory.getComponentRegistry().getUrlProcessor().extractProductId(productPageUrl);
 				if (productId == null) {
@@ -125,14 +259,34 @@ public abstract class AbstractProductParser implements ProductParser {
 					throw new IllegalArgumentException("Not able to extract productId from product url : " + productPageUrl);
 				}
 
-				final String barcode = parseBarcode(document, productId);
-				final BigDecimal price = parsePrice(document, productId);
-				final Integer weight = parseWeight(document, productId);
-
-				final String description = parseDescription(document);
-				final String title = parseTitle(document, productId);
-				final List<Integer> dimensions = parseDimensions(document, productId);
-				final String keywords = parseKeywords(document);
+				/** the fields of structured data are already normalized, the domain parses only the rest */
+				final String parsedBarcode = fields.isStructured(ProductFields.BARCODE) ? fields.get(ProductFields.BARCODE) : parseBarcode(fields, productId);
+				final BigDecimal parsedPrice = fields.isStructured(ProductFields.PRICE) ? new BigDecimal(fields.get(ProductFields.PRICE))
+						: parsePrice(fields, productId);
+				final Integer parsedWeight = fields.isStructured(ProductFields.WEIGHT) ? Integer.valueOf(fields.get(ProductFields.WEIGHT))
+						: parseWeight(fields, productId);
+
+				final String parsedDescription = fields.isStructured(ProductFields.DESCRIPTION) ? fields.get(ProductFields.DESCRIPTION)
+						: parseDescription(fields);
+				final String parsedTitle = fields.isStructured(ProductFields.TITLE) ? fields.get(ProductFields.TITLE) : parseTitle(fields, productId);
+				final List<Integer> parsedDimensions = fields.isStructured(ProductFields.DIMENSIONS)
+						? fields.getAll(ProductFields.DIMENSIONS).stream().map(Integer::valueOf).collect(Collectors.toList())
+						: parseDimensions(fields, productId);
+				final String parsedKeywords = fields.isStructured(ProductFields.KEYWORDS) ? fields.get(ProductFields.KEYWORDS) : parseKeywords(fields);
+
+				/** the fields found by earlier attempts fill the ones missing from this attempt */
+				final Product partial = retryCount == null ? null : singletonBeanFactory.getPartialProductCache().get(productId);
+				final Product product = partial == null
+						? new Product(productId, parsedTitle, parsedDescription, parsedKeywords, parsedBarcode, parsedPrice, parsedWeight,
+								parsedDimensions)
+						: new Product(productId, merge(parsedTitle, partial.getName()), merge(parsedDescription, partial.getDescription()),
+								merge(parsedKeywords, partial.getKeywords()), merge(parsedBarcode, partial.getBarcode()),
+								merge(parsedPrice, partial.getPrice()), merge(parsedWeight, partial.getWeight()),
+								parsedDimensions.isEmpty() && partial.getDimensions() != null ? partial.getDimensions() : parsedDimensions);
+				final String barcode = product.getBarcode();
+				final BigDecimal price = product.getPrice();
+				final Integer weight = product.getWeight();
+				final List<Integer> dimensions = product.getDimensions();
 
 				if (barcode == null && price == null && weight == null && dimensions.size() == 0) {
 
@@ -140,30 +294,39 @@ public abstract class AbstractProductParser implements ProductParser {
 							"Not able to extract barcode, price, weight and dimensions related information for the product : {}, it seems not a product page, skipping to parse!",
 							productId);
 
-				} else if (barcode == null || price == null || weight == null || dimensions.size() == 0) {
+				} else if (isMissing(ProductFields.BARCODE, barcode == null) || isMissing(ProductFields.PRICE, price == null)
+						|| isMissing(ProductFields.WEIGHT, weight == null) || isMissing(ProductFields.DIMENSIONS, dimensions.size() == 0)) {
 
-					if (noOfRetries[0] >= singletonBeanFactory.getConfigs().getMaxRetry()) {
+					/** the page is fetched again only once, the partial is there if it's the page fetched again */
+					if (partial != null || (retryCount != null && retryCount >= singletonBeanFactory.getConfigs().getMaxRetry())) {
 
-						LOG.warn("We have tried to extract metadata for {} times of the product {}", singletonBeanFactory.getConfigs().getMaxRetry(),
-								productId);
+						LOG.warn("We have tried to extract metadata for {} times of the product {}", retryCount + 1, productId);
 						singletonBeanFactory.getCrawlerUtils().writeError(productPageUrl + "\n");
+						singletonBeanFactory.getPartialProductCache().drop(productId);
 
 					} else {
 
-						LOG.info("Trying to parse product {}, {}th time.", productId, (noOfRetries[0] + 1));
-						return parseProduct(productPageUrl, noOfRetries, document);
+						LOG.info("Some fields of product {} are missing, it will be fetched again", productId);
+						singletonBeanFactory.getPartialProductCache().put(product);
+						throw new IncompleteProductException(productId);
 					}
 
 				} else {
 
 					LOG.debug("Extracted the product {} with barcode {} and price {}", productId, barcode, price);
-					product = new Product(productId, title, description, keywords, barcode, price, weight, dimensions);
+					if (retryCount != null) {
+						singletonBeanFactory.getPartialProductCache().complete(productId);
+					}
 
 					LOG.trace("Product processed successfully : {}", product);
 					return product;
 				}
 			}
 
+		} catch (IncompleteProductException e) {
+
+			throw e;
+
 		} catch (Exception e) {
 
 			// TODO : Needs to improve to write error msgs
@@ -177,113 +340,134 @@ public abstract class AbstractProductParser implements ProductParser {
 	}
 
 	/**
-	 * Gets the metadata property value.
+	 * Checks whether the field is missing from the product. Only the fields
+	 * which are extracted by the rules of the domain count, the fields the
+	 * domain does not extract yet are never found by fetching the page again.
 	 *
-	 * @param document
-	 *            the document
-	 * @param identifierKey
-	 *            the identifier key
-	 * @param propertyName
-	 *            the property name
-	 * @return the metadata property value
+	 * @param field
+	 *            the field name
+	 * @param empty
+	 *            whether the value of the field is empty
+	 * @return true, if the field is missing
 	 */
-	protected String getMetadataPropertyValue(final Document document, final String identifierKey, final String propertyName) {
-		final Elements elements = getElements(document, "meta[" + identifierKey + "='" + propertyName + "']");
-		if (elements.size() > 0) {
-			return elements.first().attr("content");
-		}
-		return null;
+	private boolean isMissing(final String field, final boolean empty) {
+		return empty && getFieldExtractor().hasRule(field);
+	}
+
+	/**
+	 * Gets the value of this attempt, or the value of earlier attempts if it's
+	 * missing.
+	 */
+	private static <T> T merge(final T value, final T partialValue) {
+		return value == null || value instanceof String && StringUtils.isBlank((String) value) ? partialValue : value;
 	}
 
 	/**
-	 * Gets the price elements.
+	 * Gets the field rules of the domain, the rules are compiled once and
+	 * evaluated in single traversal of each product page. The sub classes add
+	 * their rules to the rules of this class.
 	 *
-	 * @param document
-	 *            the document
-	 * @param selector
-	 *            the selector
-	 * @return the price elements
+	 * @return the field rules
 	 */
-	protected Elements getElements(final Document document, final String selector) {
-		return document.select(selector);
+	protected List<FieldRule> getFieldRules() {
+		final List<FieldRule> rules = new ArrayList<>();
+		rules.add(FieldRule.meta(ProductFields.DESCRIPTION, "name", "description"));
+		rules.add(FieldRule.meta(ProductFields.KEYWORDS, "name", "keywords"));
+		return rules;
+	}
+
+	/**
+	 * Gets the field extractor.
+	 *
+	 * @return the field extractor
+	 */
+	protected FieldExtractor getFieldExtractor() {
+		FieldExtractor extractor = fieldExtractor;
+		if (extractor == null) {
+			final List<FieldRule> rules = getFieldRules();
+			LOG.debug("Building field extractor for domain {} with rules : {}", getDomainName(), rules);
+			extractor = new FieldExtractor(rules);
+			fieldExtractor = extractor;
+		}
+		return extractor;
 	}
 
 	/**
 	 * Parses the description.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @return the string
 	 */
-	protected String parseDescription(final Document document) {
-		final String description = getMetadataPropertyValue(document, "name", "description");
+	protected String parseDescription(final ExtractedFields fields) {
+		final String description = fields.get(ProductFields.DESCRIPTION);
 		return description;
 	}
 
 	/**
 	 * Parses the keywords.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @return the string
 	 */
-	protected String parseKeywords(final Document document) {
-		final String keywords = getMetadataPropertyValue(document, "name", "keywords");
+	protected String parseKeywords(final ExtractedFields fields) {
+		final String keywords = fields.get(ProductFields.KEYWORDS);
 		return keywords;
 	}
 
 	/**
 	 * Parses the barcode.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @param productId
 	 *            the product id
 	 * @return the string the barcode
 	 */
-	abstract String parseBarcode(final Document document, final String productId);
+	abstract String parseBarcode(final ExtractedFields fields, final String productId);
 
 	/**
 	 * Parses the weight.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @param productId
 	 *            the product id
 	 * @return the int the weight
 	 */
-	abstract Integer parseWeight(final Document document, final String productId);
+	abstract Integer parseWeight(final ExtractedFields fields, final String productId);
 
 	/**
 	 * Parses the dimensions.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @param productId
 	 *            the product id
 	 * @return the dimensions
 	 */
-	abstract List<Integer> parseDimensions(final Document document, final String productId);
+	abstract List<Integer> parseDimensions(final ExtractedFields fields, final String productId);
 
 	/**
 	 * Parses the price.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @param productId
 	 *            the product id
 	 * @return the big decimal
 	 */
-	abstract BigDecimal parsePrice(final Document document, final String productId);
+	abstract BigDecimal parsePrice(final ExtractedFields fields, final String productId);
 
 	/**
 	 * Parses the title.
 	 *
-	 * @param document
-	 *            the document
+	 * @param fields
+	 *            the extracted fields
 	 * @param productId
 	 *            the product id
 	 * @return the string
 	 */
-	abstract String parseTitle(final Document document, final String productId);
+	abstract String parseTitle(final ExtractedFields fields, final String productId);
 }
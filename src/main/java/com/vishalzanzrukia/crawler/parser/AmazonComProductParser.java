@@ -6,9 +6,11 @@ import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jsoup.nodes.Document;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.vishalzanzrukia.crawler.parser.field.ExtractedFields;
+import com.vishalzanzrukia.crawler.parser.field.FieldRule;
+import com.vishalzanzrukia.crawler.parser.field.ProductFields;
 
 /**
  * The HTML parser for product details page of <code>amazon.com</code>
@@ -31,12 +33,24 @@ public class AmazonComProductParser extends AbstractProductParser {
 		this.domainName = domainName;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected List<FieldRule> getFieldRules() {
+		final List<FieldRule> rules = super.getFieldRules();
+		rules.add(FieldRule.text(ProductFields.TITLE, "#productTitle"));
+		/** fallback, if the title element is not there */
+		rules.add(FieldRule.meta(ProductFields.TITLE, "property", "og:title"));
+		return rules;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@VisibleForTesting
 	@Override
-	String parseBarcode(final Document document, final String productId) {
+	String parseBarcode(final ExtractedFields fields, final String productId) {
 		final String barcode = "01234567";
 		// TODO : Needs to implement barcode parsing logic for amazon.com
 		return barcode;
@@ -47,7 +61,7 @@ public class AmazonComProductParser extends AbstractProductParser {
 	 */
 	@VisibleForTesting
 	@Override
-	Integer parseWeight(final Document document, final String productId) {
+	Integer parseWeight(final ExtractedFields fields, final String productId) {
 		String weight = "30";
 		// TODO : Needs to implement weight parsing logic for amazon.com
 		return Integer.parseInt(weight);
@@ -58,7 +72,7 @@ public class AmazonComProductParser extends AbstractProductParser {
 	 */
 	@VisibleForTesting
 	@Override
-	List<Integer> parseDimensions(final Document document, final String productId) {
+	List<Integer> parseDimensions(final ExtractedFields fields, final String productId) {
 		final List<Integer> dimensions = new ArrayList<>();
 		// TODO : Needs to implement dimensions parsing logic for amazon.com
 		return dimensions;
@@ -68,7 +82,7 @@ public class AmazonComProductParser extends AbstractProductParser {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected BigDecimal parsePrice(final Document document, final String productId) {
+	protected BigDecimal parsePrice(final ExtractedFields fields, final String productId) {
 		// TODO : Needs to implement price parsing logic for amazon.com
 		return new BigDecimal(10);
 	}
@@ -78,10 +92,9 @@ public class AmazonComProductParser extends AbstractProductParser {
 	 */
 	@Override
 	@VisibleForTesting
-	String parseTitle(Document document, final String productId) {
-		final String title = "Product Titel";
-		// TODO : Needs to implement price parsing logic for amazon.com
-		return title;
+	String parseTitle(final ExtractedFields fields, final String productId) {
+		final String title = fields.get(ProductFields.TITLE);
+		return title != null ? title : "Product Titel";
 	}
 
 	@Override
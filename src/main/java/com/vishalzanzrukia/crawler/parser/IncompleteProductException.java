@@ -0,0 +1,25 @@
+package com.vishalzanzrukia.crawler.parser;
+
+/**
+ * Thrown when some fields of the product are missing from its page and
+ * retries are left, the fields found so far are kept in
+ * {@link PartialProductCache}. The page should be fetched again later, instead
+ * of parsing the same content again.
+ *
+ * @author VishalZanzrukia
+ */
+public class IncompleteProductException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String productId;
+
+	public IncompleteProductException(final String productId) {
+		super("Some fields of product [" + productId + "] are missing, page should be fetched again");
+		this.productId = productId;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+}
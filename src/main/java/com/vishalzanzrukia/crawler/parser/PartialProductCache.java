@@ -0,0 +1,115 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.bean.Product;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * The store of partial products per product id, the fields found by earlier
+ * attempts of the page, while its re-fetch is waiting. It's kept in single
+ * redis hash which is deleted at start of each crawler cycle, so the product
+ * consumers can be on any instance.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=partialProductCache", description = "Partial products waiting for re-fetch of their page")
+public class PartialProductCache {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	private final AtomicLong storedProducts = new AtomicLong();
+	private final AtomicLong completedProducts = new AtomicLong();
+	private final AtomicLong droppedProducts = new AtomicLong();
+
+	/**
+	 * Gets the partial product.
+	 *
+	 * @param productId
+	 *            the product id
+	 * @return the partial product, or null if not stored
+	 */
+	public Product get(final String productId) {
+		try (Jedis client = getRedisClient()) {
+			final String productJson = client.hget(singletonBeanFactory.getRuntimeConfigs().getPartialProductsRedisKey(), productId);
+			return productJson == null ? null : singletonBeanFactory.getCrawlerUtils().translateProduct(productJson);
+		}
+	}
+
+	/**
+	 * Stores the partial product, till its page is fetched again.
+	 *
+	 * @param product
+	 *            the partial product
+	 */
+	public void put(final Product product) {
+		try (Jedis client = getRedisClient()) {
+			client.hset(singletonBeanFactory.getRuntimeConfigs().getPartialProductsRedisKey(), product.getpId(),
+					singletonBeanFactory.getCrawlerUtils().serializeProduct(product));
+		}
+		storedProducts.incrementAndGet();
+	}
+
+	/**
+	 * Removes the partial product once all its fields are found.
+	 *
+	 * @param productId
+	 *            the product id
+	 */
+	public void complete(final String productId) {
+		if (remove(productId)) {
+			LOG.debug("The product {} is completed by fetching its page again", productId);
+			completedProducts.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Removes the partial product once the retries of its page are exhausted.
+	 *
+	 * @param productId
+	 *            the product id
+	 */
+	public void drop(final String productId) {
+		if (remove(productId)) {
+			droppedProducts.incrementAndGet();
+		}
+	}
+
+	private boolean remove(final String productId) {
+		try (Jedis client = getRedisClient()) {
+			return client.hdel(singletonBeanFactory.getRuntimeConfigs().getPartialProductsRedisKey(), productId) > 0;
+		}
+	}
+
+	@ManagedAttribute(description = "Partial products stored since startup, once per attempt")
+	public long getStoredProducts() {
+		return storedProducts.get();
+	}
+
+	@ManagedAttribute(description = "Partial products completed by re-fetch since startup")
+	public long getCompletedProducts() {
+		return completedProducts.get();
+	}
+
+	@ManagedAttribute(description = "Partial products dropped after max retries since startup")
+	public long getDroppedProducts() {
+		return droppedProducts.get();
+	}
+
+	private Jedis getRedisClient() {
+		return singletonBeanFactory.getJedisPool().getResource();
+	}
+}
@@ -0,0 +1,57 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.input.BOMInputStream;
+import org.xml.sax.InputSource;
+
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+
+import crawlercommons.sitemaps.AbstractSiteMap;
+import crawlercommons.sitemaps.SiteMapParser;
+import crawlercommons.sitemaps.UnknownFormatException;
+
+/**
+ * The {@link SiteMapParser} which parses the xml sitemap straight from the
+ * pooled {@link ResponseBuffer}, without copying it to the array of exact
+ * length (which {@link SiteMapParser#parseSiteMap(byte[], URL)} expects).
+ *
+ * @author VishalZanzrukia
+ */
+public class PooledSiteMapParser extends SiteMapParser {
+
+	private static final String GZIP_EXTENSION = ".gz";
+
+	public PooledSiteMapParser(final boolean strict) {
+		super(strict);
+	}
+
+	/**
+	 * Parses the xml sitemap or sitemap index, the gzipped sitemap is parsed
+	 * by {@link SiteMapParser#parseSiteMap(byte[], URL)}.
+	 *
+	 * @param body
+	 *            the xml body, it's not released by this method
+	 * @param url
+	 *            the sitemap url
+	 * @return the parsed sitemap
+	 * @throws UnknownFormatException
+	 *             if content is not a sitemap
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public AbstractSiteMap parseSiteMap(final ResponseBuffer body, final URL url) throws UnknownFormatException, IOException {
+		if (url.getPath().endsWith(GZIP_EXTENSION)) {
+			return parseSiteMap(body.toByteArray(), url);
+		}
+
+		/** same as crawler commons reads xml from bytes */
+		final InputSource source = new InputSource();
+		source.setCharacterStream(new BufferedReader(new InputStreamReader(new BOMInputStream(body.openStream()), StandardCharsets.UTF_8)));
+		return processXml(url, source);
+	}
+}
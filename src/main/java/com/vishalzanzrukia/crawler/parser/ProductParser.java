@@ -1,10 +1,12 @@
 package com.vishalzanzrukia.crawler.parser;
 
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.ClassUtils;
 import org.jsoup.nodes.Document;
 
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
 import com.vishalzanzrukia.crawler.bean.Product;
 import com.vishalzanzrukia.crawler.registry.ComponentRegistry;
 import com.vishalzanzrukia.crawler.registry.CrawlerComponent;
@@ -37,11 +39,49 @@ public interface ProductParser extends CrawlerComponent {
 	Set<String> parseUrls(final Document document);
 
 	/**
-	 * Parses the product.
+	 * Parses the links extracted while reading the page, see
+	 * {@link #isStreamingLinksSupported()}.
+	 *
+	 * @param links
+	 *            the absolute links of the page
+	 * @return the sets the
+	 */
+	Set<String> parseUrls(final List<String> links);
+
+	/**
+	 * Checks whether links of navigation pages can be extracted while reading
+	 * the page, without parsing the document. The domain which finds its
+	 * links from the document structure should return false.
+	 *
+	 * @return true, if links can be extracted while reading the page
+	 */
+	default boolean isStreamingLinksSupported() {
+		return true;
+	}
+
+	/**
+	 * Parses the product in single attempt.
 	 *
 	 * @param productPageUrl
 	 *            the product page url
 	 * @return the crawler product model
 	 */
 	Product parseProduct(final String productPageUrl);
+
+	/**
+	 * Parses the product from already downloaded response.
+	 *
+	 * @param response
+	 *            the response of product page
+	 * @param productPageUrl
+	 *            the product page url
+	 * @param retryCount
+	 *            the retries done so far, null for first attempt
+	 * @return the crawler product model, null if page is not modified or
+	 *         product is not parsed
+	 * @throws IncompleteProductException
+	 *             if some fields are missing and retries are left, the page
+	 *             should be fetched again
+	 */
+	Product parseProduct(final JsoupDocumentWrapper response, final String productPageUrl, final Integer retryCount);
 }
@@ -3,7 +3,15 @@
  */
 package com.vishalzanzrukia.crawler.parser;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,6 +19,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
 import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
 
 import crawlercommons.robots.BaseRobotRules;
@@ -20,7 +29,10 @@ import crawlercommons.robots.SimpleRobotRulesParser;
 
 /**
  * The class to parse the {@code robots.txt} file and extract
- * {@link BaseRobotRules}.
+ * {@link BaseRobotRules}.<BR>
+ * The {@code Crawl-delay} is read from the {@code robots.txt} of each host
+ * (see {@link #getCrawlDelay(String)}), which is fetched again once it's older
+ * than {@code crawler.robots.refresh} minutes.
  * 
  * @author VishalZanzrukia
  * @see {@link BaseRobotRules}
@@ -44,6 +56,12 @@ public class RobotsTxtParser {
 	 */
 	private static final BaseRobotRules EMPTY_RULES = new SimpleRobotRules(RobotRulesMode.ALLOW_ALL);
 
+	/** The robots.txt url vs rules of that host */
+	private final Map<String, HostRobotRules> hostRules = new ConcurrentHashMap<>();
+
+	/** The robots.txt urls being downloaded, so each is downloaded once */
+	private final Map<String, CompletableFuture<BaseRobotRules>> inFlight = new ConcurrentHashMap<>();
+
 	/**
 	 * This will parse the robots txt rules.<BR>
 	 * <b>NOTE:</b>This method must be called just once on startup.
@@ -60,26 +78,8 @@ public class RobotsTxtParser {
 			return;
 		}
 
-		try {
-
-			LOG.debug("Downloading the robots.txt page");
-			System.err.println(singletonBeanFactory.getContentProvider());
-			final JsoupDocumentWrapper response = singletonBeanFactory.getContentProvider().downloadPage(robotsTxtUrl, true);
-
-			robotRules = singletonBeanFactory.getSimpleRobotRulesParser().parseContent(robotsTxtUrl, response.getResponseBytes(),
-					response.getResponseType(), "*");
-
-			if (robotRules != null) {
-				LOG.debug("Parsed robots.txt successfully for url : {}", robotsTxtUrl);
-			} else {
-				LOG.warn("Not able to parsed robots.txt for url : {}", robotsTxtUrl);
-			}
-
-		} catch (Exception e) {
-			LOG.error("Error while parsing robots.txt page, so skipping to follow robots.txt for url : {}", robotsTxtUrl, e);
-			robotRules = EMPTY_RULES;
-		}
-
+		robotRules = download(robotsTxtUrl);
+		hostRules.put(robotsTxtUrl, new HostRobotRules(robotRules));
 		CACHE.put(CACHE_KEY, robotRules);
 	}
 
@@ -103,10 +103,127 @@ public class RobotsTxtParser {
 		return isAllowed;
 	}
 
+	/**
+	 * Gets the crawl delay declared in robots.txt of the host of url. The
+	 * robots.txt is downloaded on first call for the host, and again once
+	 * it's older than {@code crawler.robots.refresh} minutes, the stale rules
+	 * are used by other threads meanwhile.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the crawl delay in millis, or {@link BaseRobotRules#UNSET_CRAWL_DELAY}
+	 *         if robots.txt does not declare it
+	 */
+	public long getCrawlDelay(final String url) {
+
+		final String robotsTxtUrl;
+		try {
+			final URL hostUrl = new URL(url);
+			robotsTxtUrl = new URL(hostUrl.getProtocol(), hostUrl.getHost(), hostUrl.getPort(), "/robots.txt").toString();
+		} catch (MalformedURLException e) {
+			LOG.warn("Not able to retrieve robots.txt url of url : {}, so no crawl delay", url);
+			return BaseRobotRules.UNSET_CRAWL_DELAY;
+		}
+		return getHostRules(robotsTxtUrl).getCrawlDelay();
+	}
+
+	/**
+	 * Gets the sitemaps declared by {@code Sitemap:} directives of robots.txt.
+	 *
+	 * @return the sitemap urls, empty if robots.txt does not declare any
+	 */
+	public List<String> getSitemaps() {
+
+		final BaseRobotRules robotRules = CACHE.get(CACHE_KEY);
+		if (robotRules == null) {
+			LOG.trace("Robots txt parser rules not initialized yet, so no sitemaps");
+			return Collections.emptyList();
+		}
+		return robotRules.getSitemaps();
+	}
+
 	/**
 	 * Clean cache.
 	 */
 	public void cleanCache() {
 		CACHE.remove(CACHE_KEY);
+		hostRules.clear();
+	}
+
+	/**
+	 * Gets the rules of host, downloading them if missing or expired.
+	 */
+	private BaseRobotRules getHostRules(final String robotsTxtUrl) {
+		final HostRobotRules cached = hostRules.get(robotsTxtUrl);
+		final long refreshMillis = TimeUnit.MINUTES.toMillis(singletonBeanFactory.getConfigs().getRobotsRefresh());
+		if (cached != null && System.currentTimeMillis() - cached.fetchedAtMillis < refreshMillis) {
+			return cached.rules;
+		}
+
+		final CompletableFuture<BaseRobotRules> download = new CompletableFuture<>();
+		final CompletableFuture<BaseRobotRules> existing = inFlight.putIfAbsent(robotsTxtUrl, download);
+		if (existing != null) {
+			return cached == null ? existing.join() : cached.rules;
+		}
+
+		BaseRobotRules robotRules = EMPTY_RULES;
+		try {
+			robotRules = download(robotsTxtUrl);
+			hostRules.put(robotsTxtUrl, new HostRobotRules(robotRules));
+			if (cached != null && cached.rules.getCrawlDelay() != robotRules.getCrawlDelay()) {
+				LOG.info("The crawl delay of robots.txt : {} is changed from {} to {} millis", robotsTxtUrl, cached.rules.getCrawlDelay(),
+						robotRules.getCrawlDelay());
+			}
+		} finally {
+			inFlight.remove(robotsTxtUrl);
+			download.complete(robotRules);
+		}
+		return robotRules;
+	}
+
+	/**
+	 * Downloads and parses the robots.txt.
+	 *
+	 * @return the rules, {@link #EMPTY_RULES} if not able to parse
+	 */
+	private BaseRobotRules download(final String robotsTxtUrl) {
+		BaseRobotRules robotRules = null;
+		try {
+
+			LOG.debug("Downloading the robots.txt page : {}", robotsTxtUrl);
+			final JsoupDocumentWrapper response = singletonBeanFactory.getContentProvider().downloadPage(robotsTxtUrl, true);
+
+			/** the parser takes the array of exact length, so it's copied only if the pooled array is larger */
+			final ResponseBuffer body = response.getResponseBody();
+			try {
+				robotRules = singletonBeanFactory.getSimpleRobotRulesParser().parseContent(robotsTxtUrl, body.toByteArray(),
+						response.getResponseType(), "*");
+			} finally {
+				response.release();
+			}
+
+			if (robotRules != null) {
+				LOG.debug("Parsed robots.txt successfully for url : {}", robotsTxtUrl);
+			} else {
+				LOG.warn("Not able to parsed robots.txt for url : {}", robotsTxtUrl);
+			}
+
+		} catch (Exception e) {
+			LOG.error("Error while parsing robots.txt page, so skipping to follow robots.txt for url : {}", robotsTxtUrl, e);
+		}
+		return robotRules == null ? EMPTY_RULES : robotRules;
+	}
+
+	/**
+	 * The rules of single host, with the time those were downloaded.
+	 */
+	private static class HostRobotRules {
+
+		private final BaseRobotRules rules;
+		private final long fetchedAtMillis = System.currentTimeMillis();
+
+		private HostRobotRules(final BaseRobotRules rules) {
+			this.rules = rules;
+		}
 	}
 }
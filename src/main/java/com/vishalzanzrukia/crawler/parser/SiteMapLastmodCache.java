@@ -0,0 +1,249 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlProcessor;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.MESSAGE_HEADERS;
+
+import redis.clients.jedis.Jedis;
+
+/**
+ * The store of sitemap {@code lastmod} per url (page or child sitemap), so
+ * the urls which are not changed since their last successful fetch are not
+ * queued again by next cycle.<BR>
+ * The {@code lastmod} is parsed as W3C datetime and kept as epoch millis, so
+ * the same time written in other format or zone is not seen as modified. It's
+ * kept in redis hashes: the seen one is written while the sitemap is read,
+ * and it's moved to the fetched one only once the page is fetched (or the
+ * product is parsed), so failed pages are not skipped by next cycle. The
+ * fetched hash is rotated per cycle, the urls skipped as not modified are
+ * carried over to the new one, so the urls missing from sitemaps for a whole
+ * cycle are dropped, and the seen hash is cleared per cycle. The urls without
+ * {@code lastmod} (or with invalid one) are never skipped.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=siteMapLastmods", description = "Sitemap urls skipped by lastmod per crawler cycle")
+public class SiteMapLastmodCache implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The formats of W3C datetime: year, month, date, or date with time and zone (UTC if it's missing) */
+	private static final DateTimeFormatter W3C_DATETIME = new DateTimeFormatterBuilder().parseCaseInsensitive().appendPattern("uuuu[-MM[-dd]]")
+			.optionalStart().appendLiteral('T').append(DateTimeFormatter.ISO_LOCAL_TIME).optionalStart().appendOffsetId().optionalEnd()
+			.optionalEnd().parseDefaulting(ChronoField.MONTH_OF_YEAR, 1).parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+			.parseDefaulting(ChronoField.HOUR_OF_DAY, 0).parseDefaulting(ChronoField.OFFSET_SECONDS, 0).toFormatter();
+
+	/** Moves the seen lastmod of url (ARGV[1]) from seen hash (KEYS[1]) to fetched hash (KEYS[2]) atomically */
+	private static final String MARK_FETCHED_SCRIPT = "local lastmod = redis.call('HGET', KEYS[1], ARGV[1]) "
+			+ "if lastmod then redis.call('HSET', KEYS[2], ARGV[1], lastmod) redis.call('HDEL', KEYS[1], ARGV[1]) end return lastmod";
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	private final AtomicLong checkedUrls = new AtomicLong();
+	private final AtomicLong skippedUrls = new AtomicLong();
+	private final AtomicLong skippedSiteMaps = new AtomicLong();
+
+	private volatile long lastCycleCheckedUrls;
+	private volatile long lastCycleSkippedUrls;
+	private volatile long lastCycleSkippedSiteMaps;
+
+	/**
+	 * Filters out the urls of sitemap batch whose {@code lastmod} is same as
+	 * of their last successful fetch, the {@code lastmod} of remaining urls is
+	 * stored as seen. It's two round trips to redis for lookup (this and
+	 * previous cycle) and at most two for store, per batch.
+	 *
+	 * @param lastmods
+	 *            the url vs its {@code lastmod} (null if not declared), in
+	 *            sitemap order
+	 * @param type
+	 *            the type of sitemap, the urls of index are child sitemaps
+	 * @return the urls to hand over
+	 */
+	public Set<String> filterChanged(final Map<String, String> lastmods, final StreamingSiteMapReader.Type type) {
+		final Set<String> changedUrls = new LinkedHashSet<>(lastmods.size() * 2);
+		final List<String> urls = new ArrayList<>(lastmods.size());
+		final List<String> keys = new ArrayList<>(lastmods.size());
+		final List<String> values = new ArrayList<>(lastmods.size());
+		lastmods.forEach((url, lastmod) -> {
+			final Long lastmodMillis = lastmod == null ? null : toMillis(lastmod);
+			if (lastmodMillis == null) {
+				changedUrls.add(url);
+			} else {
+				urls.add(url);
+				keys.add(getKey(url, type));
+				values.add(lastmodMillis.toString());
+			}
+		});
+		if (keys.isEmpty()) {
+			return changedUrls;
+		}
+
+		final Map<String, String> seenLastmods = new HashMap<>(keys.size() * 2);
+		final Map<String, String> carriedLastmods = new HashMap<>();
+		try (Jedis client = getRedisClient()) {
+			final String[] keyArray = keys.toArray(new String[keys.size()]);
+			final List<String> fetchedLastmods = client.hmget(singletonBeanFactory.getRuntimeConfigs().getFetchedLastmodsRedisKey(), keyArray);
+			final List<String> previousLastmods = client.hmget(singletonBeanFactory.getRuntimeConfigs().getPreviousFetchedLastmodsRedisKey(),
+					keyArray);
+			for (int i = 0; i < urls.size(); i++) {
+				final String lastmod = values.get(i);
+				if (lastmod.equals(fetchedLastmods.get(i))) {
+					continue;
+				}
+				if (lastmod.equals(previousLastmods.get(i))) {
+					/** still fetched, it's kept for next cycle */
+					carriedLastmods.put(keys.get(i), lastmod);
+					continue;
+				}
+				changedUrls.add(urls.get(i));
+				seenLastmods.put(keys.get(i), lastmod);
+			}
+			if (!carriedLastmods.isEmpty()) {
+				client.hmset(singletonBeanFactory.getRuntimeConfigs().getFetchedLastmodsRedisKey(), carriedLastmods);
+			}
+			if (!seenLastmods.isEmpty()) {
+				client.hmset(singletonBeanFactory.getRuntimeConfigs().getSeenLastmodsRedisKey(), seenLastmods);
+			}
+		}
+
+		final int skipped = keys.size() - seenLastmods.size();
+		checkedUrls.addAndGet(keys.size());
+		(type == StreamingSiteMapReader.Type.INDEX ? skippedSiteMaps : skippedUrls).addAndGet(skipped);
+		LOG.trace("Skipped {} of {} {} urls, those are not modified since last fetch", skipped, lastmods.size(), type);
+		return changedUrls;
+	}
+
+	/**
+	 * Marks the seen {@code lastmod} of url as fetched, in single atomic step,
+	 * so the {@code lastmod} seen again meanwhile is not lost. It's called
+	 * only for the urls read from sitemap (see
+	 * {@link MESSAGE_HEADERS#SITEMAP_LASTMOD}), for the other urls it's no-op.
+	 *
+	 * @param url
+	 *            the fetched url, the trimmed one in case of product url
+	 */
+	public void markFetched(final String url) {
+		final String key = singletonBeanFactory.getCrawlerUtils().trimHttps(url);
+		try (Jedis client = getRedisClient()) {
+			client.eval(MARK_FETCHED_SCRIPT, Arrays.asList(singletonBeanFactory.getRuntimeConfigs().getSeenLastmodsRedisKey(),
+					singletonBeanFactory.getRuntimeConfigs().getFetchedLastmodsRedisKey()), Collections.singletonList(key));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}<BR>
+	 * The seen lastmods of last cycle are cleared (those pages were never
+	 * fetched), and the fetched ones become the previous cycle's, so only the
+	 * urls found in sitemaps again are kept.
+	 */
+	@Override
+	public void onNewCycle() {
+		lastCycleCheckedUrls = checkedUrls.getAndSet(0);
+		lastCycleSkippedUrls = skippedUrls.getAndSet(0);
+		lastCycleSkippedSiteMaps = skippedSiteMaps.getAndSet(0);
+
+		LOG.info("Sitemap urls with lastmod in last cycle : {}, skipped as not modified : {} urls and {} child sitemaps", lastCycleCheckedUrls,
+				lastCycleSkippedUrls, lastCycleSkippedSiteMaps);
+
+		if (singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()) {
+			final String fetchedKey = singletonBeanFactory.getRuntimeConfigs().getFetchedLastmodsRedisKey();
+			final String previousKey = singletonBeanFactory.getRuntimeConfigs().getPreviousFetchedLastmodsRedisKey();
+			try (Jedis client = getRedisClient()) {
+				client.del(singletonBeanFactory.getRuntimeConfigs().getSeenLastmodsRedisKey());
+				if (client.exists(fetchedKey)) {
+					client.rename(fetchedKey, previousKey);
+				} else {
+					client.del(previousKey);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the {@code lastmod} as W3C datetime.
+	 *
+	 * @param lastmod
+	 *            the {@code lastmod} as written in sitemap
+	 * @return the epoch millis, or null if it's not valid W3C datetime
+	 */
+	@VisibleForTesting
+	static Long toMillis(final String lastmod) {
+		try {
+			return OffsetDateTime.parse(lastmod, W3C_DATETIME).toInstant().toEpochMilli();
+		} catch (DateTimeException e) {
+			LOG.debug("Not able to parse the lastmod : {}, the url is not skipped", lastmod);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the key of the url in store, the product urls are trimmed same as
+	 * the url of product message, so the key matches on
+	 * {@link #markFetched(String)}.
+	 */
+	private String getKey(final String url, final StreamingSiteMapReader.Type type) {
+		final UrlProcessor urlProcessor = singletonBeanFactory.getComponentRegistry().getUrlProcessor();
+		String keyUrl = url;
+		if (type == StreamingSiteMapReader.Type.URLSET && urlProcessor.isProductUrl(url)) {
+			final String productUrl = urlProcessor.trimProductUrl(url);
+			keyUrl = productUrl == null ? url : productUrl;
+		}
+		return singletonBeanFactory.getCrawlerUtils().trimHttps(keyUrl);
+	}
+
+	@ManagedAttribute(description = "Sitemap urls with lastmod checked in current cycle")
+	public long getCheckedUrls() {
+		return checkedUrls.get();
+	}
+
+	@ManagedAttribute(description = "Page urls skipped as not modified in current cycle")
+	public long getSkippedUrls() {
+		return skippedUrls.get();
+	}
+
+	@ManagedAttribute(description = "Child sitemaps skipped as not modified in current cycle")
+	public long getSkippedSiteMaps() {
+		return skippedSiteMaps.get();
+	}
+
+	@ManagedAttribute(description = "Page urls skipped as not modified in last cycle")
+	public long getLastCycleSkippedUrls() {
+		return lastCycleSkippedUrls;
+	}
+
+	@ManagedAttribute(description = "Child sitemaps skipped as not modified in last cycle")
+	public long getLastCycleSkippedSiteMaps() {
+		return lastCycleSkippedSiteMaps;
+	}
+
+	private Jedis getRedisClient() {
+		return singletonBeanFactory.getJedisPool().getResource();
+	}
+}
@@ -0,0 +1,258 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import crawlercommons.sitemaps.UnknownFormatException;
+
+/**
+ * Reads the xml sitemap or sitemap index as stream of StAX events, the
+ * gzipped sitemap is decompressed while it's read. The entries are handed
+ * over in batches of fixed size as soon as they are read, so memory does not
+ * grow with the size of sitemap (unlike {@link PooledSiteMapParser}, which
+ * builds the whole sitemap with all its urls first).<BR>
+ * Only the {@code urlset} and {@code sitemapindex} formats are read, the
+ * other formats (text, RSS, Atom) are rejected with
+ * {@link UnknownFormatException} before any entry is handed over, so they can
+ * be parsed by {@link PooledSiteMapParser}.
+ *
+ * @author VishalZanzrukia
+ */
+public class StreamingSiteMapReader {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final int GZIP_MAGIC_FIRST = 0x1f;
+	private static final int GZIP_MAGIC_SECOND = 0x8b;
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String ELEMENT_LOC = "loc";
+	private static final String ELEMENT_LASTMOD = "lastmod";
+
+	/** The depth of loc and lastmod elements, under root and entry elements */
+	private static final int FIELD_DEPTH = 3;
+
+	/** The factory is thread safe once configured */
+	private static final XMLInputFactory XML_INPUT_FACTORY = createFactory();
+
+	/**
+	 * The formats of sitemap which are read.
+	 */
+	public enum Type {
+
+		URLSET("urlset", "url"), INDEX("sitemapindex", "sitemap");
+
+		private final String rootElement;
+		private final String entryElement;
+
+		private Type(final String rootElement, final String entryElement) {
+			this.rootElement = rootElement;
+			this.entryElement = entryElement;
+		}
+	}
+
+	/**
+	 * The url of sitemap, or of child sitemap of the index, with its
+	 * {@code lastmod} as it's written in sitemap.
+	 */
+	public static class Entry {
+
+		private final String url;
+		private final String lastModified;
+
+		Entry(final String url, final String lastModified) {
+			this.url = url;
+			this.lastModified = lastModified;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+	}
+
+	private final int batchSize;
+
+	/** The type of sitemap being read, known once its root element is read */
+	private Type type;
+
+	/**
+	 * Instantiates a new reader.
+	 *
+	 * @param batchSize
+	 *            the max entries handed over at once
+	 */
+	public StreamingSiteMapReader(final int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Reads the sitemap, the entries with invalid url are skipped. If the xml
+	 * is broken after some entries, the entries read till then are kept.
+	 *
+	 * @param body
+	 *            the body of sitemap, gzipped or not
+	 * @param batchConsumer
+	 *            the consumer of entries, the batch is not used by reader
+	 *            once it's handed over
+	 * @return the type of sitemap
+	 * @throws UnknownFormatException
+	 *             if the body is not xml sitemap or sitemap index
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public Type read(final InputStream body, final Consumer<List<Entry>> batchConsumer) throws UnknownFormatException, IOException {
+		final InputStream in = decompress(body);
+		type = null;
+		List<Entry> batch = new ArrayList<>(batchSize);
+		int entries = 0;
+
+		XMLStreamReader reader = null;
+		try {
+			/** the encoding is detected from the xml declaration */
+			reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+			int depth = 0;
+			boolean inEntry = false;
+			String loc = null;
+			String lastModified = null;
+
+			while (reader.hasNext()) {
+				final int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					final String name = reader.getLocalName();
+					if (type == null) {
+						type = getType(name);
+						continue;
+					}
+					if (depth == FIELD_DEPTH - 1 && type.entryElement.equals(name)) {
+						inEntry = true;
+						loc = null;
+						lastModified = null;
+					} else if (inEntry && depth == FIELD_DEPTH && (ELEMENT_LOC.equals(name) || ELEMENT_LASTMOD.equals(name))) {
+						/** the text is read till end of element */
+						final String text = reader.getElementText().trim();
+						depth--;
+						if (ELEMENT_LOC.equals(name)) {
+							loc = text;
+						} else {
+							lastModified = text.isEmpty() ? null : text;
+						}
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+					if (inEntry && depth == FIELD_DEPTH - 2) {
+						inEntry = false;
+						if (isValid(loc)) {
+							batch.add(new Entry(loc, lastModified));
+							entries++;
+						}
+						if (batch.size() == batchSize) {
+							batchConsumer.accept(batch);
+							batch = new ArrayList<>(batchSize);
+						}
+					}
+				}
+			}
+		} catch (XMLStreamException e) {
+			if (type == null) {
+				throw new UnknownFormatException("Not able to read the xml sitemap : " + e.getMessage());
+			}
+			LOG.warn("Error while reading the sitemap, keeping {} entries read so far : {}", entries, e.getMessage());
+		} finally {
+			close(reader);
+		}
+
+		if (type == null) {
+			throw new UnknownFormatException("The xml has no root element of sitemap");
+		}
+		if (!batch.isEmpty()) {
+			batchConsumer.accept(batch);
+		}
+		return type;
+	}
+
+	/**
+	 * Gets the type of sitemap being read, so consumer knows the type of
+	 * entries.
+	 *
+	 * @return the type, null till the root element is read
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the type of sitemap from its root element.
+	 */
+	private Type getType(final String rootElement) throws UnknownFormatException {
+		for (final Type type : Type.values()) {
+			if (type.rootElement.equals(rootElement)) {
+				return type;
+			}
+		}
+		throw new UnknownFormatException("Not a sitemap or sitemap index, root element : " + rootElement);
+	}
+
+	/**
+	 * Decompresses the body if it starts with gzip header, the body can be
+	 * decompressed already if it was sent with {@code Content-Encoding}.
+	 */
+	private InputStream decompress(final InputStream body) throws IOException {
+		final BufferedInputStream in = new BufferedInputStream(body, BUFFER_SIZE);
+		in.mark(2);
+		final boolean gzipped = in.read() == GZIP_MAGIC_FIRST && in.read() == GZIP_MAGIC_SECOND;
+		in.reset();
+		return gzipped ? new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE) : in;
+	}
+
+	private boolean isValid(final String loc) {
+		if (loc == null || loc.isEmpty()) {
+			return false;
+		}
+		try {
+			new URL(loc);
+			return true;
+		} catch (MalformedURLException e) {
+			LOG.debug("Skipping invalid url of sitemap : {}", loc);
+			return false;
+		}
+	}
+
+	private void close(final XMLStreamReader reader) {
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				LOG.trace("Error while closing the sitemap reader", e);
+			}
+		}
+	}
+
+	private static XMLInputFactory createFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		/** sitemaps never need DTDs, so external entities are never resolved */
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+}
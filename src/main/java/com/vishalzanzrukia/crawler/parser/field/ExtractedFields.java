@@ -0,0 +1,88 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * The field values extracted from single document by {@link FieldExtractor},
+ * and by {@link StructuredDataExtractor} before that.
+ *
+ * @author VishalZanzrukia
+ */
+public class ExtractedFields {
+
+	/** The field name vs values, in document order */
+	private final Map<String, List<String>> values;
+
+	/** The fields read from structured data, their values are normalized */
+	private final Set<String> structuredFields = new HashSet<>();
+
+	ExtractedFields(final int fields) {
+		this.values = new HashMap<>(fields * 2);
+	}
+
+	void add(final String field, final String value) {
+		values.computeIfAbsent(field, key -> new ArrayList<>(1)).add(value);
+	}
+
+	void addStructured(final String field, final String value) {
+		add(field, value);
+		structuredFields.add(field);
+	}
+
+	boolean has(final String field) {
+		return values.containsKey(field);
+	}
+
+	int getStructuredFieldCount() {
+		return structuredFields.size();
+	}
+
+	/**
+	 * Checks whether the field is read from structured data of the page, see
+	 * {@link StructuredDataExtractor} for the format of its values.
+	 *
+	 * @param field
+	 *            the field name
+	 * @return true, if the field is read from structured data
+	 */
+	public boolean isStructured(final String field) {
+		return structuredFields.contains(field);
+	}
+
+	/**
+	 * Gets the value of the field.
+	 *
+	 * @param field
+	 *            the field name
+	 * @return the value of first matching element, or null if nothing matched
+	 */
+	public String get(final String field) {
+		final List<String> fieldValues = values.get(field);
+		return fieldValues == null ? null : fieldValues.get(0);
+	}
+
+	/**
+	 * Gets all the values of the field.
+	 *
+	 * @param field
+	 *            the field name
+	 * @return the values, empty if nothing matched
+	 */
+	public List<String> getAll(final String field) {
+		final List<String> fieldValues = values.get(field);
+		return fieldValues == null ? Collections.emptyList() : Collections.unmodifiableList(fieldValues);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("values", values).append("structuredFields", structuredFields).toString();
+	}
+}
@@ -0,0 +1,158 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeFilter;
+import org.jsoup.select.NodeTraversor;
+
+/**
+ * Evaluates all the {@link FieldRule}s of a product parser in single
+ * traversal of the document, so the number of DOM walks per page does not
+ * grow with the number of fields. Each element is matched against the rules
+ * which are not resolved yet, and the traversal is stopped once all single
+ * value rules are resolved (if there is no rule for all values).<BR>
+ * If more than one rule is declared for same field, they are fallbacks in
+ * the order of declaration, the value of first rule which matched is used.<BR>
+ * The fields which are already found (e.g. from structured data) are not
+ * searched at all, see {@link #extract(Element, ExtractedFields)}.
+ *
+ * @author VishalZanzrukia
+ */
+public class FieldExtractor {
+
+	private final FieldRule[] rules;
+
+	public FieldExtractor(final List<FieldRule> rules) {
+		this.rules = rules.toArray(new FieldRule[rules.size()]);
+	}
+
+	/**
+	 * Extracts the fields from the document.
+	 *
+	 * @param root
+	 *            the document (or root element)
+	 * @return the extracted fields
+	 */
+	public ExtractedFields extract(final Element root) {
+		final ExtractedFields fields = new ExtractedFields(rules.length);
+		extract(root, fields);
+		return fields;
+	}
+
+	/**
+	 * Extracts only the fields which are not found yet.
+	 *
+	 * @param root
+	 *            the document (or root element)
+	 * @param fields
+	 *            the fields found so far, the extracted fields are added to
+	 *            it
+	 */
+	public void extract(final Element root, final ExtractedFields fields) {
+		final FieldFilter filter = new FieldFilter(root, fields);
+		if (filter.pendingRules > 0 || filter.multipleRules) {
+			NodeTraversor.filter(filter, root);
+		}
+
+		for (int i = 0; i < rules.length; i++) {
+			final FieldRule rule = rules[i];
+			if (filter.skipped[i]) {
+				continue;
+			}
+			if (rule.isMultiple()) {
+				filter.ruleValues.get(i).forEach(value -> fields.add(rule.getField(), value));
+			} else if (filter.resolved[i] && !fields.has(rule.getField())) {
+				fields.add(rule.getField(), filter.ruleValues.get(i).get(0));
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the document is needed for the fields which are not
+	 * found yet.
+	 *
+	 * @param fields
+	 *            the fields found so far
+	 * @return true, if any field of the rules is not found
+	 */
+	public boolean isDocumentNeeded(final ExtractedFields fields) {
+		for (final FieldRule rule : rules) {
+			if (!fields.has(rule.getField())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether any rule is declared for the field.
+	 *
+	 * @param field
+	 *            the field name
+	 * @return true, if the field is extracted by the rules
+	 */
+	public boolean hasRule(final String field) {
+		for (final FieldRule rule : rules) {
+			if (rule.getField().equals(field)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The visitor of single traversal.
+	 */
+	private class FieldFilter implements NodeFilter {
+
+		private final Element root;
+		private final List<List<String>> ruleValues = new ArrayList<>(rules.length);
+		private final boolean[] skipped = new boolean[rules.length];
+		private final boolean[] resolved = new boolean[rules.length];
+		private int pendingRules;
+		private boolean multipleRules;
+
+		private FieldFilter(final Element root, final ExtractedFields fields) {
+			this.root = root;
+			for (int i = 0; i < rules.length; i++) {
+				ruleValues.add(new ArrayList<>(1));
+				/** the skipped rules are never matched */
+				skipped[i] = fields.has(rules[i].getField());
+				resolved[i] = skipped[i];
+				if (!skipped[i]) {
+					pendingRules += rules[i].isMultiple() ? 0 : 1;
+					multipleRules |= rules[i].isMultiple();
+				}
+			}
+		}
+
+		@Override
+		public FilterResult head(final Node node, final int depth) {
+			if (!(node instanceof Element)) {
+				return FilterResult.CONTINUE;
+			}
+
+			final Element element = (Element) node;
+			for (int i = 0; i < rules.length; i++) {
+				final FieldRule rule = rules[i];
+				if (resolved[i] || !rule.matches(root, element)) {
+					continue;
+				}
+				ruleValues.get(i).add(rule.getValue(element));
+				if (!rule.isMultiple()) {
+					resolved[i] = true;
+					pendingRules--;
+				}
+			}
+			return pendingRules == 0 && !multipleRules ? FilterResult.STOP : FilterResult.CONTINUE;
+		}
+
+		@Override
+		public FilterResult tail(final Node node, final int depth) {
+			return FilterResult.CONTINUE;
+		}
+	}
+}
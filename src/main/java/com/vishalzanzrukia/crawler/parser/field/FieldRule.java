@@ -0,0 +1,116 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import java.util.function.Function;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+/**
+ * The rule to extract one product field from the document, the css query is
+ * compiled once when the rule is declared, so no selector is built or parsed
+ * while parsing the pages.<BR>
+ * The value is taken from the first matching element (same as
+ * {@code document.select(query).first()}), or from all matching elements for
+ * the rules created by {@link #allTexts(String, String)}.
+ *
+ * @author VishalZanzrukia
+ */
+public final class FieldRule {
+
+	private static final String ATTRIBUTE_CONTENT = "content";
+
+	private final String field;
+	private final String cssQuery;
+	private final Evaluator evaluator;
+	private final Function<Element, String> value;
+	private final boolean multiple;
+
+	private FieldRule(final String field, final String cssQuery, final Function<Element, String> value, final boolean multiple) {
+		this.field = field;
+		this.cssQuery = cssQuery;
+		this.evaluator = QueryParser.parse(cssQuery);
+		this.value = value;
+		this.multiple = multiple;
+	}
+
+	/**
+	 * The rule which extracts the text of first matching element.
+	 *
+	 * @param field
+	 *            the field name
+	 * @param cssQuery
+	 *            the css query
+	 * @return the rule
+	 */
+	public static FieldRule text(final String field, final String cssQuery) {
+		return new FieldRule(field, cssQuery, Element::text, false);
+	}
+
+	/**
+	 * The rule which extracts the texts of all matching elements.
+	 *
+	 * @param field
+	 *            the field name
+	 * @param cssQuery
+	 *            the css query
+	 * @return the rule
+	 */
+	public static FieldRule allTexts(final String field, final String cssQuery) {
+		return new FieldRule(field, cssQuery, Element::text, true);
+	}
+
+	/**
+	 * The rule which extracts the attribute of first matching element.
+	 *
+	 * @param field
+	 *            the field name
+	 * @param cssQuery
+	 *            the css query
+	 * @param attributeKey
+	 *            the attribute key, {@code abs:} prefix is supported
+	 * @return the rule
+	 */
+	public static FieldRule attribute(final String field, final String cssQuery, final String attributeKey) {
+		return new FieldRule(field, cssQuery, element -> element.attr(attributeKey), false);
+	}
+
+	/**
+	 * The rule which extracts the content of meta tag, e.g.
+	 * {@code <meta name="description" content="...">}.
+	 *
+	 * @param field
+	 *            the field name
+	 * @param identifierKey
+	 *            the attribute which identifies the meta tag, like
+	 *            {@code name} or {@code property}
+	 * @param propertyName
+	 *            the value of identifier attribute
+	 * @return the rule
+	 */
+	public static FieldRule meta(final String field, final String identifierKey, final String propertyName) {
+		return attribute(field, "meta[" + identifierKey + "='" + propertyName + "']", ATTRIBUTE_CONTENT);
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	boolean isMultiple() {
+		return multiple;
+	}
+
+	boolean matches(final Element root, final Element element) {
+		return evaluator.matches(root, element);
+	}
+
+	String getValue(final Element element) {
+		return value.apply(element);
+	}
+
+	@Override
+	public String toString() {
+		return new ToStringBuilder(this).append("field", field).append("cssQuery", cssQuery).append("multiple", multiple).toString();
+	}
+}
@@ -0,0 +1,21 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+/**
+ * The names of product fields, used by the {@link FieldRule}s of domain
+ * parsers and by {@link StructuredDataExtractor}.
+ *
+ * @author VishalZanzrukia
+ */
+public final class ProductFields {
+
+	public static final String BARCODE = "barcode";
+	public static final String PRICE = "price";
+	public static final String WEIGHT = "weight";
+	public static final String DIMENSIONS = "dimensions";
+	public static final String TITLE = "title";
+	public static final String DESCRIPTION = "description";
+	public static final String KEYWORDS = "keywords";
+
+	private ProductFields() {
+	}
+}
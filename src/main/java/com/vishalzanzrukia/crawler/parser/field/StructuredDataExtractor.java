@@ -0,0 +1,447 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.vishalzanzrukia.crawler.util.HtmlByteScanner;
+
+/**
+ * Reads the product fields from structured data of the page, without building
+ * the document: schema.org {@code Product} of JSON-LD blocks, OpenGraph and
+ * product meta tags, and microdata properties with {@code content} attribute.
+ * The tags are scanned on raw bytes by {@link HtmlByteScanner} and JSON-LD
+ * blocks are read by streaming JSON parser, only the values of interest are
+ * kept.<BR>
+ * The values are normalized, so they are same for all domains: price is plain
+ * decimal, weight is in grams and dimensions are width, height and depth in
+ * millimetres. The values of JSON-LD are preferred over the meta tags, the
+ * quantities without known unit are skipped.
+ *
+ * @author VishalZanzrukia
+ */
+public final class StructuredDataExtractor extends HtmlByteScanner {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The longer JSON-LD blocks are skipped */
+	private static final int MAX_JSON_LD_BYTES = 1 << 20;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private static final String TAG_SCRIPT = "script";
+	private static final String TAG_META = "meta";
+	private static final String ATTRIBUTE_TYPE = "type";
+	private static final String ATTRIBUTE_PROPERTY = "property";
+	private static final String ATTRIBUTE_NAME = "name";
+	private static final String ATTRIBUTE_ITEMPROP = "itemprop";
+	private static final String ATTRIBUTE_CONTENT = "content";
+	private static final String JSON_LD_TYPE = "application/ld+json";
+
+	private static final String KEY_TYPE = "@type";
+	private static final String KEY_NAME = "name";
+	private static final String KEY_DESCRIPTION = "description";
+	private static final String KEY_OFFERS = "offers";
+	private static final String KEY_PRICE = "price";
+	private static final String KEY_LOW_PRICE = "lowPrice";
+	private static final String KEY_PRICE_SPECIFICATION = "priceSpecification";
+	private static final String KEY_WEIGHT = "weight";
+	private static final String KEY_WIDTH = "width";
+	private static final String KEY_HEIGHT = "height";
+	private static final String KEY_DEPTH = "depth";
+	private static final String KEY_VALUE = "value";
+	private static final String KEY_UNIT_CODE = "unitCode";
+	private static final String KEY_UNIT_TEXT = "unitText";
+
+	/** The barcode keys, in order of preference */
+	private static final String[] GTIN_KEYS = {"gtin13", "gtin", "gtin12", "gtin14", "gtin8"};
+
+	private static final Set<String> PRODUCT_TYPES = new HashSet<>(Arrays.asList("Product", "IndividualProduct", "ProductModel", "SomeProducts"));
+
+	/** The scalar values kept from JSON-LD objects */
+	private static final Set<String> VALUE_KEYS = new HashSet<>(Arrays.asList(KEY_NAME, KEY_DESCRIPTION, KEY_PRICE, KEY_LOW_PRICE, KEY_WEIGHT,
+			KEY_WIDTH, KEY_HEIGHT, KEY_DEPTH, KEY_VALUE, KEY_UNIT_CODE, KEY_UNIT_TEXT));
+
+	/** The nested objects kept from JSON-LD objects, others are only searched for products */
+	private static final Set<String> CHILD_KEYS = new HashSet<>(
+			Arrays.asList(KEY_OFFERS, KEY_PRICE_SPECIFICATION, KEY_WEIGHT, KEY_WIDTH, KEY_HEIGHT, KEY_DEPTH));
+
+	/** The meta property (or name, itemprop) vs field */
+	private static final Map<String, String> META_FIELDS = new HashMap<>();
+
+	/** The unit (UN/CEFACT code or text, in lower case) vs grams */
+	private static final Map<String, Double> WEIGHT_UNITS = new HashMap<>();
+
+	/** The unit (UN/CEFACT code or text, in lower case) vs millimetres */
+	private static final Map<String, Double> LENGTH_UNITS = new HashMap<>();
+
+	/** The quantity as text, e.g. {@code 1.5 kg} */
+	private static final Pattern QUANTITY_PATTERN = Pattern.compile("^\\s*([0-9]+(?:\\.[0-9]+)?)\\s*([a-zA-Z]*)\\s*$");
+
+	static {
+		VALUE_KEYS.addAll(Arrays.asList(GTIN_KEYS));
+
+		META_FIELDS.put("og:title", ProductFields.TITLE);
+		META_FIELDS.put("og:description", ProductFields.DESCRIPTION);
+		META_FIELDS.put("description", ProductFields.DESCRIPTION);
+		META_FIELDS.put("keywords", ProductFields.KEYWORDS);
+		META_FIELDS.put("product:price:amount", ProductFields.PRICE);
+		META_FIELDS.put("og:price:amount", ProductFields.PRICE);
+		META_FIELDS.put("price", ProductFields.PRICE);
+		for (final String gtinKey : GTIN_KEYS) {
+			META_FIELDS.put(gtinKey, ProductFields.BARCODE);
+		}
+
+		WEIGHT_UNITS.put("grm", 1d);
+		WEIGHT_UNITS.put("g", 1d);
+		WEIGHT_UNITS.put("kgm", 1000d);
+		WEIGHT_UNITS.put("kg", 1000d);
+		WEIGHT_UNITS.put("lbr", 453.59237d);
+		WEIGHT_UNITS.put("lb", 453.59237d);
+		WEIGHT_UNITS.put("lbs", 453.59237d);
+		WEIGHT_UNITS.put("onz", 28.349523125d);
+		WEIGHT_UNITS.put("oz", 28.349523125d);
+
+		LENGTH_UNITS.put("mmt", 1d);
+		LENGTH_UNITS.put("mm", 1d);
+		LENGTH_UNITS.put("cmt", 10d);
+		LENGTH_UNITS.put("cm", 10d);
+		LENGTH_UNITS.put("mtr", 1000d);
+		LENGTH_UNITS.put("m", 1000d);
+		LENGTH_UNITS.put("inh", 25.4d);
+		LENGTH_UNITS.put("in", 25.4d);
+		LENGTH_UNITS.put("fot", 304.8d);
+		LENGTH_UNITS.put("ft", 304.8d);
+	}
+
+	/** The product found in JSON-LD, the least nested one is kept */
+	private JsonLdObject product;
+
+	/** The field vs value of first meta tag */
+	private final Map<String, String> metaValues = new HashMap<>();
+
+	private StructuredDataExtractor(final InputStream in, final Charset charset) {
+		super(in, charset, MAX_JSON_LD_BYTES);
+	}
+
+	/**
+	 * Extracts the product fields from structured data of the page.
+	 *
+	 * @param body
+	 *            the body stream, it's closed by this method
+	 * @param charsetName
+	 *            the charset of the body, or null for UTF-8
+	 * @return the fields, all of them are marked as structured, empty if
+	 *         charset is not supported (see
+	 *         {@link HtmlByteScanner#isSupported(String)})
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ExtractedFields extract(final InputStream body, final String charsetName) throws IOException {
+		final ExtractedFields fields = new ExtractedFields(8);
+		try (InputStream in = body) {
+			if (!isSupported(charsetName)) {
+				return fields;
+			}
+			final Charset charset = charsetName == null ? StandardCharsets.UTF_8 : Charset.forName(charsetName);
+			final StructuredDataExtractor extractor = new StructuredDataExtractor(in, charset);
+			extractor.scan();
+			extractor.addProductFields(fields);
+			extractor.addMetaFields(fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * The type of script and the meta, microdata properties are kept.
+	 */
+	@Override
+	protected boolean isAttributeNeeded(final String tagName, final String attributeName) {
+		if (TAG_SCRIPT.equals(tagName)) {
+			return ATTRIBUTE_TYPE.equals(attributeName);
+		}
+		if (TAG_META.equals(tagName) && (ATTRIBUTE_PROPERTY.equals(attributeName) || ATTRIBUTE_NAME.equals(attributeName))) {
+			return true;
+		}
+		return ATTRIBUTE_ITEMPROP.equals(attributeName) || ATTRIBUTE_CONTENT.equals(attributeName);
+	}
+
+	@Override
+	protected void handleTag(final String tagName, final Map<String, String> attributes) {
+		final String content = attributes.get(ATTRIBUTE_CONTENT);
+		if (content == null) {
+			return;
+		}
+		String property = attributes.get(ATTRIBUTE_PROPERTY);
+		if (property == null) {
+			property = attributes.get(ATTRIBUTE_NAME);
+		}
+		if (property == null) {
+			property = attributes.get(ATTRIBUTE_ITEMPROP);
+		}
+		final String field = property == null ? null : META_FIELDS.get(property.trim().toLowerCase());
+		if (field != null && !content.trim().isEmpty()) {
+			metaValues.putIfAbsent(field, content.trim());
+		}
+	}
+
+	@Override
+	protected boolean isRawTextNeeded(final String tagName, final Map<String, String> attributes) {
+		final String type = attributes.get(ATTRIBUTE_TYPE);
+		return TAG_SCRIPT.equals(tagName) && type != null && type.trim().toLowerCase().startsWith(JSON_LD_TYPE);
+	}
+
+	@Override
+	protected void handleRawText(final String tagName, final byte[] text, final int length) {
+		try (JsonParser parser = createParser(text, length)) {
+			final JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				readObject(parser, 0);
+			} else if (token == JsonToken.START_ARRAY) {
+				readArray(parser, null, new JsonLdObject(0), 1);
+			}
+		} catch (IOException e) {
+			/** the malformed blocks are common, the fields are taken from document then */
+			LOG.debug("Skipping malformed JSON-LD block", e);
+		}
+	}
+
+	private JsonParser createParser(final byte[] text, final int length) throws IOException {
+		final Charset charset = getCharset();
+		if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)) {
+			return JSON_FACTORY.createParser(text, 0, length);
+		}
+		return JSON_FACTORY.createParser(new String(text, 0, length, charset));
+	}
+
+	/**
+	 * Reads the JSON object, only the values and nested objects of interest are
+	 * kept, the products are collected at any level.
+	 */
+	private JsonLdObject readObject(final JsonParser parser, final int depth) throws IOException {
+		final JsonLdObject object = new JsonLdObject(depth);
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			final String key = parser.getCurrentName();
+			final JsonToken token = parser.nextToken();
+			if (KEY_TYPE.equals(key)) {
+				object.product |= readProductType(parser, token);
+			} else if (token == JsonToken.START_OBJECT) {
+				object.addChild(key, readObject(parser, depth + 1));
+			} else if (token == JsonToken.START_ARRAY) {
+				readArray(parser, key, object, depth + 1);
+			} else if (token.isScalarValue() && VALUE_KEYS.contains(key)) {
+				object.values.putIfAbsent(key, parser.getText());
+			}
+		}
+
+		if (object.product && (product == null || object.depth < product.depth)) {
+			product = object;
+		}
+		return object;
+	}
+
+	/**
+	 * Reads the array value of the key, the objects are added as children and
+	 * first scalar as value of the parent.
+	 */
+	private void readArray(final JsonParser parser, final String key, final JsonLdObject parent, final int depth) throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+			if (token == JsonToken.START_OBJECT) {
+				parent.addChild(key, readObject(parser, depth));
+			} else if (token == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			} else if (key != null && VALUE_KEYS.contains(key)) {
+				parent.values.putIfAbsent(key, parser.getText());
+			}
+		}
+	}
+
+	private boolean readProductType(final JsonParser parser, final JsonToken token) throws IOException {
+		if (token == JsonToken.VALUE_STRING) {
+			return isProductType(parser.getText());
+		}
+		boolean productType = false;
+		if (token == JsonToken.START_ARRAY) {
+			JsonToken item;
+			while ((item = parser.nextToken()) != JsonToken.END_ARRAY && item != null) {
+				if (item == JsonToken.VALUE_STRING) {
+					productType |= isProductType(parser.getText());
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} else {
+			parser.skipChildren();
+		}
+		return productType;
+	}
+
+	/**
+	 * Checks the type, with or without vocabulary, e.g.
+	 * {@code http://schema.org/Product}.
+	 */
+	private static boolean isProductType(final String type) {
+		final int separator = Math.max(type.lastIndexOf('/'), type.lastIndexOf(':'));
+		return PRODUCT_TYPES.contains(type.substring(separator + 1).trim());
+	}
+
+	private void addProductFields(final ExtractedFields fields) {
+		if (product == null) {
+			return;
+		}
+		addField(fields, ProductFields.TITLE, product.values.get(KEY_NAME));
+		addField(fields, ProductFields.DESCRIPTION, product.values.get(KEY_DESCRIPTION));
+		addField(fields, ProductFields.PRICE, getOfferPrice());
+		addField(fields, ProductFields.WEIGHT, getQuantity(product, KEY_WEIGHT, WEIGHT_UNITS));
+		for (final String gtinKey : GTIN_KEYS) {
+			if (addField(fields, ProductFields.BARCODE, product.values.get(gtinKey))) {
+				break;
+			}
+		}
+
+		final String width = getQuantity(product, KEY_WIDTH, LENGTH_UNITS);
+		final String height = getQuantity(product, KEY_HEIGHT, LENGTH_UNITS);
+		final String depth = getQuantity(product, KEY_DEPTH, LENGTH_UNITS);
+		if (width != null && height != null && depth != null) {
+			fields.addStructured(ProductFields.DIMENSIONS, width);
+			fields.addStructured(ProductFields.DIMENSIONS, height);
+			fields.addStructured(ProductFields.DIMENSIONS, depth);
+		}
+	}
+
+	private void addMetaFields(final ExtractedFields fields) {
+		for (final Map.Entry<String, String> metaValue : metaValues.entrySet()) {
+			if (!fields.has(metaValue.getKey())) {
+				final String value = ProductFields.PRICE.equals(metaValue.getKey()) ? normalizePrice(metaValue.getValue()) : metaValue.getValue();
+				addField(fields, metaValue.getKey(), value);
+			}
+		}
+	}
+
+	private static boolean addField(final ExtractedFields fields, final String field, final String value) {
+		if (value == null || value.trim().isEmpty() || fields.has(field)) {
+			return false;
+		}
+		fields.addStructured(field, value.trim());
+		return true;
+	}
+
+	/**
+	 * Gets the price of first offer which has it, {@code lowPrice} for
+	 * aggregate offer.
+	 */
+	private String getOfferPrice() {
+		for (final JsonLdObject offer : product.getChildren(KEY_OFFERS)) {
+			String price = offer.values.get(KEY_PRICE);
+			if (price == null) {
+				price = offer.values.get(KEY_LOW_PRICE);
+			}
+			for (final JsonLdObject specification : offer.getChildren(KEY_PRICE_SPECIFICATION)) {
+				if (price == null) {
+					price = specification.values.get(KEY_PRICE);
+				}
+			}
+			final String normalized = normalizePrice(price);
+			if (normalized != null) {
+				return normalized;
+			}
+		}
+		return null;
+	}
+
+	private static String normalizePrice(final String price) {
+		if (price == null) {
+			return null;
+		}
+		try {
+			return new BigDecimal(price.trim()).toPlainString();
+		} catch (NumberFormatException e) {
+			LOG.trace("Skipping the price which is not decimal : {}", price);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the quantity, either {@code QuantitativeValue} object or text with
+	 * unit, converted by the given units.
+	 *
+	 * @return the rounded quantity, or null if value or unit is not known
+	 */
+	private static String getQuantity(final JsonLdObject object, final String key, final Map<String, Double> units) {
+		String value = null;
+		String unit = null;
+		final List<JsonLdObject> quantities = object.getChildren(key);
+		if (!quantities.isEmpty()) {
+			value = quantities.get(0).values.get(KEY_VALUE);
+			unit = quantities.get(0).values.get(KEY_UNIT_CODE);
+			if (unit == null) {
+				unit = quantities.get(0).values.get(KEY_UNIT_TEXT);
+			}
+		} else if (object.values.containsKey(key)) {
+			final Matcher matcher = QUANTITY_PATTERN.matcher(object.values.get(key));
+			if (matcher.matches()) {
+				value = matcher.group(1);
+				unit = matcher.group(2);
+			}
+		}
+
+		final Double factor = unit == null ? null : units.get(unit.trim().toLowerCase());
+		if (value == null || factor == null) {
+			return null;
+		}
+		try {
+			return String.valueOf(Math.round(Double.parseDouble(value.trim()) * factor));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The JSON-LD object, with only the values of interest.
+	 */
+	private static final class JsonLdObject {
+
+		private final int depth;
+		private boolean product;
+		private final Map<String, String> values = new HashMap<>(8);
+		private Map<String, List<JsonLdObject>> children;
+
+		private JsonLdObject(final int depth) {
+			this.depth = depth;
+		}
+
+		private void addChild(final String key, final JsonLdObject child) {
+			if (key == null || !CHILD_KEYS.contains(key)) {
+				return;
+			}
+			if (children == null) {
+				children = new HashMap<>(4);
+			}
+			children.computeIfAbsent(key, k -> new ArrayList<>(1)).add(child);
+		}
+
+		private List<JsonLdObject> getChildren(final String key) {
+			final List<JsonLdObject> keyChildren = children == null ? null : children.get(key);
+			return keyChildren == null ? Collections.emptyList() : keyChildren;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.CrawlCycleListener;
+
+/**
+ * The hit rate of {@link StructuredDataExtractor} per domain: the product
+ * pages which had structured data, and the pages which were not parsed as
+ * document at all because structured data had all the fields, also exposed
+ * through JMX.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+@ManagedResource(objectName = "crawler:name=structuredDataStats", description = "Structured data hit rate of product pages per domain")
+public class StructuredDataStats implements CrawlCycleListener {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** The domain name vs hits of that domain */
+	private final Map<String, DomainHits> domainHits = new ConcurrentHashMap<>();
+
+	/**
+	 * Records the fields extracted from the product page.
+	 *
+	 * @param domainName
+	 *            the domain name of product parser
+	 * @param fields
+	 *            the extracted fields
+	 * @param documentParsed
+	 *            whether the document was parsed for the missing fields
+	 */
+	public void record(final String domainName, final ExtractedFields fields, final boolean documentParsed) {
+		final DomainHits hits = domainHits.computeIfAbsent(domainName, domain -> new DomainHits());
+		hits.pages.incrementAndGet();
+		final int structuredFields = fields.getStructuredFieldCount();
+		if (structuredFields > 0) {
+			hits.structuredPages.incrementAndGet();
+			hits.structuredFields.addAndGet(structuredFields);
+		}
+		if (!documentParsed) {
+			hits.documentSkipped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onNewCycle() {
+		domainHits.forEach((domain, hits) -> LOG.info("Structured data of product pages so far, domain : {}, {}", domain, hits));
+	}
+
+	@ManagedAttribute(description = "The product pages, pages with structured data and pages parsed without document of each domain")
+	public String[] getDomainHits() {
+		return domainHits.entrySet().stream().map(entry -> entry.getKey() + " " + entry.getValue()).sorted().toArray(String[]::new);
+	}
+
+	private static double percent(final long count, final long total) {
+		return total == 0 ? 0 : count * 100d / total;
+	}
+
+	/**
+	 * The hits of single domain.
+	 */
+	private static class DomainHits {
+
+		private final AtomicLong pages = new AtomicLong();
+		private final AtomicLong structuredPages = new AtomicLong();
+		private final AtomicLong structuredFields = new AtomicLong();
+		private final AtomicLong documentSkipped = new AtomicLong();
+
+		@Override
+		public String toString() {
+			final long total = pages.get();
+			return String.format("pages=%d structured=%d (%.1f%%) documentSkipped=%d (%.1f%%) structuredFields=%d", total, structuredPages.get(),
+					percent(structuredPages.get(), total), documentSkipped.get(), percent(documentSkipped.get(), total), structuredFields.get());
+		}
+	}
+}
@@ -8,19 +8,37 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
-import com.google.common.util.concurrent.RateLimiter;
 import com.vishalzanzrukia.crawler.ProcessTriggeringBean;
 import com.vishalzanzrukia.crawler.bean.Configs;
 import com.vishalzanzrukia.crawler.bean.RuntimeConfigs;
 import com.vishalzanzrukia.crawler.esrepository.ESProductRepository;
+import com.vishalzanzrukia.crawler.fetch.ConditionalFetchStats;
+import com.vishalzanzrukia.crawler.fetch.DnsCache;
+import com.vishalzanzrukia.crawler.fetch.HedgedRequestExecutor;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitBreaker;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.HostPolitenessScheduler;
+import com.vishalzanzrukia.crawler.fetch.ResponseBufferPool;
+import com.vishalzanzrukia.crawler.fetch.RetryScheduler;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.fetch.ValidatorCache;
+import com.vishalzanzrukia.crawler.fetch.warc.WarcRecordingContentProvider;
+import com.vishalzanzrukia.crawler.fetch.warc.WarcReplayContentProvider;
+import com.vishalzanzrukia.crawler.integration.PipelineStats;
+import com.vishalzanzrukia.crawler.integration.SiteMapSeeder;
+import com.vishalzanzrukia.crawler.parser.PartialProductCache;
+import com.vishalzanzrukia.crawler.parser.PooledSiteMapParser;
 import com.vishalzanzrukia.crawler.parser.RobotsTxtParser;
+import com.vishalzanzrukia.crawler.parser.SiteMapLastmodCache;
+import com.vishalzanzrukia.crawler.parser.field.StructuredDataStats;
 import com.vishalzanzrukia.crawler.util.ContentDownloader;
 import com.vishalzanzrukia.crawler.util.ContentProvider;
 import com.vishalzanzrukia.crawler.util.CrawlerUtils;
+import com.vishalzanzrukia.crawler.util.PooledHttpContentProvider;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry;
 
 import crawlercommons.filters.basic.BasicURLNormalizer;
 import crawlercommons.robots.SimpleRobotRulesParser;
-import crawlercommons.sitemaps.SiteMapParser;
 import redis.clients.jedis.JedisPool;
 
 /**
@@ -67,14 +85,74 @@ public class SingletonBeanFactory {
 		return getBean(RuntimeConfigs.class);
 	}
 
-	public RateLimiter getRateLimiter() {
-		return getBean(RateLimiter.class);
+	public DnsCache getDnsCache() {
+		return getBean(DnsCache.class);
+	}
+
+	public HostPolitenessScheduler getHostPolitenessScheduler() {
+		return getBean(HostPolitenessScheduler.class);
+	}
+
+	public HostLatencyTracker getHostLatencyTracker() {
+		return getBean(HostLatencyTracker.class);
+	}
+
+	public HedgedRequestExecutor getHedgedRequestExecutor() {
+		return getBean(HedgedRequestExecutor.class);
+	}
+
+	public HostCircuitBreaker getHostCircuitBreaker() {
+		return getBean(HostCircuitBreaker.class);
+	}
+
+	public RetryScheduler getRetryScheduler() {
+		return getBean(RetryScheduler.class);
+	}
+
+	public PipelineStats getPipelineStats() {
+		return getBean(PipelineStats.class);
+	}
+
+	public SiteMapSeeder getSiteMapSeeder() {
+		return getBean(SiteMapSeeder.class);
+	}
+
+	public ValidatorCache getValidatorCache() {
+		return getBean(ValidatorCache.class);
+	}
+
+	public ConditionalFetchStats getConditionalFetchStats() {
+		return getBean(ConditionalFetchStats.class);
+	}
+
+	public TransferStats getTransferStats() {
+		return getBean(TransferStats.class);
+	}
+
+	public ResponseBufferPool getResponseBufferPool() {
+		return getBean(ResponseBufferPool.class);
+	}
+
+	public StructuredDataStats getStructuredDataStats() {
+		return getBean(StructuredDataStats.class);
 	}
 
 	public CrawlerUtils getCrawlerUtils() {
 		return getBean(CrawlerUtils.class);
 	}
 
+	public PartialProductCache getPartialProductCache() {
+		return getBean(PartialProductCache.class);
+	}
+
+	public SiteMapLastmodCache getSiteMapLastmodCache() {
+		return getBean(SiteMapLastmodCache.class);
+	}
+
+	public UrlPatternRegistry getUrlPatternRegistry() {
+		return getBean(UrlPatternRegistry.class);
+	}
+
 	public RobotsTxtParser getRobotsTxtParser() {
 		return getBean(RobotsTxtParser.class);
 	}
@@ -87,8 +165,8 @@ public class SingletonBeanFactory {
 		return getBean(JedisPool.class);
 	}
 
-	public SiteMapParser getSiteMapParser() {
-		return getBean(SiteMapParser.class);
+	public PooledSiteMapParser getSiteMapParser() {
+		return getBean(PooledSiteMapParser.class);
 	}
 
 	public SimpleRobotRulesParser getSimpleRobotRulesParser() {
@@ -96,7 +174,20 @@ public class SingletonBeanFactory {
 	}
 
 	public ContentProvider getContentProvider() {
-		return getBean(ContentDownloader.class);
+		if (ContentProvider.WARC_MODE_REPLAY.equals(getConfigs().getWarcMode())) {
+			return getBean(WarcReplayContentProvider.class);
+		}
+		if (ContentProvider.WARC_MODE_RECORD.equals(getConfigs().getWarcMode())) {
+			return getBean(WarcRecordingContentProvider.class);
+		}
+		return getNetworkContentProvider();
+	}
+
+	public ContentProvider getNetworkContentProvider() {
+		if (ContentProvider.PROVIDER_JSOUP.equals(getConfigs().getContentProvider())) {
+			return getBean(ContentDownloader.class);
+		}
+		return getBean(PooledHttpContentProvider.class);
 	}
 
 	public ProcessTriggeringBean getProcessTriggeringBean() {
@@ -0,0 +1,316 @@
+package com.vishalzanzrukia.crawler.urlprocessor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry.DomainPatterns;
+
+/**
+ * Classifies the url as filtered, product, category or plain url, with all
+ * the product, filter and category regexes of the domain in single scan.<BR>
+ * The keywords of the regexes (see {@link REGEXES#getKeywords()}) are found by
+ * single Aho-Corasick pass over the url, ignoring case, and only the regexes
+ * whose keyword is found are confirmed with their compiled pattern, so most
+ * urls run one regex (or none) instead of all of them. The domain base of
+ * {@link REGEXES#VALID_URL} is matched without regex.<BR>
+ * The result is same as of checking each regex in the order of the pipeline:
+ * product url first, then valid url and filters, then category url.
+ *
+ * @author VishalZanzrukia
+ */
+public class UrlClassifier {
+
+	/**
+	 * The classes of url.
+	 */
+	public enum UrlClass {
+
+		/** Not url of domain, or matched any filter, it's not visited */
+		FILTERED,
+
+		/** The normal or canonical product url */
+		PRODUCT,
+
+		/** The category url, visited once per trimmed category url */
+		CATEGORY,
+
+		/** Any other valid url */
+		PLAIN
+	}
+
+	private static final String HTTP_BASE = "http://www.";
+	private static final String HTTPS_BASE = "https://www.";
+
+	private final DomainPatterns patterns;
+	private final REGEXES[] productRegexes;
+	private final REGEXES[] filterRegexes;
+	private final KeywordAutomaton automaton;
+
+	/** The regexes without keyword, those are always confirmed */
+	private final long keywordlessRegexes;
+
+	/** Whether domain base can be matched without regex */
+	private final boolean literalDomain;
+
+	/**
+	 * Instantiates a new classifier.
+	 *
+	 * @param patterns
+	 *            the compiled patterns of domain
+	 * @param normalProductUrlRegex
+	 *            the normal product url regex
+	 * @param canonicalProductUrlRegex
+	 *            the canonical product url regex
+	 * @param filterRegexes
+	 *            the filter regexes
+	 */
+	public UrlClassifier(final DomainPatterns patterns, final REGEXES normalProductUrlRegex, final REGEXES canonicalProductUrlRegex,
+			final List<REGEXES> filterRegexes) {
+		this.patterns = patterns;
+		this.productRegexes = new REGEXES[] {normalProductUrlRegex, canonicalProductUrlRegex};
+		this.filterRegexes = filterRegexes.toArray(new REGEXES[filterRegexes.size()]);
+
+		final REGEXES[] regexes = Arrays.copyOf(productRegexes, productRegexes.length + this.filterRegexes.length + 1);
+		System.arraycopy(this.filterRegexes, 0, regexes, productRegexes.length, this.filterRegexes.length);
+		regexes[regexes.length - 1] = REGEXES.CATEGORY_URL;
+
+		this.automaton = new KeywordAutomaton(regexes);
+		long keywordless = 0;
+		for (final REGEXES regex : regexes) {
+			if (regex.getKeywords().length == 0) {
+				keywordless |= bit(regex);
+			}
+		}
+		this.keywordlessRegexes = keywordless;
+		this.literalDomain = patterns.getDomainName().matches("[A-Za-z0-9.\\-]+");
+	}
+
+	/**
+	 * Classifies the url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the class of url
+	 */
+	public UrlClass classify(final String url) {
+		final long candidates = automaton.scan(url) | keywordlessRegexes;
+		if (isProductUrl(url, candidates)) {
+			return UrlClass.PRODUCT;
+		}
+		if (!isDomainUrl(url) || getFilter(url, candidates) != null) {
+			return UrlClass.FILTERED;
+		}
+		if (isCandidate(candidates, REGEXES.CATEGORY_URL) && patterns.matches(REGEXES.CATEGORY_URL, url)) {
+			return UrlClass.CATEGORY;
+		}
+		return UrlClass.PLAIN;
+	}
+
+	/**
+	 * Checks whether the url matches normal or canonical product url regex.
+	 *
+	 * @param url
+	 *            the url
+	 * @return true, if it's product url
+	 */
+	public boolean isProductUrl(final String url) {
+		return isProductUrl(url, automaton.scan(url) | keywordlessRegexes);
+	}
+
+	/**
+	 * Gets the first filter regex which matches the url.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the matched filter, or null if url is not filtered
+	 */
+	public REGEXES getFilter(final String url) {
+		return getFilter(url, automaton.scan(url) | keywordlessRegexes);
+	}
+
+	private boolean isProductUrl(final String url, final long candidates) {
+		for (final REGEXES productRegex : productRegexes) {
+			if (isCandidate(candidates, productRegex) && patterns.matches(productRegex, url)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private REGEXES getFilter(final String url, final long candidates) {
+		for (final REGEXES filterRegex : filterRegexes) {
+			if (isCandidate(candidates, filterRegex) && patterns.matches(filterRegex, url)) {
+				return filterRegex;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the url matches {@link REGEXES#VALID_URL}, the dots of
+	 * domain name match any character same as in regex.
+	 */
+	private boolean isDomainUrl(final String url) {
+		if (!literalDomain) {
+			return patterns.matches(REGEXES.VALID_URL, url);
+		}
+
+		int index;
+		if (url.startsWith(HTTPS_BASE)) {
+			index = HTTPS_BASE.length();
+		} else if (url.startsWith(HTTP_BASE)) {
+			index = HTTP_BASE.length();
+		} else {
+			return false;
+		}
+
+		final String domainName = patterns.getDomainName();
+		if (url.length() <= index + domainName.length()) {
+			return false;
+		}
+		for (int i = 0; i < domainName.length(); i++) {
+			final char domainChar = domainName.charAt(i);
+			final char urlChar = url.charAt(index + i);
+			if (domainChar == '.' ? isLineTerminator(urlChar) : domainChar != urlChar) {
+				return false;
+			}
+		}
+		index += domainName.length();
+		if (url.charAt(index) != '/') {
+			return false;
+		}
+		for (int i = index + 1; i < url.length(); i++) {
+			if (isLineTerminator(url.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isLineTerminator(final char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static boolean isCandidate(final long candidates, final REGEXES regex) {
+		return (candidates & bit(regex)) != 0;
+	}
+
+	private static long bit(final REGEXES regex) {
+		return 1L << regex.ordinal();
+	}
+
+	/**
+	 * The Aho-Corasick automaton of the keywords, with failure links folded
+	 * into the transitions, so each character of url is one table lookup. The
+	 * characters are lowered (ASCII only, same as case insensitive regex) and
+	 * the ones not used by any keyword share single class.
+	 */
+	private static class KeywordAutomaton {
+
+		private static final int ASCII = 128;
+
+		private final byte[] charClasses = new byte[ASCII];
+		private final int classCount;
+		private final int[] transitions;
+
+		/** The regexes (bits by ordinal) whose keyword ends at the state */
+		private final long[] outputs;
+
+		private KeywordAutomaton(final REGEXES[] regexes) {
+			if (REGEXES.values().length > Long.SIZE) {
+				throw new IllegalStateException("The regexes do not fit in candidate bits : " + REGEXES.values().length);
+			}
+
+			int classes = 1;
+			int maxStates = 1;
+			for (final REGEXES regex : regexes) {
+				for (final String keyword : regex.getKeywords()) {
+					for (int i = 0; i < keyword.length(); i++) {
+						final char c = keyword.charAt(i);
+						if (c >= ASCII || c >= 'A' && c <= 'Z') {
+							throw new IllegalArgumentException("The keyword must be lower case ASCII : " + keyword + " of " + regex);
+						}
+						if (charClasses[c] == 0) {
+							charClasses[c] = (byte) classes++;
+						}
+					}
+					maxStates += keyword.length();
+				}
+			}
+			this.classCount = classes;
+
+			/** the trie of keywords */
+			final int[][] next = new int[maxStates][classCount];
+			for (final int[] stateNext : next) {
+				Arrays.fill(stateNext, -1);
+			}
+			final long[] stateOutputs = new long[maxStates];
+			int states = 1;
+			for (final REGEXES regex : regexes) {
+				for (final String keyword : regex.getKeywords()) {
+					int state = 0;
+					for (int i = 0; i < keyword.length(); i++) {
+						final int charClass = charClasses[keyword.charAt(i)];
+						if (next[state][charClass] == -1) {
+							next[state][charClass] = states++;
+						}
+						state = next[state][charClass];
+					}
+					stateOutputs[state] |= bit(regex);
+				}
+			}
+
+			/** the failure links in breadth first order, missing transitions are taken from failure state */
+			final int[] failures = new int[states];
+			final Queue<Integer> queue = new ArrayDeque<>();
+			for (int charClass = 0; charClass < classCount; charClass++) {
+				if (next[0][charClass] == -1) {
+					next[0][charClass] = 0;
+				} else {
+					queue.add(next[0][charClass]);
+				}
+			}
+			while (!queue.isEmpty()) {
+				final int state = queue.poll();
+				stateOutputs[state] |= stateOutputs[failures[state]];
+				for (int charClass = 0; charClass < classCount; charClass++) {
+					final int nextState = next[state][charClass];
+					if (nextState == -1) {
+						next[state][charClass] = next[failures[state]][charClass];
+					} else {
+						failures[nextState] = next[failures[state]][charClass];
+						queue.add(nextState);
+					}
+				}
+			}
+
+			this.transitions = new int[states * classCount];
+			for (int state = 0; state < states; state++) {
+				System.arraycopy(next[state], 0, transitions, state * classCount, classCount);
+			}
+			this.outputs = Arrays.copyOf(stateOutputs, states);
+		}
+
+		/**
+		 * Scans the url.
+		 *
+		 * @return the regexes (bits by ordinal) whose keyword is found
+		 */
+		private long scan(final String url) {
+			long found = 0;
+			int state = 0;
+			for (int i = 0; i < url.length(); i++) {
+				char c = url.charAt(i);
+				if (c >= 'A' && c <= 'Z') {
+					c += 'a' - 'A';
+				}
+				state = transitions[state * classCount + (c < ASCII ? charClasses[c] : 0)];
+				found |= outputs[state];
+			}
+			return found;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import org.apache.commons.lang3.ClassUtils;
 
 import com.vishalzanzrukia.crawler.registry.ComponentRegistry;
 import com.vishalzanzrukia.crawler.registry.CrawlerComponent;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier.UrlClass;
 import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
 
 /**
@@ -43,6 +44,16 @@ public interface UrlProcessor extends CrawlerComponent {
 	 */
 	boolean isProductUrl(String url);
 
+	/**
+	 * Classifies the url as filtered, product, category or plain url, in
+	 * single scan of all regexes, see {@link UrlClassifier}.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the class of url
+	 */
+	UrlClass classify(String url);
+
 	/**
 	 * Trim product url.
 	 *
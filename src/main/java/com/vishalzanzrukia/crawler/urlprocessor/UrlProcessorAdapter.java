@@ -7,7 +7,9 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier.UrlClass;
 import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry.DomainPatterns;
 
 /**
  * This is base class for url specific operations like {@code trim},
@@ -39,6 +41,9 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 	/** The filter regexes. */
 	private List<REGEXES> filterRegexes;
 
+	/** The classifier of all regexes, built on first use as filters are added after constructor */
+	private volatile UrlClassifier classifier;
+
 	/**
 	 * Instantiates a new url processor adapter with specific configs
 	 *
@@ -80,19 +85,17 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 
 	@Override
 	public boolean isProductUrl(final String url) {
+		return getClassifier().isProductUrl(url);
+	}
 
-		final String normalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getNormalProductUrlRegex());
-		final String canonicalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getCanonicalProductUrlRegex());
-
-		if (url.matches(normalProductUrlRegex)) {
-			return true;
-		}
-
-		if (url.matches(canonicalProductUrlRegex)) {
-			return true;
-		}
-
-		return false;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public UrlClass classify(final String url) {
+		final UrlClass urlClass = getClassifier().classify(url);
+		LOG.trace("The url [{}] is classified as : {}", url, urlClass);
+		return urlClass;
 	}
 
 	/**
@@ -101,13 +104,13 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 	@Override
 	public String trimProductUrl(final String produtUrl) {
 
-		final String normalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getNormalProductUrlRegex());
-		final String canonicalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getCanonicalProductUrlRegex());
+		final DomainPatterns patterns = singletonBeanFactory.getUrlPatternRegistry().getPatterns();
 
-		if (produtUrl.matches(normalProductUrlRegex)) {
-			LOG.trace("Trimmed product url : {}", produtUrl.replaceAll(normalProductUrlRegex, "$1$3$4"));
-			return produtUrl.replaceAll(normalProductUrlRegex, "$1$3$4");
-		} else if (produtUrl.matches(canonicalProductUrlRegex)) {
+		if (patterns.matches(getNormalProductUrlRegex(), produtUrl)) {
+			final String trimmedProductUrl = patterns.replaceAll(getNormalProductUrlRegex(), produtUrl, "$1$3$4");
+			LOG.trace("Trimmed product url : {}", trimmedProductUrl);
+			return trimmedProductUrl;
+		} else if (patterns.matches(getCanonicalProductUrlRegex(), produtUrl)) {
 			LOG.trace("The url is canonical product url, so no needs to trim it, returing as it is : {}", produtUrl);
 			return produtUrl;
 		}
@@ -122,13 +125,12 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 	@Override
 	public String extractProductId(final String productPageUrl) {
 
-		final String normalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getNormalProductUrlRegex());
-		final String canonicalProductUrlRegex = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(getCanonicalProductUrlRegex());
+		final DomainPatterns patterns = singletonBeanFactory.getUrlPatternRegistry().getPatterns();
 
-		if (productPageUrl.matches(normalProductUrlRegex)) {
-			return productPageUrl.replaceAll(normalProductUrlRegex, "$4");
-		} else if (productPageUrl.matches(canonicalProductUrlRegex)) {
-			return productPageUrl.replaceAll(canonicalProductUrlRegex, getCanonicalProductReplacementKey());
+		if (patterns.matches(getNormalProductUrlRegex(), productPageUrl)) {
+			return patterns.replaceAll(getNormalProductUrlRegex(), productPageUrl, "$4");
+		} else if (patterns.matches(getCanonicalProductUrlRegex(), productPageUrl)) {
+			return patterns.replaceAll(getCanonicalProductUrlRegex(), productPageUrl, getCanonicalProductReplacementKey());
 		}
 
 		LOG.warn("The given product url does not match any product url pattern : {}", productPageUrl);
@@ -173,14 +175,10 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 	@Override
 	public boolean isValidUrl(final String url) {
 
-		String filterRegexStr;
-
-		for (REGEXES filterRegex : this.filterRegexes) {
-			filterRegexStr = singletonBeanFactory.getCrawlerUtils().getDomainSpecificRegex(filterRegex);
-			if (url.matches(filterRegexStr)) {
-				LOG.trace("The url [{}] is filtered with regex : {}", url, filterRegex);
-				return false;
-			}
+		final REGEXES filterRegex = getClassifier().getFilter(url);
+		if (filterRegex != null) {
+			LOG.trace("The url [{}] is filtered with regex : {}", url, filterRegex);
+			return false;
 		}
 
 		LOG.trace("The url [{}] is not filtered with any of configured filters.", url);
@@ -228,6 +226,20 @@ public class UrlProcessorAdapter extends AbstractUrlProcessor {
 		return normalizedUrl;
 	}
 
+	/**
+	 * Gets the classifier of url processor, for the patterns of crawled
+	 * domain.
+	 */
+	private UrlClassifier getClassifier() {
+		UrlClassifier urlClassifier = classifier;
+		if (urlClassifier == null) {
+			urlClassifier = new UrlClassifier(singletonBeanFactory.getUrlPatternRegistry().getPatterns(), getNormalProductUrlRegex(),
+					getCanonicalProductUrlRegex(), filterRegexes);
+			classifier = urlClassifier;
+		}
+		return urlClassifier;
+	}
+
 	@Override
 	public List<String> getTrimParams() {
 		return this.trimParams;
@@ -0,0 +1,512 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.brotli.dec.BrotliInputStream;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper.ResponseWrapperBuilder;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+import com.vishalzanzrukia.crawler.fetch.ResponseBufferPool;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.parser.ProductParser;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * The base class for {@link ContentProvider} implementations, it keeps the
+ * response validation and {@link JsoupDocumentWrapper} creation same for all
+ * providers.
+ *
+ * @author VishalZanzrukia
+ */
+public abstract class AbstractContentProvider implements ContentProvider {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	protected static final String HEADER_ETAG = "ETag";
+	protected static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	protected static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	protected static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+	protected static final String HEADER_RETRY_AFTER = "Retry-After";
+	protected static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+	protected static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+	protected static final String HEADER_CONTENT_LENGTH = "Content-Length";
+
+	/** The content encodings decoded by {@link #decodeBody(InputStream, String)} */
+	protected static final String ACCEPTED_ENCODINGS = "gzip, deflate, br";
+
+	/** The buffer size of decoding streams */
+	private static final int DECODER_BUFFER_SIZE = 8192;
+
+	@Autowired
+	protected SingletonBeanFactory singletonBeanFactory;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadPage(final String url) throws IOException {
+		return downloadPage(url, false);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadPage(final String url, final boolean bytesNeeded) throws IOException {
+		return download(url, bytesNeeded, null, false, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadPage(final String url, final PageValidators validators) throws IOException {
+		return download(url, false, validators != null && validators.hasValidators() ? validators : null, false, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadProductPage(final String url, final PageValidators validators) throws IOException {
+		return download(url, singletonBeanFactory.getConfigs().isStructuredData(), validators != null && validators.hasValidators() ? validators : null,
+				false, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadNavigationPage(final String url) throws IOException {
+		return download(url, false, null, true, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public JsoupDocumentWrapper downloadNavigationPage(final String url, final SiteMapBodyReader siteMapReader) throws IOException {
+		return download(url, false, null, true, siteMapReader);
+	}
+
+	/**
+	 * Downloads the page.
+	 *
+	 * @param url
+	 *            the url
+	 * @param bytesNeeded
+	 *            whether bytes are needed instead of document
+	 * @param validators
+	 *            the validators to send conditional request, null for normal
+	 *            request
+	 * @param navigationPage
+	 *            whether the page is visited only to find the links, see
+	 *            {@link ContentProvider#downloadNavigationPage(String)}
+	 * @param siteMapReader
+	 *            the reader of sitemap body, if navigation page is read as
+	 *            stream when it's sitemap, else null
+	 * @return the response wrapper
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected abstract JsoupDocumentWrapper download(final String url, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException;
+
+	/**
+	 * Gets the fetch timeout of the host of url, see
+	 * {@link HostLatencyTracker}.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the timeout in millis
+	 */
+	protected int getTimeoutMillis(final String url) {
+		return singletonBeanFactory.getHostLatencyTracker().getTimeoutMillis(url);
+	}
+
+	/**
+	 * Records the download time of the url, see {@link HostLatencyTracker}.
+	 *
+	 * @param url
+	 *            the url
+	 * @param clock
+	 *            the clock of the download
+	 */
+	void recordLatency(final String url, final DownloadClock clock) {
+		singletonBeanFactory.getHostLatencyTracker().record(url, clock.getMillis());
+	}
+
+	/**
+	 * Checks whether body should be handed to the sitemap reader as stream,
+	 * that is when the navigation page is sitemap (xml or gzipped) and the
+	 * reader is given.
+	 */
+	protected boolean isSiteMapStream(final SiteMapBodyReader siteMapReader, final String url, final String responseType) {
+		return siteMapReader != null && ContentProvider.isSiteMapResponse(url, responseType);
+	}
+
+	/**
+	 * Checks whether body should be read as bytes instead of parsing it, that
+	 * is when bytes are asked, or the navigation page is sitemap (xml or
+	 * gzipped) which is read by sitemap reader from bytes.
+	 */
+	protected boolean isBytesResponse(final boolean bytesNeeded, final boolean navigationPage, final String url, final String responseType) {
+		return bytesNeeded || navigationPage && ContentProvider.isSiteMapResponse(url, responseType);
+	}
+
+	/**
+	 * Checks whether reading of the page should be stopped once body end is
+	 * found.
+	 */
+	protected boolean isStopAtBodyEnd(final boolean navigationPage) {
+		return navigationPage && singletonBeanFactory.getConfigs().isEarlyAbort();
+	}
+
+	/**
+	 * Parses the document directly from the body stream, so the page is never
+	 * held in memory as bytes or string, only as the parsed document.
+	 *
+	 * @param body
+	 *            the body stream, it's closed by this method
+	 * @param charsetName
+	 *            the charset of the body, or null to detect it from the
+	 *            content
+	 * @param baseUri
+	 *            the base uri of the document
+	 * @return the parsed document
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected Document parseBody(final InputStream body, final String charsetName, final String baseUri) throws IOException {
+		return Jsoup.parse(body, charsetName, baseUri, Parser.xmlParser());
+	}
+
+	/**
+	 * Checks whether the links of navigation page should be extracted while
+	 * it's read, instead of parsing the document. It's disabled by
+	 * {@code crawler.links.streaming} or by product parser of the domain which
+	 * needs the document, see {@link ProductParser#isStreamingLinksSupported()}.
+	 *
+	 * @param navigationPage
+	 *            whether the page is navigation page
+	 * @param charsetName
+	 *            the charset of the body, can be null
+	 * @return true, if links should be extracted
+	 */
+	protected boolean isStreamingLinks(final boolean navigationPage, final String charsetName) {
+		return navigationPage && singletonBeanFactory.getConfigs().isStreamingLinks() && StreamingLinkExtractor.isSupported(charsetName)
+				&& singletonBeanFactory.getComponentRegistry().getProductParser().isStreamingLinksSupported();
+	}
+
+	/**
+	 * Extracts the links directly from the body stream, without building the
+	 * document, see {@link StreamingLinkExtractor}.
+	 *
+	 * @param body
+	 *            the body stream, it's closed by this method
+	 * @param charsetName
+	 *            the charset of the body, or null for UTF-8
+	 * @param baseUri
+	 *            the base uri of the page
+	 * @return the absolute links
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected List<String> extractLinks(final InputStream body, final String charsetName, final String baseUri) throws IOException {
+		return StreamingLinkExtractor.extractLinks(body, charsetName, baseUri);
+	}
+
+	/**
+	 * Decodes the body as it's read, as per the {@code Content-Encoding} of
+	 * the response, so the compressed body is never buffered. The empty body
+	 * is returned as it is.
+	 *
+	 * @param body
+	 *            the body stream as received on the wire
+	 * @param contentEncoding
+	 *            the content encoding header, can be null
+	 * @return the decoded body stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred, or encoding is
+	 *             not supported.
+	 */
+	protected InputStream decodeBody(final InputStream body, final String contentEncoding) throws IOException {
+		if (StringUtils.isBlank(contentEncoding)) {
+			return body;
+		}
+
+		/** the empty body (like of HEAD or 204) has nothing to decode, the decoders fail on missing header */
+		final PushbackInputStream content = new PushbackInputStream(body, 1);
+		final int first = content.read();
+		if (first == -1) {
+			return content;
+		}
+		content.unread(first);
+
+		/** multiple encodings are listed in the order they are applied */
+		final String[] encodings = contentEncoding.split(",");
+		InputStream decoded = content;
+		for (int i = encodings.length - 1; i >= 0; i--) {
+			decoded = decode(decoded, encodings[i].trim().toLowerCase());
+		}
+		return decoded;
+	}
+
+	private InputStream decode(final InputStream body, final String encoding) throws IOException {
+		switch (encoding) {
+		case "":
+		case "identity":
+			return body;
+		case "gzip":
+		case "x-gzip":
+			return new GZIPInputStream(body, DECODER_BUFFER_SIZE);
+		case "deflate":
+			return inflate(body);
+		case "br":
+			return new BrotliInputStream(body);
+		default:
+			throw new IOException("Unsupported content encoding : " + encoding);
+		}
+	}
+
+	/**
+	 * Inflates the deflate body, which is zlib wrapped as per spec, but few
+	 * servers send it raw, so the zlib header is checked first.
+	 */
+	private InputStream inflate(final InputStream body) throws IOException {
+		final BufferedInputStream buffered = new BufferedInputStream(body, DECODER_BUFFER_SIZE);
+		buffered.mark(2);
+		final int first = buffered.read();
+		final int second = buffered.read();
+		buffered.reset();
+
+		final boolean zlibWrapped = first != -1 && second != -1 && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+		final Inflater inflater = new Inflater(!zlibWrapped);
+		return new InflaterInputStream(buffered, inflater, DECODER_BUFFER_SIZE) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					/** inflater passed from outside is not ended by the stream */
+					inflater.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Reads the body as bytes into the pooled buffer, see
+	 * {@link ResponseBufferPool}. The body longer than
+	 * {@code crawler.page.maxBytes} is truncated, it's logged and flagged on
+	 * the buffer.
+	 *
+	 * @param url
+	 *            the url
+	 * @param content
+	 *            the decoded body stream, it's closed by this method
+	 * @param sizeHint
+	 *            the expected body size, or negative if unknown
+	 * @return the buffer with body
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected ResponseBuffer readBody(final String url, final InputStream content, final long sizeHint) throws IOException {
+		final int maxBytes = singletonBeanFactory.getConfigs().getMaxBytes();
+		final ResponseBuffer responseBody = singletonBeanFactory.getResponseBufferPool().read(content, sizeHint, maxBytes);
+		if (responseBody.isTruncated()) {
+			LOG.warn("The body is truncated to {} bytes, url : {}", maxBytes, url);
+		}
+		return responseBody;
+	}
+
+	/**
+	 * Hands the sitemap body over to the reader while it's downloaded, the
+	 * body longer than {@code crawler.sitemap.maxBytes} is truncated and it's
+	 * logged, so the urls after it are never dropped silently.
+	 *
+	 * @param url
+	 *            the url
+	 * @param responseUrl
+	 *            the url of response
+	 * @param content
+	 *            the decoded body stream
+	 * @param siteMapReader
+	 *            the reader of sitemap body
+	 * @return the bytes read by the reader
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected long readSiteMap(final String url, final URL responseUrl, final InputStream content, final SiteMapBodyReader siteMapReader)
+			throws IOException {
+		final int maxBytes = singletonBeanFactory.getConfigs().getSiteMapMaxBytes();
+		final CountingInputStream body = new CountingInputStream(ByteStreams.limit(content, maxBytes));
+		siteMapReader.read(responseUrl, body);
+		if (body.getCount() >= maxBytes && content.read() != -1) {
+			LOG.warn("The sitemap is truncated to {} bytes, the urls after it are not read, url : {}", maxBytes, url);
+		}
+		return body.getCount();
+	}
+
+	/**
+	 * Records the transferred bytes of the response, see
+	 * {@link TransferStats}.
+	 *
+	 * @param url
+	 *            the url
+	 * @param wireBytes
+	 *            the bytes received on the wire
+	 * @param bodyBytes
+	 *            the bytes after decoding
+	 */
+	protected void recordTransfer(final String url, final long wireBytes, final long bodyBytes) {
+		singletonBeanFactory.getTransferStats().record(url, wireBytes, bodyBytes);
+	}
+
+	/**
+	 * Validates the status code of the response, any status other than
+	 * {@link ContentProvider#SC_OK} is treated as failure.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param statusCode
+	 *            the response status code
+	 * @param retryAfter
+	 *            the {@code Retry-After} header of the response, can be null
+	 * @throws HttpStatusException
+	 *             if status is not {@link ContentProvider#SC_OK}, same as
+	 *             thrown by Jsoup for error status, or
+	 *             {@link ThrottledStatusException} if host asks to slow down
+	 */
+	protected void validateStatusCode(final String url, final int statusCode, final String retryAfter) throws HttpStatusException {
+		if (statusCode != ContentProvider.SC_OK) {
+			LOG.error("Error ocuured while downloading page content for url : {}, status code : {}", url, statusCode);
+			final String message = "Error ocuured while downloading page content, status code : " + statusCode;
+			if (ThrottledStatusException.isThrottled(statusCode)) {
+				throw new ThrottledStatusException(message, statusCode, url, ThrottledStatusException.parseRetryAfter(retryAfter));
+			}
+			throw new HttpStatusException(message, statusCode, url);
+		}
+	}
+
+	/**
+	 * Builds the {@link JsoupDocumentWrapper} for {@code 304} response.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param responseUrl
+	 *            the final url of the response
+	 * @param validators
+	 *            the validators sent with conditional request
+	 * @return the response wrapper
+	 */
+	protected JsoupDocumentWrapper buildNotModifiedResponse(final String url, final URL responseUrl, final PageValidators validators) {
+		LOG.debug("The page is not modified since last download : {}", url);
+		return new ResponseWrapperBuilder(null).withURL(responseUrl).withValidators(validators).withNotModified(true).build();
+	}
+
+	/**
+	 * Builds the {@link JsoupDocumentWrapper} of navigation page, with the
+	 * links extracted while reading the page instead of document.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param links
+	 *            the absolute links of the page
+	 * @param responseType
+	 *            the response content type
+	 * @param responseUrl
+	 *            the final url of the response (after redirects)
+	 * @param validators
+	 *            the validators received with response
+	 * @return the response wrapper
+	 */
+	protected JsoupDocumentWrapper buildLinksResponse(final String url, final List<String> links, final String responseType, final URL responseUrl,
+			final PageValidators validators) {
+		LOG.trace("Extracted {} links without parsing the document for url : {}", links.size(), url);
+		return new ResponseWrapperBuilder(null).withLinks(links).withResponseType(responseType).withURL(responseUrl).withValidators(validators)
+				.build();
+	}
+
+	/**
+	 * Builds the {@link JsoupDocumentWrapper} of sitemap which is already read
+	 * by the sitemap reader, so it has neither document nor body.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param responseType
+	 *            the response content type
+	 * @param responseUrl
+	 *            the final url of the response (after redirects)
+	 * @param validators
+	 *            the validators received with response, with the bytes read
+	 * @return the response wrapper
+	 */
+	protected JsoupDocumentWrapper buildSiteMapResponse(final String url, final String responseType, final URL responseUrl,
+			final PageValidators validators) {
+		if (validators.getContentLength() == 0) {
+			LOG.error("Retrieving null document for url : {}", url);
+			throw new RuntimeException("Retrieving null document for url " + url);
+		}
+		LOG.trace("Read {} bytes of sitemap while downloading url : {}", validators.getContentLength(), url);
+		return new ResponseWrapperBuilder(null).withResponseType(responseType).withURL(responseUrl).withValidators(validators).build();
+	}
+
+	/**
+	 * Builds the {@link JsoupDocumentWrapper} as per the
+	 * {@link ContentProvider#downloadPage(String, boolean)} contract, either
+	 * {@code document} or {@code responseBody} is expected.
+	 *
+	 * @param url
+	 *            the requested url
+	 * @param document
+	 *            the parsed document, null if bytes are needed
+	 * @param responseType
+	 *            the response content type
+	 * @param responseUrl
+	 *            the final url of the response (after redirects)
+	 * @param responseBody
+	 *            the response body, null if document is needed
+	 * @param validators
+	 *            the validators received with response
+	 * @return the response wrapper
+	 */
+	protected JsoupDocumentWrapper buildResponse(final String url, final Document document, final String responseType, final URL responseUrl,
+			final ResponseBuffer responseBody, final PageValidators validators) {
+
+		final boolean empty = responseBody == null ? document == null || !document.hasText() : responseBody.getLength() == 0;
+		if (empty) {
+			if (responseBody != null) {
+				responseBody.release();
+			}
+			LOG.error("Retrieving null document for url : {}", url);
+			throw new RuntimeException("Retrieving null document for url " + url);
+		}
+
+		return new ResponseWrapperBuilder(document).withResponseType(responseType).withURL(responseUrl).withResponseBody(responseBody)
+				.withValidators(validators).build();
+	}
+}
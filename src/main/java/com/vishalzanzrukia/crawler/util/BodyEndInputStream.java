@@ -0,0 +1,189 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@link InputStream} which ends as soon as closing body tag
+ * ({@code </body>}, case insensitive) is read, so rest of the page is not
+ * downloaded and parsed when only the links of the page are needed.<BR>
+ * The tag is matched on raw bytes, so it works for all ASCII compatible
+ * charsets, for other charsets (e.g. UTF-16) the stream is simply read till
+ * the end. The closing body tag inside comment, {@code <script>} or
+ * {@code <style>} element does not end the stream.<BR>
+ * <b>NOTE:</b>Once body end is reached, {@link #close()} does not close the
+ * underlying stream, so the caller can decide whether to drain or abort the
+ * connection.
+ *
+ * @author VishalZanzrukia
+ */
+public class BodyEndInputStream extends FilterInputStream {
+
+	private static final byte[] BODY_END_TAG = {'<', '/', 'b', 'o', 'd', 'y'};
+	private static final byte[] COMMENT_START = {'<', '!', '-', '-'};
+	private static final byte[] COMMENT_END = {'-', '-', '>'};
+	private static final byte[] SCRIPT_START = {'<', 's', 'c', 'r', 'i', 'p', 't'};
+	private static final byte[] SCRIPT_END = {'<', '/', 's', 'c', 'r', 'i', 'p', 't'};
+	private static final byte[] STYLE_START = {'<', 's', 't', 'y', 'l', 'e'};
+	private static final byte[] STYLE_END = {'<', '/', 's', 't', 'y', 'l', 'e'};
+	private static final byte TAG_END = '>';
+
+	/** The part of page being read, the body end is matched in text only */
+	private enum State {
+		TEXT, COMMENT, SCRIPT, STYLE, BODY_END_TAG
+	}
+
+	/** The last bytes read (lower case), enough for the longest tag */
+	private final byte[] recent = new byte[SCRIPT_END.length];
+	private int recentCount;
+
+	private State state = State.TEXT;
+	private boolean bodyEndReached;
+
+	public BodyEndInputStream(final InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (bodyEndReached) {
+			return -1;
+		}
+		final int read = in.read();
+		if (read != -1) {
+			accept((byte) read);
+		}
+		return read;
+	}
+
+	@Override
+	public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+		if (bodyEndReached) {
+			return -1;
+		}
+		final int read = in.read(buffer, offset, length);
+		for (int i = 0; i < read; i++) {
+			if (accept(buffer[offset + i])) {
+				/** returning bytes till the end of tag only */
+				return i + 1;
+			}
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(final long n) throws IOException {
+		/** skipped bytes are not scanned, so skipping is not supported */
+		return 0;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return bodyEndReached ? 0 : super.available();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!bodyEndReached) {
+			super.close();
+		}
+	}
+
+	/**
+	 * Checks whether closing body tag is read and the stream is ended.
+	 *
+	 * @return true, if body end is reached
+	 */
+	public boolean isBodyEndReached() {
+		return bodyEndReached;
+	}
+
+	/**
+	 * Matches the byte against closing body tag, and the start and end of
+	 * comment, script and style.
+	 *
+	 * @return true, if the byte ends the closing body tag
+	 */
+	private boolean accept(final byte b) {
+		final byte lowerCase = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+		switch (state) {
+		case TEXT:
+			if (lowerCase == '-' && endsWith(COMMENT_START, 1)) {
+				state = State.COMMENT;
+			} else if (isTagNameEnd(lowerCase)) {
+				if (endsWith(BODY_END_TAG, 0)) {
+					/** attributes and spaces are allowed till end of tag */
+					state = State.BODY_END_TAG;
+				} else if (endsWith(SCRIPT_START, 0)) {
+					state = State.SCRIPT;
+				} else if (endsWith(STYLE_START, 0)) {
+					state = State.STYLE;
+				}
+			}
+			break;
+		case COMMENT:
+			if (lowerCase == TAG_END && endsWith(COMMENT_END, 1)) {
+				state = State.TEXT;
+			}
+			break;
+		case SCRIPT:
+			if (isTagNameEnd(lowerCase) && endsWith(SCRIPT_END, 0)) {
+				state = State.TEXT;
+			}
+			break;
+		case STYLE:
+			if (isTagNameEnd(lowerCase) && endsWith(STYLE_END, 0)) {
+				state = State.TEXT;
+			}
+			break;
+		default:
+			break;
+		}
+
+		if (state == State.BODY_END_TAG && lowerCase == TAG_END) {
+			bodyEndReached = true;
+		}
+		remember(lowerCase);
+		return bodyEndReached;
+	}
+
+	/**
+	 * Checks whether the byte ends the tag name.
+	 */
+	private static boolean isTagNameEnd(final byte b) {
+		return b == TAG_END || b == '/' || b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+	/**
+	 * Checks whether the bytes read so far (before current one) end with the
+	 * token, where the last {@code skipLast} bytes of token are not checked.
+	 * The current byte is compared by caller.
+	 */
+	private boolean endsWith(final byte[] token, final int skipLast) {
+		final int length = token.length - skipLast;
+		if (recentCount < length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (recent[(recentCount - length + i) % recent.length] != token[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void remember(final byte b) {
+		recent[recentCount % recent.length] = b;
+		recentCount++;
+		if (recentCount == 2 * recent.length) {
+			/** keeping the count small, so it never overflows */
+			recentCount = recent.length;
+		}
+	}
+}
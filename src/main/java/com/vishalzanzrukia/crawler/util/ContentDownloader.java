@@ -1,71 +1,165 @@
 package com.vishalzanzrukia.crawler.util;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jsoup.Connection;
 import org.jsoup.Connection.Response;
 import org.jsoup.Jsoup;
+import org.jsoup.internal.ConstrainableInputStream;
+import org.jsoup.nodes.Document;
 import org.jsoup.parser.Parser;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
-import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper.ResponseWrapperBuilder;
-import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
 
 /**
  * The Class PageDownloader.
- * 
+ *
  * @author VishalZanzrukia
  */
 @Component
-public class ContentDownloader implements ContentProvider {
+public class ContentDownloader extends AbstractContentProvider {
 
 	private static final Logger LOG = LogManager.getLogger();
 
-	@Autowired
-	private SingletonBeanFactory singletonBeanFactory;
+	private static final String HEADER_CONNECTION = "Connection";
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public JsoupDocumentWrapper downloadPage(final String url, boolean bytesNeeded) throws IOException {
+	protected JsoupDocumentWrapper download(final String url, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException {
+		final DownloadClock clock = new DownloadClock();
+		try {
+			return execute(url, bytesNeeded, validators, navigationPage, siteMapReader, getTimeoutMillis(url), clock);
+		} finally {
+			recordLatency(url, clock);
+		}
+	}
+
+	/**
+	 * Executes the request and reads the response within the timeout, Jsoup
+	 * applies it to connect, to each read and to the whole request (till the
+	 * body is read fully), so it's the real deadline of the request, except
+	 * while the sitemap is handed to its reader.
+	 */
+	private JsoupDocumentWrapper execute(final String url, final boolean bytesNeeded, final PageValidators validators, final boolean navigationPage,
+			final SiteMapBodyReader siteMapReader, final int timeoutInMillis, final DownloadClock clock) throws IOException {
 		LOG.trace("MaxBytes Config : {}", singletonBeanFactory.getConfigs().getMaxBytes());
-		LOG.trace("Timeout Config : {}", singletonBeanFactory.getConfigs().getTimeout());
+		LOG.trace("Timeout in millis : {}", timeoutInMillis);
 		LOG.debug("Going to download the content for url : {}", url);
 
-		final Response response = Jsoup.connect(url).parser(Parser.xmlParser()).validateTLSCertificates(false).userAgent("Mozilla")
-				.maxBodySize(singletonBeanFactory.getConfigs().getMaxBytes()).timeout(singletonBeanFactory.getConfigs().getTimeout() * 1000)
-				.execute();
+		/**
+		 * error status is validated below, so Retry-After header is not lost,
+		 * one more byte than max is allowed, so truncated body is detected,
+		 * the sitemap read as stream is limited by its own max bytes instead
+		 */
+		final int maxBytes = singletonBeanFactory.getConfigs().getMaxBytes();
+		final Connection connection = Jsoup.connect(url).parser(Parser.xmlParser()).validateTLSCertificates(false).userAgent(USER_AGENT)
+				.maxBodySize(siteMapReader == null ? maxBytes + 1 : 0).timeout(timeoutInMillis).ignoreHttpErrors(true);
 
-		if (response.statusCode() == ContentProvider.SC_OK) {
+		/** the gzipped sitemap is served as binary content, which Jsoup rejects by default */
+		connection.ignoreContentType(navigationPage && ContentProvider.isGzipUrl(url));
+
+		/** Jsoup decodes only gzip by itself (and limits max body size after decoding) */
+		connection.header(HEADER_ACCEPT_ENCODING, singletonBeanFactory.getConfigs().isCompression() ? "gzip" : "identity");
+
+		/**
+		 * JDK drains the rest of kept alive response in background once the
+		 * stream is closed, so the connection is closed instead when the page
+		 * is read only till body end, and rest of the page is not downloaded
+		 */
+		if (isStopAtBodyEnd(navigationPage)) {
+			connection.header(HEADER_CONNECTION, "close");
+		}
+
+		if (validators != null) {
+			if (validators.getETag() != null) {
+				connection.header(HEADER_IF_NONE_MATCH, validators.getETag());
+			}
+			if (validators.getLastModified() != null) {
+				connection.header(HEADER_IF_MODIFIED_SINCE, validators.getLastModified());
+			}
+		}
 
-			if (response.parse() != null && response.parse().hasText()) {
+		final Response response = connection.execute();
+		clock.headersReceived();
 
-				final JsoupDocumentWrapper responseWrapper = new ResponseWrapperBuilder(bytesNeeded ? null : response.parse())
-						.withResponseType(response.contentType()).withURL(response.url())
-						.withResponseBytes(bytesNeeded ? response.bodyAsBytes() : null).build();
-				return responseWrapper;
+		if (validators != null && response.statusCode() == SC_NOT_MODIFIED) {
+			return buildNotModifiedResponse(url, response.url(), validators);
+		}
 
-			} else {
+		validateStatusCode(url, response.statusCode(), response.header(HEADER_RETRY_AFTER));
 
-				LOG.error("Retrieving null document for url : {}", url);
-				throw new RuntimeException("Retrieving null document for url " + url);
+		if (isSiteMapStream(siteMapReader, url, response.contentType())) {
+			final long bodyBytes;
+			try (BufferedInputStream bodyStream = response.bodyStream()) {
+				if (bodyStream instanceof ConstrainableInputStream) {
+					/** the reader hands the urls over while reading, so the deadline would count their processing too */
+					((ConstrainableInputStream) bodyStream).timeout(System.nanoTime(), 0);
+				}
+				bodyBytes = readSiteMap(url, response.url(), clock.time(bodyStream), siteMapReader);
 			}
-		} else {
-			LOG.error("Error ocuured while downloading page content for url : {}, status code : {}", url, response.statusCode());
-			throw new RuntimeException("Error ocuured while downloading page content for url : " + url + ", status code : " + response.statusCode());
+			recordTransfer(url, getWireBytes(response, bodyBytes), bodyBytes);
+			final PageValidators responseValidators = new PageValidators(response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED),
+					bodyBytes);
+			return buildSiteMapResponse(url, response.contentType(), response.url(), responseValidators);
 		}
 
+		if (isBytesResponse(bytesNeeded, navigationPage, url, response.contentType())) {
+			/** read into pooled buffer, Jsoup applies max body size to the stream */
+			final long sizeHint = response.hasHeader(HEADER_CONTENT_ENCODING) ? -1 : NumberUtils.toLong(response.header(HEADER_CONTENT_LENGTH), -1);
+			final ResponseBuffer responseBody = readBody(url, clock.time(response.bodyStream()), sizeHint);
+			recordTransfer(url, getWireBytes(response, responseBody.getLength()), responseBody.getLength());
+			final PageValidators responseValidators = new PageValidators(response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED),
+					responseBody.getLength());
+			return buildResponse(url, null, response.contentType(), response.url(), responseBody, responseValidators);
+		}
+
+		/** parsing from the stream, the body is never buffered as bytes */
+		final boolean streamingLinks = isStreamingLinks(navigationPage, response.charset());
+		final Document document;
+		final List<String> links;
+		final long contentLength;
+		try (InputStream bodyStream = ByteStreams.limit(clock.time(response.bodyStream()), maxBytes)) {
+			final CountingInputStream body = new CountingInputStream(isStopAtBodyEnd(navigationPage) ? new BodyEndInputStream(bodyStream) : bodyStream);
+			document = streamingLinks ? null : parseBody(body, response.charset(), response.url().toExternalForm());
+			links = streamingLinks ? extractLinks(body, response.charset(), response.url().toExternalForm()) : null;
+			contentLength = body.getCount();
+		}
+		recordTransfer(url, getWireBytes(response, contentLength), contentLength);
+
+		final PageValidators responseValidators = new PageValidators(response.header(HEADER_ETAG), response.header(HEADER_LAST_MODIFIED),
+				contentLength);
+		if (streamingLinks) {
+			return buildLinksResponse(url, links, response.contentType(), response.url(), responseValidators);
+		}
+		return buildResponse(url, document, response.contentType(), response.url(), null, responseValidators);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Gets the bytes received on the wire, Jsoup does not expose the
+	 * compressed stream, so it's taken from {@code Content-Length} of encoded
+	 * response (decoded bytes if it's not sent).
 	 */
-	@Override
-	public JsoupDocumentWrapper downloadPage(final String url) throws IOException {
-		return downloadPage(url, false);
+	private long getWireBytes(final Response response, final long bodyBytes) {
+		final String contentLength = response.header(HEADER_CONTENT_LENGTH);
+		if (response.hasHeader(HEADER_CONTENT_ENCODING) && StringUtils.isNumeric(contentLength)) {
+			return Long.parseLong(contentLength);
+		}
+		return bodyBytes;
 	}
 }
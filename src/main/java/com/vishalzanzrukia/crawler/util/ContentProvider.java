@@ -1,10 +1,13 @@
 package com.vishalzanzrukia.crawler.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 
 import org.jsoup.nodes.Document;
 
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
 
 /**
  * The interface to provide the {@link JsoupDocumentWrapper} based on
@@ -15,8 +18,54 @@ import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
 public interface ContentProvider {
 
 	public static final int SC_OK = 200;
+	public static final int SC_NOT_MODIFIED = 304;
 	public static final String XML_CONTENT_TYPE_DETECTOR = "/xml";
 
+	/** The extension of gzipped sitemaps, which are served as binary content */
+	public static final String GZIP_EXTENSION = ".gz";
+	public static final String USER_AGENT = "Mozilla";
+
+	/** The provider which opens new connection per page using Jsoup */
+	public static final String PROVIDER_JSOUP = "jsoup";
+
+	/** The provider which reuses keep-alive connections from shared pool */
+	public static final String PROVIDER_POOLED = "pooled";
+
+	/** The WARC mode to record downloaded pages */
+	public static final String WARC_MODE_RECORD = "record";
+
+	/** The WARC mode to serve pages only from recorded WARC files */
+	public static final String WARC_MODE_REPLAY = "replay";
+
+	/**
+	 * Checks whether the response is sitemap, the xml or the gzipped file
+	 * (whatever binary content type it's served with).
+	 *
+	 * @param url
+	 *            the page url
+	 * @param responseType
+	 *            the content type of response, can be null
+	 * @return true, if response is sitemap
+	 */
+	public static boolean isSiteMapResponse(final String url, final String responseType) {
+		if (responseType != null && responseType.contains(XML_CONTENT_TYPE_DETECTOR)) {
+			return true;
+		}
+		return isGzipUrl(url) && (responseType == null || !responseType.startsWith("text/"));
+	}
+
+	/**
+	 * Checks whether the path of url has gzip extension.
+	 *
+	 * @param url
+	 *            the page url
+	 * @return true, if url is of gzipped file
+	 */
+	public static boolean isGzipUrl(final String url) {
+		final int queryStart = url.indexOf('?');
+		return (queryStart == -1 ? url : url.substring(0, queryStart)).toLowerCase().endsWith(GZIP_EXTENSION);
+	}
+
 	/**
 	 * Download page and provide the {@link JsoupDocumentWrapper} with necessary
 	 * metadata.<BR>
@@ -59,4 +108,100 @@ public interface ContentProvider {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	JsoupDocumentWrapper downloadPage(final String url, boolean bytesNeeded) throws IOException;
+
+	/**
+	 * Download page only if it's modified since the given {@code validators}
+	 * were received, by sending {@code If-None-Match} and
+	 * {@code If-Modified-Since} headers.<BR>
+	 * If server responds {@code 304}, then
+	 * {@link JsoupDocumentWrapper#isNotModified()} will return {@code true}
+	 * and the document will be null, else it's same as
+	 * {@link #downloadPage(String)}.
+	 *
+	 * @param url
+	 *            the page url
+	 * @param validators
+	 *            the validators received last time, can be null
+	 * @return the response wrapper
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	JsoupDocumentWrapper downloadPage(final String url, PageValidators validators) throws IOException;
+
+	/**
+	 * Download the product page, it's same as
+	 * {@link #downloadPage(String, PageValidators)}, except that if
+	 * {@code crawler.product.structuredData} is enabled, the page is not
+	 * parsed and {@link JsoupDocumentWrapper#getResponseBody()} will return
+	 * actual content bytes, so the product parser reads the structured data
+	 * first and parses the document only if it's needed.
+	 *
+	 * @param url
+	 *            the page url
+	 * @param validators
+	 *            the validators received last time, can be null
+	 * @return the response wrapper
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	JsoupDocumentWrapper downloadProductPage(final String url, PageValidators validators) throws IOException;
+
+	/**
+	 * Download the navigation page, the page which is visited only to find
+	 * the links.<BR>
+	 * It's same as {@link #downloadPage(String)}, except that reading of the
+	 * page is stopped once closing body tag is received (if
+	 * {@code crawler.fetch.earlyAbort} is enabled), so the document may not
+	 * have the content after body.<BR>
+	 * If the page is xml (sitemap), it's not parsed at all and
+	 * {@link JsoupDocumentWrapper#getResponseBytes()} will return actual
+	 * content bytes.
+	 *
+	 * @param url
+	 *            the page url
+	 * @return the response wrapper
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	JsoupDocumentWrapper downloadNavigationPage(final String url) throws IOException;
+
+	/**
+	 * Download the navigation page same as
+	 * {@link #downloadNavigationPage(String)}, except that if the page is
+	 * sitemap, it's handed to {@code siteMapReader} while it's downloaded, so
+	 * the sitemap is never buffered. The body is limited to
+	 * {@code crawler.sitemap.maxBytes}, the truncated sitemap is logged.<BR>
+	 * The response of sitemap has neither document nor body then.
+	 *
+	 * @param url
+	 *            the page url
+	 * @param siteMapReader
+	 *            the reader of sitemap body
+	 * @return the response wrapper
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	JsoupDocumentWrapper downloadNavigationPage(final String url, SiteMapBodyReader siteMapReader) throws IOException;
+
+	/**
+	 * The reader of sitemap body, it's called by fetching thread while the
+	 * response is downloaded.
+	 */
+	@FunctionalInterface
+	public interface SiteMapBodyReader {
+
+		/**
+		 * Reads the sitemap body.
+		 *
+		 * @param responseUrl
+		 *            the url of response (after redirects)
+		 * @param body
+		 *            the body of sitemap (decoded as per
+		 *            {@code Content-Encoding}, the gzipped file is not
+		 *            decompressed), it's closed by the provider
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		void read(URL responseUrl, InputStream body) throws IOException;
+	}
 }
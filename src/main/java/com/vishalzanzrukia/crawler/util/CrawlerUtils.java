@@ -1,20 +1,28 @@
 package com.vishalzanzrukia.crawler.util;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.output.StringBuilderWriter;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,10 +30,22 @@ import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
 import com.vishalzanzrukia.crawler.bean.Product;
-import com.vishalzanzrukia.crawler.integration.SpringIntegrationProcessor;
+import com.vishalzanzrukia.crawler.fetch.HedgedRequestExecutor;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitBreaker;
+import com.vishalzanzrukia.crawler.fetch.HostCircuitOpenException;
+import com.vishalzanzrukia.crawler.fetch.HostPolitenessScheduler.HostPermit;
+import com.vishalzanzrukia.crawler.fetch.PermanentFetchException;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+import com.vishalzanzrukia.crawler.fetch.RetryScheduler;
+import com.vishalzanzrukia.crawler.parser.PooledSiteMapParser;
+import com.vishalzanzrukia.crawler.parser.SiteMapLastmodCache;
+import com.vishalzanzrukia.crawler.parser.StreamingSiteMapReader;
 import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider.SiteMapBodyReader;
 
 import crawlercommons.sitemaps.AbstractSiteMap;
 import crawlercommons.sitemaps.SiteMap;
@@ -54,6 +74,9 @@ public class CrawlerUtils {
 	 */
 	private static final Pattern DOUBLE_CLEANER_DOLLAR = Pattern.compile("[$]\\p{javaSpaceChar}?");
 
+	/** The bytes of sitemap kept till its format is detected, to parse the other formats as whole */
+	private static final int FORMAT_DETECTION_BYTES = 65536;
+
 	public static final String LINE_SEPARATOR;
 
 	static {
@@ -72,6 +95,11 @@ public class CrawlerUtils {
 		public static final String DEPTH = "depth";
 		public static final String URL = "url";
 		public static final String TRIMMED_PRODUCT_URL = "trimmedProductUrl";
+		public static final String RETRY_COUNT = "retryCount";
+		public static final String URL_CLASS = "urlClass";
+
+		/** Whether the url is read from sitemap with lastmod, so its lastmod is marked fetched once it's fetched */
+		public static final String SITEMAP_LASTMOD = "siteMapLastmod";
 	}
 
 	/**
@@ -86,57 +114,71 @@ public class CrawlerUtils {
 		VALID_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(.*)$"),
 
 		/** Filter urls for media types */
-		MEDIA_URL("(?i)^" + REGEXES.DOMAIN_BASE_REGEX + "(.*\\.)(apk|gif|jpg|png|ico|css|sit|eps|wmf|rar|tar|zip|rpm|tgz|mov|exe|jpeg|bmp|js|mpg|mp3|mp4|ogv|pdf)(\\?|&|$)"),
+		MEDIA_URL("(?i)^" + REGEXES.DOMAIN_BASE_REGEX + "(.*\\.)(apk|gif|jpg|png|ico|css|sit|eps|wmf|rar|tar|zip|rpm|tgz|mov|exe|jpeg|bmp|js|mpg|mp3|mp4|ogv|pdf)(\\?|&|$)",
+				".apk", ".gif", ".jpg", ".png", ".ico", ".css", ".sit", ".eps", ".wmf", ".rar", ".tar", ".zip", ".rpm", ".tgz", ".mov", ".exe", ".jpeg",
+				".bmp", ".js", ".mpg", ".mp3", ".mp4", ".ogv", ".pdf"),
 
 		/** Filter url for jsessionid */
-		JSESSION_ID_URL("(?i)^" + REGEXES.DOMAIN_BASE_REGEX + "(.*jsessionid\\=.*)$"),
+		JSESSION_ID_URL("(?i)^" + REGEXES.DOMAIN_BASE_REGEX + "(.*jsessionid\\=.*)$", "jsessionid="),
 
 		/** Filter url for write review page */
-		WRITE_REVIEW_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(.*\\/writeReview.jsp\\?)(.*)$"),
+		WRITE_REVIEW_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(.*\\/writeReview.jsp\\?)(.*)$", "/writereview"),
 
 		/** Filter url for assets */
-		ASSETS_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(assets\\/)(.*)$"),
+		ASSETS_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(assets\\/)(.*)$", "assets/"),
 
 		/** Filter mobile urls */
-		MOBILE_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(mobile\\/)(.*)$"),
+		MOBILE_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(mobile\\/)(.*)$", "mobile/"),
 
 		/** Filter url for account */
-		ACCOUNT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(account\\/)(.*)$"),
+		ACCOUNT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(account\\/)(.*)$", "account/"),
 
 		/** Filter search url for most of domains */
-		GENERAL_SEARCH_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(search)(\\?|\\/)(.*)$"),
+		GENERAL_SEARCH_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(search)(\\?|\\/)(.*)$", "search"),
 
 		/**
 		 * The canonical product url for most of domains, some domain might have
 		 * specific regex
 		 */
-		GENERAL_CANONICAL_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(buy\\/)(.*)(\\-)((\\d)+)$"),
+		GENERAL_CANONICAL_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(buy\\/)(.*)(\\-)((\\d)+)$", "buy/"),
 
 		/**
 		 * The normal product url for most of domains, some domain (like co.uk)
 		 * might have specific regex
 		 */
-		GENERAL_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(product\\/index\\.jsp\\?productId\\=)((\\d)+)(.*)$"),
+		GENERAL_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(product\\/index\\.jsp\\?productId\\=)((\\d)+)(.*)$", "product/index.jsp?productid="),
 
 		/** The normal product url for co.uk domain */
-		UK_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(pdp\\/product\\.jsp\\?productId\\=)([0-9A-Z]+)(.*)$"),
+		UK_PRODUCT_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "(pdp\\/product\\.jsp\\?productId\\=)([0-9A-Z]+)(.*)$", "pdp/product.jsp?productid="),
 
 		/** category normal url regex */
-		CATEGORY_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "((?!search\\b)\\b\\w+\\/index\\.jsp\\?)(.*)(categoryId\\=(\\d)+)(.*)$"),
+		CATEGORY_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "((?!search\\b)\\b\\w+\\/index\\.jsp\\?)(.*)(categoryId\\=(\\d)+)(.*)$", "categoryid="),
 
 		/** category page url regex */
-		CATEGORY_PAGE_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "((?!search\\b)\\b\\w+\\/index\\.jsp\\?)(.*)(categoryId\\=(\\d)+)(((?!page).)*)(page\\=(\\d)+)?(.*)$");
+		CATEGORY_PAGE_URL("^" + REGEXES.DOMAIN_BASE_REGEX + "((?!search\\b)\\b\\w+\\/index\\.jsp\\?)(.*)(categoryId\\=(\\d)+)(((?!page).)*)(page\\=(\\d)+)?(.*)$",
+				"categoryid=");
 
 		public static final String DOMAIN_BASE_REGEX = "(http(s)?\\:\\/\\/www\\.%s\\/)";
 
 		private String regex;
 
-		private REGEXES(final String regex) {
+		/**
+		 * The literals in lower case, at least one of them is part of each
+		 * matching url (ignoring case), empty if the regex has no such literal
+		 */
+		private String[] keywords;
+
+		private REGEXES(final String regex, final String... keywords) {
 			this.regex = regex;
+			this.keywords = keywords;
 		}
 		public String getRegex() {
 			return regex;
 		}
+
+		public String[] getKeywords() {
+			return keywords.clone();
+		}
 	}
 
 	/**
@@ -147,7 +189,7 @@ public class CrawlerUtils {
 	 * @return the domain specific regex
 	 */
 	public String getDomainSpecificRegex(REGEXES regex) {
-		return String.format(regex.getRegex(), singletonBeanFactory.getRuntimeConfigs().getDomainName());
+		return singletonBeanFactory.getUrlPatternRegistry().getPatterns().getRegex(regex);
 	}
 
 	/**
@@ -156,30 +198,163 @@ public class CrawlerUtils {
 	 * @param url
 	 *            the url
 	 * @return the response
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
 	 */
 	public JsoupDocumentWrapper getResponse(final String url) {
-		return getResponse(url, new int[]{1});
+		return getResponse(url, null, false);
+	}
+
+	/**
+	 * Gets the response of navigation page, the page which is visited only to
+	 * find the links, see
+	 * {@link ContentProvider#downloadNavigationPage(String, SiteMapBodyReader)}.
+	 * If the page is sitemap, it's handed to {@code siteMapReader} while it's
+	 * downloaded, within the permit of its host.
+	 *
+	 * @param url
+	 *            the url
+	 * @param siteMapReader
+	 *            the reader of sitemap body
+	 * @return the response
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
+	 */
+	public JsoupDocumentWrapper getNavigationResponse(final String url, final SiteMapBodyReader siteMapReader) {
+		return fetch(url, () -> {
+			try (HostPermit hostPermit = singletonBeanFactory.getHostPolitenessScheduler().acquire(url)) {
+				return hostPermit.fetch(() -> singletonBeanFactory.getContentProvider().downloadNavigationPage(url, siteMapReader));
+			}
+		});
+	}
+
+	/**
+	 * Gets the response with conditional request, if validators of the url
+	 * are stored in previous cycle.<BR>
+	 * If page is not modified since then,
+	 * {@link JsoupDocumentWrapper#isNotModified()} returns true and document
+	 * is not parsed at all.
+	 *
+	 * @param url
+	 *            the url
+	 * @return the response
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
+	 */
+	public JsoupDocumentWrapper getConditionalResponse(final String url) {
+		final PageValidators validators = singletonBeanFactory.getValidatorCache().get(url);
+		LOG.trace("The stored validators : {} for url : {}", validators, url);
+
+		final JsoupDocumentWrapper response = singletonBeanFactory.getConfigs().isHedgeEnabled() ? getHedgedResponse(url, validators)
+				: getProductResponse(url, validators);
+		if (response != null && validators != null && validators.hasValidators()) {
+			singletonBeanFactory.getConditionalFetchStats().record(response);
+		}
+		return response;
 	}
 
 	/**
-	 * Gets the jsoup document.
+	 * Gets the jsoup document, only single attempt is done here, the failed
+	 * fetch is retried later by {@link RetryScheduler}, so the consumer thread
+	 * is not blocked on failing host.
 	 *
 	 * @param url
 	 *            the url
+	 * @param validators
+	 *            the validators for conditional request, can be null
+	 * @param navigationPage
+	 *            whether the page is visited only to find the links
 	 * @return the document
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
 	 */
 	@VisibleForTesting
-	JsoupDocumentWrapper getResponse(final String url, int[] noOfRetries) {
+	JsoupDocumentWrapper getResponse(final String url, final PageValidators validators, final boolean navigationPage) {
+		return fetch(url, () -> {
+			try (HostPermit hostPermit = singletonBeanFactory.getHostPolitenessScheduler().acquire(url)) {
+				if (navigationPage) {
+					return hostPermit.fetch(() -> singletonBeanFactory.getContentProvider().downloadNavigationPage(url));
+				}
+				return hostPermit.fetch(() -> singletonBeanFactory.getContentProvider().downloadPage(url, validators));
+			}
+		});
+	}
+
+	/**
+	 * Gets the response of product page, see
+	 * {@link ContentProvider#downloadProductPage(String, PageValidators)}.
+	 *
+	 * @return the document
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
+	 */
+	private JsoupDocumentWrapper getProductResponse(final String url, final PageValidators validators) {
+		return fetch(url, () -> {
+			try (HostPermit hostPermit = singletonBeanFactory.getHostPolitenessScheduler().acquire(url)) {
+				return hostPermit.fetch(() -> singletonBeanFactory.getContentProvider().downloadProductPage(url, validators));
+			}
+		});
+	}
+
+	/**
+	 * Gets the jsoup document through {@link HedgedRequestExecutor}, the
+	 * hedged request is sent only if its own host permit is free right now.
+	 *
+	 * @param url
+	 *            the url
+	 * @param validators
+	 *            the validators for conditional request, can be null
+	 * @return the document
+	 * @throws HostCircuitOpenException
+	 *             if the url is not fetched because its host is failing
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way (like 404)
+	 */
+	private JsoupDocumentWrapper getHedgedResponse(final String url, final PageValidators validators) {
+		final ContentProvider contentProvider = singletonBeanFactory.getContentProvider();
+		return fetch(url, () -> {
+			try (HostPermit hostPermit = singletonBeanFactory.getHostPolitenessScheduler().acquire(url)) {
+				final Callable<JsoupDocumentWrapper> request = () -> hostPermit.fetch(() -> contentProvider.downloadProductPage(url, validators));
+				return singletonBeanFactory.getHedgedRequestExecutor().fetch(url, request, () -> {
+					/** the hedge never waits for the host, it's not sent if the host is busy */
+					try (HostPermit hedgePermit = singletonBeanFactory.getHostPolitenessScheduler().tryAcquire(url)) {
+						return hedgePermit == null ? null : hedgePermit.fetch(() -> contentProvider.downloadProductPage(url, validators));
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Runs the fetch of the url through {@link HostCircuitBreaker}.
+	 *
+	 * @return the document, or null if fetch is failed and can be retried
+	 * @throws PermanentFetchException
+	 *             if fetch is failed and retry would fail same way
+	 */
+	private JsoupDocumentWrapper fetch(final String url, final Callable<JsoupDocumentWrapper> fetch) {
+		final HostCircuitBreaker hostCircuitBreaker = singletonBeanFactory.getHostCircuitBreaker();
+		hostCircuitBreaker.acquire(url);
 		try {
-			return singletonBeanFactory.getContentProvider().downloadPage(url);
+			final JsoupDocumentWrapper response = fetch.call();
+			hostCircuitBreaker.onResult(url, null);
+			return response;
 		} catch (Exception e) {
-			if (noOfRetries[0] >= singletonBeanFactory.getConfigs().getMaxRetry()) {
-				LOG.error("Error while retrieving Jsoup document from url : {}", url, e);
-			} else {
-				noOfRetries[0] = ++noOfRetries[0];
-				LOG.info("Error while retrieving Jsoup document from url : {}, trying {}th time.", url, noOfRetries[0]);
-				return getResponse(url, noOfRetries);
+			hostCircuitBreaker.onResult(url, e);
+			if (!HostCircuitBreaker.isHostFailure(e)) {
+				throw new PermanentFetchException(url, e);
 			}
+			LOG.warn("Error while retrieving Jsoup document from url : {}", url, e);
 		}
 		LOG.warn("Returning null document for url : {}", url);
 		return null;
@@ -242,9 +417,9 @@ public class CrawlerUtils {
 	public String trimCategoryUrl(final String url) {
 		/** Assuming that `page=` is not used for any other purpose in URL */
 		if (url.contains("page=")) {
-			return url.replaceAll(getDomainSpecificRegex(REGEXES.CATEGORY_PAGE_URL), "$1$3$5$8$9");
+			return singletonBeanFactory.getUrlPatternRegistry().getPatterns().replaceAll(REGEXES.CATEGORY_PAGE_URL, url, "$1$3$5$8$9");
 		} else {
-			return url.replaceAll(getDomainSpecificRegex(REGEXES.CATEGORY_URL), "$1$3$5");
+			return singletonBeanFactory.getUrlPatternRegistry().getPatterns().replaceAll(REGEXES.CATEGORY_URL, url, "$1$3$5");
 		}
 	}
 
@@ -256,7 +431,7 @@ public class CrawlerUtils {
 	 * @return true, if is category url
 	 */
 	public boolean isCategoryUrl(final String url) {
-		return url.matches(getDomainSpecificRegex(REGEXES.CATEGORY_URL));
+		return singletonBeanFactory.getUrlPatternRegistry().getPatterns().matches(REGEXES.CATEGORY_URL, url);
 	}
 
 	/**
@@ -380,38 +555,91 @@ public class CrawlerUtils {
 	}
 
 	/**
-	 * Parses the xml urls.
+	 * Parses the urls of xml sitemap (or the child sitemaps of sitemap index)
+	 * while the sitemap is downloaded, and hands them over in batches of
+	 * {@code crawler.sitemap.batchSize}, see {@link StreamingSiteMapReader}.
+	 * The sitemap formats which are not read as stream (text, RSS, Atom) are
+	 * read into pooled buffer and parsed by {@link PooledSiteMapParser}, and
+	 * their urls are handed over in batches as well.<BR>
+	 * The urls of streamed sitemaps which are not modified since their last
+	 * fetch are skipped, if {@code crawler.sitemap.lastmod} is enabled.
 	 *
-	 * @param responseMap
-	 *            the response map
-	 * @return the sets the
+	 * @param url
+	 *            the sitemap url (of response)
+	 * @param body
+	 *            the body stream of sitemap, it's not closed by this method
+	 * @param urlsConsumer
+	 *            the consumer of sitemap type and url batches
+	 * @return the number of urls handed over
 	 */
-	public Set<String> parseXmlUrls(final Map<String, Object> responseMap) {
+	public int parseXmlUrls(final URL url, final InputStream body, final BiConsumer<StreamingSiteMapReader.Type, Set<String>> urlsConsumer) {
 
-		Set<String> parsedUrls = Collections.emptySet();
-		final URL url = (URL) responseMap.get(SpringIntegrationProcessor.KEY_RESPONSE_URL);
-		final String pageContent = (String) responseMap.get(SpringIntegrationProcessor.KEY_PAGE_CONTENT);
+		final int batchSize = singletonBeanFactory.getConfigs().getSiteMapBatchSize();
+		final int[] parsedUrls = {0};
+
+		/** the start of body is kept, so it can be parsed as whole if it's not xml sitemap */
+		final BufferedInputStream in = new BufferedInputStream(body);
+		in.mark(FORMAT_DETECTION_BYTES);
 		try {
 
-			final AbstractSiteMap siteMap = singletonBeanFactory.getSiteMapParser().parseSiteMap(pageContent.getBytes(), url);
-			LOG.trace("Inside parseXmlUrls, isIndex : {}, type : {}, isProcessed : {}", siteMap.isIndex(), siteMap.getType(), siteMap.isProcessed());
+			final StreamingSiteMapReader reader = new StreamingSiteMapReader(batchSize);
+			final StreamingSiteMapReader.Type type = reader.read(in, entries -> {
+				if (singletonBeanFactory.getConfigs().isSiteMapLastmodFilter()) {
+					parsedUrls[0] += handOverChanged(entries, reader.getType(), urlsConsumer);
+				} else {
+					final Set<String> urls = new LinkedHashSet<>(entries.size() * 2);
+					entries.forEach(entry -> urls.add(entry.getUrl()));
+					parsedUrls[0] += handOver(urls, reader.getType(), urlsConsumer);
+				}
+			});
+			LOG.debug("Found total {} nummber of {} urls while parsing xml url : {}", parsedUrls[0], type, url);
+
+		} catch (UnknownFormatException e) {
+
+			LOG.debug("The xml url : {} is not read as stream ({}), parsing it as whole", url, e.getError());
+			parsedUrls[0] = parseSiteMap(in, url, batchSize, urlsConsumer);
+
+		} catch (IOException e) {
+			LOG.error("Error while parsing urls from xml response retrieved from url : {}", url, e);
+		}
+
+		return parsedUrls[0];
+	}
+
+	/**
+	 * Parses the sitemap as whole, by {@link PooledSiteMapParser}, the body is
+	 * read again from its start.
+	 */
+	private int parseSiteMap(final BufferedInputStream in, final URL url, final int batchSize,
+			final BiConsumer<StreamingSiteMapReader.Type, Set<String>> urlsConsumer) {
+		int parsedUrls = 0;
+		ResponseBuffer pageBody = null;
+		try {
+
+			in.reset();
+			pageBody = singletonBeanFactory.getResponseBufferPool().read(in, -1, singletonBeanFactory.getConfigs().getSiteMapMaxBytes());
+			final AbstractSiteMap siteMap = singletonBeanFactory.getSiteMapParser().parseSiteMap(pageBody, url);
+			LOG.trace("Inside parseSiteMap, isIndex : {}, type : {}, isProcessed : {}", siteMap.isIndex(), siteMap.getType(), siteMap.isProcessed());
 
 			if (siteMap instanceof SiteMap) {
 
 				Collection<SiteMapURL> urls = ((SiteMap) siteMap).getSiteMapUrls();
 				LOG.debug("Found total {} nummber of urls while parsing xml url : {}", urls.size(), url);
 
-				if (urls.size() > 0) {
-					parsedUrls = urls.stream().map(siteMapUrl -> siteMapUrl.getUrl().toString())
-							.map(urlIn -> singletonBeanFactory.getComponentRegistry().getUrlProcessor().normalize(urlIn)).collect(Collectors.toSet());
+				for (final List<SiteMapURL> batch : Iterables.partition(urls, batchSize)) {
+					parsedUrls += handOver(batch.stream().map(siteMapUrl -> siteMapUrl.getUrl().toString())
+							.collect(Collectors.toCollection(LinkedHashSet::new)), StreamingSiteMapReader.Type.URLSET,
+							urlsConsumer);
 				}
 			} else if (siteMap instanceof SiteMapIndex) {
 
 				Collection<AbstractSiteMap> siteMaps = ((SiteMapIndex) siteMap).getSitemaps();
 				LOG.debug("Found total {} nummber of sitemap urls while parsing xml url : {}", siteMaps.size(), url);
 
-				if (siteMaps.size() > 0) {
-					parsedUrls = siteMaps.stream().map(siteMapIn -> siteMapIn.getUrl().toString()).collect(Collectors.toSet());
+				for (final List<AbstractSiteMap> batch : Iterables.partition(siteMaps, batchSize)) {
+					parsedUrls += handOver(batch.stream().map(siteMapIn -> siteMapIn.getUrl().toString())
+							.collect(Collectors.toCollection(LinkedHashSet::new)), StreamingSiteMapReader.Type.INDEX,
+							urlsConsumer);
 				}
 			} else {
 				LOG.warn("AbstractSiteMap must be instance of either SiteMap or SiteMapIndex, check if API changed?");
@@ -419,11 +647,53 @@ public class CrawlerUtils {
 
 		} catch (IOException | UnknownFormatException e) {
 			LOG.error("Error while parsing urls from xml response retrieved from url : {}", url, e);
+		} finally {
+			if (pageBody != null) {
+				pageBody.release();
+			}
 		}
-
 		return parsedUrls;
 	}
 
+	/**
+	 * Hands over the batch of urls, the page urls are normalized first (the
+	 * invalid ones are skipped), the child sitemap urls are used as they are.
+	 */
+	private int handOver(final Set<String> urls, final StreamingSiteMapReader.Type type,
+			final BiConsumer<StreamingSiteMapReader.Type, Set<String>> urlsConsumer) {
+		final Set<String> batch = type == StreamingSiteMapReader.Type.INDEX ? urls
+				: urls.stream().map(urlIn -> singletonBeanFactory.getComponentRegistry().getUrlProcessor().normalize(urlIn))
+						.filter(urlIn -> !StringUtils.isBlank(urlIn)).collect(Collectors.toCollection(LinkedHashSet::new));
+		if (!batch.isEmpty()) {
+			urlsConsumer.accept(type, batch);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Hands over the batch of urls same as
+	 * {@link #handOver(Set, StreamingSiteMapReader.Type, BiConsumer)}, except
+	 * the urls not modified since their last fetch, see
+	 * {@link SiteMapLastmodCache}.
+	 */
+	private int handOverChanged(final List<StreamingSiteMapReader.Entry> entries, final StreamingSiteMapReader.Type type,
+			final BiConsumer<StreamingSiteMapReader.Type, Set<String>> urlsConsumer) {
+		final Map<String, String> lastmods = new LinkedHashMap<>(entries.size() * 2);
+		for (final StreamingSiteMapReader.Entry entry : entries) {
+			final String urlIn = type == StreamingSiteMapReader.Type.INDEX ? entry.getUrl()
+					: singletonBeanFactory.getComponentRegistry().getUrlProcessor().normalize(entry.getUrl());
+			if (!StringUtils.isBlank(urlIn)) {
+				lastmods.putIfAbsent(urlIn, entry.getLastModified());
+			}
+		}
+		final Set<String> batch = lastmods.isEmpty() ? Collections.emptySet()
+				: singletonBeanFactory.getSiteMapLastmodCache().filterChanged(lastmods, type);
+		if (!batch.isEmpty()) {
+			urlsConsumer.accept(type, batch);
+		}
+		return batch.size();
+	}
+
 	/**
 	 * Private helper method to strip out unused characters prior to parsing a
 	 * double value.
@@ -0,0 +1,72 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time spent on download of single page, that is the time till
+ * response headers are received plus the time spent in reads of the body. The
+ * time spent by the parser between the reads is not counted, so the measured
+ * time of a host does not grow with the parser load.<BR>
+ * It's used by the fetching thread only, so it's not thread safe.
+ *
+ * @author VishalZanzrukia
+ */
+class DownloadClock {
+
+	private final long startNanos = System.nanoTime();
+	private long headersNanos = -1;
+	private long readNanos;
+
+	/**
+	 * Marks that the response headers are received.
+	 */
+	void headersReceived() {
+		headersNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Wraps the body stream, so the time spent in its reads is counted.
+	 *
+	 * @param body
+	 *            the body stream
+	 * @return the timed stream
+	 */
+	InputStream time(final InputStream body) {
+		return new FilterInputStream(body) {
+
+			@Override
+			public int read() throws IOException {
+				final long readStartNanos = System.nanoTime();
+				try {
+					return super.read();
+				} finally {
+					readNanos += System.nanoTime() - readStartNanos;
+				}
+			}
+
+			@Override
+			public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+				final long readStartNanos = System.nanoTime();
+				try {
+					return super.read(buffer, offset, length);
+				} finally {
+					readNanos += System.nanoTime() - readStartNanos;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gets the download time, if the headers were not received (e.g. connect
+	 * timeout), it's the whole time since start.
+	 *
+	 * @return the download time in millis
+	 */
+	long getMillis() {
+		final long nanos = headersNanos < 0 ? System.nanoTime() - startNanos : headersNanos + readNanos;
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+}
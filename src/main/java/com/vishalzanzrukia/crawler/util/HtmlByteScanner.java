@@ -0,0 +1,444 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Scans the tags of html page in single pass over the body bytes, without
+ * building the document.<BR>
+ * Only the tags are tokenized: comments and declarations are skipped, quoted
+ * attribute values may contain {@code >}, and the content of
+ * {@code script}, {@code style}, {@code textarea} and {@code title} is not
+ * searched for tags. The sub classes choose the attributes to keep, and the
+ * raw text (e.g. of {@code script}) to capture.<BR>
+ * The markup is matched on raw bytes, so only ASCII compatible charsets are
+ * supported (see {@link #isSupported(String)}), the charset is used only to
+ * decode the kept values.
+ *
+ * @author VishalZanzrukia
+ */
+public abstract class HtmlByteScanner {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/** The longer attribute values are skipped */
+	private static final int MAX_VALUE_BYTES = 8192;
+
+	private static final String[] RAW_TEXT_TAGS = {"script", "style", "textarea", "title"};
+
+	/** The slots of name cache, must be power of two */
+	private static final int NAME_CACHE_SIZE = 256;
+
+	private final InputStream in;
+	private final Charset charset;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private boolean endOfStream;
+
+	private final StringBuilder name = new StringBuilder(16);
+	/** The tag and attribute names read so far, so same names are not allocated again */
+	private final String[] nameCache = new String[NAME_CACHE_SIZE];
+	private byte[] value = new byte[256];
+	private int valueLength;
+
+	/** The kept attributes of current tag */
+	private final Map<String, String> attributes = new HashMap<>(4);
+
+	/** The captured raw text, null till the first capture */
+	private byte[] rawText;
+	private int rawTextLength;
+	private boolean capturing;
+	private boolean rawTextOverflow;
+	private final int maxRawTextBytes;
+
+	/**
+	 * Instantiates a new scanner.
+	 *
+	 * @param in
+	 *            the body stream
+	 * @param charset
+	 *            the charset of the body
+	 * @param maxRawTextBytes
+	 *            the longer raw texts are not captured
+	 */
+	protected HtmlByteScanner(final InputStream in, final Charset charset, final int maxRawTextBytes) {
+		this.in = in;
+		this.charset = charset;
+		this.maxRawTextBytes = maxRawTextBytes;
+	}
+
+	/**
+	 * Checks whether the markup of the body in given charset can be scanned.
+	 *
+	 * @param charsetName
+	 *            the charset of the body, can be null
+	 * @return false, if charset is not ASCII compatible (UTF-16, UTF-32)
+	 */
+	public static boolean isSupported(final String charsetName) {
+		if (charsetName == null) {
+			return true;
+		}
+		final String name = charsetName.toUpperCase();
+		return !name.startsWith("UTF-16") && !name.startsWith("UTF-32") && Charset.isSupported(charsetName);
+	}
+
+	/**
+	 * Scans the body till end, or till {@link #isDone()}.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	protected final void scan() throws IOException {
+		int c;
+		while (!isDone() && (c = read()) != -1) {
+			if (c == '<') {
+				readMarkup();
+			}
+		}
+	}
+
+	protected Charset getCharset() {
+		return charset;
+	}
+
+	/**
+	 * Checks whether rest of the body can be skipped.
+	 *
+	 * @return true, if scan should be stopped
+	 */
+	protected boolean isDone() {
+		return false;
+	}
+
+	/**
+	 * Checks whether the value of attribute should be kept, only the first
+	 * value of each attribute is kept.
+	 *
+	 * @param tagName
+	 *            the tag name, in lower case
+	 * @param attributeName
+	 *            the attribute name, in lower case
+	 * @return true, if value is needed
+	 */
+	protected abstract boolean isAttributeNeeded(final String tagName, final String attributeName);
+
+	/**
+	 * Handles the tag, called at the end of tag only if any attribute was
+	 * kept.
+	 *
+	 * @param tagName
+	 *            the tag name, in lower case
+	 * @param attributes
+	 *            the kept attributes, decoded and unescaped, the map is
+	 *            reused for next tag
+	 */
+	protected abstract void handleTag(final String tagName, final Map<String, String> attributes);
+
+	/**
+	 * Checks whether the content of raw text tag should be captured, see
+	 * {@link #handleRawText(String, byte[], int)}.
+	 *
+	 * @param tagName
+	 *            the tag name, in lower case
+	 * @param attributes
+	 *            the kept attributes of the tag
+	 * @return true, if content is needed
+	 */
+	protected boolean isRawTextNeeded(final String tagName, final Map<String, String> attributes) {
+		return false;
+	}
+
+	/**
+	 * Handles the captured content of raw text tag, it's not called if the tag
+	 * is not closed or content is longer than max raw text bytes.
+	 *
+	 * @param tagName
+	 *            the tag name, in lower case
+	 * @param text
+	 *            the content bytes, the array is reused for next capture
+	 * @param length
+	 *            the length of content
+	 */
+	protected void handleRawText(final String tagName, final byte[] text, final int length) {
+		/** nothing is captured by default */
+	}
+
+	private void readMarkup() throws IOException {
+		final int c = read();
+		if (c == '!') {
+			if (read() == '-' && read() == '-') {
+				skipUntil("-->");
+			} else {
+				skipUntil(">");
+			}
+		} else if (c == '/' || c == '?') {
+			skipUntil(">");
+		} else if (isLetter(c)) {
+			final String tagName = readName(c);
+			attributes.clear();
+			final boolean selfClosing = readAttributes(tagName);
+			if (endOfStream) {
+				return;
+			}
+			if (!attributes.isEmpty()) {
+				handleTag(tagName, attributes);
+			}
+			if (!selfClosing && isRawTextTag(tagName)) {
+				skipRawText(tagName, isRawTextNeeded(tagName, attributes));
+			}
+		} else if (c != -1) {
+			/** not a tag, the character can start next markup */
+			unread();
+		}
+	}
+
+	/**
+	 * Reads the attributes till end of tag, the needed ones are kept.
+	 *
+	 * @return true, if the tag is self closing
+	 */
+	private boolean readAttributes(final String tagName) throws IOException {
+		boolean selfClosing = false;
+
+		while (true) {
+			int c = skipWhitespace();
+			if (c == -1) {
+				return selfClosing;
+			}
+			if (c == '>') {
+				break;
+			}
+			if (c == '/') {
+				selfClosing = true;
+				continue;
+			}
+			selfClosing = false;
+
+			final String attributeName = readName(c);
+			c = skipWhitespace();
+			if (c != '=') {
+				if (c != -1) {
+					unread();
+				}
+				continue;
+			}
+
+			final boolean keep = isAttributeNeeded(tagName, attributeName) && !attributes.containsKey(attributeName);
+			if (readValue(keep) && keep) {
+				attributes.put(attributeName, decodeValue());
+			}
+		}
+		return selfClosing;
+	}
+
+	/**
+	 * Reads the attribute value, quoted or unquoted.
+	 *
+	 * @return true, if the value was kept
+	 */
+	private boolean readValue(final boolean keep) throws IOException {
+		valueLength = 0;
+		boolean kept = keep;
+
+		int c = skipWhitespace();
+		final int quote = c == '"' || c == '\'' ? c : -1;
+		if (quote != -1) {
+			c = read();
+		}
+		while (c != -1) {
+			if (quote != -1 ? c == quote : isWhitespace(c) || c == '>') {
+				if (quote == -1) {
+					/** the tag end is read again by caller */
+					unread();
+				}
+				break;
+			}
+			if (kept) {
+				kept = append(c);
+			}
+			c = read();
+		}
+		return kept;
+	}
+
+	private boolean append(final int c) {
+		if (valueLength == value.length) {
+			if (value.length >= MAX_VALUE_BYTES) {
+				return false;
+			}
+			value = Arrays.copyOf(value, value.length * 2);
+		}
+		value[valueLength++] = (byte) c;
+		return true;
+	}
+
+	private String decodeValue() {
+		final String decoded = new String(value, 0, valueLength, charset);
+		return decoded.indexOf('&') == -1 ? decoded : Parser.unescapeEntities(decoded, true);
+	}
+
+	/**
+	 * Reads the tag or attribute name, in lower case.
+	 */
+	private String readName(final int first) throws IOException {
+		name.setLength(0);
+		int hash = 0;
+		int c = first;
+		while (c != -1 && !isWhitespace(c) && c != '>' && c != '/' && c != '=') {
+			final int lowerCase = toLowerCase(c);
+			name.append((char) lowerCase);
+			hash = 31 * hash + lowerCase;
+			c = read();
+		}
+		if (c != -1) {
+			unread();
+		}
+
+		final int slot = (hash ^ hash >>> 16) & (NAME_CACHE_SIZE - 1);
+		String cached = nameCache[slot];
+		if (cached == null || !cached.contentEquals(name)) {
+			cached = name.toString();
+			nameCache[slot] = cached;
+		}
+		return cached;
+	}
+
+	/**
+	 * Skips (or captures) the content of raw text tag till its closing tag.
+	 */
+	private void skipRawText(final String tagName, final boolean capture) throws IOException {
+		capturing = capture;
+		rawTextLength = 0;
+		rawTextOverflow = false;
+		try {
+			int c;
+			while ((c = read()) != -1) {
+				if (c != '<') {
+					continue;
+				}
+				if ((c = read()) != '/') {
+					if (c != -1) {
+						unread();
+					}
+					continue;
+				}
+
+				int matched = 0;
+				while (matched < tagName.length() && (c = read()) != -1 && toLowerCase(c) == tagName.charAt(matched)) {
+					matched++;
+				}
+				if (matched == tagName.length()) {
+					c = read();
+					if (c == -1 || c == '>' || c == '/' || isWhitespace(c)) {
+						/** the closing tag is captured as well, so it's cut off */
+						final int length = rawTextLength - 2 - tagName.length() - (c == -1 ? 0 : 1);
+						capturing = false;
+						if (c != '>') {
+							skipUntil(">");
+						}
+						if (capture && !rawTextOverflow) {
+							handleRawText(tagName, rawText, length);
+						}
+						return;
+					}
+				}
+				if (c != -1) {
+					unread();
+				}
+			}
+		} finally {
+			capturing = false;
+		}
+	}
+
+	private void capture(final int c) {
+		if (rawTextOverflow) {
+			return;
+		}
+		if (rawText == null) {
+			rawText = new byte[Math.min(BUFFER_SIZE, maxRawTextBytes)];
+		} else if (rawTextLength == rawText.length) {
+			if (rawText.length >= maxRawTextBytes) {
+				rawTextOverflow = true;
+				return;
+			}
+			rawText = Arrays.copyOf(rawText, Math.min(rawText.length * 2, maxRawTextBytes));
+		}
+		rawText[rawTextLength++] = (byte) c;
+	}
+
+	private void skipUntil(final String end) throws IOException {
+		int matched = 0;
+		int c;
+		while (matched < end.length() && (c = read()) != -1) {
+			if (c == end.charAt(matched)) {
+				matched++;
+			} else {
+				matched = c == end.charAt(0) ? 1 : 0;
+			}
+		}
+	}
+
+	private int skipWhitespace() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != -1 && isWhitespace(c));
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			final int read = in.read(buffer, 0, buffer.length);
+			if (read <= 0) {
+				endOfStream = true;
+				return -1;
+			}
+			position = 0;
+			limit = read;
+		}
+		final int c = buffer[position++] & 0xFF;
+		if (capturing) {
+			capture(c);
+		}
+		return c;
+	}
+
+	/**
+	 * Steps back the last read character, so it's read again.
+	 */
+	private void unread() {
+		position--;
+		if (capturing && !rawTextOverflow) {
+			rawTextLength--;
+		}
+	}
+
+	private static boolean isRawTextTag(final String tagName) {
+		for (final String rawTextTag : RAW_TEXT_TAGS) {
+			if (rawTextTag.equals(tagName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isLetter(final int c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+	}
+
+	private static boolean isWhitespace(final int c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+	}
+
+	private static int toLowerCase(final int c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+}
@@ -0,0 +1,322 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.fetch.AbortableFetch;
+import com.vishalzanzrukia.crawler.fetch.ResponseBuffer;
+
+/**
+ * The {@link ContentProvider} which downloads pages through one shared
+ * {@link CloseableHttpClient}.<BR>
+ * Unlike {@link ContentDownloader}, connections are pooled per host and kept
+ * alive between requests, and the same {@link SSLContext} is used for all
+ * connections so TLS sessions are resumed instead of doing full handshake for
+ * each page.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+public class PooledHttpContentProvider extends AbstractContentProvider {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	/** Same content types as accepted by Jsoup */
+	private static final Pattern XML_CONTENT_TYPE = Pattern.compile("(application|text)/\\w*\\+?xml.*");
+
+	/** The max bytes after body end which are drained to reuse connection */
+	private static final int MAX_DRAIN_BYTES = 16 * 1024;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+	private RequestConfig defaultRequestConfig;
+	private CloseableHttpClient httpClient;
+
+	/** Aborts the requests which are not completed within their deadline */
+	private ScheduledThreadPoolExecutor deadlineTimer;
+
+	/**
+	 * Creates the shared http client with connection pool.
+	 */
+	@PostConstruct
+	public void init() throws GeneralSecurityException {
+		final Configs configs = singletonBeanFactory.getConfigs();
+
+		/** trusting all certificates, same as ContentDownloader does */
+		final SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(null, (chain, authType) -> true).build();
+
+		final Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE)).build();
+
+		/** host names are resolved through the crawler DNS cache */
+		connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry, singletonBeanFactory.getDnsCache());
+		connectionManager.setMaxTotal(configs.getMaxPooledConnections());
+		connectionManager.setDefaultMaxPerRoute(configs.getMaxPooledConnectionsPerHost());
+
+		final int timeoutInMillis = configs.getTimeout() * 1000;
+		defaultRequestConfig = RequestConfig.custom().setConnectTimeout(timeoutInMillis).setSocketTimeout(timeoutInMillis)
+				.setConnectionRequestTimeout(timeoutInMillis).build();
+
+		/** content encoding is decoded by the provider itself, so compressed bytes can be counted */
+		httpClient = HttpClients.custom().setConnectionManager(connectionManager).setDefaultRequestConfig(defaultRequestConfig).setUserAgent(USER_AGENT)
+				.disableContentCompression().setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE).evictExpiredConnections()
+				.evictIdleConnections(configs.getPooledConnectionIdleTimeout(), TimeUnit.SECONDS).build();
+
+		deadlineTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("fetch-deadline-%d").setDaemon(true).build());
+		deadlineTimer.setRemoveOnCancelPolicy(true);
+
+		LOG.debug("Initialized pooled http client with max {} connections per host and {} in total", configs.getMaxPooledConnectionsPerHost(),
+				configs.getMaxPooledConnections());
+	}
+
+	/**
+	 * Closes the shared http client and all pooled connections.
+	 */
+	@PreDestroy
+	public void destroy() {
+		LOG.info("Inside PooledHttpContentProvider.destroy, closing pooled http client");
+		deadlineTimer.shutdownNow();
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+			LOG.warn("Error while closing pooled http client", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected JsoupDocumentWrapper download(final String url, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader) throws IOException {
+		final int timeoutInMillis = getTimeoutMillis(url);
+		final DownloadClock clock = new DownloadClock();
+		final HttpGet request = new HttpGet(url);
+		final AtomicBoolean deadlineExceeded = new AtomicBoolean();
+		final ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> {
+			deadlineExceeded.set(true);
+			request.abort();
+		}, timeoutInMillis, TimeUnit.MILLISECONDS);
+		try {
+			return execute(url, request, bytesNeeded, validators, navigationPage, siteMapReader, timeoutInMillis, deadline, clock);
+		} catch (IOException e) {
+			if (deadlineExceeded.get()) {
+				final SocketTimeoutException timeout = new SocketTimeoutException("Not completed within " + timeoutInMillis + " millis : " + url);
+				timeout.initCause(e);
+				throw timeout;
+			}
+			throw e;
+		} finally {
+			deadline.cancel(false);
+			recordLatency(url, clock);
+		}
+	}
+
+	/**
+	 * Executes the request and reads the response. The timeout of the host is
+	 * the deadline of whole request (waiting for pooled connection, connect,
+	 * response and reading the body), the request is aborted by
+	 * {@link #download(String, boolean, PageValidators, boolean, SiteMapBodyReader)}
+	 * once it's exceeded, except while the sitemap is handed to its reader.
+	 * Connect and read timeouts are of the host too.
+	 */
+	private JsoupDocumentWrapper execute(final String url, final HttpGet request, final boolean bytesNeeded, final PageValidators validators,
+			final boolean navigationPage, final SiteMapBodyReader siteMapReader, final int timeoutInMillis, final ScheduledFuture<?> deadline,
+			final DownloadClock clock) throws IOException {
+		LOG.debug("Going to download the content for url : {}", url);
+
+		request.setConfig(RequestConfig.copy(defaultRequestConfig).setConnectTimeout(timeoutInMillis).setSocketTimeout(timeoutInMillis).build());
+		AbortableFetch.register(request::abort);
+		request.setHeader(HEADER_ACCEPT_ENCODING, singletonBeanFactory.getConfigs().isCompression() ? ACCEPTED_ENCODINGS : "identity");
+		if (validators != null) {
+			if (validators.getETag() != null) {
+				request.setHeader(HEADER_IF_NONE_MATCH, validators.getETag());
+			}
+			if (validators.getLastModified() != null) {
+				request.setHeader(HEADER_IF_MODIFIED_SINCE, validators.getLastModified());
+			}
+		}
+		final HttpClientContext context = HttpClientContext.create();
+
+		try (CloseableHttpResponse response = httpClient.execute(request, context)) {
+			clock.headersReceived();
+
+			final HttpEntity entity = response.getEntity();
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if (validators != null && statusCode == SC_NOT_MODIFIED) {
+				EntityUtils.consumeQuietly(entity);
+				return buildNotModifiedResponse(url, getResponseUrl(request, context), validators);
+			}
+
+			if (statusCode != SC_OK) {
+				/** consuming the error body keeps the connection reusable */
+				EntityUtils.consumeQuietly(entity);
+				validateStatusCode(url, statusCode, getHeaderValue(response, HEADER_RETRY_AFTER));
+			}
+
+			if (entity == null) {
+				LOG.error("Retrieving null document for url : {}", url);
+				throw new RuntimeException("Retrieving null document for url " + url);
+			}
+
+			final String responseType = entity.getContentType() == null ? null : entity.getContentType().getValue();
+			if (responseType != null && !responseType.startsWith("text/") && !XML_CONTENT_TYPE.matcher(responseType).matches()
+					&& !(navigationPage && ContentProvider.isSiteMapResponse(url, responseType))) {
+				EntityUtils.consumeQuietly(entity);
+				throw new UnsupportedMimeTypeException("Unhandled content type. Must be text/*, application/xml, or application/xhtml+xml",
+						responseType, url);
+			}
+
+			final URL responseUrl = getResponseUrl(request, context);
+			final int maxBytes = singletonBeanFactory.getConfigs().getMaxBytes();
+
+			/** the body is decoded as it's read, so max bytes applies to decoded body */
+			final CountingInputStream wireContent = new CountingInputStream(clock.time(entity.getContent()));
+			final String contentEncoding = getHeaderValue(response, HEADER_CONTENT_ENCODING);
+			final InputStream content = decodeBody(wireContent, contentEncoding);
+
+			if (isSiteMapStream(siteMapReader, url, responseType)) {
+				/** the reader hands the urls over while reading, so the deadline would count their processing too */
+				deadline.cancel(false);
+				final long bodyBytes = readSiteMap(url, responseUrl, content, siteMapReader);
+				recordTransfer(url, wireContent.getCount(), bodyBytes);
+				final PageValidators responseValidators = new PageValidators(getHeaderValue(response, HEADER_ETAG),
+						getHeaderValue(response, HEADER_LAST_MODIFIED), bodyBytes);
+				return buildSiteMapResponse(url, responseType, responseUrl, responseValidators);
+			}
+
+			if (isBytesResponse(bytesNeeded, navigationPage, url, responseType)) {
+				final ResponseBuffer responseBody = readBody(url, content, contentEncoding == null ? entity.getContentLength() : -1);
+				recordTransfer(url, wireContent.getCount(), responseBody.getLength());
+				final PageValidators responseValidators = new PageValidators(getHeaderValue(response, HEADER_ETAG),
+						getHeaderValue(response, HEADER_LAST_MODIFIED), responseBody.getLength());
+				return buildResponse(url, null, responseType, responseUrl, responseBody, responseValidators);
+			}
+
+			/** parsing from the stream, the body is never buffered as bytes */
+			final BodyEndInputStream bodyEnd = isStopAtBodyEnd(navigationPage) ? new BodyEndInputStream(content) : null;
+			final CountingInputStream body = new CountingInputStream(ByteStreams.limit(bodyEnd == null ? content : bodyEnd, maxBytes));
+			final String charsetName = getCharsetName(entity);
+			final boolean streamingLinks = isStreamingLinks(navigationPage, charsetName);
+			final Document document = streamingLinks ? null : parseBody(body, charsetName, responseUrl.toString());
+			final List<String> links = streamingLinks ? extractLinks(body, charsetName, responseUrl.toString()) : null;
+			recordTransfer(url, wireContent.getCount(), body.getCount());
+
+			if (bodyEnd != null && bodyEnd.isBodyEndReached()) {
+				releaseAfterBodyEnd(request, entity, wireContent.getCount());
+			}
+
+			final PageValidators responseValidators = new PageValidators(getHeaderValue(response, HEADER_ETAG),
+					getHeaderValue(response, HEADER_LAST_MODIFIED), body.getCount());
+
+			if (streamingLinks) {
+				return buildLinksResponse(url, links, responseType, responseUrl, responseValidators);
+			}
+			return buildResponse(url, document, responseType, responseUrl, null, responseValidators);
+		}
+	}
+
+	/**
+	 * Releases the connection after the page is read till the body end. If
+	 * the rest of the page is small, it's drained to reuse the connection,
+	 * else the connection is aborted to not download it at all.
+	 *
+	 * @param request
+	 *            the request
+	 * @param entity
+	 *            the response entity
+	 * @param readBytes
+	 *            the bytes read from the wire till body end
+	 */
+	private void releaseAfterBodyEnd(final HttpGet request, final HttpEntity entity, final long readBytes) throws IOException {
+		final long remainingBytes = entity.getContentLength() - readBytes;
+		if (entity.getContentLength() >= 0 && remainingBytes <= MAX_DRAIN_BYTES) {
+			LOG.trace("Draining remaining {} bytes after body end to reuse the connection", remainingBytes);
+			EntityUtils.consume(entity);
+		} else {
+			LOG.trace("Aborting the connection after body end, remaining bytes : {}", remainingBytes);
+			request.abort();
+		}
+	}
+
+	/**
+	 * Gets the value of the header, or null if response does not have it.
+	 */
+	private String getHeaderValue(final CloseableHttpResponse response, final String name) {
+		final Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * Gets the final url of the response, considering redirects.
+	 */
+	private URL getResponseUrl(final HttpGet request, final HttpClientContext context) throws IOException {
+		final List<URI> redirectLocations = context.getRedirectLocations();
+		if (redirectLocations == null || redirectLocations.isEmpty()) {
+			return request.getURI().toURL();
+		}
+		return redirectLocations.get(redirectLocations.size() - 1).toURL();
+	}
+
+	/**
+	 * Gets the charset name from content type, or null to let Jsoup detect it
+	 * from the content.
+	 */
+	private String getCharsetName(final HttpEntity entity) {
+		try {
+			final ContentType contentType = ContentType.get(entity);
+			final Charset charset = contentType == null ? null : contentType.getCharset();
+			return charset == null ? null : charset.name();
+		} catch (Exception e) {
+			LOG.trace("Not able to detect charset from content type : {}", entity.getContentType(), e);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.helper.StringUtil;
+
+/**
+ * Extracts the links ({@code href} of {@code <a>} tags) of the page in single
+ * pass over the body bytes, without building the document, the relative links
+ * are resolved against the base uri same as {@code abs:href} of Jsoup.<BR>
+ * The tags are scanned by {@link HtmlByteScanner}, so the links in comments
+ * and scripts are not found. The first {@code <base href>} changes the base
+ * uri of following links.
+ *
+ * @author VishalZanzrukia
+ */
+public final class StreamingLinkExtractor extends HtmlByteScanner {
+
+	private static final String TAG_A = "a";
+	private static final String TAG_BASE = "base";
+	private static final String ATTRIBUTE_HREF = "href";
+
+	private String baseUri;
+	/** The parsed base uri, so it's not parsed again for each link */
+	private URL baseUrl;
+	private boolean baseFound;
+	private final List<String> links = new ArrayList<>();
+
+	private StreamingLinkExtractor(final InputStream in, final Charset charset, final String baseUri) {
+		super(in, charset, 0);
+		setBaseUri(baseUri);
+	}
+
+	/**
+	 * Extracts the absolute links of the page.
+	 *
+	 * @param body
+	 *            the body stream, it's closed by this method
+	 * @param charsetName
+	 *            the charset of the body, or null for UTF-8
+	 * @param baseUri
+	 *            the base uri of the page
+	 * @return the links in document order, the links which can not be
+	 *         resolved are empty
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static List<String> extractLinks(final InputStream body, final String charsetName, final String baseUri) throws IOException {
+		try (InputStream in = body) {
+			final Charset charset = charsetName == null ? StandardCharsets.UTF_8 : Charset.forName(charsetName);
+			final StreamingLinkExtractor extractor = new StreamingLinkExtractor(in, charset, baseUri);
+			extractor.scan();
+			return extractor.links;
+		}
+	}
+
+	/**
+	 * The href of {@code <a>} and first {@code <base>} is kept.
+	 */
+	@Override
+	protected boolean isAttributeNeeded(final String tagName, final String attributeName) {
+		return ATTRIBUTE_HREF.equals(attributeName) && (TAG_A.equals(tagName) || TAG_BASE.equals(tagName) && !baseFound);
+	}
+
+	@Override
+	protected void handleTag(final String tagName, final Map<String, String> attributes) {
+		final String href = attributes.get(ATTRIBUTE_HREF);
+		if (TAG_A.equals(tagName)) {
+			links.add(resolve(href));
+		} else {
+			setBaseUri(resolve(href));
+			baseFound = true;
+		}
+	}
+
+	private void setBaseUri(final String baseUri) {
+		this.baseUri = baseUri;
+		try {
+			baseUrl = new URL(baseUri);
+		} catch (MalformedURLException e) {
+			baseUrl = null;
+		}
+	}
+
+	/**
+	 * Resolves the link against base uri, same as
+	 * {@link StringUtil#resolve(String, String)}.
+	 */
+	private String resolve(final String link) {
+		if (baseUrl == null) {
+			return StringUtil.resolve(baseUri, link);
+		}
+		try {
+			return StringUtil.resolve(baseUrl, link).toExternalForm();
+		} catch (MalformedURLException e) {
+			return "";
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.client.utils.DateUtils;
+import org.jsoup.HttpStatusException;
+
+/**
+ * The {@link HttpStatusException} for {@code 429 Too Many Requests} and
+ * {@code 503 Service Unavailable}, the statuses by which host asks to slow
+ * down, along with the {@code Retry-After} delay if host has sent it.
+ *
+ * @author VishalZanzrukia
+ */
+public class ThrottledStatusException extends HttpStatusException {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int SC_TOO_MANY_REQUESTS = 429;
+	public static final int SC_SERVICE_UNAVAILABLE = 503;
+
+	private final long retryAfterMillis;
+
+	public ThrottledStatusException(final String message, final int statusCode, final String url, final long retryAfterMillis) {
+		super(message, statusCode, url);
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * Checks whether the status asks to slow down.
+	 *
+	 * @param statusCode
+	 *            the status code
+	 * @return true, if it's 429 or 503
+	 */
+	public static boolean isThrottled(final int statusCode) {
+		return statusCode == SC_TOO_MANY_REQUESTS || statusCode == SC_SERVICE_UNAVAILABLE;
+	}
+
+	/**
+	 * Parses the {@code Retry-After} header, which is either delay in seconds
+	 * or HTTP date.
+	 *
+	 * @param retryAfter
+	 *            the header value, can be null
+	 * @return the delay in millis, or -1 if header is missing or invalid
+	 */
+	public static long parseRetryAfter(final String retryAfter) {
+		if (StringUtils.isBlank(retryAfter)) {
+			return -1;
+		}
+		final String value = retryAfter.trim();
+		if (StringUtils.isNumeric(value)) {
+			final long seconds = NumberUtils.toLong(value, -1);
+			return seconds < 0 ? -1 : seconds * 1000;
+		}
+		final Date date = DateUtils.parseDate(value);
+		return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the delay asked by host through {@code Retry-After} header.
+	 *
+	 * @return the delay in millis, or -1 if host has not sent it
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+}
@@ -0,0 +1,137 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+
+/**
+ * The registry of {@link REGEXES} compiled per domain, so the url
+ * classification (product, category, filtered url) does not format and
+ * compile the regex on each call. The patterns of crawled domain are compiled
+ * at startup, see {@link #getPatterns()}.
+ *
+ * @author VishalZanzrukia
+ */
+@Component
+public class UrlPatternRegistry {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	@Autowired
+	private SingletonBeanFactory singletonBeanFactory;
+
+	private final ConcurrentMap<String, DomainPatterns> domainPatterns = new ConcurrentHashMap<>();
+
+	/** The patterns of crawled domain */
+	private volatile DomainPatterns patterns;
+
+	@PostConstruct
+	public void init() {
+		patterns = getPatterns(singletonBeanFactory.getRuntimeConfigs().getDomainName());
+	}
+
+	/**
+	 * Gets the patterns of crawled domain.
+	 *
+	 * @return the patterns
+	 */
+	public DomainPatterns getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Gets the patterns of domain, those are compiled on first call.
+	 *
+	 * @param domainName
+	 *            the domain name, like amazon.com
+	 * @return the patterns
+	 */
+	public DomainPatterns getPatterns(final String domainName) {
+		return domainPatterns.computeIfAbsent(domainName, domain -> {
+			LOG.info("Compiling the url regexes for domain name : {}", domain);
+			return new DomainPatterns(domain);
+		});
+	}
+
+	/**
+	 * All {@link REGEXES} compiled for single domain. The {@link Matcher}s are
+	 * reused per thread, so matching the url does not allocate new matcher
+	 * (on virtual threads, the matcher is reused within the task only).
+	 */
+	public static class DomainPatterns {
+
+		private final String domainName;
+		private final String[] regexes;
+		private final Pattern[] patterns;
+		private final ThreadLocal<Matcher[]> matchers;
+
+		public DomainPatterns(final String domainName) {
+			final REGEXES[] values = REGEXES.values();
+			this.domainName = domainName;
+			this.regexes = new String[values.length];
+			this.patterns = new Pattern[values.length];
+			for (final REGEXES regex : values) {
+				regexes[regex.ordinal()] = String.format(regex.getRegex(), domainName);
+				patterns[regex.ordinal()] = Pattern.compile(regexes[regex.ordinal()]);
+			}
+			this.matchers = ThreadLocal.withInitial(() -> new Matcher[values.length]);
+		}
+
+		public String getDomainName() {
+			return domainName;
+		}
+
+		/**
+		 * Gets the domain specific regex.
+		 */
+		public String getRegex(final REGEXES regex) {
+			return regexes[regex.ordinal()];
+		}
+
+		public Pattern getPattern(final REGEXES regex) {
+			return patterns[regex.ordinal()];
+		}
+
+		/**
+		 * Checks whether the whole url matches the regex, same as
+		 * {@link String#matches(String)}.
+		 */
+		public boolean matches(final REGEXES regex, final String url) {
+			return matcher(regex, url).matches();
+		}
+
+		/**
+		 * Replaces the matches of regex in url, same as
+		 * {@link String#replaceAll(String, String)}.
+		 */
+		public String replaceAll(final REGEXES regex, final String url, final String replacement) {
+			return matcher(regex, url).replaceAll(replacement);
+		}
+
+		/**
+		 * Gets the matcher of current thread, reset to url. It must not be
+		 * held across other calls of same regex.
+		 */
+		private Matcher matcher(final REGEXES regex, final String url) {
+			final Matcher[] threadMatchers = matchers.get();
+			Matcher matcher = threadMatchers[regex.ordinal()];
+			if (matcher == null) {
+				matcher = patterns[regex.ordinal()].matcher(url);
+				threadMatchers[regex.ordinal()] = matcher;
+				return matcher;
+			}
+			return matcher.reset(url);
+		}
+	}
+}
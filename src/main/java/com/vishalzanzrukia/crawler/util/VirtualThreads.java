@@ -0,0 +1,89 @@
+package com.vishalzanzrukia.crawler.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The helper to create virtual thread executor (or thread factory) when
+ * application runs on Java 21 or later.<BR>
+ * The application is still compiled for Java 8, so the executor is looked up
+ * by reflection instead of calling
+ * {@code Executors.newVirtualThreadPerTaskExecutor()} directly.
+ *
+ * @author VishalZanzrukia
+ */
+public final class VirtualThreads {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutorMethod();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Checks whether running JVM supports virtual threads.
+	 *
+	 * @return true, if virtual threads are supported
+	 */
+	public static boolean isSupported() {
+		return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates the executor which starts new virtual thread for each task.
+	 *
+	 * @return the executor
+	 * @throws UnsupportedOperationException
+	 *             if running JVM does not support virtual threads
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on Java " + System.getProperty("java.version"));
+		}
+		try {
+			return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Not able to create virtual thread executor", e);
+		}
+	}
+
+	/**
+	 * Creates the factory of virtual threads, the threads are named with given
+	 * prefix and counter.
+	 *
+	 * @param namePrefix
+	 *            the prefix of thread names
+	 * @return the thread factory
+	 * @throws UnsupportedOperationException
+	 *             if running JVM does not support virtual threads
+	 */
+	public static ThreadFactory newVirtualThreadFactory(final String namePrefix) {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later, running on Java " + System.getProperty("java.version"));
+		}
+		try {
+			/** Thread.ofVirtual().name(namePrefix, 0).factory() */
+			final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Not able to create virtual thread factory", e);
+		}
+	}
+
+	private static Method findVirtualThreadExecutorMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			LOG.trace("Virtual threads are not supported on Java {}", System.getProperty("java.version"));
+			return null;
+		}
+	}
+}
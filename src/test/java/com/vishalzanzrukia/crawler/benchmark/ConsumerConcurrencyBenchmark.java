@@ -0,0 +1,144 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.PooledHttpContentProvider;
+import com.vishalzanzrukia.crawler.util.VirtualThreads;
+
+/**
+ * Compares pages/sec when the queue consumers run on platform threads and on
+ * virtual threads, against {@link LocalHttpServer} which adds
+ * {@code latency} millis to every response (slow host).<BR>
+ * Each consumer fetches and parses one page at a time, same as consumers of
+ * visitUrlQ. The {@code virtual} executor is skipped below Java 21.<BR>
+ * Run with {@code mvn -Pbenchmark,java21 test-compile exec:exec -Dbenchmark=ConsumerConcurrencyBenchmark}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ConsumerConcurrencyBenchmark {
+
+	private static final int PAGES_PER_INVOCATION = 2000;
+
+	@Param({"platform", "virtual"})
+	private String executor;
+
+	@Param({"10", "100", "1000"})
+	private int consumers;
+
+	@Param({"100"})
+	private long latency;
+
+	private LocalHttpServer server;
+	private PooledHttpContentProvider contentProvider;
+	private ExecutorService consumerExecutor;
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		if ("virtual".equals(executor) && !VirtualThreads.isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21, run with -Pjava21");
+		}
+
+		server = new LocalHttpServer(LocalHttpServer.htmlPage(16384), "text/html; charset=UTF-8", latency);
+		url = server.getUrl("/category/index.jsp?categoryId=1");
+
+		final Configs configs = new Configs();
+		configs.setMaxBytes(10485760);
+		configs.setTimeout(100);
+		configs.setMaxPooledConnectionsPerHost(consumers);
+		configs.setMaxPooledConnections(consumers);
+		configs.setPooledConnectionIdleTimeout(30);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		final HostLatencyTracker hostLatencyTracker = new HostLatencyTracker();
+		ReflectionTestUtils.setField(hostLatencyTracker, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+		when(singletonBeanFactory.getTransferStats()).thenReturn(new TransferStats());
+
+		contentProvider = new PooledHttpContentProvider();
+		ReflectionTestUtils.setField(contentProvider, "singletonBeanFactory", singletonBeanFactory);
+		contentProvider.init();
+
+		consumerExecutor = "virtual".equals(executor) ? VirtualThreads.newVirtualThreadPerTaskExecutor() : Executors.newCachedThreadPool();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (consumerExecutor != null) {
+			consumerExecutor.shutdownNow();
+		}
+		if (contentProvider != null) {
+			contentProvider.destroy();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	/**
+	 * Starts {@code consumers} consumers which fetch
+	 * {@link #PAGES_PER_INVOCATION} pages in total, one page at a time each.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PAGES_PER_INVOCATION)
+	public int fetchPages() throws Exception {
+		final int pagesPerConsumer = PAGES_PER_INVOCATION / consumers;
+		final int activeConsumers = Math.min(consumers, PAGES_PER_INVOCATION);
+
+		final List<Callable<Integer>> consumerTasks = new ArrayList<>(activeConsumers);
+		for (int i = 0; i < activeConsumers; i++) {
+			consumerTasks.add(() -> {
+				int fetched = 0;
+				for (int page = 0; page < Math.max(1, pagesPerConsumer); page++) {
+					if (contentProvider.downloadNavigationPage(url).getDocument() != null) {
+						fetched++;
+					}
+				}
+				return fetched;
+			});
+		}
+
+		int fetched = 0;
+		for (final Future<Integer> result : consumerExecutor.invokeAll(consumerTasks)) {
+			fetched += result.get();
+		}
+		return fetched;
+	}
+}
@@ -0,0 +1,111 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentDownloader;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.PooledHttpContentProvider;
+
+/**
+ * Compares pages/sec (throughput mode) and latency percentiles (sample mode,
+ * see p0.99) of {@link ContentDownloader} and
+ * {@link PooledHttpContentProvider} against {@link LocalHttpServer}.<BR>
+ * Add {@code -prof gc} to compare the allocation per page
+ * ({@code gc.alloc.rate.norm}).<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=ContentProviderBenchmark}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class ContentProviderBenchmark {
+
+	@Param({ContentProvider.PROVIDER_JSOUP, ContentProvider.PROVIDER_POOLED})
+	private String provider;
+
+	@Param({"65536"})
+	private int pageSize;
+
+	private LocalHttpServer server;
+	private ContentProvider contentProvider;
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		server = new LocalHttpServer(LocalHttpServer.htmlPage(pageSize), "text/html; charset=UTF-8", 0);
+		url = server.getUrl("/category/index.jsp?categoryId=1");
+
+		final Configs configs = new Configs();
+		configs.setMaxBytes(10485760);
+		configs.setTimeout(100);
+		configs.setMaxPooledConnectionsPerHost(20);
+		configs.setMaxPooledConnections(200);
+		configs.setPooledConnectionIdleTimeout(30);
+		configs.setEarlyAbort(true);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		final HostLatencyTracker hostLatencyTracker = new HostLatencyTracker();
+		ReflectionTestUtils.setField(hostLatencyTracker, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+		when(singletonBeanFactory.getTransferStats()).thenReturn(new TransferStats());
+
+		if (ContentProvider.PROVIDER_JSOUP.equals(provider)) {
+			contentProvider = new ContentDownloader();
+			ReflectionTestUtils.setField(contentProvider, "singletonBeanFactory", singletonBeanFactory);
+		} else {
+			final PooledHttpContentProvider pooledProvider = new PooledHttpContentProvider();
+			ReflectionTestUtils.setField(pooledProvider, "singletonBeanFactory", singletonBeanFactory);
+			pooledProvider.init();
+			contentProvider = pooledProvider;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (contentProvider instanceof PooledHttpContentProvider) {
+			((PooledHttpContentProvider) contentProvider).destroy();
+		}
+		server.close();
+	}
+
+	@Benchmark
+	public JsoupDocumentWrapper downloadPage() throws Exception {
+		return contentProvider.downloadPage(url);
+	}
+
+	@Benchmark
+	public JsoupDocumentWrapper downloadNavigationPage() throws Exception {
+		return contentProvider.downloadNavigationPage(url);
+	}
+}
@@ -0,0 +1,85 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vishalzanzrukia.crawler.integration.SpringIntegrationProcessor;
+
+/**
+ * Compares the cost per page (average time, and allocation with
+ * {@code -prof gc}) of the link extraction stage in
+ * {@link SpringIntegrationProcessor#parseUrls}, when the fetched document is
+ * handed over as html string and parsed again ({@code htmlRoundTrip}) and
+ * when the same parsed document is handed over ({@code sharedDocument}).<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="DocumentHandoffBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class DocumentHandoffBenchmark {
+
+	private static final String BASE_URI = "http://127.0.0.1/category/index.jsp?categoryId=1";
+
+	@Param({"65536", "524288"})
+	private int pageSize;
+
+	private byte[] page;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		page = LocalHttpServer.htmlPage(pageSize);
+	}
+
+	@Benchmark
+	public Set<String> htmlRoundTrip() throws Exception {
+		final Document fetched = fetch();
+		final String pageContent = fetched.html();
+
+		final Document document = Jsoup.parse(pageContent);
+		document.setBaseUri(BASE_URI);
+		return parseUrls(document);
+	}
+
+	@Benchmark
+	public Set<String> sharedDocument() throws Exception {
+		return parseUrls(fetch());
+	}
+
+	/**
+	 * Parses the page same as content providers do.
+	 */
+	private Document fetch() throws Exception {
+		return Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", BASE_URI, Parser.xmlParser());
+	}
+
+	/**
+	 * Extracts the links same as product parser does.
+	 */
+	private Set<String> parseUrls(final Document document) {
+		return document.select("a[href]").stream().map(link -> link.attr("abs:href")).collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+}
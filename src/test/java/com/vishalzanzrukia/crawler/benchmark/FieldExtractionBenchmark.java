@@ -0,0 +1,98 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vishalzanzrukia.crawler.parser.field.ExtractedFields;
+import com.vishalzanzrukia.crawler.parser.field.FieldExtractor;
+import com.vishalzanzrukia.crawler.parser.field.FieldRule;
+
+/**
+ * Compares the cost per product page of extracting the fields with one
+ * {@code document.select} per field ({@code selectPerField}) and with
+ * {@link FieldExtractor} in single traversal ({@code singlePass}), for
+ * {@code fields} number of fields. Half of the fields are not on the page,
+ * same as the fields a domain parser falls back for, so both ways have to walk
+ * the whole document for them.<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="FieldExtractionBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class FieldExtractionBenchmark {
+
+	private static final String BASE_URI = "http://127.0.0.1/product/1";
+
+	@Param({"65536"})
+	private int pageSize;
+
+	@Param({"2", "8", "16"})
+	private int fields;
+
+	private Document document;
+	private List<String> queries;
+	private FieldExtractor extractor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		document = Jsoup.parse(new ByteArrayInputStream(LocalHttpServer.htmlPage(pageSize)), "UTF-8", BASE_URI, Parser.xmlParser());
+
+		queries = new ArrayList<>();
+		final List<FieldRule> rules = new ArrayList<>();
+		for (int i = 0; i < fields; i++) {
+			/** the even fields are on the page, the odd fields are not */
+			final String query = i % 2 == 0 ? "meta[name='description']" : "meta[name='missing" + i + "']";
+			queries.add(query);
+			rules.add(FieldRule.attribute("field" + i, query, "content"));
+		}
+		extractor = new FieldExtractor(rules);
+	}
+
+	@Benchmark
+	public int selectPerField() {
+		int found = 0;
+		for (final String query : queries) {
+			final Element element = document.select(query).first();
+			if (element != null && element.attr("content") != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int singlePass() {
+		int found = 0;
+		final ExtractedFields extracted = extractor.extract(document);
+		for (int i = 0; i < fields; i++) {
+			if (extracted.get("field" + i) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
@@ -0,0 +1,120 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vishalzanzrukia.crawler.util.StreamingLinkExtractor;
+
+/**
+ * Compares the cost per navigation page (average time, and allocation with
+ * {@code -prof gc}) of finding the links by parsing the document and
+ * selecting {@code a[href]} ({@code document}) and by
+ * {@link StreamingLinkExtractor} ({@code streaming}).<BR>
+ * By default the generated page of {@code pageSize} is used, to run on real
+ * category pages, save them as html files in a directory (e.g. with
+ * {@code curl -o}) and pass it as {@code -p pagesDir=/path/to/pages}, each
+ * operation then handles all the pages.<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="LinkExtractionBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final String BASE_URI = "http://127.0.0.1/category/index.jsp?categoryId=1";
+
+	@Param({"65536", "524288"})
+	private int pageSize;
+
+	@Param({""})
+	private String pagesDir;
+
+	private List<byte[]> pages;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		pages = new ArrayList<>();
+		if (StringUtils.isBlank(pagesDir)) {
+			pages.add(LocalHttpServer.htmlPage(pageSize));
+		} else {
+			for (final File file : new File(pagesDir).listFiles(File::isFile)) {
+				pages.add(Files.readAllBytes(file.toPath()));
+			}
+		}
+
+		/** the links found by both ways are shown, so the comparison is known to be fair */
+		long documentLinks = 0;
+		long streamingLinks = 0;
+		for (final byte[] page : pages) {
+			documentLinks += parseDocumentLinks(page).size();
+			streamingLinks += parseStreamingLinks(page).size();
+		}
+		LOG.info("Pages : {}, links found from document : {}, by streaming : {}", pages.size(), documentLinks, streamingLinks);
+	}
+
+	@Benchmark
+	public int document() throws Exception {
+		int links = 0;
+		for (final byte[] page : pages) {
+			links += parseDocumentLinks(page).size();
+		}
+		return links;
+	}
+
+	@Benchmark
+	public int streaming() throws Exception {
+		int links = 0;
+		for (final byte[] page : pages) {
+			links += parseStreamingLinks(page).size();
+		}
+		return links;
+	}
+
+	/**
+	 * Parses the page same as content providers do and selects the links same
+	 * as product parser does.
+	 */
+	private Set<String> parseDocumentLinks(final byte[] page) throws Exception {
+		final Document document = Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", BASE_URI, Parser.xmlParser());
+		return document.select("a[href]").stream().map(link -> link.attr("abs:href")).filter(link -> !StringUtils.isBlank(link))
+				.collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+
+	private Set<String> parseStreamingLinks(final byte[] page) throws Exception {
+		return StreamingLinkExtractor.extractLinks(new ByteArrayInputStream(page), "UTF-8", BASE_URI).stream()
+				.filter(link -> !StringUtils.isBlank(link)).collect(Collectors.toCollection(LinkedHashSet::new));
+	}
+}
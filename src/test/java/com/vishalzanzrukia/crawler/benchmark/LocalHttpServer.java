@@ -0,0 +1,113 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The local http server used by benchmarks, so the numbers do not depend on
+ * the live site. It serves same html page for every path, optionally after an
+ * artificial latency.
+ *
+ * @author VishalZanzrukia
+ */
+public class LocalHttpServer implements AutoCloseable {
+
+	static {
+		/** by default the server closes idle keep-alive connections above 200, which breaks benchmarks with more clients */
+		System.setProperty("sun.net.httpserver.maxIdleConnections", "4096");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	public LocalHttpServer(final byte[] page, final String contentType, final long latencyInMillis) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/", exchange -> {
+			try {
+				if (latencyInMillis > 0) {
+					TimeUnit.MILLISECONDS.sleep(latencyInMillis);
+				}
+				exchange.getResponseHeaders().set("Content-Type", contentType);
+				exchange.sendResponseHeaders(200, page.length);
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(page);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+	}
+
+	/**
+	 * Generates the html page of approx given size with navigation links.
+	 */
+	public static byte[] htmlPage(final int approxBytes) {
+		final StringBuilder html = new StringBuilder(approxBytes + 1024);
+		html.append("<html><head><title>Benchmark page</title><meta name=\"description\" content=\"benchmark\"/></head><body>");
+		for (int i = 0; html.length() < approxBytes; i++) {
+			html.append("<div class=\"item\"><a href=\"/category/index.jsp?categoryId=").append(i).append("\">Category ").append(i)
+					.append("</a><p>Some description text for item ").append(i).append("</p></div>");
+		}
+		html.append("</body></html>");
+		return html.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Generates the product page of approx given size, with schema.org
+	 * product in JSON-LD and the same fields in the html.
+	 */
+	public static byte[] productPage(final int approxBytes) {
+		final StringBuilder html = new StringBuilder(approxBytes + 2048);
+		html.append("<html><head><title>Benchmark product</title>")
+				.append("<meta name=\"description\" content=\"benchmark product\"/><meta name=\"keywords\" content=\"benchmark, product\"/>")
+				.append("<script type=\"application/ld+json\">{\"@context\":\"http://schema.org\",\"@type\":\"Product\",")
+				.append("\"name\":\"Benchmark product\",\"description\":\"benchmark product\",\"gtin13\":\"0123456789012\",")
+				.append("\"brand\":{\"@type\":\"Brand\",\"name\":\"Benchmark\"},")
+				.append("\"weight\":{\"@type\":\"QuantitativeValue\",\"value\":1.5,\"unitCode\":\"KGM\"},")
+				.append("\"width\":\"10 cm\",\"height\":\"20 cm\",\"depth\":\"5.5 cm\",")
+				.append("\"offers\":{\"@type\":\"Offer\",\"price\":\"19.99\",\"priceCurrency\":\"USD\"}}</script></head><body>")
+				.append("<h1 id=\"productTitle\">Benchmark product</h1><span id=\"price\">$19.99</span><span id=\"barcode\">0123456789012</span>")
+				.append("<span id=\"weight\">1.5 kg</span><span id=\"dimensions\">10 x 20 x 5.5 cm</span>");
+		for (int i = 0; html.length() < approxBytes; i++) {
+			html.append("<div class=\"item\"><a href=\"/product/index.jsp?productId=").append(i).append("\">Related product ").append(i)
+					.append("</a><p>Some description text for item ").append(i).append("</p></div>");
+		}
+		html.append("</body></html>");
+		return html.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Generates the xml sitemap of approx given size.
+	 */
+	public static byte[] sitemap(final int approxBytes) {
+		final StringBuilder xml = new StringBuilder(approxBytes + 1024);
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?><urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
+		for (int i = 0; xml.length() < approxBytes; i++) {
+			xml.append("<url><loc>http://127.0.0.1/product/").append(i).append("</loc><lastmod>2017-06-01</lastmod><changefreq>daily</changefreq></url>");
+		}
+		xml.append("</urlset>");
+		return xml.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	public String getUrl(final String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,129 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.ResponseBufferPool;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.parser.PooledSiteMapParser;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.PooledHttpContentProvider;
+
+import crawlercommons.sitemaps.SiteMap;
+
+/**
+ * Compares the allocation of sitemap fetches with fresh body arrays
+ * ({@code pooledBuffers=false}) and with {@link ResponseBufferPool}. Each
+ * operation fetches 1,000 sitemaps from {@link LocalHttpServer}, so with
+ * {@code -prof gc} the {@code gc.alloc.rate.norm} is the bytes allocated per
+ * 1,000 pages (divide by 1048576 for MB).<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="ResponseBufferBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ResponseBufferBenchmark {
+
+	private static final int PAGES = 1000;
+
+	@Param({"false", "true"})
+	private boolean pooledBuffers;
+
+	@Param({"65536"})
+	private int pageSize;
+
+	private LocalHttpServer server;
+	private PooledHttpContentProvider contentProvider;
+	private PooledSiteMapParser siteMapParser;
+	private String url;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		server = new LocalHttpServer(LocalHttpServer.sitemap(pageSize), "application/xml; charset=UTF-8", 0);
+		url = server.getUrl("/sitemap.xml");
+
+		final Configs configs = new Configs();
+		configs.setMaxBytes(10485760);
+		configs.setTimeout(1000);
+		configs.setMaxPooledConnectionsPerHost(20);
+		configs.setMaxPooledConnections(200);
+		configs.setPooledConnectionIdleTimeout(30);
+		configs.setPooledBuffers(pooledBuffers);
+		configs.setMaxRetainedBufferBytes(33554432);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		final HostLatencyTracker hostLatencyTracker = new HostLatencyTracker();
+		ReflectionTestUtils.setField(hostLatencyTracker, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+		when(singletonBeanFactory.getTransferStats()).thenReturn(new TransferStats());
+
+		final ResponseBufferPool responseBufferPool = new ResponseBufferPool();
+		ReflectionTestUtils.setField(responseBufferPool, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getResponseBufferPool()).thenReturn(responseBufferPool);
+
+		contentProvider = new PooledHttpContentProvider();
+		ReflectionTestUtils.setField(contentProvider, "singletonBeanFactory", singletonBeanFactory);
+		contentProvider.init();
+		siteMapParser = new PooledSiteMapParser(false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		contentProvider.destroy();
+		server.close();
+	}
+
+	@Benchmark
+	public long fetchPages() throws Exception {
+		long bytes = 0;
+		for (int i = 0; i < PAGES; i++) {
+			final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(url);
+			bytes += response.getResponseBody().getLength();
+			response.release();
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public long fetchAndParsePages() throws Exception {
+		long urls = 0;
+		for (int i = 0; i < PAGES; i++) {
+			final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(url);
+			try {
+				urls += ((SiteMap) siteMapParser.parseSiteMap(response.getResponseBody(), response.getUrl())).getSiteMapUrls().size();
+			} finally {
+				response.release();
+			}
+		}
+		return urls;
+	}
+}
@@ -0,0 +1,95 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vishalzanzrukia.crawler.parser.field.ExtractedFields;
+import com.vishalzanzrukia.crawler.parser.field.FieldExtractor;
+import com.vishalzanzrukia.crawler.parser.field.FieldRule;
+import com.vishalzanzrukia.crawler.parser.field.ProductFields;
+import com.vishalzanzrukia.crawler.parser.field.StructuredDataExtractor;
+
+/**
+ * Compares the cost per product page (average time, and allocation with
+ * {@code -prof gc}) of extracting all the product fields by parsing the
+ * document and evaluating the field rules ({@code document}) and by reading
+ * the structured data of the page bytes, where the document is parsed only if
+ * any field is missing ({@code structuredData}).<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="StructuredDataBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class StructuredDataBenchmark {
+
+	private static final Logger LOG = LogManager.getLogger();
+
+	private static final String BASE_URI = "http://127.0.0.1/product/index.jsp?productId=1";
+
+	@Param({"65536", "262144"})
+	private int pageSize;
+
+	private byte[] page;
+	private FieldExtractor extractor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		page = LocalHttpServer.productPage(pageSize);
+
+		final List<FieldRule> rules = Arrays.asList(FieldRule.meta(ProductFields.DESCRIPTION, "name", "description"),
+				FieldRule.meta(ProductFields.KEYWORDS, "name", "keywords"), FieldRule.text(ProductFields.TITLE, "#productTitle"),
+				FieldRule.text(ProductFields.PRICE, "#price"), FieldRule.text(ProductFields.BARCODE, "#barcode"),
+				FieldRule.text(ProductFields.WEIGHT, "#weight"), FieldRule.text(ProductFields.DIMENSIONS, "#dimensions"));
+		extractor = new FieldExtractor(rules);
+
+		/** the fields found by both ways are shown, so the comparison is known to be fair */
+		LOG.info("Fields from document : {}", document());
+		LOG.info("Fields from structured data : {}", structuredData());
+	}
+
+	@Benchmark
+	public ExtractedFields document() throws Exception {
+		return extractor.extract(parse());
+	}
+
+	@Benchmark
+	public ExtractedFields structuredData() throws Exception {
+		final ExtractedFields fields = StructuredDataExtractor.extract(new ByteArrayInputStream(page), "UTF-8");
+		if (extractor.isDocumentNeeded(fields)) {
+			extractor.extract(parse(), fields);
+		}
+		return fields;
+	}
+
+	/**
+	 * Parses the page same as product parser does.
+	 */
+	private Document parse() throws Exception {
+		return Jsoup.parse(new ByteArrayInputStream(page), "UTF-8", BASE_URI, Parser.xmlParser());
+	}
+}
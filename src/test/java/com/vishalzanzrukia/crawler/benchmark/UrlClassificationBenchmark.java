@@ -0,0 +1,139 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier.UrlClass;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry.DomainPatterns;
+
+/**
+ * Compares the urls classified per second, the same checks as the pipeline
+ * runs for each url (product url, valid url, filters, category url), when
+ * each regex is formatted and compiled per call ({@code formattedRegex}), when
+ * the patterns are compiled once per domain by {@code UrlPatternRegistry}
+ * ({@code compiledPatterns}) and when all regexes are prefiltered in single
+ * scan by {@link UrlClassifier} ({@code singleScan}).<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="UrlClassificationBenchmark -prof gc"}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class UrlClassificationBenchmark {
+
+	private static final String DOMAIN_NAME = "amazon.com";
+
+	private static final REGEXES[] FILTER_REGEXES = {REGEXES.GENERAL_SEARCH_URL, REGEXES.JSESSION_ID_URL, REGEXES.MEDIA_URL};
+
+	/** The mix of urls found on category pages */
+	private static final String[] URLS = {
+			"https://www.amazon.com/product/index.jsp?productId=12345678&cp=2255956&parentPage=family",
+			"https://www.amazon.com/buy/lego-star-wars-millennium-falcon-75257-12345678",
+			"https://www.amazon.com/category/index.jsp?categoryId=2255956&ab=hp_nav",
+			"https://www.amazon.com/category/index.jsp?categoryId=2255956&sr=1&page=3",
+			"https://www.amazon.com/search?q=lego",
+			"https://www.amazon.com/assets/images/logo.png",
+			"https://www.amazon.com/shop/index.jsp;jsessionid=ABCDEF0123456789?x=1",
+			"https://www.amazon.com/help/shipping.html",
+			"https://www.amazon.com/account/login",
+			"https://www.example.com/product/index.jsp?productId=12345678"};
+
+	private DomainPatterns patterns;
+	private UrlClassifier classifier;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		patterns = new DomainPatterns(DOMAIN_NAME);
+		classifier = new UrlClassifier(patterns, REGEXES.GENERAL_PRODUCT_URL, REGEXES.GENERAL_CANONICAL_PRODUCT_URL, Arrays.asList(FILTER_REGEXES));
+
+		/** all ways must classify the urls same, so the comparison is fair */
+		for (final String url : URLS) {
+			final UrlClass urlClass = classifyFormatted(url);
+			if (classifyCompiled(url) != urlClass || classifier.classify(url) != urlClass) {
+				throw new IllegalStateException("The url is not classified same by all ways : " + url);
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(10)
+	public void formattedRegex(final Blackhole blackhole) {
+		for (final String url : URLS) {
+			blackhole.consume(classifyFormatted(url));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(10)
+	public void compiledPatterns(final Blackhole blackhole) {
+		for (final String url : URLS) {
+			blackhole.consume(classifyCompiled(url));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(10)
+	public void singleScan(final Blackhole blackhole) {
+		for (final String url : URLS) {
+			blackhole.consume(classifier.classify(url));
+		}
+	}
+
+	/**
+	 * Classifies the url the way it was done before the registry, in the
+	 * order of the pipeline.
+	 */
+	private static UrlClass classifyFormatted(final String url) {
+		if (url.matches(format(REGEXES.GENERAL_PRODUCT_URL)) || url.matches(format(REGEXES.GENERAL_CANONICAL_PRODUCT_URL))) {
+			return UrlClass.PRODUCT;
+		}
+		if (!url.matches(format(REGEXES.VALID_URL))) {
+			return UrlClass.FILTERED;
+		}
+		for (final REGEXES filterRegex : FILTER_REGEXES) {
+			if (url.matches(format(filterRegex))) {
+				return UrlClass.FILTERED;
+			}
+		}
+		return url.matches(format(REGEXES.CATEGORY_URL)) ? UrlClass.CATEGORY : UrlClass.PLAIN;
+	}
+
+	private UrlClass classifyCompiled(final String url) {
+		if (patterns.matches(REGEXES.GENERAL_PRODUCT_URL, url) || patterns.matches(REGEXES.GENERAL_CANONICAL_PRODUCT_URL, url)) {
+			return UrlClass.PRODUCT;
+		}
+		if (!patterns.matches(REGEXES.VALID_URL, url)) {
+			return UrlClass.FILTERED;
+		}
+		for (final REGEXES filterRegex : FILTER_REGEXES) {
+			if (patterns.matches(filterRegex, url)) {
+				return UrlClass.FILTERED;
+			}
+		}
+		return patterns.matches(REGEXES.CATEGORY_URL, url) ? UrlClass.CATEGORY : UrlClass.PLAIN;
+	}
+
+	private static String format(final REGEXES regex) {
+		return String.format(regex.getRegex(), DOMAIN_NAME);
+	}
+}
@@ -0,0 +1,133 @@
+package com.vishalzanzrukia.crawler.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.fetch.warc.WarcRecordingContentProvider;
+import com.vishalzanzrukia.crawler.fetch.warc.WarcReplayContentProvider;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.PooledHttpContentProvider;
+
+/**
+ * Compares pages/sec of {@link PooledHttpContentProvider} against
+ * {@link LocalHttpServer} with the {@link WarcReplayContentProvider} serving
+ * same pages, recorded by {@link WarcRecordingContentProvider} during setup.<BR>
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=WarcReplayBenchmark}
+ *
+ * @author VishalZanzrukia
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class WarcReplayBenchmark {
+
+	private static final int PAGES = 1000;
+
+	@Param({ContentProvider.PROVIDER_POOLED, ContentProvider.WARC_MODE_REPLAY})
+	private String provider;
+
+	@Param({"65536"})
+	private int pageSize;
+
+	private final AtomicInteger nextPage = new AtomicInteger();
+
+	private LocalHttpServer server;
+	private File warcDirectory;
+	private PooledHttpContentProvider pooledProvider;
+	private ContentProvider contentProvider;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		server = new LocalHttpServer(LocalHttpServer.htmlPage(pageSize), "text/html; charset=UTF-8", 0);
+		warcDirectory = Files.createTempDirectory("warc-benchmark").toFile();
+
+		final Configs configs = new Configs();
+		configs.setMaxBytes(10485760);
+		configs.setTimeout(100);
+		configs.setMaxPooledConnectionsPerHost(20);
+		configs.setMaxPooledConnections(200);
+		configs.setPooledConnectionIdleTimeout(30);
+		configs.setWarcDirectory(warcDirectory.getAbsolutePath());
+		configs.setWarcMode(ContentProvider.WARC_MODE_RECORD);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		final HostLatencyTracker hostLatencyTracker = new HostLatencyTracker();
+		ReflectionTestUtils.setField(hostLatencyTracker, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+		when(singletonBeanFactory.getTransferStats()).thenReturn(new TransferStats());
+
+		pooledProvider = new PooledHttpContentProvider();
+		ReflectionTestUtils.setField(pooledProvider, "singletonBeanFactory", singletonBeanFactory);
+		pooledProvider.init();
+		when(singletonBeanFactory.getNetworkContentProvider()).thenReturn(pooledProvider);
+
+		if (ContentProvider.PROVIDER_POOLED.equals(provider)) {
+			contentProvider = pooledProvider;
+			return;
+		}
+
+		/** recording the corpus once, then replaying it */
+		final WarcRecordingContentProvider recordingProvider = new WarcRecordingContentProvider();
+		ReflectionTestUtils.setField(recordingProvider, "singletonBeanFactory", singletonBeanFactory);
+		recordingProvider.init();
+		for (int i = 0; i < PAGES; i++) {
+			recordingProvider.downloadPage(getUrl(i));
+		}
+		recordingProvider.destroy();
+
+		configs.setWarcMode(ContentProvider.WARC_MODE_REPLAY);
+		final WarcReplayContentProvider replayProvider = new WarcReplayContentProvider();
+		ReflectionTestUtils.setField(replayProvider, "singletonBeanFactory", singletonBeanFactory);
+		replayProvider.init();
+		contentProvider = replayProvider;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		pooledProvider.destroy();
+		server.close();
+		FileUtils.deleteQuietly(warcDirectory);
+	}
+
+	@Benchmark
+	public JsoupDocumentWrapper downloadPage() throws Exception {
+		return contentProvider.downloadPage(getUrl(Math.floorMod(nextPage.getAndIncrement(), PAGES)));
+	}
+
+	private String getUrl(final int page) {
+		return server.getUrl("/category/index.jsp?categoryId=" + page);
+	}
+}
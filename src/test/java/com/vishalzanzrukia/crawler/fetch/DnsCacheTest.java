@@ -0,0 +1,128 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Tests the caching of resolved and unresolvable hosts by {@link DnsCache},
+ * their expiry and the background prefetch of hosts of discovered urls.
+ *
+ * @author VishalZanzrukia
+ */
+public class DnsCacheTest {
+
+	private static final String HOST = "localhost";
+
+	/** The reserved TLD, which is never resolvable */
+	private static final String UNKNOWN_HOST = "unknown-host.invalid";
+
+	private Configs configs;
+	private DnsCache dnsCache;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setDnsTtl(60);
+		configs.setDnsNegativeTtl(60);
+		configs.setDnsPrefetch(true);
+		configs.setDnsPrefetchThreads(1);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		dnsCache = new DnsCache();
+		ReflectionTestUtils.setField(dnsCache, "singletonBeanFactory", singletonBeanFactory);
+		dnsCache.init();
+	}
+
+	@After
+	public void tearDown() {
+		dnsCache.destroy();
+	}
+
+	@Test
+	public void resolvedHostIsCached() throws UnknownHostException {
+		final InetAddress[] addresses = dnsCache.resolve(HOST);
+		assertTrue(addresses.length > 0);
+		assertTrue(addresses[0].isLoopbackAddress());
+
+		/** host names are case insensitive, and the cached array is not shared with caller */
+		addresses[0] = null;
+		assertTrue(dnsCache.resolve("LocalHost")[0].isLoopbackAddress());
+
+		assertEquals(1, dnsCache.getLookups());
+		assertEquals(1, dnsCache.getCacheHits());
+		assertEquals(1, dnsCache.getCachedHosts());
+	}
+
+	@Test
+	public void unresolvableHostIsCachedForNegativeTtl() {
+		assertUnknownHost(UNKNOWN_HOST);
+		assertUnknownHost(UNKNOWN_HOST);
+
+		assertEquals(1, dnsCache.getLookups());
+		assertEquals(1, dnsCache.getCacheHits());
+	}
+
+	@Test
+	public void expiredHostIsLookedUpAgain() throws UnknownHostException {
+		configs.setDnsTtl(0);
+		dnsCache.resolve(HOST);
+		dnsCache.resolve(HOST);
+
+		assertEquals(2, dnsCache.getLookups());
+		assertEquals(0, dnsCache.getCacheHits());
+	}
+
+	@Test
+	public void hostsOfDiscoveredUrlsArePrefetchedOnce() throws Exception {
+		dnsCache.prefetch(Arrays.asList("http://localhost/category/1", "http://LOCALHOST/category/2", "not a url"));
+		assertEquals(1, dnsCache.getPrefetches());
+
+		for (int i = 0; i < 100 && dnsCache.getCachedHosts() == 0; i++) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+		assertEquals(1, dnsCache.getCachedHosts());
+
+		/** the fetch finds the host resolved already */
+		dnsCache.resolve(HOST);
+		dnsCache.prefetch(Arrays.asList("http://localhost/category/3"));
+		assertEquals(1, dnsCache.getLookups());
+		assertEquals(1, dnsCache.getCacheHits());
+		assertEquals(1, dnsCache.getPrefetches());
+	}
+
+	@Test
+	public void nothingIsPrefetchedWhenDisabled() {
+		configs.setDnsPrefetch(false);
+		dnsCache.prefetch(Arrays.asList("http://localhost/category/1"));
+
+		assertEquals(0, dnsCache.getPrefetches());
+		assertEquals(0, dnsCache.getCachedHosts());
+	}
+
+	private void assertUnknownHost(final String host) {
+		try {
+			dnsCache.resolve(host);
+			fail("The unknown host is resolved : " + host);
+		} catch (UnknownHostException e) {
+			assertEquals(host, e.getMessage());
+		}
+	}
+}
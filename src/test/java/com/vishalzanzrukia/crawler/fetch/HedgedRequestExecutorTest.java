@@ -0,0 +1,251 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper.ResponseWrapperBuilder;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Tests that {@link HedgedRequestExecutor} hedges only the slow requests
+ * within the budget of the cycle, uses the response which arrives first and
+ * aborts the other request, and keeps the first request if the host is busy.
+ *
+ * @author VishalZanzrukia
+ */
+public class HedgedRequestExecutorTest {
+
+	private static final String URL = "http://www.example.com/product/index.jsp?productId=1";
+
+	private static final long HEDGE_DELAY = 50;
+	private static final long ABORT_TIMEOUT = 5000;
+
+	private final JsoupDocumentWrapper firstResponse = new ResponseWrapperBuilder(null).build();
+	private final JsoupDocumentWrapper hedgedResponse = new ResponseWrapperBuilder(null).build();
+
+	private Configs configs;
+	private HostLatencyTracker hostLatencyTracker;
+	private HedgedRequestExecutor hedgedRequestExecutor;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setHedgePercentile(95);
+		configs.setHedgeBudget(0.5);
+
+		hostLatencyTracker = mock(HostLatencyTracker.class);
+		when(hostLatencyTracker.getLatencyAtPercentile(anyString(), anyDouble())).thenReturn(HEDGE_DELAY);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+
+		hedgedRequestExecutor = new HedgedRequestExecutor();
+		ReflectionTestUtils.setField(hedgedRequestExecutor, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@After
+	public void tearDown() {
+		hedgedRequestExecutor.destroy();
+	}
+
+	@Test
+	public void hostWithoutResponseTimesIsNotHedged() throws Exception {
+		when(hostLatencyTracker.getLatencyAtPercentile(anyString(), anyDouble())).thenReturn(-1L);
+		fillBudget(10);
+
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, slowRequest(firstResponse, HEDGE_DELAY * 3), failingRequest()));
+		assertEquals(0, hedgedRequestExecutor.getHedgedRequests());
+	}
+
+	@Test
+	public void fastRequestIsNotHedged() throws Exception {
+		fillBudget(10);
+
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, () -> firstResponse, failingRequest()));
+		assertEquals(0, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(11, hedgedRequestExecutor.getRequests());
+	}
+
+	@Test
+	public void hedgeIsUsedWhenItAnswersFirst() throws Exception {
+		fillBudget(1);
+		final CountDownLatch firstAborted = new CountDownLatch(1);
+
+		assertSame(hedgedResponse, hedgedRequestExecutor.fetch(URL, blockedRequest(firstAborted), () -> hedgedResponse));
+		assertTrue("The first request is not aborted", firstAborted.await(ABORT_TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(1, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(1, hedgedRequestExecutor.getHedgeWins());
+	}
+
+	@Test
+	public void hedgeIsAbortedWhenFirstRequestAnswers() throws Exception {
+		fillBudget(1);
+		final CountDownLatch hedgeAborted = new CountDownLatch(1);
+
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, slowRequest(firstResponse, HEDGE_DELAY * 3), blockedRequest(hedgeAborted)));
+		assertTrue("The hedged request is not aborted", hedgeAborted.await(ABORT_TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals(1, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(0, hedgedRequestExecutor.getHedgeWins());
+	}
+
+	@Test
+	public void firstRequestRunsOnCallingThread() throws Exception {
+		fillBudget(1);
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch firstAborted = new CountDownLatch(1);
+		final Callable<JsoupDocumentWrapper> firstRequest = () -> {
+			assertSame(caller, Thread.currentThread());
+			return blockedRequest(firstAborted).call();
+		};
+
+		assertSame(hedgedResponse, hedgedRequestExecutor.fetch(URL, firstRequest, () -> {
+			assertTrue(Thread.currentThread().getName().startsWith("hedged-fetch-"));
+			return hedgedResponse;
+		}));
+	}
+
+	@Test
+	public void failedFirstRequestWaitsForHedge() throws Exception {
+		fillBudget(1);
+		final Callable<JsoupDocumentWrapper> failingFirstRequest = () -> {
+			TimeUnit.MILLISECONDS.sleep(HEDGE_DELAY * 2);
+			throw new IOException("Connection reset");
+		};
+
+		assertSame(hedgedResponse, hedgedRequestExecutor.fetch(URL, failingFirstRequest, slowRequest(hedgedResponse, HEDGE_DELAY * 3)));
+	}
+
+	@Test
+	public void hedgeIsNotSentWhenHostIsBusy() throws Exception {
+		fillBudget(1);
+		try {
+			hedgedRequestExecutor.fetch(URL, () -> {
+				TimeUnit.MILLISECONDS.sleep(HEDGE_DELAY * 3);
+				throw new IOException("First failed");
+			}, () -> null);
+			fail("The failure of first request is not thrown");
+		} catch (IOException e) {
+			assertEquals("First failed", e.getMessage());
+		}
+		assertEquals(0, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(1, hedgedRequestExecutor.getHostBusy());
+	}
+
+	@Test
+	public void firstRequestIsKeptWhenHostIsBusy() throws Exception {
+		fillBudget(1);
+
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, slowRequest(firstResponse, HEDGE_DELAY * 3), () -> null));
+		assertEquals(0, hedgedRequestExecutor.getHedgeWins());
+		assertEquals(1, hedgedRequestExecutor.getHostBusy());
+	}
+
+	@Test
+	public void failureOfBothRequestsIsThrown() throws Exception {
+		fillBudget(1);
+		try {
+			hedgedRequestExecutor.fetch(URL, () -> {
+				TimeUnit.MILLISECONDS.sleep(HEDGE_DELAY * 3);
+				throw new IOException("First failed");
+			}, failingRequest());
+			fail("The failure of both requests is not thrown");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("failed"));
+		}
+	}
+
+	@Test
+	public void firstRequestsOfCycleAreNotHedged() throws Exception {
+		/** with budget 0.5, second request is the first one which fits in budget (1 <= 2 * 0.5) */
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, slowRequest(firstResponse, HEDGE_DELAY * 3), failingRequest()));
+		assertEquals(0, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(1, hedgedRequestExecutor.getBudgetExhausted());
+
+		assertSame(hedgedResponse, hedgedRequestExecutor.fetch(URL, blockedRequest(new CountDownLatch(1)), () -> hedgedResponse));
+		assertEquals(1, hedgedRequestExecutor.getHedgedRequests());
+	}
+
+	@Test
+	public void hedgesAreLimitedToBudget() throws Exception {
+		configs.setHedgeBudget(0.1);
+		fillBudget(9);
+		final AtomicInteger hedgesSent = new AtomicInteger();
+		final Callable<JsoupDocumentWrapper> countedHedge = () -> {
+			hedgesSent.incrementAndGet();
+			return hedgedResponse;
+		};
+
+		/** 10th request takes the only hedge of the budget, 1 <= 10 * 0.1 */
+		assertSame(hedgedResponse, hedgedRequestExecutor.fetch(URL, blockedRequest(new CountDownLatch(1)), countedHedge));
+		/** 2 > 11 * 0.1 */
+		assertSame(firstResponse, hedgedRequestExecutor.fetch(URL, slowRequest(firstResponse, HEDGE_DELAY * 3), countedHedge));
+
+		assertEquals(1, hedgesSent.get());
+		assertEquals(1, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(1, hedgedRequestExecutor.getBudgetExhausted());
+	}
+
+	@Test
+	public void countersAreResetOnNewCycle() throws Exception {
+		fillBudget(1);
+		hedgedRequestExecutor.fetch(URL, blockedRequest(new CountDownLatch(1)), () -> hedgedResponse);
+
+		hedgedRequestExecutor.onNewCycle();
+		assertEquals(0, hedgedRequestExecutor.getRequests());
+		assertEquals(0, hedgedRequestExecutor.getHedgedRequests());
+		assertEquals(0, hedgedRequestExecutor.getHedgeWins());
+	}
+
+	/**
+	 * Sends fast requests, so the budget of the cycle has room for hedges.
+	 */
+	private void fillBudget(final int requests) throws Exception {
+		for (int i = 0; i < requests; i++) {
+			hedgedRequestExecutor.fetch(URL, () -> firstResponse, failingRequest());
+		}
+	}
+
+	private static Callable<JsoupDocumentWrapper> slowRequest(final JsoupDocumentWrapper response, final long millis) {
+		return () -> {
+			TimeUnit.MILLISECONDS.sleep(millis);
+			return response;
+		};
+	}
+
+	/**
+	 * The request which does not answer till it's aborted.
+	 */
+	private static Callable<JsoupDocumentWrapper> blockedRequest(final CountDownLatch aborted) {
+		return () -> {
+			AbortableFetch.register(aborted::countDown);
+			aborted.await(ABORT_TIMEOUT, TimeUnit.MILLISECONDS);
+			throw new IOException("Request aborted");
+		};
+	}
+
+	private static Callable<JsoupDocumentWrapper> failingRequest() {
+		return () -> {
+			throw new IOException("Hedged request failed");
+		};
+	}
+}
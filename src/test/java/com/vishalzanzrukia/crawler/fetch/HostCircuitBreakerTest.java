@@ -0,0 +1,187 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.ThrottledStatusException;
+
+/**
+ * Tests the transitions of the circuit of host in {@link HostCircuitBreaker},
+ * closed to open on failure rate or throttling, and open to half open to
+ * closed (or open again) through single probe fetch.
+ *
+ * @author VishalZanzrukia
+ */
+public class HostCircuitBreakerTest {
+
+	private static final String URL = "http://www.example.com/product/index.jsp?productId=1";
+	private static final String OTHER_HOST_URL = "http://www.example.org/product/index.jsp?productId=1";
+
+	private static final long OPEN_DURATION = 100;
+
+	private Configs configs;
+	private HostCircuitBreaker circuitBreaker;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setCircuitBreakerEnabled(true);
+		configs.setCircuitBreakerWindow(4);
+		configs.setCircuitBreakerMinRequests(4);
+		configs.setCircuitBreakerFailureRate(0.5);
+		configs.setCircuitBreakerOpenDuration(OPEN_DURATION);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		circuitBreaker = new HostCircuitBreaker();
+		ReflectionTestUtils.setField(circuitBreaker, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void circuitStaysClosedBelowMinRequests() {
+		for (int i = 0; i < 3; i++) {
+			circuitBreaker.acquire(URL);
+			circuitBreaker.onResult(URL, new SocketTimeoutException("Read timed out"));
+		}
+		circuitBreaker.acquire(URL);
+		assertEquals(0, circuitBreaker.getOpenedCircuits());
+	}
+
+	@Test
+	public void circuitOpensAtFailureRateOfHostOnly() {
+		circuitBreaker.onResult(URL, null);
+		circuitBreaker.onResult(URL, new HttpStatusException("Server error", 500, URL));
+		circuitBreaker.onResult(URL, null);
+		circuitBreaker.onResult(URL, new SocketTimeoutException("Read timed out"));
+
+		assertEquals(1, circuitBreaker.getOpenedCircuits());
+		assertEquals(1, circuitBreaker.getOpenCircuits());
+		assertRejected(URL);
+		assertEquals(1, circuitBreaker.getRejectedRequests());
+
+		/** other hosts are fetched as usual */
+		circuitBreaker.acquire(OTHER_HOST_URL);
+	}
+
+	@Test
+	public void oldResultsLeaveTheWindow() {
+		circuitBreaker.onResult(URL, new SocketTimeoutException("Read timed out"));
+		for (int i = 0; i < 4; i++) {
+			circuitBreaker.onResult(URL, null);
+		}
+		/** the window is of last 4 results, so the first failure is forgotten */
+		circuitBreaker.onResult(URL, new SocketTimeoutException("Read timed out"));
+		circuitBreaker.acquire(URL);
+		assertEquals(0, circuitBreaker.getOpenedCircuits());
+	}
+
+	@Test
+	public void throttlingWithRetryAfterOpensAtOnce() {
+		circuitBreaker.onResult(URL, new ThrottledStatusException("Too many requests", ThrottledStatusException.SC_TOO_MANY_REQUESTS, URL, 60000));
+
+		assertEquals(1, circuitBreaker.getOpenedCircuits());
+		final long retryDelay = assertRejected(URL);
+		assertTrue("The retry is not delayed till Retry-After : " + retryDelay, retryDelay > 50000);
+	}
+
+	@Test
+	public void successfulProbeClosesTheCircuit() throws Exception {
+		openCircuit();
+		TimeUnit.MILLISECONDS.sleep(OPEN_DURATION + 50);
+
+		/** single probe is let through, rest wait for its result */
+		circuitBreaker.acquire(URL);
+		assertRejected(URL);
+
+		circuitBreaker.onResult(URL, null);
+		assertEquals(1, circuitBreaker.getClosedCircuits());
+		assertEquals(0, circuitBreaker.getOpenCircuits());
+		circuitBreaker.acquire(URL);
+		circuitBreaker.acquire(URL);
+	}
+
+	@Test
+	public void failedProbeOpensTheCircuitAgain() throws Exception {
+		openCircuit();
+		TimeUnit.MILLISECONDS.sleep(OPEN_DURATION + 50);
+
+		circuitBreaker.acquire(URL);
+		circuitBreaker.onResult(URL, new HttpStatusException("Bad gateway", 502, URL));
+
+		assertEquals(2, circuitBreaker.getOpenedCircuits());
+		assertEquals(0, circuitBreaker.getClosedCircuits());
+		assertRejected(URL);
+	}
+
+	@Test
+	public void disabledOrReplayNeverRejects() {
+		configs.setWarcMode(ContentProvider.WARC_MODE_REPLAY);
+		openCircuit();
+		circuitBreaker.acquire(URL);
+
+		configs.setWarcMode(null);
+		configs.setCircuitBreakerEnabled(false);
+		circuitBreaker.acquire(URL);
+		assertEquals(0, circuitBreaker.getOpenedCircuits());
+	}
+
+	@Test
+	public void answeringHostIsNotFailing() {
+		circuitBreaker.onResult(URL, new HttpStatusException("Not found", 404, URL));
+		circuitBreaker.onResult(URL, new UnsupportedMimeTypeException("Unhandled content type", "image/png", URL));
+		circuitBreaker.onResult(URL, new IllegalStateException("Parser error"));
+		circuitBreaker.onResult(URL, new HttpStatusException("Too many requests", 429, URL));
+
+		circuitBreaker.acquire(URL);
+		assertEquals(0, circuitBreaker.getOpenedCircuits());
+	}
+
+	@Test
+	public void onlyTransientFailuresAreHostFailures() {
+		assertTrue(HostCircuitBreaker.isHostFailure(new HttpStatusException("Server error", 500, URL)));
+		assertTrue(HostCircuitBreaker.isHostFailure(new HttpStatusException("Too many requests", 429, URL)));
+		assertTrue(HostCircuitBreaker.isHostFailure(new SocketTimeoutException("Read timed out")));
+		assertTrue(HostCircuitBreaker.isHostFailure(new IOException("Connection reset")));
+
+		assertFalse(HostCircuitBreaker.isHostFailure(new HttpStatusException("Not found", 404, URL)));
+		assertFalse(HostCircuitBreaker.isHostFailure(new UnsupportedMimeTypeException("Unhandled content type", "image/png", URL)));
+		assertFalse(HostCircuitBreaker.isHostFailure(new MalformedURLException("no protocol")));
+		assertFalse(HostCircuitBreaker.isHostFailure(new IllegalStateException("Parser error")));
+	}
+
+	private void openCircuit() {
+		for (int i = 0; i < 4; i++) {
+			circuitBreaker.onResult(URL, new SocketTimeoutException("Read timed out"));
+		}
+	}
+
+	private long assertRejected(final String url) {
+		try {
+			circuitBreaker.acquire(url);
+			fail("The fetch is not rejected while circuit is open : " + url);
+			return 0;
+		} catch (HostCircuitOpenException e) {
+			assertTrue(e.getRetryDelay() > 0);
+			return e.getRetryDelay();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Tests the timeout {@link HostLatencyTracker} derives from the response time
+ * percentiles of each host, and its bounds.
+ *
+ * @author VishalZanzrukia
+ */
+public class HostLatencyTrackerTest {
+
+	private static final String URL = "http://www.example.com/category/index.jsp?categoryId=1";
+	private static final String OTHER_HOST_URL = "http://www.example.org/";
+
+	private Configs configs;
+	private HostLatencyTracker hostLatencyTracker;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setTimeout(10);
+		configs.setAdaptiveTimeout(true);
+		configs.setAdaptiveTimeoutFactor(3);
+		configs.setAdaptiveTimeoutMin(100);
+		configs.setAdaptiveTimeoutMinSamples(100);
+		/** the timeout is derived again on every call */
+		configs.setAdaptiveTimeoutWindow(0);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		hostLatencyTracker = new HostLatencyTracker();
+		ReflectionTestUtils.setField(hostLatencyTracker, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void timeoutIsP99TimesFactor() {
+		recordLatencies(URL, 1, 100, 1000);
+		/** the outliers above p99 do not count */
+		recordLatencies(URL, 400, 400, 5);
+
+		assertEquals(297, hostLatencyTracker.getTimeoutMillis(URL), 3);
+		assertEquals(297, hostLatencyTracker.getHostTimeout("WWW.Example.com"), 3);
+	}
+
+	@Test
+	public void pageTimeoutIsUsedTillMinSamples() {
+		recordLatencies(URL, 1, 99, 99);
+
+		assertEquals(10000, hostLatencyTracker.getTimeoutMillis(URL));
+		/** samples of previous windows are kept till there are enough of them */
+		recordLatencies(URL, 1, 1, 1);
+		assertEquals(297, hostLatencyTracker.getTimeoutMillis(URL), 3);
+	}
+
+	@Test
+	public void timeoutIsBoundedByMinAndPageTimeout() {
+		recordLatencies(URL, 1, 1, 100);
+		recordLatencies(OTHER_HOST_URL, 60000, 60000, 100);
+
+		assertEquals(100, hostLatencyTracker.getTimeoutMillis(URL));
+		assertEquals(10000, hostLatencyTracker.getTimeoutMillis(OTHER_HOST_URL));
+	}
+
+	@Test
+	public void timedOutFetchesGrowTimeoutBack() {
+		recordLatencies(URL, 10, 10, 100);
+		assertEquals(100, hostLatencyTracker.getTimeoutMillis(URL));
+
+		/** the host became slow, fetches wait the whole timeout */
+		recordLatencies(URL, 100, 100, 100);
+		assertEquals(300, hostLatencyTracker.getTimeoutMillis(URL), 3);
+	}
+
+	@Test
+	public void pageTimeoutIsUsedWhenAdaptiveTimeoutIsDisabled() {
+		configs.setAdaptiveTimeout(false);
+		recordLatencies(URL, 1, 1, 100);
+
+		assertEquals(10000, hostLatencyTracker.getTimeoutMillis(URL));
+		assertEquals(0, hostLatencyTracker.getHostCount());
+	}
+
+	@Test
+	public void percentilesAreReportedPerHost() {
+		recordLatencies(URL, 1, 100, 100);
+		hostLatencyTracker.getTimeoutMillis(URL);
+		recordLatencies(OTHER_HOST_URL, 5, 5, 1);
+		hostLatencyTracker.getTimeoutMillis(OTHER_HOST_URL);
+
+		final String[] hostLatencies = hostLatencyTracker.getHostLatencies();
+		assertEquals(2, hostLatencies.length);
+		assertTrue(hostLatencies[0], hostLatencies[0].startsWith("www.example.com p50=50 p90=90 p99=99 max=100 samples=100 timeout="));
+		assertEquals("www.example.org samples=1 timeout=10000", hostLatencies[1]);
+	}
+
+	/**
+	 * Records {@code count} latencies spread evenly from {@code from} to
+	 * {@code to} millis.
+	 */
+	private void recordLatencies(final String url, final long from, final long to, final int count) {
+		for (int i = 0; i < count; i++) {
+			hostLatencyTracker.record(url, count == 1 ? from : from + (to - from) * i / (count - 1));
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.fetch.HostPolitenessScheduler.HostPermit;
+import com.vishalzanzrukia.crawler.parser.RobotsTxtParser;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+import com.vishalzanzrukia.crawler.util.ThrottledStatusException;
+
+import crawlercommons.robots.BaseRobotRules;
+
+/**
+ * Tests the per host rate and concurrency of {@link HostPolitenessScheduler},
+ * the rate of all hosts together, the rate lowered by {@code Crawl-delay} of {@code robots.txt} and the AIMD
+ * adjustment of the rate when {@code crawler.rate.adaptive} is enabled.
+ *
+ * @author VishalZanzrukia
+ */
+public class HostPolitenessSchedulerTest {
+
+	private static final String URL = "http://www.example.com/category/index.jsp?categoryId=1";
+	private static final String OTHER_HOST_URL = "http://www.example.org/category/index.jsp?categoryId=1";
+
+	private Configs configs;
+	private RobotsTxtParser robotsTxtParser;
+	private HostPolitenessScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setMaxVisit(100);
+		configs.setMaxVisitPerHost(2);
+		configs.setMaxConcurrentPerHost(1);
+		configs.setAdaptiveRate(true);
+		configs.setAdaptiveRateMax(10);
+		configs.setAdaptiveRateMin(0.5);
+		configs.setAdaptiveRateIncrease(1);
+		configs.setAdaptiveRateDecreaseFactor(0.5);
+		configs.setAdaptiveRateLatencyFactor(3);
+
+		robotsTxtParser = mock(RobotsTxtParser.class);
+		when(robotsTxtParser.getCrawlDelay(anyString())).thenReturn(BaseRobotRules.UNSET_CRAWL_DELAY);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getRobotsTxtParser()).thenReturn(robotsTxtParser);
+
+		scheduler = new HostPolitenessScheduler();
+		ReflectionTestUtils.setField(scheduler, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void rateStartsAtMaxVisitPerHost() {
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			assertEquals("www.example.com", permit.getHostKey());
+		}
+		assertEquals(2, scheduler.getRate(URL), 0.001);
+		assertEquals(2, scheduler.getRate("http://www.example.org/"), 0.001);
+	}
+
+	@Test
+	public void allHostsTogetherAreLimitedToMaxVisit() {
+		configs.setMaxVisit(2);
+		configs.setMaxVisitPerHost(100);
+		final long startNanos = System.nanoTime();
+		scheduler.acquire(URL).close();
+		scheduler.acquire(OTHER_HOST_URL).close();
+		scheduler.acquire("http://www.example.net/").close();
+
+		/** 2 per second of all hosts, each host alone would not wait */
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 900);
+	}
+
+	@Test
+	public void crawlDelayCapsTheRate() throws Exception {
+		when(robotsTxtParser.getCrawlDelay(anyString())).thenReturn(1000L);
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			permit.fetch(() -> "page");
+		}
+		/** the successful fetch does not raise the rate above the crawl delay */
+		assertEquals(1, scheduler.getRate(URL), 0.001);
+		assertEquals(0, scheduler.getRateIncreases());
+	}
+
+	@Test
+	public void crawlDelayOfEachHostIsUsed() {
+		when(robotsTxtParser.getCrawlDelay(URL)).thenReturn(1000L);
+		scheduler.acquire(URL).close();
+		scheduler.acquire(OTHER_HOST_URL).close();
+
+		assertEquals(1, scheduler.getRate(URL), 0.001);
+		assertEquals(2, scheduler.getRate(OTHER_HOST_URL), 0.001);
+	}
+
+	@Test
+	public void successIncreasesTheRateAdditively() throws Exception {
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			permit.fetch(() -> "page");
+		}
+		assertEquals(2.5, scheduler.getRate(URL), 0.001);
+		assertEquals(1, scheduler.getRateIncreases());
+	}
+
+	@Test
+	public void congestionDecreasesTheRateMultiplicativelyOncePerGap() throws Exception {
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			fetchFailing(permit, new ThrottledStatusException("Too many requests", ThrottledStatusException.SC_TOO_MANY_REQUESTS, URL, -1));
+			fetchFailing(permit, new SocketTimeoutException("Read timed out"));
+		}
+		/** the second failure is of the requests sent at the old rate, so it's not counted again */
+		assertEquals(1, scheduler.getRate(URL), 0.001);
+		assertEquals(1, scheduler.getRateDecreases());
+	}
+
+	@Test
+	public void rateIsNotDecreasedBelowMin() throws Exception {
+		configs.setMaxVisitPerHost(0.6);
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			fetchFailing(permit, new SocketTimeoutException("Read timed out"));
+		}
+		assertEquals(0.5, scheduler.getRate(URL), 0.001);
+	}
+
+	@Test
+	public void slowResponseDecreasesTheRate() throws Exception {
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			permit.fetch(() -> sleep(10));
+			permit.fetch(() -> sleep(200));
+		}
+		assertEquals(1, scheduler.getRateIncreases());
+		assertEquals(1, scheduler.getRateDecreases());
+		assertEquals(1.25, scheduler.getRate(URL), 0.001);
+	}
+
+	@Test
+	public void rateIsFixedWhenNotAdaptive() throws Exception {
+		configs.setAdaptiveRate(false);
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			permit.fetch(() -> "page");
+			fetchFailing(permit, new SocketTimeoutException("Read timed out"));
+		}
+		assertEquals(2, scheduler.getRate(URL), 0.001);
+		assertEquals(0, scheduler.getRateIncreases());
+		assertEquals(0, scheduler.getRateDecreases());
+	}
+
+	@Test
+	public void hostKeyIgnoresCase() {
+		try (HostPermit permit = scheduler.acquire("http://WWW.Example.com/")) {
+			assertEquals("www.example.com", permit.getHostKey());
+		}
+	}
+
+	@Test
+	public void concurrentFetchesPerHostAreLimited() throws Exception {
+		final HostPermit permit = scheduler.acquire(URL);
+		final CountDownLatch acquired = new CountDownLatch(1);
+		final Thread other = new Thread(() -> {
+			final HostPermit otherPermit = scheduler.acquire(URL);
+			acquired.countDown();
+			otherPermit.close();
+		});
+		other.start();
+
+		assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+		permit.close();
+		/** closing again does not release the permit of other fetch */
+		permit.close();
+		assertTrue(acquired.await(5, TimeUnit.SECONDS));
+		other.join();
+	}
+
+	@Test
+	public void otherHostIsNotHeldBack() throws Exception {
+		try (HostPermit permit = scheduler.acquire(URL)) {
+			final CountDownLatch acquired = new CountDownLatch(1);
+			final Thread other = new Thread(() -> {
+				scheduler.acquire("http://www.example.org/").close();
+				acquired.countDown();
+			});
+			other.start();
+			assertTrue(acquired.await(5, TimeUnit.SECONDS));
+			other.join();
+		}
+	}
+
+	@Test
+	public void tryAcquireDoesNotWaitForBusyHost() {
+		/** all hosts together are not limited */
+		configs.setMaxVisit(1000000);
+		try (HostPermit permit = scheduler.tryAcquire(URL)) {
+			assertEquals("www.example.com", permit.getHostKey());
+			/** the only concurrency slot is taken */
+			assertNull(scheduler.tryAcquire(URL));
+		}
+		/** the slot is free, but next fetch of 2 per second is not due yet */
+		assertNull(scheduler.tryAcquire(URL));
+		try (HostPermit permit = scheduler.tryAcquire(OTHER_HOST_URL)) {
+			assertEquals("www.example.org", permit.getHostKey());
+		}
+	}
+
+	@Test
+	public void tryAcquireReleasesSlotWithoutRatePermit() {
+		scheduler.tryAcquire(URL).close();
+		assertNull(scheduler.tryAcquire(URL));
+
+		/** the slot is not held by the failed try, so waiting acquire gets it */
+		scheduler.acquire(URL).close();
+	}
+
+	@Test
+	public void replayDoesNotWaitForHost() throws Exception {
+		configs.setWarcMode(ContentProvider.WARC_MODE_REPLAY);
+		final HostPermit permit = scheduler.acquire(URL);
+		assertNull(permit.getHostKey());
+		/** no concurrency slot is occupied, so same host is not held back */
+		assertSame(permit, scheduler.acquire(URL));
+		assertEquals("page", permit.fetch(() -> "page"));
+	}
+
+	private static void fetchFailing(final HostPermit permit, final Exception failure) {
+		try {
+			permit.fetch(() -> {
+				throw failure;
+			});
+			fail("The failure of fetch is not thrown");
+		} catch (Exception e) {
+			assertSame(failure, e);
+		}
+	}
+
+	private static String sleep(final long millis) throws InterruptedException {
+		TimeUnit.MILLISECONDS.sleep(millis);
+		return "page";
+	}
+}
@@ -0,0 +1,168 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.io.ByteStreams;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+
+/**
+ * Tests reading of the body into pooled buffers by
+ * {@link ResponseBufferPool}, the truncation at max bytes and the reuse and
+ * retention limit of released buffers.
+ *
+ * @author VishalZanzrukia
+ */
+public class ResponseBufferPoolTest {
+
+	private static final int MAX_BYTES = 100000;
+
+	private Configs configs;
+	private ResponseBufferPool pool;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setPooledBuffers(true);
+		configs.setMaxRetainedBufferBytes(1024 * 1024);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		pool = new ResponseBufferPool();
+		ReflectionTestUtils.setField(pool, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void readsWholeBodyWithoutSizeHint() throws IOException {
+		final byte[] body = randomBytes(50000);
+		final ResponseBuffer buffer = pool.read(new TrickleInputStream(body), -1, MAX_BYTES);
+
+		assertEquals(body.length, buffer.getLength());
+		assertFalse(buffer.isTruncated());
+		assertArrayEquals(body, buffer.toByteArray());
+		assertArrayEquals(body, ByteStreams.toByteArray(buffer.openStream()));
+		buffer.release();
+	}
+
+	@Test
+	public void bodyEndingAtMaxBytesIsNotTruncated() throws IOException {
+		final byte[] body = randomBytes(MAX_BYTES);
+		final ResponseBuffer buffer = pool.read(new ByteArrayInputStream(body), MAX_BYTES, MAX_BYTES);
+
+		assertArrayEquals(body, buffer.toByteArray());
+		assertFalse(buffer.isTruncated());
+		assertEquals(0, pool.getTruncatedBodies());
+	}
+
+	@Test
+	public void bodyAboveMaxBytesIsTruncated() throws IOException {
+		final byte[] body = randomBytes(MAX_BYTES + 1);
+		final ResponseBuffer buffer = pool.read(new ByteArrayInputStream(body), -1, MAX_BYTES);
+
+		assertEquals(MAX_BYTES, buffer.getLength());
+		assertTrue(buffer.isTruncated());
+		assertArrayEquals(Arrays.copyOf(body, MAX_BYTES), buffer.toByteArray());
+		assertEquals(1, pool.getTruncatedBodies());
+	}
+
+	@Test
+	public void releasedBufferIsReused() throws IOException {
+		final ResponseBuffer first = pool.read(new ByteArrayInputStream(randomBytes(20000)), 20000, MAX_BYTES);
+		first.release();
+		/** releasing again does not put the array in pool twice */
+		first.release();
+		final long retainedBytes = pool.getRetainedBytes();
+		assertTrue(retainedBytes > 0);
+
+		final byte[] body = randomBytes(30000);
+		final ResponseBuffer second = pool.read(new ByteArrayInputStream(body), body.length, MAX_BYTES);
+		assertEquals(1, pool.getReusedBuffers());
+		assertEquals(0, pool.getRetainedBytes());
+		assertArrayEquals(body, second.toByteArray());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releasedBufferCannotBeRead() throws IOException {
+		final ResponseBuffer buffer = pool.read(new ByteArrayInputStream(randomBytes(100)), 100, MAX_BYTES);
+		buffer.release();
+		buffer.openStream();
+	}
+
+	@Test
+	public void buffersAboveRetainedLimitAreDropped() {
+		configs.setMaxRetainedBufferBytes(16 * 1024);
+		final byte[] first = pool.acquire(1);
+		final byte[] second = pool.acquire(1);
+		pool.release(first);
+		pool.release(second);
+
+		assertEquals(first.length, pool.getRetainedBytes());
+		assertEquals(1, pool.getDroppedBuffers());
+	}
+
+	@Test
+	public void buffersAreNotKeptWhenNotPooled() {
+		configs.setPooledBuffers(false);
+		pool.release(pool.acquire(1));
+		pool.acquire(1);
+
+		assertEquals(0, pool.getRetainedBytes());
+		assertEquals(0, pool.getReusedBuffers());
+		assertEquals(2, pool.getAllocatedBuffers());
+	}
+
+	@Test
+	public void bufferIsReleasedOnReadFailure() {
+		final InputStream failing = new InputStream() {
+
+			@Override
+			public int read() throws IOException {
+				throw new IOException("Connection reset");
+			}
+		};
+		try {
+			pool.read(failing, 1000, MAX_BYTES);
+			fail("The read failure is not thrown");
+		} catch (IOException e) {
+			assertEquals(16 * 1024, pool.getRetainedBytes());
+		}
+	}
+
+	private static byte[] randomBytes(final int length) {
+		final byte[] bytes = new byte[length];
+		new Random(length).nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Returns few bytes per read, the way body arrives from socket.
+	 */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+
+		private TrickleInputStream(final byte[] bytes) {
+			super(bytes);
+		}
+
+		@Override
+		public synchronized int read(final byte[] buffer, final int offset, final int length) {
+			return super.read(buffer, offset, Math.min(length, 1000));
+		}
+	}
+}
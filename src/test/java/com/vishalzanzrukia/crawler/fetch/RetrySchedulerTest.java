@@ -0,0 +1,202 @@
+package com.vishalzanzrukia.crawler.fetch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.jsoup.HttpStatusException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.MESSAGE_HEADERS;
+
+/**
+ * Tests the delayed retries of {@link RetryScheduler}, the retry count header,
+ * dropping of exhausted and permanently failed urls, the urls deferred while
+ * circuit of their host is open, the sitemap lastmod header and publishing of
+ * pending retries on shutdown.
+ *
+ * @author VishalZanzrukia
+ */
+public class RetrySchedulerTest {
+
+	private static final String URL = "http://www.example.com/category/index.jsp?categoryId=1";
+
+	private static final long PUBLISH_TIMEOUT = 5000;
+
+	private Configs configs;
+	private CrawlerUtils crawlerUtils;
+	private MessageChannel visitUrlChannel;
+	private MessageChannel productUrlChannel;
+	private RetryScheduler retryScheduler;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setMaxRetry(2);
+		configs.setRetryBaseDelay(20);
+		configs.setRetryMaxDelay(40);
+
+		crawlerUtils = mock(CrawlerUtils.class);
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getCrawlerUtils()).thenReturn(crawlerUtils);
+
+		visitUrlChannel = mock(MessageChannel.class);
+		productUrlChannel = mock(MessageChannel.class);
+
+		retryScheduler = new RetryScheduler();
+		ReflectionTestUtils.setField(retryScheduler, "singletonBeanFactory", singletonBeanFactory);
+		ReflectionTestUtils.setField(retryScheduler, "visitUrlChannel", visitUrlChannel);
+		ReflectionTestUtils.setField(retryScheduler, "productUrlChannel", productUrlChannel);
+	}
+
+	@After
+	public void tearDown() {
+		retryScheduler.destroy();
+	}
+
+	@Test
+	public void retryIsPublishedWithRetryCountAfterBackoff() {
+		assertTrue(retryScheduler.scheduleVisitRetry(URL, 3, null, null));
+		assertEquals(1, retryScheduler.getScheduledRetries());
+
+		final Message<?> message = awaitMessage(visitUrlChannel);
+		assertEquals(URL, message.getHeaders().get(MESSAGE_HEADERS.URL));
+		assertEquals(1, message.getHeaders().get(MESSAGE_HEADERS.RETRY_COUNT));
+		assertEquals(3, message.getHeaders().get(MESSAGE_HEADERS.DEPTH));
+		assertEquals(0, retryScheduler.getPendingRetries());
+		verify(productUrlChannel, never()).send(any(Message.class));
+	}
+
+	@Test
+	public void productRetryKeepsMissingDepth() {
+		assertTrue(retryScheduler.scheduleProductRetry(URL, null, 1, null));
+
+		final Message<?> message = awaitMessage(productUrlChannel);
+		assertEquals(2, message.getHeaders().get(MESSAGE_HEADERS.RETRY_COUNT));
+		assertNull(message.getHeaders().get(MESSAGE_HEADERS.DEPTH));
+	}
+
+	@Test
+	public void urlIsDroppedOnceRetriesAreExhausted() {
+		assertFalse(retryScheduler.scheduleVisitRetry(URL, 3, 2, null));
+
+		assertEquals(1, retryScheduler.getDroppedUrls());
+		assertEquals(0, retryScheduler.getPendingRetries());
+		verify(crawlerUtils).writeError(URL + "\n");
+		verify(visitUrlChannel, never()).send(any(Message.class));
+	}
+
+	@Test
+	public void deferredUrlIsNotCountedAsRetry() {
+		retryScheduler.deferVisit(URL, 3, null, null, 10);
+
+		final Message<?> message = awaitMessage(visitUrlChannel);
+		assertNull(message.getHeaders().get(MESSAGE_HEADERS.RETRY_COUNT));
+		assertEquals(1, retryScheduler.getDeferredUrls());
+		assertEquals(0, retryScheduler.getScheduledRetries());
+	}
+
+	@Test
+	public void deferredUrlKeepsItsRetryCount() {
+		retryScheduler.deferProduct(URL, null, 1, null, 10);
+
+		assertEquals(1, awaitMessage(productUrlChannel).getHeaders().get(MESSAGE_HEADERS.RETRY_COUNT));
+	}
+
+	@Test
+	public void retryKeepsSiteMapLastmod() {
+		assertTrue(retryScheduler.scheduleProductRetry(URL, 3, null, true));
+		assertEquals(true, awaitMessage(productUrlChannel).getHeaders().get(MESSAGE_HEADERS.SITEMAP_LASTMOD));
+
+		retryScheduler.deferVisit(URL, 3, null, false, 10);
+		assertEquals(false, awaitMessage(visitUrlChannel).getHeaders().get(MESSAGE_HEADERS.SITEMAP_LASTMOD));
+	}
+
+	@Test
+	public void retryWaitsForBackoff() throws Exception {
+		configs.setRetryBaseDelay(60000);
+		configs.setRetryMaxDelay(60000);
+		retryScheduler.scheduleVisitRetry(URL, 3, null, null);
+
+		Thread.sleep(100);
+		assertEquals(1, retryScheduler.getPendingRetries());
+		verify(visitUrlChannel, never()).send(any(Message.class));
+	}
+
+	@Test
+	public void permanentFailureIsNotRetried() {
+		retryScheduler.dropPermanentFailure(URL, new PermanentFetchException(URL, new HttpStatusException("Not found", 404, URL)));
+
+		assertEquals(1, retryScheduler.getPermanentFailures());
+		verify(crawlerUtils).writeError(URL + "\n");
+	}
+
+	@Test
+	public void pendingRetriesArePublishedOnShutdown() {
+		configs.setRetryBaseDelay(60000);
+		configs.setRetryMaxDelay(60000);
+		retryScheduler.scheduleVisitRetry(URL, 3, null, null);
+		retryScheduler.deferProduct(URL, 3, null, null, 60000);
+		assertEquals(2, retryScheduler.getPendingRetries());
+
+		retryScheduler.destroy();
+
+		/** published by the shutdown itself, not by the scheduler */
+		verify(visitUrlChannel).send(any(Message.class));
+		verify(productUrlChannel).send(any(Message.class));
+		assertEquals(0, retryScheduler.getPendingRetries());
+	}
+
+	@Test
+	public void pendingRetriesArePublishedOnStop() {
+		configs.setRetryBaseDelay(60000);
+		configs.setRetryMaxDelay(60000);
+		retryScheduler.start();
+		retryScheduler.scheduleVisitRetry(URL, 3, null, null);
+		assertTrue(retryScheduler.isRunning());
+
+		final Runnable callback = mock(Runnable.class);
+		retryScheduler.stop(callback);
+
+		verify(callback).run();
+		verify(visitUrlChannel).send(any(Message.class));
+		assertFalse(retryScheduler.isRunning());
+		assertEquals(0, retryScheduler.getPendingRetries());
+	}
+
+	@Test
+	public void retryAfterStopIsPublishedAtOnce() {
+		configs.setRetryBaseDelay(60000);
+		configs.setRetryMaxDelay(60000);
+		retryScheduler.stop();
+
+		assertTrue(retryScheduler.scheduleProductRetry(URL, 3, null, null));
+		/** published by the calling thread, the outbound adapters are about to be stopped */
+		verify(productUrlChannel).send(any(Message.class));
+		assertEquals(0, retryScheduler.getPendingRetries());
+	}
+
+	private static Message<?> awaitMessage(final MessageChannel channel) {
+		@SuppressWarnings("rawtypes")
+		final ArgumentCaptor<Message> message = ArgumentCaptor.forClass(Message.class);
+		verify(channel, timeout(PUBLISH_TIMEOUT)).send(message.capture());
+		return message.getValue();
+	}
+}
@@ -0,0 +1,162 @@
+package com.vishalzanzrukia.crawler.fetch.warc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.io.ByteStreams;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper.ResponseWrapperBuilder;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.ContentProvider;
+
+/**
+ * Tests that the pages recorded by {@link WarcRecordingContentProvider} are
+ * replayed by {@link WarcReplayContentProvider} with the same status, headers
+ * and body, including conditional requests answered from the record.
+ *
+ * @author VishalZanzrukia
+ */
+public class WarcReplayContentProviderTest {
+
+	private static final String URL = "http://www.example.com/product/index.jsp?productId=1";
+	private static final String RESPONSE_URL = "https://www.example.com/product/index.jsp?productId=1&redirected=true";
+	private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+	private static final String ETAG = "\"v1\"";
+	private static final String LAST_MODIFIED = "Thu, 01 Jun 2017 10:00:00 GMT";
+	private static final byte[] PAGE = ("<html><head><title>Recorded page</title></head><body><a href=\"/a\">ä</a></body>"
+			+ "<div>after body</div></html>").getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public TemporaryFolder warcDirectory = new TemporaryFolder();
+
+	private Configs configs;
+	private SingletonBeanFactory singletonBeanFactory;
+	private WarcRecordingContentProvider recordingContentProvider;
+
+	@Before
+	public void setUp() throws Exception {
+		configs = new Configs();
+		configs.setWarcMode(ContentProvider.WARC_MODE_RECORD);
+		configs.setWarcDirectory(warcDirectory.getRoot().getAbsolutePath());
+		configs.setMaxBytes(1024 * 1024);
+		configs.setEarlyAbort(true);
+
+		final ContentProvider networkContentProvider = mock(ContentProvider.class);
+		when(networkContentProvider.downloadPage(URL, true)).thenReturn(new ResponseWrapperBuilder(null).withResponseType(CONTENT_TYPE)
+				.withURL(new URL(RESPONSE_URL)).withResponseBytes(PAGE).withValidators(new PageValidators(ETAG, LAST_MODIFIED, PAGE.length)).build());
+
+		singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getNetworkContentProvider()).thenReturn(networkContentProvider);
+
+		recordingContentProvider = new WarcRecordingContentProvider();
+		ReflectionTestUtils.setField(recordingContentProvider, "singletonBeanFactory", singletonBeanFactory);
+		recordingContentProvider.init();
+	}
+
+	@After
+	public void tearDown() {
+		recordingContentProvider.destroy();
+	}
+
+	@Test
+	public void recordedPageIsReplayedWithSameHeadersAndBody() throws IOException {
+		final JsoupDocumentWrapper recorded = recordingContentProvider.downloadPage(URL);
+		final WarcReplayContentProvider replayContentProvider = replay();
+
+		final JsoupDocumentWrapper replayed = replayContentProvider.downloadPage(URL, true);
+		assertFalse(replayed.isNotModified());
+		assertEquals(CONTENT_TYPE, replayed.getResponseType());
+		assertEquals(RESPONSE_URL, replayed.getUrl().toString());
+		assertEquals(ETAG, replayed.getValidators().getETag());
+		assertEquals(LAST_MODIFIED, replayed.getValidators().getLastModified());
+		assertEquals(PAGE.length, replayed.getValidators().getContentLength());
+		assertArrayEquals(PAGE, replayed.getResponseBytes());
+
+		/** parsed same as recorded response, with charset of content type */
+		assertEquals(recorded.getDocument().outerHtml(), replayContentProvider.downloadPage(URL).getDocument().outerHtml());
+		assertEquals("ä", replayContentProvider.downloadPage(URL).getDocument().select("a").text());
+	}
+
+	@Test
+	public void recordIsWrittenAsWarcResponse() throws IOException {
+		recordingContentProvider.downloadPage(URL);
+		recordingContentProvider.destroy();
+
+		final File[] warcFiles = warcDirectory.getRoot().listFiles((dir, name) -> name.endsWith(WarcWriter.FILE_SUFFIX));
+		assertEquals(1, warcFiles.length);
+		final String record;
+		try (InputStream in = new GZIPInputStream(new FileInputStream(warcFiles[0]))) {
+			record = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+		assertTrue(record, record.startsWith("WARC/1.0\r\nWARC-Type: response\r\n"));
+		assertTrue(record, record.contains("WARC-Target-URI: " + URL + "\r\n"));
+		assertTrue(record, record.contains("\r\n\r\nHTTP/1.1 200 OK\r\n"));
+		assertTrue(record, record.contains("Content-Location: " + RESPONSE_URL + "\r\n"));
+		assertTrue(record, record.contains("Content-Length: " + PAGE.length + "\r\n\r\n" + new String(PAGE, StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void conditionalRequestIsAnsweredFromRecord() throws IOException {
+		recordingContentProvider.downloadPage(URL);
+		final WarcReplayContentProvider replayContentProvider = replay();
+
+		final JsoupDocumentWrapper notModified = replayContentProvider.downloadPage(URL, new PageValidators(ETAG, null, PAGE.length));
+		assertTrue(notModified.isNotModified());
+		assertNull(notModified.getDocument());
+
+		assertTrue(replayContentProvider.downloadPage(URL, new PageValidators(null, LAST_MODIFIED, PAGE.length)).isNotModified());
+		assertFalse(replayContentProvider.downloadPage(URL, new PageValidators("\"v0\"", LAST_MODIFIED, PAGE.length)).isNotModified());
+	}
+
+	@Test
+	public void navigationPageIsReplayedTillBodyEnd() throws IOException {
+		recordingContentProvider.downloadPage(URL);
+
+		assertTrue(replay().downloadNavigationPage(URL).getDocument().select("div").isEmpty());
+	}
+
+	@Test
+	public void urlNotRecordedFails() throws IOException {
+		recordingContentProvider.downloadPage(URL);
+		try {
+			replay().downloadPage("http://www.example.com/not-recorded");
+			fail("The url which is not recorded is replayed");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("not recorded"));
+		}
+	}
+
+	private WarcReplayContentProvider replay() throws IOException {
+		recordingContentProvider.destroy();
+		configs.setWarcMode(ContentProvider.WARC_MODE_REPLAY);
+
+		final WarcReplayContentProvider replayContentProvider = new WarcReplayContentProvider();
+		ReflectionTestUtils.setField(replayContentProvider, "singletonBeanFactory", singletonBeanFactory);
+		replayContentProvider.init();
+		return replayContentProvider;
+	}
+}
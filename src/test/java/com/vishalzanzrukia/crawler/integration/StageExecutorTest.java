@@ -0,0 +1,173 @@
+package com.vishalzanzrukia.crawler.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Tests the bounded queue of {@link StageExecutor}, the back pressure on the
+ * thread handing over the messages, waiting for completion and draining of
+ * handed over messages on shutdown.
+ *
+ * @author VishalZanzrukia
+ */
+public class StageExecutorTest {
+
+	private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder().setNameFormat("test-stage-%d").setDaemon(true).build();
+
+	private StageExecutor stage;
+
+	@After
+	public void tearDown() {
+		if (stage != null) {
+			stage.shutdown();
+		}
+	}
+
+	@Test
+	public void messagesAreProcessedOnStageThreads() throws Exception {
+		stage = new StageExecutor("test", 2, 10, false, 5, THREAD_FACTORY);
+		final CountDownLatch processed = new CountDownLatch(3);
+		final AtomicInteger onStageThreads = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			stage.execute(() -> {
+				if (Thread.currentThread().getName().startsWith("test-stage-")) {
+					onStageThreads.incrementAndGet();
+				}
+				processed.countDown();
+			});
+		}
+
+		assertTrue(processed.await(5, TimeUnit.SECONDS));
+		assertEquals(3, onStageThreads.get());
+		assertEquals(2, stage.getThreads());
+		assertEquals(10, stage.getQueueCapacity());
+	}
+
+	@Test
+	public void handOverWaitsWhileQueueIsFull() throws Exception {
+		stage = new StageExecutor("test", 1, 1, false, 5, THREAD_FACTORY);
+		final CountDownLatch release = new CountDownLatch(1);
+		stage.execute(() -> awaitQuietly(release));
+		stage.execute(() -> {
+		});
+		awaitQueueDepth(1);
+
+		final CountDownLatch handedOver = new CountDownLatch(1);
+		final Thread previousStage = new Thread(() -> {
+			stage.execute(() -> {
+			});
+			handedOver.countDown();
+		});
+		previousStage.start();
+
+		assertFalse(handedOver.await(200, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(handedOver.await(5, TimeUnit.SECONDS));
+		assertEquals(1, stage.getBlockedSubmits());
+		assertTrue(stage.getMeanBlockedMillis() > 0);
+	}
+
+	@Test
+	public void handOverWaitsForCompletion() {
+		stage = new StageExecutor("test", 1, 1, true, 5, THREAD_FACTORY);
+		final AtomicBoolean processed = new AtomicBoolean();
+		stage.execute(() -> {
+			sleepQuietly(100);
+			processed.set(true);
+		});
+
+		assertTrue(processed.get());
+		assertEquals(1, stage.getCompletedTasks());
+		assertTrue(stage.getMeanServiceMillis() >= 100);
+	}
+
+	@Test
+	public void queuedMessagesAreDrainedOnShutdown() {
+		stage = new StageExecutor("test", 1, 10, false, 5, THREAD_FACTORY);
+		final AtomicInteger processed = new AtomicInteger();
+		for (int i = 0; i < 5; i++) {
+			stage.execute(() -> {
+				sleepQuietly(20);
+				processed.incrementAndGet();
+			});
+		}
+
+		stage.shutdown();
+		assertEquals(5, processed.get());
+	}
+
+	@Test
+	public void queuedMessagesAreDroppedAfterDrainTimeout() {
+		stage = new StageExecutor("test", 1, 10, false, 1, THREAD_FACTORY);
+		final CountDownLatch never = new CountDownLatch(1);
+		final AtomicBoolean queuedProcessed = new AtomicBoolean();
+		stage.execute(() -> awaitQuietly(never));
+		stage.execute(() -> queuedProcessed.set(true));
+
+		stage.shutdown();
+		assertFalse(queuedProcessed.get());
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void messageIsRejectedOnceShutDown() {
+		stage = new StageExecutor("test", 1, 1, false, 1, THREAD_FACTORY);
+		stage.shutdown();
+		stage.execute(() -> {
+		});
+	}
+
+	@Test
+	public void newThreadIsStartedPerMessageWithoutQueue() throws Exception {
+		stage = new StageExecutor("test", 0, 10, false, 5, THREAD_FACTORY);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(3);
+		for (int i = 0; i < 3; i++) {
+			stage.execute(() -> {
+				started.countDown();
+				awaitQuietly(release);
+			});
+		}
+
+		/** all messages run at once, none waits in queue */
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(0, stage.getQueueCapacity());
+		assertEquals(3, stage.getThreads());
+		release.countDown();
+	}
+
+	private void awaitQueueDepth(final int depth) throws InterruptedException {
+		for (int i = 0; i < 100 && stage.getQueueDepth() != depth; i++) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+		assertEquals(depth, stage.getQueueDepth());
+	}
+
+	private static void awaitQuietly(final CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleepQuietly(final long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
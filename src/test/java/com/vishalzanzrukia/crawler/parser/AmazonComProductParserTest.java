@@ -0,0 +1,42 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jsoup.Jsoup;
+import org.jsoup.parser.Parser;
+import org.junit.Test;
+
+/**
+ * Tests the title {@link AmazonComProductParser} reads from the product page,
+ * and its fallbacks.
+ *
+ * @author VishalZanzrukia
+ */
+public class AmazonComProductParserTest {
+
+	private static final String PRODUCT_ID = "B01DFKC2SO";
+
+	private final AmazonComProductParser parser = new AmazonComProductParser("amazon.com");
+
+	@Test
+	public void titleIsReadFromTitleElement() {
+		assertEquals("Echo Dot (2nd Generation)", parseTitle("<html><head><meta property=\"og:title\" content=\"Amazon.com: Echo Dot\"/></head>"
+				+ "<body><span id=\"productTitle\">\n  Echo Dot (2nd Generation)  \n</span></body></html>"));
+	}
+
+	@Test
+	public void openGraphTitleIsFallback() {
+		assertEquals("Amazon.com: Echo Dot", parseTitle("<html><head><meta property=\"og:title\" content=\"Amazon.com: Echo Dot\"/></head>"
+				+ "<body><span id=\"price\">$49.99</span></body></html>"));
+	}
+
+	@Test
+	public void pageWithoutTitleKeepsDefaultTitle() {
+		assertEquals("Product Titel", parseTitle("<html><head><title>Amazon.com</title></head><body></body></html>"));
+	}
+
+	private String parseTitle(final String html) {
+		return parser.parseTitle(parser.getFieldExtractor().extract(Jsoup.parse(html, "https://www.amazon.com/dp/" + PRODUCT_ID, Parser.xmlParser())),
+				PRODUCT_ID);
+	}
+}
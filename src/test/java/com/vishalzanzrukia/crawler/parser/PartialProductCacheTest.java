@@ -0,0 +1,234 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fiftyonred.mock_jedis.MockJedis;
+import com.vishalzanzrukia.crawler.ProcessTriggeringBean;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.Product;
+import com.vishalzanzrukia.crawler.bean.RuntimeConfigs;
+import com.vishalzanzrukia.crawler.parser.field.ExtractedFields;
+import com.vishalzanzrukia.crawler.parser.field.FieldRule;
+import com.vishalzanzrukia.crawler.parser.field.ProductFields;
+import com.vishalzanzrukia.crawler.registry.ComponentRegistry;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlProcessor;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Tests that the fields found by earlier attempts of the product page are kept
+ * in {@link PartialProductCache} and fill the fields missing from the page
+ * fetched again (only once, and only for the fields which have rules),
+ * against {@link MockJedis}.
+ *
+ * @author VishalZanzrukia
+ */
+public class PartialProductCacheTest {
+
+	private static final String PRODUCT_ID = "1";
+	private static final String PRODUCT_URL = "http://www.example.com/product/index.jsp?productId=" + PRODUCT_ID;
+
+	private Configs configs;
+	private SingletonBeanFactory singletonBeanFactory;
+	private PartialProductCache partialProductCache;
+	private TestProductParser productParser;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setMaxRetry(2);
+		final RuntimeConfigs runtimeConfigs = new RuntimeConfigs();
+		runtimeConfigs.setDomainName("example.com");
+
+		final MockJedis jedis = new MockJedis("test");
+		final JedisPool jedisPool = mock(JedisPool.class);
+		when(jedisPool.getResource()).thenReturn(jedis);
+
+		final UrlProcessor urlProcessor = mock(UrlProcessor.class);
+		when(urlProcessor.extractProductId(PRODUCT_URL)).thenReturn(PRODUCT_ID);
+		final ComponentRegistry componentRegistry = mock(ComponentRegistry.class);
+		when(componentRegistry.getUrlProcessor()).thenReturn(urlProcessor);
+
+		final CrawlerUtils crawlerUtils = spy(new CrawlerUtils());
+		doNothing().when(crawlerUtils).writeError(anyString());
+
+		singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getRuntimeConfigs()).thenReturn(runtimeConfigs);
+		when(singletonBeanFactory.getCrawlerUtils()).thenReturn(crawlerUtils);
+		when(singletonBeanFactory.getComponentRegistry()).thenReturn(componentRegistry);
+		when(singletonBeanFactory.getJedisPool()).thenReturn(jedisPool);
+
+		partialProductCache = new PartialProductCache();
+		ReflectionTestUtils.setField(partialProductCache, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getPartialProductCache()).thenReturn(partialProductCache);
+
+		productParser = new TestProductParser(true);
+		ReflectionTestUtils.setField(productParser, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void partialProductIsStoredAndPageIsFetchedAgain() {
+		assertIncomplete(() -> parse("<span id=\"barcode\">0841667100001</span><span id=\"price\">49.99</span>", null));
+
+		final Product partial = partialProductCache.get(PRODUCT_ID);
+		assertNotNull(partial);
+		assertEquals("0841667100001", partial.getBarcode());
+		assertEquals(new BigDecimal("49.99"), partial.getPrice());
+		assertNull(partial.getWeight());
+		assertEquals(1, partialProductCache.getStoredProducts());
+	}
+
+	@Test
+	public void partialsOfTwoAttemptsAreMerged() {
+		assertIncomplete(() -> parse("<span id=\"barcode\">0841667100001</span><span id=\"price\">49.99</span>", null));
+		/** newer price wins, the barcode is taken from the first attempt */
+		final Product product = parse("<span id=\"price\">44.99</span><span id=\"weight\">300</span>"
+				+ "<div id=\"dimensions\"><span>84</span><span>32</span><span>84</span></div>", 1);
+
+		assertNotNull(product);
+		assertEquals("0841667100001", product.getBarcode());
+		assertEquals(new BigDecimal("44.99"), product.getPrice());
+		assertEquals(Integer.valueOf(300), product.getWeight());
+		assertEquals(Arrays.asList(84, 32, 84), product.getDimensions());
+		assertNull(partialProductCache.get(PRODUCT_ID));
+		assertEquals(1, partialProductCache.getCompletedProducts());
+	}
+
+	@Test
+	public void pageIsFetchedAgainOnlyOnce() {
+		assertIncomplete(() -> parse("<span id=\"barcode\">0841667100001</span>", null));
+
+		/** retries are left, but the page was fetched again already */
+		assertNull(parse("<span id=\"price\">49.99</span>", 1));
+		assertNull(partialProductCache.get(PRODUCT_ID));
+		assertEquals(1, partialProductCache.getDroppedProducts());
+	}
+
+	@Test
+	public void incompleteProductIsNotFetchedAgainAfterMaxRetry() {
+		/** the fetch of the page was retried till max retry already */
+		assertNull(parse("<span id=\"barcode\">0841667100001</span>", 2));
+		assertNull(partialProductCache.get(PRODUCT_ID));
+	}
+
+	@Test
+	public void fieldsWithoutRulesAreNotRequired() {
+		productParser = new TestProductParser(false);
+		ReflectionTestUtils.setField(productParser, "singletonBeanFactory", singletonBeanFactory);
+		final Product product = parse("<span id=\"barcode\">0841667100001</span><span id=\"price\">49.99</span><span id=\"weight\">300</span>"
+				+ "<div id=\"dimensions\"><span>84</span></div>", null);
+
+		assertNotNull(product);
+		assertEquals(0, product.getDimensions().size());
+		assertEquals(0, partialProductCache.getStoredProducts());
+	}
+
+	@Test
+	public void singleAttemptParseDoesNotStorePartial() {
+		assertNull(productParser.parseProduct(Jsoup.parse("<span id=\"barcode\">0841667100001</span>"), PRODUCT_URL));
+		assertNull(partialProductCache.get(PRODUCT_ID));
+	}
+
+	@Test
+	public void partialProductsAreDeletedWithDatabaseOfCycle() {
+		assertIncomplete(() -> parse("<span id=\"barcode\">0841667100001</span>", null));
+
+		final ProcessTriggeringBean processTriggeringBean = new ProcessTriggeringBean();
+		ReflectionTestUtils.setField(processTriggeringBean, "singletonBeanFactory", singletonBeanFactory);
+		ReflectionTestUtils.invokeMethod(processTriggeringBean, "deleteDB");
+
+		assertNull(partialProductCache.get(PRODUCT_ID));
+	}
+
+	private Product parse(final String body, final Integer retryCount) {
+		final ExtractedFields fields = productParser.getFieldExtractor().extract(Jsoup.parse("<html><body>" + body + "</body></html>"));
+		return productParser.parseProduct(PRODUCT_URL, fields, retryCount);
+	}
+
+	private static void assertIncomplete(final Runnable parse) {
+		try {
+			parse.run();
+			fail("The incomplete product is not fetched again");
+		} catch (IncompleteProductException e) {
+			assertEquals(PRODUCT_ID, e.getProductId());
+		}
+	}
+
+	/**
+	 * The parser which reads each field from the element with its id, the
+	 * dimensions only if it has rule for them.
+	 */
+	private static final class TestProductParser extends AbstractProductParser {
+
+		private final boolean dimensionsRule;
+
+		private TestProductParser(final boolean dimensionsRule) {
+			this.dimensionsRule = dimensionsRule;
+		}
+
+		@Override
+		protected List<FieldRule> getFieldRules() {
+			final List<FieldRule> rules = super.getFieldRules();
+			rules.add(FieldRule.text(ProductFields.BARCODE, "#barcode"));
+			rules.add(FieldRule.text(ProductFields.PRICE, "#price"));
+			rules.add(FieldRule.text(ProductFields.WEIGHT, "#weight"));
+			if (dimensionsRule) {
+				rules.add(FieldRule.allTexts(ProductFields.DIMENSIONS, "#dimensions span"));
+			}
+			return rules;
+		}
+
+		@Override
+		String parseBarcode(final ExtractedFields fields, final String productId) {
+			return fields.get(ProductFields.BARCODE);
+		}
+
+		@Override
+		Integer parseWeight(final ExtractedFields fields, final String productId) {
+			final String weight = fields.get(ProductFields.WEIGHT);
+			return weight == null ? null : Integer.valueOf(weight);
+		}
+
+		@Override
+		List<Integer> parseDimensions(final ExtractedFields fields, final String productId) {
+			return fields.getAll(ProductFields.DIMENSIONS).stream().map(Integer::valueOf).collect(Collectors.toList());
+		}
+
+		@Override
+		BigDecimal parsePrice(final ExtractedFields fields, final String productId) {
+			final String price = fields.get(ProductFields.PRICE);
+			return price == null ? null : new BigDecimal(price);
+		}
+
+		@Override
+		String parseTitle(final ExtractedFields fields, final String productId) {
+			return null;
+		}
+
+		@Override
+		public String getDomainName() {
+			return "example.com";
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fiftyonred.mock_jedis.MockJedis;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.RuntimeConfigs;
+import com.vishalzanzrukia.crawler.registry.ComponentRegistry;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlProcessor;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Tests skipping of the sitemap urls whose lastmod is not changed since they
+ * were fetched by {@link SiteMapLastmodCache}, the lastmod formats and the
+ * rotation of fetched lastmods per crawler cycle, against {@link MockJedis}.
+ *
+ * @author VishalZanzrukia
+ */
+public class SiteMapLastmodCacheTest {
+
+	private static final String PRODUCT_URL = "https://www.amazon.com/product/index.jsp?productId=1";
+	private static final String OTHER_PRODUCT_URL = "https://www.amazon.com/product/index.jsp?productId=2";
+	private static final String CHILD_SITEMAP_URL = "https://www.amazon.com/sitemap-1.xml.gz";
+
+	private Configs configs;
+	private RuntimeConfigs runtimeConfigs;
+	private MockJedis jedis;
+	private SiteMapLastmodCache lastmodCache;
+
+	@Before
+	public void setUp() {
+		configs = new Configs();
+		configs.setSiteMapLastmodFilter(true);
+		runtimeConfigs = new RuntimeConfigs();
+		runtimeConfigs.setDomainName("amazon.com");
+
+		jedis = new ScriptedMockJedis();
+		final JedisPool jedisPool = mock(JedisPool.class);
+		when(jedisPool.getResource()).thenReturn(jedis);
+
+		final ComponentRegistry componentRegistry = mock(ComponentRegistry.class);
+		when(componentRegistry.getUrlProcessor()).thenReturn(mock(UrlProcessor.class));
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+		when(singletonBeanFactory.getRuntimeConfigs()).thenReturn(runtimeConfigs);
+		when(singletonBeanFactory.getCrawlerUtils()).thenReturn(new CrawlerUtils());
+		when(singletonBeanFactory.getComponentRegistry()).thenReturn(componentRegistry);
+		when(singletonBeanFactory.getJedisPool()).thenReturn(jedisPool);
+
+		lastmodCache = new SiteMapLastmodCache();
+		ReflectionTestUtils.setField(lastmodCache, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void lastmodIsParsedInAllW3cFormats() {
+		final long millis = SiteMapLastmodCache.toMillis("2017-06-01T10:00:00Z");
+		assertEquals(Long.valueOf(millis), SiteMapLastmodCache.toMillis("2017-06-01T12:00:00+02:00"));
+		assertEquals(Long.valueOf(millis), SiteMapLastmodCache.toMillis("2017-06-01t10:00:00.000z"));
+		assertEquals(Long.valueOf(millis - 10 * 3600 * 1000), SiteMapLastmodCache.toMillis("2017-06-01"));
+		assertEquals(SiteMapLastmodCache.toMillis("2017-01-01"), SiteMapLastmodCache.toMillis("2017"));
+		assertNull(SiteMapLastmodCache.toMillis("yesterday"));
+		assertNull(SiteMapLastmodCache.toMillis("2017-13-01"));
+	}
+
+	@Test
+	public void urlIsSkippedOnlyOnceFetchedWithSameLastmod() {
+		assertEquals(Collections.singleton(PRODUCT_URL), filterChanged(PRODUCT_URL, "2017-06-01"));
+		/** seen but not fetched yet, so it's not skipped */
+		assertEquals(Collections.singleton(PRODUCT_URL), filterChanged(PRODUCT_URL, "2017-06-01"));
+
+		lastmodCache.markFetched(PRODUCT_URL);
+		assertTrue(filterChanged(PRODUCT_URL, "2017-06-01").isEmpty());
+		/** same instant in other format */
+		assertTrue(filterChanged(PRODUCT_URL, "2017-06-01T00:00:00+00:00").isEmpty());
+		assertEquals(Collections.singleton(PRODUCT_URL), filterChanged(PRODUCT_URL, "2017-06-02"));
+
+		assertEquals(5, lastmodCache.getCheckedUrls());
+		assertEquals(2, lastmodCache.getSkippedUrls());
+	}
+
+	@Test
+	public void urlWithoutValidLastmodIsNeverSkipped() {
+		final Map<String, String> lastmods = new LinkedHashMap<>();
+		lastmods.put(PRODUCT_URL, null);
+		lastmods.put(OTHER_PRODUCT_URL, "last week");
+
+		assertEquals(lastmods.keySet(), lastmodCache.filterChanged(lastmods, StreamingSiteMapReader.Type.URLSET));
+		assertEquals(0, lastmodCache.getCheckedUrls());
+		assertTrue(jedis.hgetAll(runtimeConfigs.getSeenLastmodsRedisKey()).isEmpty());
+	}
+
+	@Test
+	public void urlNotFromSiteMapIsNotMarked() {
+		lastmodCache.markFetched(PRODUCT_URL);
+		assertFalse(jedis.exists(runtimeConfigs.getFetchedLastmodsRedisKey()));
+	}
+
+	@Test
+	public void childSiteMapsAreCountedSeparately() {
+		final Map<String, String> lastmods = Collections.singletonMap(CHILD_SITEMAP_URL, "2017-06-01");
+		lastmodCache.filterChanged(lastmods, StreamingSiteMapReader.Type.INDEX);
+		lastmodCache.markFetched(CHILD_SITEMAP_URL);
+
+		assertTrue(lastmodCache.filterChanged(lastmods, StreamingSiteMapReader.Type.INDEX).isEmpty());
+		assertEquals(1, lastmodCache.getSkippedSiteMaps());
+		assertEquals(0, lastmodCache.getSkippedUrls());
+	}
+
+	@Test
+	public void lastmodsNotListedForWholeCycleArePruned() {
+		filterChanged(PRODUCT_URL, "2017-06-01");
+		filterChanged(OTHER_PRODUCT_URL, "2017-06-01");
+		lastmodCache.markFetched(PRODUCT_URL);
+		lastmodCache.markFetched(OTHER_PRODUCT_URL);
+
+		lastmodCache.onNewCycle();
+		assertEquals(0, lastmodCache.getCheckedUrls());
+		assertFalse(jedis.exists(runtimeConfigs.getSeenLastmodsRedisKey()));
+
+		/** the url listed again is still skipped, and carried to lastmods of current cycle */
+		assertTrue(filterChanged(PRODUCT_URL, "2017-06-01").isEmpty());
+		assertEquals(1, jedis.hgetAll(runtimeConfigs.getFetchedLastmodsRedisKey()).size());
+
+		lastmodCache.onNewCycle();
+		assertTrue(filterChanged(PRODUCT_URL, "2017-06-01").isEmpty());
+		/** the url which was not listed in last cycle is dropped from redis */
+		assertEquals(Collections.singleton(OTHER_PRODUCT_URL), filterChanged(OTHER_PRODUCT_URL, "2017-06-01"));
+	}
+
+	@Test
+	public void lastmodsAreKeptAcrossCyclesWhenFilterIsDisabled() {
+		filterChanged(PRODUCT_URL, "2017-06-01");
+		lastmodCache.markFetched(PRODUCT_URL);
+
+		configs.setSiteMapLastmodFilter(false);
+		lastmodCache.onNewCycle();
+		lastmodCache.onNewCycle();
+
+		assertEquals(1, jedis.hgetAll(runtimeConfigs.getFetchedLastmodsRedisKey()).size());
+		assertEquals(0, lastmodCache.getCheckedUrls());
+	}
+
+	private Set<String> filterChanged(final String url, final String lastmod) {
+		return lastmodCache.filterChanged(Collections.singletonMap(url, lastmod), StreamingSiteMapReader.Type.URLSET);
+	}
+
+	/**
+	 * {@link MockJedis} does not run scripts, so the script which marks the
+	 * url fetched is done by same commands here.
+	 */
+	private static class ScriptedMockJedis extends MockJedis {
+
+		private ScriptedMockJedis() {
+			super("localhost");
+		}
+
+		@Override
+		public Object eval(final String script, final List<String> keys, final List<String> args) {
+			final String lastmod = hget(keys.get(0), args.get(0));
+			if (lastmod != null) {
+				hset(keys.get(1), args.get(0), lastmod);
+				hdel(keys.get(0), args.get(0));
+			}
+			return lastmod;
+		}
+	}
+}
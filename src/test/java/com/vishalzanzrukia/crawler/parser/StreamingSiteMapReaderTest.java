@@ -0,0 +1,125 @@
+package com.vishalzanzrukia.crawler.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import com.vishalzanzrukia.crawler.parser.StreamingSiteMapReader.Entry;
+import com.vishalzanzrukia.crawler.parser.StreamingSiteMapReader.Type;
+
+import crawlercommons.sitemaps.UnknownFormatException;
+
+/**
+ * Tests reading of sitemaps and sitemap indexes by
+ * {@link StreamingSiteMapReader}, the batches handed over while reading,
+ * gzipped sitemaps and the sitemaps which are not valid.
+ *
+ * @author VishalZanzrukia
+ */
+public class StreamingSiteMapReaderTest {
+
+	private static final String URLSET_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+			+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">";
+	private static final String URLSET_END = "</urlset>";
+
+	private final List<List<Entry>> batches = new ArrayList<>();
+
+	@Test
+	public void urlsAreHandedOverInBatches() throws Exception {
+		final StringBuilder xml = new StringBuilder(URLSET_START);
+		for (int i = 0; i < 5; i++) {
+			xml.append("<url><loc>http://www.example.com/product/").append(i).append("</loc><lastmod>2017-06-0").append(i + 1)
+					.append("</lastmod><changefreq>daily</changefreq></url>");
+		}
+		xml.append(URLSET_END);
+
+		assertEquals(Type.URLSET, read(xml.toString(), 2));
+		assertEquals(3, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertEquals(1, batches.get(2).size());
+		assertEquals("http://www.example.com/product/4", batches.get(2).get(0).getUrl());
+		assertEquals("2017-06-05", batches.get(2).get(0).getLastModified());
+	}
+
+	@Test
+	public void sitemapIndexListsChildSitemaps() throws Exception {
+		final String xml = "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+				+ "<sitemap><loc> http://www.example.com/sitemap-1.xml.gz </loc></sitemap>"
+				+ "<sitemap><loc>http://www.example.com/sitemap-2.xml</loc><lastmod>2017-06-01T10:00:00+00:00</lastmod></sitemap>"
+				+ "</sitemapindex>";
+
+		assertEquals(Type.INDEX, read(xml, 100));
+		assertEquals(1, batches.size());
+		assertEquals("http://www.example.com/sitemap-1.xml.gz", batches.get(0).get(0).getUrl());
+		assertNull(batches.get(0).get(0).getLastModified());
+		assertEquals("2017-06-01T10:00:00+00:00", batches.get(0).get(1).getLastModified());
+	}
+
+	@Test
+	public void gzippedSitemapIsDetectedByContent() throws Exception {
+		final byte[] xml = (URLSET_START + "<url><loc>http://www.example.com/product/1</loc></url>" + URLSET_END).getBytes(StandardCharsets.UTF_8);
+		final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(xml);
+		}
+
+		assertEquals(Type.URLSET, read(new ByteArrayInputStream(gzipped.toByteArray()), 100));
+		assertEquals(Arrays.asList("http://www.example.com/product/1"), urls());
+	}
+
+	@Test
+	public void invalidAndNestedUrlsAreSkipped() throws Exception {
+		final String xml = URLSET_START + "<url><loc>not a url</loc></url><url><loc></loc></url>"
+				+ "<url><image:image xmlns:image=\"http://www.google.com/schemas/sitemap-image/1.1\">"
+				+ "<image:loc>http://www.example.com/image.png</image:loc></image:image><loc>http://www.example.com/product/1</loc></url>"
+				+ URLSET_END;
+
+		read(xml, 100);
+		assertEquals(Arrays.asList("http://www.example.com/product/1"), urls());
+	}
+
+	@Test
+	public void urlsBeforeBrokenXmlAreKept() throws Exception {
+		final String xml = URLSET_START + "<url><loc>http://www.example.com/product/1</loc></url><url><loc>http://www.exa";
+
+		assertEquals(Type.URLSET, read(xml, 100));
+		assertEquals(Arrays.asList("http://www.example.com/product/1"), urls());
+	}
+
+	@Test(expected = UnknownFormatException.class)
+	public void htmlIsNotSitemap() throws Exception {
+		read("<html><body><a href=\"http://www.example.com/\">home</a></body></html>", 100);
+	}
+
+	@Test(expected = UnknownFormatException.class)
+	public void textIsNotSitemap() throws Exception {
+		read("http://www.example.com/product/1\nhttp://www.example.com/product/2", 100);
+	}
+
+	private Type read(final String xml, final int batchSize) throws UnknownFormatException, IOException {
+		return read(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), batchSize);
+	}
+
+	private Type read(final InputStream body, final int batchSize) throws UnknownFormatException, IOException {
+		final StreamingSiteMapReader reader = new StreamingSiteMapReader(batchSize);
+		final Type type = reader.read(body, batch -> batches.add(batch));
+		assertEquals(type, reader.getType());
+		return type;
+	}
+
+	private List<String> urls() {
+		return batches.stream().flatMap(List::stream).map(Entry::getUrl).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,125 @@
+package com.vishalzanzrukia.crawler.parser.field;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the product fields {@link StructuredDataExtractor} reads from JSON-LD,
+ * microdata and meta tags, and their normalized values.
+ *
+ * @author VishalZanzrukia
+ */
+public class StructuredDataExtractorTest {
+
+	private static final String JSON_LD_PRODUCT = "<script type=\"application/ld+json\">{\"@context\": \"http://schema.org\","
+			+ " \"@type\": \"Product\", \"name\": \"Echo Dot\", \"description\": \"Smart speaker\", \"gtin\": \"0841667100000\","
+			+ " \"gtin13\": \"0841667100001\", \"weight\": {\"@type\": \"QuantitativeValue\", \"value\": \"0.3\", \"unitCode\": \"KGM\"},"
+			+ " \"width\": \"8.4 cm\", \"height\": {\"value\": 3.2, \"unitText\": \"cm\"}, \"depth\": \"3.3 in\","
+			+ " \"offers\": [{\"@type\": \"Offer\", \"priceCurrency\": \"USD\", \"price\": \"49.990\"}]}</script>";
+
+	@Test
+	public void productIsReadFromJsonLd() throws IOException {
+		final ExtractedFields fields = extract("<html><head>" + JSON_LD_PRODUCT + "</head><body></body></html>");
+
+		assertEquals("Echo Dot", fields.get(ProductFields.TITLE));
+		assertEquals("Smart speaker", fields.get(ProductFields.DESCRIPTION));
+		assertEquals("49.990", fields.get(ProductFields.PRICE));
+		/** gtin13 is preferred over gtin */
+		assertEquals("0841667100001", fields.get(ProductFields.BARCODE));
+		assertEquals("300", fields.get(ProductFields.WEIGHT));
+		assertEquals(Arrays.asList("84", "32", "84"), fields.getAll(ProductFields.DIMENSIONS));
+		assertTrue(fields.isStructured(ProductFields.PRICE));
+		assertEquals(6, fields.getStructuredFieldCount());
+	}
+
+	@Test
+	public void nestedProductIsFound() throws IOException {
+		final ExtractedFields fields = extract("<script type=\"application/ld+json\">[{\"@type\": \"BreadcrumbList\", \"name\": \"Home\"},"
+				+ " {\"@graph\": [{\"@type\": [\"Thing\", \"http://schema.org/Product\"], \"name\": \"Nested\","
+				+ " \"offers\": {\"@type\": \"AggregateOffer\", \"lowPrice\": 10, \"highPrice\": 20}}]}]</script>");
+
+		assertEquals("Nested", fields.get(ProductFields.TITLE));
+		assertEquals("10", fields.get(ProductFields.PRICE));
+	}
+
+	@Test
+	public void malformedPriceIsSkipped() throws IOException {
+		final ExtractedFields fields = extract("<script type=\"application/ld+json\">{\"@type\": \"Product\", \"name\": \"Echo Dot\","
+				+ " \"offers\": [{\"price\": \"$49.99\"}, {\"price\": \"\"}]}</script><meta property=\"product:price:amount\" content=\"1,234.00\">");
+
+		assertEquals("Echo Dot", fields.get(ProductFields.TITLE));
+		assertNull(fields.get(ProductFields.PRICE));
+		assertFalse(fields.isStructured(ProductFields.PRICE));
+	}
+
+	@Test
+	public void malformedPriceFallsBackToMetaTag() throws IOException {
+		final ExtractedFields fields = extract("<script type=\"application/ld+json\">{\"@type\": \"Product\","
+				+ " \"offers\": {\"price\": \"49,99 EUR\"}}</script><meta property=\"product:price:amount\" content=\" 49.99 \">");
+
+		assertEquals("49.99", fields.get(ProductFields.PRICE));
+	}
+
+	@Test
+	public void malformedJsonLdFallsBackToMetaTags() throws IOException {
+		final ExtractedFields fields = extract("<html><head><script type=\"application/ld+json\">{\"@type\": \"Product\", \"name\": \"Broken\""
+				+ "</script><meta property=\"og:title\" content=\"From &amp; meta\"><meta name=\"description\" content=\"Described\">"
+				+ "<meta name=\"keywords\" content=\"speaker, alexa\"></head><body><div itemscope itemtype=\"http://schema.org/Product\">"
+				+ "<meta itemprop=\"gtin13\" content=\"0841667100001\"><span itemprop=\"price\" content=\"49.99\">$49.99</span></div></body></html>");
+
+		assertEquals("From & meta", fields.get(ProductFields.TITLE));
+		assertEquals("Described", fields.get(ProductFields.DESCRIPTION));
+		assertEquals("speaker, alexa", fields.get(ProductFields.KEYWORDS));
+		assertEquals("0841667100001", fields.get(ProductFields.BARCODE));
+		assertEquals("49.99", fields.get(ProductFields.PRICE));
+	}
+
+	@Test
+	public void jsonLdIsPreferredOverMetaTags() throws IOException {
+		final ExtractedFields fields = extract("<meta property=\"og:title\" content=\"From meta\"><meta property=\"og:title\" content=\"Second\">"
+				+ JSON_LD_PRODUCT);
+
+		assertEquals(Arrays.asList("Echo Dot"), fields.getAll(ProductFields.TITLE));
+	}
+
+	@Test
+	public void quantitiesWithoutKnownUnitAreSkipped() throws IOException {
+		final ExtractedFields fields = extract("<script type=\"application/ld+json\">{\"@type\": \"Product\", \"weight\": \"300\","
+				+ " \"width\": \"8 cm\", \"height\": \"3 cubits\", \"depth\": \"3 cm\"}</script>");
+
+		assertNull(fields.get(ProductFields.WEIGHT));
+		/** dimensions are kept only all together */
+		assertTrue(fields.getAll(ProductFields.DIMENSIONS).isEmpty());
+	}
+
+	@Test
+	public void scriptsOfOtherTypesAndCommentsAreIgnored() throws IOException {
+		final ExtractedFields fields = extract("<!-- <meta property=\"og:title\" content=\"Commented\"> -->"
+				+ "<script>var product = {\"@type\": \"Product\", \"name\": \"Script\"};</script>"
+				+ "<script type=\"text/template\"><meta property=\"og:title\" content=\"Template\"></script>");
+
+		assertNull(fields.get(ProductFields.TITLE));
+	}
+
+	@Test
+	public void unsupportedCharsetIsNotScanned() throws IOException {
+		final String html = "<meta property=\"og:title\" content=\"Title\">";
+		final ExtractedFields fields = StructuredDataExtractor.extract(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_16LE)),
+				"UTF-16LE");
+
+		assertNull(fields.get(ProductFields.TITLE));
+	}
+
+	private static ExtractedFields extract(final String html) throws IOException {
+		return StructuredDataExtractor.extract(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null);
+	}
+}
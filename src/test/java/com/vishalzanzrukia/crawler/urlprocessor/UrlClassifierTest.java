@@ -0,0 +1,112 @@
+package com.vishalzanzrukia.crawler.urlprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.vishalzanzrukia.crawler.urlprocessor.UrlClassifier.UrlClass;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry.DomainPatterns;
+
+/**
+ * Tests that {@link UrlClassifier} classifies the urls exactly as the plain
+ * regex pipeline does, each regex formatted for the domain and matched with
+ * {@link String#matches(String)} in the order of the pipeline, including the
+ * urls whose keywords differ in case or which are not of the domain.
+ *
+ * @author VishalZanzrukia
+ */
+public class UrlClassifierTest {
+
+	private static final List<REGEXES> ALL_FILTERS = Arrays.asList(REGEXES.GENERAL_SEARCH_URL, REGEXES.JSESSION_ID_URL, REGEXES.MEDIA_URL,
+			REGEXES.WRITE_REVIEW_URL, REGEXES.ASSETS_URL, REGEXES.MOBILE_URL, REGEXES.ACCOUNT_URL);
+
+	private static final String[] BASES = {"http://www.%s/", "https://www.%s/", "http://%s/", "https://www.example.org/", "ftp://www.%s/"};
+
+	private static final String[] PATHS = {"product/index.jsp?productId=12345678&cp=2255956&parentPage=family", "product/index.jsp?productid=123",
+			"PRODUCT/INDEX.JSP?PRODUCTID=123", "product/index.jsp?productId=abc", "buy/lego-star-wars-millennium-falcon-75257-12345678",
+			"buy/lego-star-wars", "BUY/lego-12", "pdp/product.jsp?productId=AB12CD", "pdp/product.jsp?productId=ab12cd",
+			"category/index.jsp?categoryId=2255956&ab=hp_nav", "category/index.jsp?categoryId=2255956&sr=1&page=3",
+			"category/index.jsp?CATEGORYID=2255956", "search/index.jsp?categoryId=2255956", "search?q=lego", "search/lego", "searches?q=lego",
+			"assets/images/logo.png", "images/logo.PNG", "images/logo.png?v=2", "scripts/app.js&x=1", "docs/manual.pdf.html",
+			"shop/index.jsp;jsessionid=ABCDEF0123456789?x=1", "shop/index.jsp;JSESSIONID=ABCDEF", "product/writeReview.jsp?productId=1",
+			"product/writereview.jsp?productId=1", "mobile/product/index.jsp?productId=1", "account/login", "Account/login",
+			"help/shipping.html", "", "line\nbreak", "product/index.jsp?productId=1\n"};
+
+	@Test
+	public void generalUrlsAreClassifiedSameAsRegexPipeline() {
+		assertSameAsRegexPipeline("amazon.com", REGEXES.GENERAL_PRODUCT_URL, REGEXES.GENERAL_CANONICAL_PRODUCT_URL, ALL_FILTERS);
+	}
+
+	@Test
+	public void ukUrlsAreClassifiedSameAsRegexPipeline() {
+		assertSameAsRegexPipeline("amazon.co.uk", REGEXES.UK_PRODUCT_URL, REGEXES.GENERAL_CANONICAL_PRODUCT_URL,
+				Arrays.asList(REGEXES.GENERAL_SEARCH_URL, REGEXES.MEDIA_URL));
+	}
+
+	@Test
+	public void dotOfDomainMatchesAnyCharacterAsInRegex() {
+		final UrlClassifier classifier = new UrlClassifier(new DomainPatterns("amazon.com"), REGEXES.GENERAL_PRODUCT_URL,
+				REGEXES.GENERAL_CANONICAL_PRODUCT_URL, ALL_FILTERS);
+
+		assertEquals(UrlClass.PLAIN, classifier.classify("http://www.amazon-com/help.html"));
+		assertEquals(UrlClass.FILTERED, classifier.classify("http://www.amazon.com.evil.org/help.html"));
+		assertEquals(UrlClass.FILTERED, classifier.classify("http://www.amazon.com"));
+	}
+
+	@Test
+	public void firstMatchedFilterIsReported() {
+		final UrlClassifier classifier = new UrlClassifier(new DomainPatterns("amazon.com"), REGEXES.GENERAL_PRODUCT_URL,
+				REGEXES.GENERAL_CANONICAL_PRODUCT_URL, ALL_FILTERS);
+
+		assertEquals(REGEXES.GENERAL_SEARCH_URL, classifier.getFilter("http://www.amazon.com/search?q=logo.png"));
+		assertEquals(REGEXES.MEDIA_URL, classifier.getFilter("http://www.amazon.com/assets/logo.png"));
+		assertNull(classifier.getFilter("http://www.amazon.com/help/shipping.html"));
+	}
+
+	private static void assertSameAsRegexPipeline(final String domainName, final REGEXES normalProductUrlRegex,
+			final REGEXES canonicalProductUrlRegex, final List<REGEXES> filterRegexes) {
+		final UrlClassifier classifier = new UrlClassifier(new DomainPatterns(domainName), normalProductUrlRegex, canonicalProductUrlRegex,
+				filterRegexes);
+
+		final List<String> urls = new ArrayList<>();
+		for (final String base : BASES) {
+			for (final String path : PATHS) {
+				urls.add(String.format(base, domainName) + path);
+			}
+		}
+
+		for (final String url : urls) {
+			final boolean productUrl = matches(url, normalProductUrlRegex, domainName) || matches(url, canonicalProductUrlRegex, domainName);
+			REGEXES filter = null;
+			for (final REGEXES filterRegex : filterRegexes) {
+				if (matches(url, filterRegex, domainName)) {
+					filter = filterRegex;
+					break;
+				}
+			}
+
+			final UrlClass expected;
+			if (productUrl) {
+				expected = UrlClass.PRODUCT;
+			} else if (!matches(url, REGEXES.VALID_URL, domainName) || filter != null) {
+				expected = UrlClass.FILTERED;
+			} else {
+				expected = matches(url, REGEXES.CATEGORY_URL, domainName) ? UrlClass.CATEGORY : UrlClass.PLAIN;
+			}
+
+			assertEquals(url, expected, classifier.classify(url));
+			assertEquals(url, productUrl, classifier.isProductUrl(url));
+			assertEquals(url, filter, classifier.getFilter(url));
+		}
+	}
+
+	private static boolean matches(final String url, final REGEXES regex, final String domainName) {
+		return url.matches(String.format(regex.getRegex(), domainName));
+	}
+}
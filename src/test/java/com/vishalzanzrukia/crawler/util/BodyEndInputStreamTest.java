@@ -0,0 +1,191 @@
+package com.vishalzanzrukia.crawler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link BodyEndInputStream} ends right after the closing body tag,
+ * byte by byte and with the tag split across the reads of underlying stream,
+ * but not at the tag inside comment, script or style, and that the underlying
+ * stream is left open once body end is reached.
+ *
+ * @author VishalZanzrukia
+ */
+public class BodyEndInputStreamTest {
+
+	private static final String BODY = "<html><head><title>Page</title></head><body><a href=\"/a\">a</a>";
+	private static final String REST = "<div>footer</div></html>";
+
+	@Test
+	public void streamEndsAfterClosingBodyTag() throws IOException {
+		assertBodyEnd(BODY + "</body>", REST);
+	}
+
+	@Test
+	public void tagIsMatchedIgnoringCase() throws IOException {
+		assertBodyEnd(BODY + "</BoDy>", REST);
+	}
+
+	@Test
+	public void spacesAndAttributesAreAllowedInTag() throws IOException {
+		assertBodyEnd(BODY + "</body \n class=\"x\">", REST);
+	}
+
+	@Test
+	public void partialTagDoesNotEndStream() throws IOException {
+		assertNoBodyEnd(BODY + "</bod></<//body>" + REST);
+	}
+
+	@Test
+	public void streamWithoutBodyEndIsReadFully() throws IOException {
+		assertNoBodyEnd(BODY + REST);
+	}
+
+	@Test
+	public void tagSplitAcrossReadsIsMatched() throws IOException {
+		final String page = BODY + "</body>" + REST;
+		for (int chunkSize = 1; chunkSize <= 8; chunkSize++) {
+			final BodyEndInputStream in = new BodyEndInputStream(new ChunkedInputStream(bytes(page), chunkSize));
+			assertEquals("Chunk size : " + chunkSize, BODY + "</body>", readAll(in, 16));
+			assertTrue(in.isBodyEndReached());
+		}
+	}
+
+	@Test
+	public void tagInCommentDoesNotEndStream() throws IOException {
+		assertBodyEnd(BODY + "<!-- </body> - -> --><!----></body>", REST);
+	}
+
+	@Test
+	public void tagInScriptAndStyleDoesNotEndStream() throws IOException {
+		assertBodyEnd(BODY + "<script type=\"text/javascript\">document.write('</body>');</script >"
+				+ "<STYLE>/* </body> */</Style></body>", REST);
+	}
+
+	@Test
+	public void commentInScriptIsPartOfScript() throws IOException {
+		/** the script ends at its closing tag, even if it has comment start */
+		assertBodyEnd(BODY + "<script>var a = '<!--';</script></body>", REST);
+	}
+
+	@Test
+	public void otherTagsStartingWithScriptAreText() throws IOException {
+		assertBodyEnd(BODY + "<scripts></body>", REST);
+		assertBodyEnd(BODY + "<styles></body>", REST);
+	}
+
+	@Test
+	public void unclosedCommentReadsStreamFully() throws IOException {
+		assertNoBodyEnd(BODY + "<!-- </body>" + REST);
+	}
+
+	@Test
+	public void statesSplitAcrossReadsAreTracked() throws IOException {
+		final String head = BODY + "<!-- </body> --><script>x('</body>')</script><style></body></style></body>";
+		for (int chunkSize = 1; chunkSize <= 8; chunkSize++) {
+			final BodyEndInputStream in = new BodyEndInputStream(new ChunkedInputStream(bytes(head + REST), chunkSize));
+			assertEquals("Chunk size : " + chunkSize, head, readAll(in, 16));
+			assertTrue(in.isBodyEndReached());
+		}
+	}
+
+	@Test
+	public void singleByteReadsEndAtTag() throws IOException {
+		final BodyEndInputStream in = new BodyEndInputStream(new ByteArrayInputStream(bytes(BODY + "</body>" + REST)));
+		final ByteArrayOutputStream read = new ByteArrayOutputStream();
+		int b;
+		while ((b = in.read()) != -1) {
+			read.write(b);
+		}
+		assertEquals(BODY + "</body>", new String(read.toByteArray(), StandardCharsets.UTF_8));
+		assertEquals(0, in.available());
+	}
+
+	@Test
+	public void underlyingStreamIsLeftOpenOnceBodyEndIsReached() throws IOException {
+		final AtomicBoolean closed = new AtomicBoolean();
+		final InputStream underlying = new FilterInputStream(new ByteArrayInputStream(bytes(BODY + "</body>" + REST))) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		};
+		final BodyEndInputStream in = new BodyEndInputStream(underlying);
+		/** read byte by byte, so nothing after the tag is taken from underlying stream */
+		readAll(in, 1);
+		in.close();
+		assertFalse(closed.get());
+		assertEquals(REST.length(), underlying.available());
+	}
+
+	@Test
+	public void underlyingStreamIsClosedBeforeBodyEnd() throws IOException {
+		final AtomicBoolean closed = new AtomicBoolean();
+		final BodyEndInputStream in = new BodyEndInputStream(new FilterInputStream(new ByteArrayInputStream(bytes(BODY))) {
+			@Override
+			public void close() throws IOException {
+				closed.set(true);
+				super.close();
+			}
+		});
+		in.close();
+		assertTrue(closed.get());
+	}
+
+	private static void assertBodyEnd(final String head, final String rest) throws IOException {
+		final BodyEndInputStream in = new BodyEndInputStream(new ByteArrayInputStream(bytes(head + rest)));
+		assertEquals(head, readAll(in, 4096));
+		assertTrue(in.isBodyEndReached());
+		assertEquals(-1, in.read());
+	}
+
+	private static void assertNoBodyEnd(final String page) throws IOException {
+		final BodyEndInputStream in = new BodyEndInputStream(new ByteArrayInputStream(bytes(page)));
+		assertEquals(page, readAll(in, 7));
+		assertFalse(in.isBodyEndReached());
+	}
+
+	private static String readAll(final InputStream in, final int bufferSize) throws IOException {
+		final ByteArrayOutputStream read = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[bufferSize];
+		int count;
+		while ((count = in.read(buffer, 0, buffer.length)) != -1) {
+			read.write(buffer, 0, count);
+		}
+		return new String(read.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] bytes(final String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns at most given bytes per read, as a socket stream does.
+	 */
+	private static class ChunkedInputStream extends FilterInputStream {
+
+		private final int chunkSize;
+
+		private ChunkedInputStream(final byte[] bytes, final int chunkSize) {
+			super(new ByteArrayInputStream(bytes));
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			return super.read(buffer, offset, Math.min(length, chunkSize));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.vishalzanzrukia.crawler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+/**
+ * Tests that {@link HtmlByteScanner} finds the same tags, attribute values and
+ * script contents as the document parsed by Jsoup.
+ *
+ * @author VishalZanzrukia
+ */
+public class HtmlByteScannerTest {
+
+	private static final int MAX_RAW_TEXT_BYTES = 1024;
+
+	@Test
+	public void attributesOfMalformedMarkup() throws IOException {
+		assertSameTags("<html><head><meta name=\"description\" content=\"a &amp; b\"><meta property=og:title content='Title > 1'>"
+				+ "</head><body><div id=\"first\" ID=\"duplicate\"><p id=unquoted class=x>text<span\nid = \"spaced\"/>"
+				+ "<IMG ID=\"upper\" SRC=\"/a.png\"><!-- <div id=\"commented\"> --><input id=\"after-comment\" value=\"1 < 2\">"
+				+ "<![CDATA[<div id=\"cdata\">]]><div id=\"after-cdata\">< div id=\"not-a-tag\"> 1 < 2 <div id=\"after-less-than\">"
+				+ "</p></div><span id=\"entity&lt;&#62;\">entity</span><div id=\"eof\">eof");
+	}
+
+	@Test
+	public void rawTextIsNotScannedForTags() throws IOException {
+		assertSameTags("<html><head><title><div id=\"title\"></title><style id=\"style\">div:after { content: '<div id=\"in-style\">'; }</style>"
+				+ "<script id=\"script\">document.write('<div id=\"in-script\">');</script></head><body>"
+				+ "<textarea id=\"textarea\"><div id=\"in-textarea\"></textarea><div id=\"after-textarea\"></div>"
+				+ "<SCRIPT id=\"upper-script\">if (a </b) { x('</scripts><div id=\"in-upper-script\">'); }</SCRIPT >"
+				+ "<div id=\"after-script\"></div></body></html>");
+	}
+
+	@Test
+	public void scriptContentIsCaptured() throws IOException {
+		final String html = "<html><head><script type=\"application/ld+json\">{\"name\": \"</b>\"}</script>"
+				+ "<script>var a = '<div>';</script></head><body><script type=\"text/javascript\">\n  var b = 1 < 2;\n</script></body></html>";
+
+		final RecordingScanner scanner = scan(html, MAX_RAW_TEXT_BYTES);
+		final List<String> expected = Jsoup.parse(html).select("script").stream().map(script -> script.data()).collect(Collectors.toList());
+		assertEquals(expected, scanner.rawTexts);
+	}
+
+	@Test
+	public void longerRawTextIsNotCaptured() throws IOException {
+		/** the closing tag is counted as well */
+		final RecordingScanner scanner = scan("<script>short</script><script>longer than max bytes</script><div id=\"after\"></div>", 16);
+
+		assertEquals(1, scanner.rawTexts.size());
+		assertEquals("short", scanner.rawTexts.get(0));
+		assertEquals("div#after", scanner.tags.get(scanner.tags.size() - 1));
+	}
+
+	@Test
+	public void tagsAcrossBufferBoundaries() throws IOException {
+		final StringBuilder html = new StringBuilder("<html><body>");
+		for (int i = 0; html.length() < 64 * 1024; i++) {
+			html.append("<div id=\"item-").append(i).append("\"><script>var item = '<div id=\"script\">';</script>");
+			html.append("<!-- <div id=\"comment\"> --></div>");
+		}
+		assertSameTags(html.append("</body></html>").toString());
+	}
+
+	private static void assertSameTags(final String html) throws IOException {
+		final Document document = Jsoup.parse(html);
+		final List<String> expected = document.select("[id]").stream().map(element -> element.tagName() + "#" + element.id())
+				.collect(Collectors.toList());
+		assertEquals(expected, scan(html, MAX_RAW_TEXT_BYTES).tags);
+		assertFalse("Fixture without tags : " + html, expected.isEmpty());
+	}
+
+	private static RecordingScanner scan(final String html, final int maxRawTextBytes) throws IOException {
+		final RecordingScanner scanner = new RecordingScanner(html, StandardCharsets.UTF_8, maxRawTextBytes);
+		scanner.scan();
+		return scanner;
+	}
+
+	/**
+	 * Records the {@code id} of each tag, and the content of scripts.
+	 */
+	private static final class RecordingScanner extends HtmlByteScanner {
+
+		private final List<String> tags = new ArrayList<>();
+		private final List<String> rawTexts = new ArrayList<>();
+
+		private RecordingScanner(final String html, final Charset charset, final int maxRawTextBytes) {
+			super(new ByteArrayInputStream(html.getBytes(charset)), charset, maxRawTextBytes);
+		}
+
+		@Override
+		protected boolean isAttributeNeeded(final String tagName, final String attributeName) {
+			return "id".equals(attributeName);
+		}
+
+		@Override
+		protected void handleTag(final String tagName, final Map<String, String> attributes) {
+			tags.add(tagName + "#" + attributes.get("id"));
+		}
+
+		@Override
+		protected boolean isRawTextNeeded(final String tagName, final Map<String, String> attributes) {
+			return "script".equals(tagName);
+		}
+
+		@Override
+		protected void handleRawText(final String tagName, final byte[] text, final int length) {
+			rawTexts.add(new String(text, 0, length, getCharset()));
+		}
+	}
+}
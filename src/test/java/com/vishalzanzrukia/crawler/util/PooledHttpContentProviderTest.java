@@ -0,0 +1,491 @@
+package com.vishalzanzrukia.crawler.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fiftyonred.mock_jedis.MockJedis;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.vishalzanzrukia.crawler.bean.Configs;
+import com.vishalzanzrukia.crawler.bean.JsoupDocumentWrapper;
+import com.vishalzanzrukia.crawler.bean.PageValidators;
+import com.vishalzanzrukia.crawler.bean.RuntimeConfigs;
+import com.vishalzanzrukia.crawler.fetch.ConditionalFetchStats;
+import com.vishalzanzrukia.crawler.fetch.HostLatencyTracker;
+import com.vishalzanzrukia.crawler.fetch.ResponseBufferPool;
+import com.vishalzanzrukia.crawler.fetch.TransferStats;
+import com.vishalzanzrukia.crawler.fetch.ValidatorCache;
+import com.vishalzanzrukia.crawler.registry.ComponentRegistry;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.urlprocessor.UrlProcessor;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * Tests {@link PooledHttpContentProvider} against local http server, the
+ * parsed document and the bytes of the response, conditional requests with the
+ * validators kept by {@link ValidatorCache}, navigation pages read only till
+ * body end, sitemaps returned as bytes or streamed to their reader, the
+ * content types which are not supported, the status codes which fail the
+ * fetch, truncation of the body at max bytes, the timeout and the deadline of
+ * the host, decoding of compressed body and the pooled body buffers.
+ *
+ * @author VishalZanzrukia
+ */
+public class PooledHttpContentProviderTest {
+
+	private static final String ETAG = "\"v1\"";
+	private static final String LAST_MODIFIED = "Thu, 01 Jun 2017 10:00:00 GMT";
+	private static final String HTML_CONTENT_TYPE = "text/html; charset=UTF-8";
+	private static final int MAX_BYTES = 64 * 1024;
+	private static final int TIMEOUT_MILLIS = 1000;
+
+	private static final byte[] PAGE = page(8 * 1024);
+	private static final byte[] SITEMAP = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">"
+			+ "<url><loc>http://127.0.0.1/product/1</loc></url></urlset>").getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private Configs configs;
+	private ValidatorCache validatorCache;
+	private HostLatencyTracker hostLatencyTracker;
+	private TransferStats transferStats;
+	private ResponseBufferPool responseBufferPool;
+	private PooledHttpContentProvider contentProvider;
+
+	@Before
+	public void setUp() throws Exception {
+		serverExecutor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(serverExecutor);
+		server.createContext("/page", exchange -> {
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+			final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+			final String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+			if (ETAG.equals(ifNoneMatch) || (ifNoneMatch == null && LAST_MODIFIED.equals(ifModifiedSince))) {
+				respond(exchange, 304, null, null);
+			} else {
+				respond(exchange, 200, HTML_CONTENT_TYPE, PAGE);
+			}
+		});
+		server.createContext("/navigation", exchange -> respond(exchange, 200, HTML_CONTENT_TYPE, navigationPage()));
+		server.createContext("/gzip", exchange -> {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			respond(exchange, 200, HTML_CONTENT_TYPE, gzip(PAGE));
+		});
+		server.createContext("/empty-gzip", exchange -> {
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			respond(exchange, 200, HTML_CONTENT_TYPE, null);
+		});
+		server.createContext("/unvalidated", exchange -> respond(exchange, 200, HTML_CONTENT_TYPE, PAGE));
+		server.createContext("/large", exchange -> respond(exchange, 200, HTML_CONTENT_TYPE, page(MAX_BYTES + 1024)));
+		server.createContext("/sitemap.xml", exchange -> respond(exchange, 200, "application/xml", SITEMAP));
+		server.createContext("/sitemap.xml.gz", exchange -> respond(exchange, 200, "application/octet-stream", gzip(SITEMAP)));
+		server.createContext("/image.png", exchange -> respond(exchange, 200, "image/png", new byte[100]));
+		server.createContext("/missing", exchange -> respond(exchange, 404, HTML_CONTENT_TYPE, PAGE));
+		server.createContext("/throttled", exchange -> {
+			exchange.getResponseHeaders().set("Retry-After", "120");
+			respond(exchange, 429, HTML_CONTENT_TYPE, PAGE);
+		});
+		server.createContext("/slow", exchange -> {
+			try {
+				TimeUnit.MILLISECONDS.sleep(TIMEOUT_MILLIS * 3);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(exchange, 200, HTML_CONTENT_TYPE, PAGE);
+		});
+		server.createContext("/trickle", exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", HTML_CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = exchange.getResponseBody()) {
+				/** every read completes within the read timeout, the whole body does not */
+				for (int i = 0; i < 12; i++) {
+					out.write(PAGE);
+					out.flush();
+					TimeUnit.MILLISECONDS.sleep(TIMEOUT_MILLIS / 4);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (IOException e) {
+				/** the client aborted the request */
+			} finally {
+				exchange.close();
+			}
+		});
+		server.start();
+
+		configs = new Configs();
+		configs.setMaxBytes(MAX_BYTES);
+		configs.setSiteMapMaxBytes(MAX_BYTES);
+		/** the host timeout is used for reading, not this one */
+		configs.setTimeout(TIMEOUT_MILLIS * 10 / 1000);
+		configs.setMaxPooledConnectionsPerHost(4);
+		configs.setMaxPooledConnections(16);
+		configs.setPooledConnectionIdleTimeout(30);
+		configs.setCompression(true);
+		configs.setPooledBuffers(true);
+		configs.setMaxRetainedBufferBytes(1024 * 1024);
+
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getConfigs()).thenReturn(configs);
+
+		hostLatencyTracker = mock(HostLatencyTracker.class);
+		when(hostLatencyTracker.getTimeoutMillis(anyString())).thenReturn(TIMEOUT_MILLIS);
+		when(singletonBeanFactory.getHostLatencyTracker()).thenReturn(hostLatencyTracker);
+
+		transferStats = new TransferStats();
+		when(singletonBeanFactory.getTransferStats()).thenReturn(transferStats);
+
+		responseBufferPool = new ResponseBufferPool();
+		ReflectionTestUtils.setField(responseBufferPool, "singletonBeanFactory", singletonBeanFactory);
+		when(singletonBeanFactory.getResponseBufferPool()).thenReturn(responseBufferPool);
+
+		final RuntimeConfigs runtimeConfigs = new RuntimeConfigs();
+		runtimeConfigs.setDomainName("127.0.0.1");
+		when(singletonBeanFactory.getRuntimeConfigs()).thenReturn(runtimeConfigs);
+		when(singletonBeanFactory.getCrawlerUtils()).thenReturn(new CrawlerUtils());
+
+		final UrlProcessor urlProcessor = mock(UrlProcessor.class);
+		when(urlProcessor.normalize(anyString())).thenAnswer(invocation -> invocation.getArguments()[0]);
+		final ComponentRegistry componentRegistry = mock(ComponentRegistry.class);
+		when(componentRegistry.getUrlProcessor()).thenReturn(urlProcessor);
+		when(singletonBeanFactory.getComponentRegistry()).thenReturn(componentRegistry);
+
+		final JedisPool jedisPool = mock(JedisPool.class);
+		when(jedisPool.getResource()).thenReturn(new MockJedis("localhost"));
+		when(singletonBeanFactory.getJedisPool()).thenReturn(jedisPool);
+
+		validatorCache = new ValidatorCache();
+		ReflectionTestUtils.setField(validatorCache, "singletonBeanFactory", singletonBeanFactory);
+
+		contentProvider = new PooledHttpContentProvider();
+		ReflectionTestUtils.setField(contentProvider, "singletonBeanFactory", singletonBeanFactory);
+		contentProvider.init();
+	}
+
+	@After
+	public void tearDown() {
+		contentProvider.destroy();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	public void pageIsParsed() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"));
+
+		assertEquals("Test page", response.getDocument().title());
+		assertEquals(HTML_CONTENT_TYPE, response.getResponseType());
+		assertEquals(getUrl("/page"), response.getUrl().toString());
+		assertNull(response.getResponseBody());
+		assertEquals(ETAG, response.getValidators().getETag());
+		assertEquals(LAST_MODIFIED, response.getValidators().getLastModified());
+		assertEquals(PAGE.length, response.getValidators().getContentLength());
+	}
+
+	@Test
+	public void cachedValidatorsAreSentAndNotModifiedPageHasNoDocument() throws IOException {
+		validatorCache.put(getUrl("/page"), contentProvider.downloadPage(getUrl("/page")).getValidators());
+		final PageValidators validators = validatorCache.get(getUrl("/page"));
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"), validators);
+
+		assertTrue(response.isNotModified());
+		assertNull(response.getDocument());
+		assertEquals(PAGE.length, response.getValidators().getContentLength());
+
+		final ConditionalFetchStats conditionalFetchStats = new ConditionalFetchStats();
+		conditionalFetchStats.record(response);
+		conditionalFetchStats.record(contentProvider.downloadPage(getUrl("/page"), new PageValidators("\"v0\"", null, PAGE.length)));
+		assertEquals(2, conditionalFetchStats.getConditionalRequests());
+		assertEquals(0.5, conditionalFetchStats.getHitRate(), 0.001);
+		assertEquals(PAGE.length, conditionalFetchStats.getBytesSaved());
+
+		conditionalFetchStats.onNewCycle();
+		assertEquals(0, conditionalFetchStats.getConditionalRequests());
+		assertEquals(0.5, conditionalFetchStats.getLastCycleHitRate(), 0.001);
+		assertEquals(PAGE.length, conditionalFetchStats.getLastCycleBytesSaved());
+	}
+
+	@Test
+	public void lastModifiedIsSentWithoutETag() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"), new PageValidators(null, LAST_MODIFIED, PAGE.length));
+
+		assertTrue(response.isNotModified());
+	}
+
+	@Test
+	public void modifiedPageIsDownloadedFully() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"), new PageValidators("\"v0\"", null, 10));
+
+		assertFalse(response.isNotModified());
+		assertEquals("Test page", response.getDocument().title());
+		assertEquals(ETAG, response.getValidators().getETag());
+	}
+
+	@Test
+	public void pageWithoutValidatorsIsNotCached() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/unvalidated"), (PageValidators) null);
+		validatorCache.put(getUrl("/unvalidated"), response.getValidators());
+
+		assertFalse(response.getValidators().hasValidators());
+		assertNull(validatorCache.get(getUrl("/unvalidated")));
+	}
+
+	@Test
+	public void bytesAreReturnedInsteadOfDocument() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"), true);
+
+		assertArrayEquals(PAGE, response.getResponseBody().toByteArray());
+		assertFalse(response.getResponseBody().isTruncated());
+		assertNull(response.getDocument());
+	}
+
+	@Test
+	public void releasedBodyBufferIsReusedForNextPage() throws IOException {
+		contentProvider.downloadPage(getUrl("/page"), true).release();
+		final long allocatedBuffers = responseBufferPool.getAllocatedBuffers();
+
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/page"), true);
+		assertArrayEquals(PAGE, response.getResponseBody().toByteArray());
+		response.release();
+		assertEquals(allocatedBuffers, responseBufferPool.getAllocatedBuffers());
+		assertEquals(1, responseBufferPool.getReusedBuffers());
+	}
+
+	@Test
+	public void connectionIsReusedForNextPage() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			assertEquals("Test page", contentProvider.downloadPage(getUrl("/page")).getDocument().title());
+		}
+	}
+
+	@Test
+	public void navigationPageIsReadTillBodyEnd() throws IOException {
+		configs.setEarlyAbort(true);
+		final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(getUrl("/navigation"));
+
+		assertEquals(1, response.getDocument().select("a[href]").size());
+		assertTrue(response.getValidators().getContentLength() < navigationPage().length);
+
+		/** the connection is usable after the rest of page is dropped */
+		assertEquals("Test page", contentProvider.downloadPage(getUrl("/page")).getDocument().title());
+	}
+
+	@Test
+	public void navigationPageIsReadFullyWithoutEarlyAbort() throws IOException {
+		configs.setEarlyAbort(false);
+		final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(getUrl("/navigation"));
+
+		assertEquals(navigationPage().length, response.getValidators().getContentLength());
+	}
+
+	@Test
+	public void compressedBodyIsDecodedAndCounted() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/gzip"), true);
+
+		assertArrayEquals(PAGE, response.getResponseBody().toByteArray());
+		response.release();
+		assertEquals(PAGE.length, transferStats.getBodyBytes());
+		assertTrue("The wire bytes are not of compressed body : " + transferStats.getWireBytes(), transferStats.getWireBytes() < PAGE.length);
+	}
+
+	@Test
+	public void compressedPageIsParsed() throws IOException {
+		assertEquals("Test page", contentProvider.downloadPage(getUrl("/gzip")).getDocument().title());
+	}
+
+	@Test
+	public void emptyCompressedBodyIsNotDecoded() throws IOException {
+		/** fails as any empty page, not on the missing gzip header */
+		try {
+			contentProvider.downloadPage(getUrl("/empty-gzip"), true);
+			fail("The empty page is returned");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Retrieving null document"));
+		}
+	}
+
+	@Test
+	public void bodyAboveMaxBytesIsTruncated() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadPage(getUrl("/large"), true);
+
+		assertEquals(MAX_BYTES, response.getResponseBody().getLength());
+		assertTrue(response.getResponseBody().isTruncated());
+		assertArrayEquals(Arrays.copyOf(page(MAX_BYTES + 1024), MAX_BYTES), response.getResponseBody().toByteArray());
+		response.release();
+	}
+
+	@Test
+	public void sitemapIsReturnedAsBytes() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(getUrl("/sitemap.xml"));
+
+		assertArrayEquals(SITEMAP, response.getResponseBody().toByteArray());
+		assertNull(response.getDocument());
+	}
+
+	@Test
+	public void sitemapIsStreamedToReader() throws IOException {
+		final AtomicLong readBytes = new AtomicLong();
+		final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(getUrl("/sitemap.xml"),
+				(responseUrl, body) -> readBytes.set(ByteStreams.toByteArray(body).length));
+
+		assertEquals(SITEMAP.length, readBytes.get());
+		assertEquals(SITEMAP.length, response.getValidators().getContentLength());
+		assertNull(response.getDocument());
+		assertNull(response.getResponseBody());
+	}
+
+	@Test
+	public void sitemapAboveMaxBytesIsTruncated() throws IOException {
+		configs.setSiteMapMaxBytes(SITEMAP.length / 2);
+		final AtomicLong readBytes = new AtomicLong();
+		contentProvider.downloadNavigationPage(getUrl("/sitemap.xml"), (responseUrl, body) -> readBytes.set(ByteStreams.toByteArray(body).length));
+
+		assertEquals(SITEMAP.length / 2, readBytes.get());
+	}
+
+	@Test
+	public void gzippedSitemapServedAsBinaryIsReturnedAsBytes() throws IOException {
+		final JsoupDocumentWrapper response = contentProvider.downloadNavigationPage(getUrl("/sitemap.xml.gz"));
+
+		/** the reader decompresses it on the fly */
+		assertArrayEquals(gzip(SITEMAP), response.getResponseBody().toByteArray());
+		assertNull(response.getDocument());
+	}
+
+	@Test(expected = UnsupportedMimeTypeException.class)
+	public void binaryContentIsNotSupported() throws IOException {
+		contentProvider.downloadPage(getUrl("/image.png"));
+	}
+
+	@Test
+	public void errorStatusFailsTheFetch() throws IOException {
+		try {
+			contentProvider.downloadPage(getUrl("/missing"));
+			fail("The fetch of missing page is not failed");
+		} catch (HttpStatusException e) {
+			assertEquals(404, e.getStatusCode());
+			assertEquals(getUrl("/missing"), e.getUrl());
+		}
+	}
+
+	@Test
+	public void throttledStatusCarriesRetryAfter() throws IOException {
+		try {
+			contentProvider.downloadPage(getUrl("/throttled"));
+			fail("The fetch of throttled page is not failed");
+		} catch (ThrottledStatusException e) {
+			assertEquals(ThrottledStatusException.SC_TOO_MANY_REQUESTS, e.getStatusCode());
+			assertEquals(TimeUnit.SECONDS.toMillis(120), e.getRetryAfterMillis());
+		}
+	}
+
+	@Test
+	public void fetchIsTimedOutWithHostTimeout() throws IOException {
+		final long startNanos = System.nanoTime();
+		try {
+			contentProvider.downloadPage(getUrl("/slow"));
+			fail("The slow fetch is not timed out");
+		} catch (SocketTimeoutException e) {
+			/** the timed out fetch is recorded too, so timeout of the host can grow back */
+			verify(hostLatencyTracker).record(eq(getUrl("/slow")), anyLong());
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < TIMEOUT_MILLIS * 3);
+	}
+
+	@Test
+	public void fetchIsAbortedAtDeadline() throws IOException {
+		final long startNanos = System.nanoTime();
+		try {
+			contentProvider.downloadPage(getUrl("/trickle"));
+			fail("The fetch which exceeds the deadline is not aborted");
+		} catch (SocketTimeoutException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Not completed within " + TIMEOUT_MILLIS + " millis"));
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < TIMEOUT_MILLIS * 3);
+	}
+
+	private String getUrl(final String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static void respond(final HttpExchange exchange, final int statusCode, final String contentType, final byte[] body) throws IOException {
+		try {
+			if (contentType != null) {
+				exchange.getResponseHeaders().set("Content-Type", contentType);
+			}
+			exchange.sendResponseHeaders(statusCode, body == null ? -1 : body.length);
+			if (body != null) {
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * The page with large footer after body end, and a link in it which is
+	 * not in the body.
+	 */
+	private static byte[] navigationPage() {
+		final StringBuilder html = new StringBuilder("<html><head><title>Navigation</title></head><body><a href=\"/a\">a</a></body>");
+		while (html.length() < 32 * 1024) {
+			html.append("<!-- footer after body end -->");
+		}
+		html.append("<a href=\"/b\">b</a></html>");
+		return html.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] page(final int approxBytes) {
+		final StringBuilder html = new StringBuilder(approxBytes + 256);
+		html.append("<html><head><title>Test page</title></head><body>");
+		for (int i = 0; html.length() < approxBytes; i++) {
+			html.append("<div><a href=\"/category/index.jsp?categoryId=").append(i).append("\">Category ").append(i).append("</a></div>");
+		}
+		html.append("</body></html>");
+		return html.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] gzip(final byte[] bytes) throws IOException {
+		final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+			out.write(bytes);
+		}
+		return gzipped.toByteArray();
+	}
+}
@@ -0,0 +1,123 @@
+package com.vishalzanzrukia.crawler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+/**
+ * Tests that {@link StreamingLinkExtractor} finds the same links as
+ * {@code select("a[href]")} of the document parsed by Jsoup, on malformed
+ * markup, links inside comments, {@code script} and {@code style}, and with
+ * {@code <base href>}.
+ *
+ * @author VishalZanzrukia
+ */
+public class StreamingLinkExtractorTest {
+
+	private static final String BASE_URI = "http://www.example.com/category/index.jsp?categoryId=1";
+
+	@Test
+	public void wellFormedPage() throws IOException {
+		assertSameLinks("<!DOCTYPE html><html><head><title>Page</title></head><body>"
+				+ "<a href=\"/product/index.jsp?productId=1\">1</a><a href=\"http://www.example.org/\">2</a>"
+				+ "<a href=\"../category/index.jsp?categoryId=2\">3</a><a href=\"?page=2\">4</a><a href=\"#top\">5</a>"
+				+ "<a name=\"no-href\">6</a><a href=\"mailto:support@example.com\">7</a></body></html>");
+	}
+
+	@Test
+	public void malformedMarkup() throws IOException {
+		assertSameLinks("<html><body><div><p><a href=/unquoted?x=1&amp;y=2>unquoted</a>"
+				+ "<A HREF='/upper-case'>upper case</A><a\nclass=\"x\"\thref = \"/spaced\" >spaced</a>"
+				+ "<a title=\"a > b\" href=\"/quoted-tag-end\">quoted tag end</a>"
+				+ "<a href=\"/unclosed\">unclosed<a href=\"/next\">next</a>"
+				+ "<table><tr><td><a href=\"/in-table\">in table</td></tr></table>"
+				+ "<a href=\"/entity?a=1&amp;b=2&lt;\">entity</a>"
+				+ "<a href=\" /padded \">padded</a><a/href=\"/slash\">slash</a>"
+				+ "< a href=\"/not-a-tag\">not a tag</a> 1 < 2 <a href=\"/after-less-than\">after less than</a>"
+				+ "</div></p><a href=\"/after-stray-end-tags\">after stray end tags</a><a href=\"/eof\">eof");
+	}
+
+	@Test
+	public void firstOfDuplicateHrefIsUsed() throws IOException {
+		/** as HTML spec says, Jsoup 1.11 keeps the last one instead */
+		assertEquals(Arrays.asList("http://www.example.com/first"), StreamingLinkExtractor.extractLinks(
+				new ByteArrayInputStream("<a href=\"/first\" href=\"/second\">duplicate</a>".getBytes(StandardCharsets.UTF_8)), null, BASE_URI));
+	}
+
+	@Test
+	public void commentsAndDeclarations() throws IOException {
+		assertSameLinks("<!DOCTYPE html><html><body><!-- <a href=\"/commented\">commented</a> -->"
+				+ "<!-- a -- <a href=\"/still-commented\"> - > --><a href=\"/after-comment\">after comment</a>"
+				+ "<![CDATA[<a href=\"/cdata\">]]><a href=\"/after-cdata\">after cdata</a><?php echo 1 ?>"
+				+ "<a href=\"/after-instruction\">after instruction</a></body></html>");
+	}
+
+	@Test
+	public void scriptAndStyle() throws IOException {
+		assertSameLinks("<html><head><style>a:after { content: '<a href=\"/style\">'; }</style>"
+				+ "<title><a href=\"/title\"></title><script>document.write('<a href=\"/script\">');</script>"
+				+ "<SCRIPT type=\"text/javascript\">if (a </b) { x('</scripts><a href=\"/script-upper\">'); }</SCRIPT >"
+				+ "</head><body><a href=\"/after-script\">after script</a>"
+				+ "<textarea><a href=\"/textarea\"></textarea><a href=\"/after-textarea\">after textarea</a>"
+				+ "<script src=\"/app.js\"></script><a href=\"/after-empty-script\">after empty script</a></body></html>");
+	}
+
+	@Test
+	public void baseHref() throws IOException {
+		assertSameLinks("<html><head><base href=\"http://cdn.example.com/catalog/\"><base href=\"http://ignored.example.com/\"></head>"
+				+ "<body><a href=\"product/1\">1</a><a href=\"/product/2\">2</a><a href=\"//www.example.org/3\">3</a></body></html>");
+	}
+
+	@Test
+	public void relativeBaseHref() throws IOException {
+		assertSameLinks("<html><head><base href=\"/catalog/\"></head><body><a href=\"product/1\">1</a><a href=\"../product/2\">2</a></body></html>");
+	}
+
+	@Test
+	public void linksAcrossBufferBoundaries() throws IOException {
+		final StringBuilder html = new StringBuilder("<html><body>");
+		for (int i = 0; html.length() < 64 * 1024; i++) {
+			html.append("<div class=\"item\"><a href=\"/product/index.jsp?productId=").append(i).append("\">Product ").append(i).append("</a>");
+			html.append("<script>var item").append(i).append(" = '<a href=\"/script\">';</script></div>");
+		}
+		assertSameLinks(html.append("</body></html>").toString());
+	}
+
+	@Test
+	public void nonAsciiHrefIsDecodedWithCharset() throws IOException {
+		final String html = "<html><body><a href=\"/café?q=ü\">café</a></body></html>";
+		final List<String> links = StreamingLinkExtractor.extractLinks(new ByteArrayInputStream(html.getBytes(StandardCharsets.ISO_8859_1)),
+				"ISO-8859-1", BASE_URI);
+		assertEquals(jsoupLinks(html), links);
+	}
+
+	@Test
+	public void onlyAsciiCompatibleCharsetsAreSupported() {
+		assertTrue(StreamingLinkExtractor.isSupported(null));
+		assertTrue(StreamingLinkExtractor.isSupported("UTF-8"));
+		assertTrue(StreamingLinkExtractor.isSupported("windows-1252"));
+		assertFalse(StreamingLinkExtractor.isSupported("UTF-16LE"));
+		assertFalse(StreamingLinkExtractor.isSupported("utf-32"));
+		assertFalse(StreamingLinkExtractor.isSupported("no-such-charset"));
+	}
+
+	private static void assertSameLinks(final String html) throws IOException {
+		final List<String> expected = jsoupLinks(html);
+		assertEquals(expected, StreamingLinkExtractor.extractLinks(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), null, BASE_URI));
+		assertFalse("Fixture without links : " + html, expected.isEmpty());
+	}
+
+	private static List<String> jsoupLinks(final String html) {
+		return Jsoup.parse(html, BASE_URI).select("a[href]").stream().map(link -> link.attr("abs:href")).collect(Collectors.toList());
+	}
+}
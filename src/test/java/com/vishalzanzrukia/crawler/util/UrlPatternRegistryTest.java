@@ -0,0 +1,127 @@
+package com.vishalzanzrukia.crawler.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vishalzanzrukia.crawler.bean.RuntimeConfigs;
+import com.vishalzanzrukia.crawler.registry.SingletonBeanFactory;
+import com.vishalzanzrukia.crawler.util.CrawlerUtils.REGEXES;
+import com.vishalzanzrukia.crawler.util.UrlPatternRegistry.DomainPatterns;
+
+/**
+ * Tests the registration of compiled {@link REGEXES} per domain by
+ * {@link UrlPatternRegistry}, and that matching and replacing with them is
+ * same as {@link String#matches(String)} and
+ * {@link String#replaceAll(String, String)} of the formatted regex.
+ *
+ * @author VishalZanzrukia
+ */
+public class UrlPatternRegistryTest {
+
+	private static final String DOMAIN_NAME = "amazon.com";
+	private static final String OTHER_DOMAIN_NAME = "amazon.co.uk";
+
+	private static final String[] URLS = {"http://www.amazon.com/product/index.jsp?productId=12345678&cp=2255956",
+			"https://www.amazon.com/buy/lego-star-wars-millennium-falcon-75257-12345678", "http://www.amazon.co.uk/pdp/product.jsp?productId=AB12CD",
+			"http://www.amazon.com/category/index.jsp?categoryId=2255956", "http://www.amazon.com/search?q=lego",
+			"http://www.amazon.com/images/logo.PNG", "http://www.amazon.com/shop/index.jsp;jsessionid=ABCDEF?x=1",
+			"http://www.amazon.com/product/writeReview.jsp?productId=1", "http://www.amazon.com/mobile/product/index.jsp?productId=1",
+			"https://www.example.org/product/index.jsp?productId=1", "http://www.amazon.com/", ""};
+
+	private UrlPatternRegistry urlPatternRegistry;
+
+	@Before
+	public void setUp() {
+		final RuntimeConfigs runtimeConfigs = new RuntimeConfigs();
+		runtimeConfigs.setDomainName(DOMAIN_NAME);
+		final SingletonBeanFactory singletonBeanFactory = mock(SingletonBeanFactory.class);
+		when(singletonBeanFactory.getRuntimeConfigs()).thenReturn(runtimeConfigs);
+
+		urlPatternRegistry = new UrlPatternRegistry();
+		ReflectionTestUtils.setField(urlPatternRegistry, "singletonBeanFactory", singletonBeanFactory);
+	}
+
+	@Test
+	public void patternsOfCrawledDomainAreRegisteredAtStartup() {
+		urlPatternRegistry.init();
+
+		final DomainPatterns patterns = urlPatternRegistry.getPatterns();
+		assertSame(patterns, urlPatternRegistry.getPatterns(DOMAIN_NAME));
+		assertEquals(String.format(REGEXES.GENERAL_PRODUCT_URL.getRegex(), DOMAIN_NAME), patterns.getRegex(REGEXES.GENERAL_PRODUCT_URL));
+		assertEquals(patterns.getRegex(REGEXES.GENERAL_PRODUCT_URL), patterns.getPattern(REGEXES.GENERAL_PRODUCT_URL).pattern());
+	}
+
+	@Test
+	public void otherDomainIsRegisteredOnceOnFirstUse() {
+		urlPatternRegistry.init();
+
+		final DomainPatterns otherPatterns = urlPatternRegistry.getPatterns(OTHER_DOMAIN_NAME);
+		assertSame(otherPatterns, urlPatternRegistry.getPatterns(OTHER_DOMAIN_NAME));
+		assertNotSame(otherPatterns, urlPatternRegistry.getPatterns());
+		/** the crawled domain keeps precedence for the url processor */
+		assertSame(urlPatternRegistry.getPatterns(DOMAIN_NAME), urlPatternRegistry.getPatterns());
+		assertEquals(String.format(REGEXES.VALID_URL.getRegex(), OTHER_DOMAIN_NAME), otherPatterns.getRegex(REGEXES.VALID_URL));
+	}
+
+	@Test
+	public void matchingIsSameAsStringMatches() {
+		for (final String domainName : new String[]{DOMAIN_NAME, OTHER_DOMAIN_NAME}) {
+			final DomainPatterns patterns = new DomainPatterns(domainName);
+			for (final REGEXES regex : REGEXES.values()) {
+				final String formattedRegex = String.format(regex.getRegex(), domainName);
+				for (final String url : URLS) {
+					assertEquals(regex + " " + url, url.matches(formattedRegex), patterns.matches(regex, url));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void replacingIsSameAsStringReplaceAll() {
+		final DomainPatterns patterns = new DomainPatterns(DOMAIN_NAME);
+		final String regex = String.format(REGEXES.GENERAL_PRODUCT_URL.getRegex(), DOMAIN_NAME);
+		for (final String url : URLS) {
+			assertEquals(url, url.replaceAll(regex, "$4"), patterns.replaceAll(REGEXES.GENERAL_PRODUCT_URL, url, "$4"));
+			assertEquals(url, url.replaceAll(regex, "$1$3$4"), patterns.replaceAll(REGEXES.GENERAL_PRODUCT_URL, url, "$1$3$4"));
+		}
+	}
+
+	@Test
+	public void patternsAreMatchedFromManyThreads() throws Exception {
+		final DomainPatterns patterns = new DomainPatterns(DOMAIN_NAME);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Integer>> matches = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				matches.add(executor.submit(() -> {
+					int matched = 0;
+					for (int j = 0; j < 1000; j++) {
+						for (final String url : URLS) {
+							matched += patterns.matches(REGEXES.GENERAL_PRODUCT_URL, url) ? 1 : 0;
+						}
+					}
+					return matched;
+				}));
+			}
+			for (final Future<Integer> matched : matches) {
+				assertEquals(1000, matched.get(10, TimeUnit.SECONDS).intValue());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}